@@ -0,0 +1,74 @@
+package asg.games.server.yipeewebserver.aspects;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-call cost of {@link LoggingServerAspect} on a woven main class ({@link TracedObject})
+ * against the same getter/setter pair on an unwoven class.
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile exec:exec -Djmh.include=LoggingAspectBenchmark}.
+ * Build with {@code -Pno-trace} as well to measure the unwoven main classes.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LoggingAspectBenchmark {
+    @Param({"OFF", "SAMPLED", "FULL"})
+    private TraceSettings.TraceMode mode;
+
+    @Param({"1000"})
+    private int sampleRate;
+
+    private TracedObject woven;
+    private PlainObject plain;
+
+    /**
+     * Same shape as {@link TracedObject}; benchmark classes are not woven.
+     */
+    static class PlainObject {
+        private String name;
+
+        String getName() {
+            return name;
+        }
+
+        void setName(String name) {
+            this.name = name;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        TraceSettings.configure(mode, sampleRate);
+        woven = new TracedObject();
+        plain = new PlainObject();
+    }
+
+    @Benchmark
+    public String baseline() {
+        plain.setName("player");
+        return plain.getName();
+    }
+
+    @Benchmark
+    public String woven() {
+        woven.setName("player");
+        return woven.getName();
+    }
+}
@@ -0,0 +1,71 @@
+package asg.games.server.yipeewebserver.core;
+
+import asg.games.yipee.common.game.GameBoardState;
+import asg.games.yipee.core.objects.YipeePlayer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One full match tick ({@link ServerGameManager#update(float)}) and the per-seat export,
+ * by number of occupied seats. Seats are filled in whole partner pairs, so every board
+ * ticks against a running partner's state as in a real match.
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile exec:exec -Djmh.include=ServerGameManagerBenchmark};
+ * results are written as JSON to {@code target/jmh-result.json}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerGameManagerBenchmark {
+    private static final float DELTA = 1.0f / 30;
+
+    @Param({"2", "4", "8"})
+    private int occupiedSeats;
+
+    private ServerGameManager gameManager;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        gameManager = new ServerGameManager(ServerGameManager.MAX_TICK_HISTORY);
+        gameManager.initialize(42L);
+        for (int seatId = 0; seatId < occupiedSeats; seatId++) {
+            YipeePlayer player = new YipeePlayer();
+            player.setName("bench" + seatId);
+            gameManager.setGameBoardObjectPlayer(seatId, player);
+        }
+        gameManager.startGameLoop();
+
+        // Fill the history so partner lookups and eviction run as in a live match
+        for (int i = 0; i < ServerGameManager.MAX_TICK_HISTORY; i++) {
+            gameManager.update(DELTA);
+        }
+    }
+
+    @Benchmark
+    public long update() throws JsonProcessingException {
+        gameManager.update(DELTA);
+        return gameManager.getServerTick();
+    }
+
+    @Benchmark
+    public Map<Integer, GameBoardState> exportLatestPerSeat() {
+        return gameManager.exportLatestPerSeat();
+    }
+}
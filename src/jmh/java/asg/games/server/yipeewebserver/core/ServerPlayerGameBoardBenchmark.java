@@ -0,0 +1,87 @@
+package asg.games.server.yipeewebserver.core;
+
+import asg.games.yipee.common.game.GameBoardState;
+import asg.games.yipee.core.objects.YipeePlayer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-seat hot path of {@link ServerPlayerGameBoard}: a board tick against a running
+ * partner's state, the history insert with eviction, and the latest-state lookup, at several
+ * history depths. The tick is fed states exported in setup, so it times the board update and
+ * history insert only.
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile exec:exec -Djmh.include=ServerPlayerGameBoardBenchmark};
+ * results are written as JSON to {@code target/jmh-result.json}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ServerPlayerGameBoardBenchmark {
+    private static final float DELTA = 1.0f / 30;
+
+    @Param({"16", "256", "1024"})
+    private int historyDepth;
+
+    private ServerPlayerGameBoard board;
+    private GameBoardState state;
+    private GameBoardState partnerState;
+    private long tick;
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        board = new ServerPlayerGameBoard(42L, 0, historyDepth);
+        YipeePlayer player = new YipeePlayer();
+        player.setName("bench");
+        board.setPlayer(player);
+        board.startBoard();
+
+        // Seat 1 is seat 0's partner, wired the way ServerGameManager pairs them
+        ServerPlayerGameBoard partner = new ServerPlayerGameBoard(43L, 1, historyDepth);
+        YipeePlayer partnerPlayer = new YipeePlayer();
+        partnerPlayer.setName("bench-partner");
+        partner.setPlayer(partnerPlayer);
+        partner.startBoard();
+        board.setPartnerRef(partner);
+        partner.setPartnerRef(board);
+
+        state = board.getBoard().exportGameState();
+        partnerState = partner.getBoard().exportGameState();
+        for (tick = 0; tick < historyDepth; tick++) {
+            board.putStateWithEviction(tick, state);
+        }
+    }
+
+    @Benchmark
+    public long tick() throws JsonProcessingException {
+        board.tick(++tick, DELTA, state, partnerState);
+        return tick;
+    }
+
+    @Benchmark
+    public long putStateWithEviction() {
+        board.putStateWithEviction(++tick, state);
+        return tick;
+    }
+
+    @Benchmark
+    public GameBoardState getLatestGameState() {
+        return board.getLatestGameState();
+    }
+}
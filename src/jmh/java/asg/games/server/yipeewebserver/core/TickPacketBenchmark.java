@@ -0,0 +1,82 @@
+package asg.games.server.yipeewebserver.core;
+
+import asg.games.yipee.net.packets.TableStateUpdateResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Packet build step of one broadcast tick in {@link ServerManager#update(float, boolean)}:
+ * filling each game's reusable tick packet into the shared response list ({@code reuse=true}),
+ * against the previous per-tick {@code LinkedList} and {@code TableStateUpdateResponse}
+ * ({@code reuse=false}).
+ * <p>
+ * The jmh profile runs with the GC profiler, so {@code gc.alloc.rate.norm} gives the bytes
+ * allocated per tick for each mode:
+ * {@code mvn -Pjmh test-compile exec:exec -Djmh.include=TickPacketBenchmark}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TickPacketBenchmark {
+    private static final String SERVER_ID = "bench-server";
+
+    @Param({"1", "64", "512"})
+    private int games;
+
+    @Param({"true", "false"})
+    private boolean reuse;
+
+    private ServerGameManager[] gameManagers;
+    private final List<TableStateUpdateResponse> tickResponses = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        gameManagers = new ServerGameManager[games];
+        for (int i = 0; i < games; i++) {
+            gameManagers[i] = new ServerGameManager(ServerGameManager.MAX_TICK_HISTORY);
+            gameManagers[i].setGameId("game-" + i);
+        }
+    }
+
+    @Benchmark
+    public void buildTickPackets(Blackhole blackhole) {
+        List<TableStateUpdateResponse> responses;
+        if (reuse) {
+            responses = tickResponses;
+            responses.clear();
+        } else {
+            responses = new LinkedList<>();
+        }
+
+        for (ServerGameManager gameManager : gameManagers) {
+            TableStateUpdateResponse tickPacket = reuse ? gameManager.getTickPacket() : new TableStateUpdateResponse();
+            tickPacket.setServerTick(gameManager.getServerTick());
+            tickPacket.setGameId(gameManager.getGameId());
+            tickPacket.setServerId(SERVER_ID);
+            responses.add(tickPacket);
+        }
+
+        for (TableStateUpdateResponse response : responses) {
+            blackhole.consume(response);
+        }
+    }
+}
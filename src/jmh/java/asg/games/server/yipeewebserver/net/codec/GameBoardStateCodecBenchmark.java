@@ -0,0 +1,130 @@
+package asg.games.server.yipeewebserver.net.codec;
+
+import asg.games.server.yipeewebserver.core.ServerPlayerGameBoard;
+import asg.games.yipee.common.game.GameBoardState;
+import asg.games.yipee.core.objects.YipeePlayer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of one board state: {@link CompactStateCodec} against Kryo's default
+ * field serializer (the current Kryo wire format) and Jackson (the current WebSocket format).
+ * The encode benchmarks also report the encoded size of each as a {@code bytes} counter.
+ * <p>
+ * Run with {@code mvn -Pjmh test-compile exec:exec -Djmh.include=GameBoardStateCodecBenchmark}.
+ * </p>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBoardStateCodecBenchmark {
+    private static final float DELTA = 1.0f / 30;
+
+    /** Ticks played before the state is taken, so the board is not empty. */
+    @Param({"0", "900"})
+    private int ticks;
+
+    private GameBoardState state;
+    private CompactStateCodec codec;
+    private Kryo fieldKryo;
+    private Output fieldOutput;
+    private ObjectMapper objectMapper;
+    private byte[] compactBytes;
+    private byte[] fieldBytes;
+    private byte[] jsonBytes;
+
+    /**
+     * Size of the last encoded state, reported next to each encode score.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class EncodedSize {
+        public long bytes;
+    }
+
+    @Setup
+    public void setUp() throws JsonProcessingException {
+        ServerPlayerGameBoard board = new ServerPlayerGameBoard(42L, 0, 16);
+        YipeePlayer player = new YipeePlayer();
+        player.setName("bench");
+        board.setPlayer(player);
+        board.startBoard();
+        for (int tick = 1; tick <= ticks; tick++) {
+            board.tick(tick, DELTA, board.getLatestGameState(), null);
+        }
+        state = board.getBoard().exportGameState();
+
+        codec = new CompactStateCodec();
+        fieldKryo = new Kryo();
+        fieldKryo.setRegistrationRequired(false);
+        fieldOutput = new Output(4096, -1);
+        objectMapper = new ObjectMapper();
+
+        compactBytes = codec.encodeState(state);
+        fieldBytes = fieldEncode();
+        jsonBytes = objectMapper.writeValueAsBytes(state);
+    }
+
+    @Benchmark
+    public byte[] compactEncode(EncodedSize size) {
+        byte[] bytes = codec.encodeState(state);
+        size.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] kryoFieldEncode(EncodedSize size) {
+        byte[] bytes = fieldEncode();
+        size.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public byte[] jsonEncode(EncodedSize size) throws JsonProcessingException {
+        byte[] bytes = objectMapper.writeValueAsBytes(state);
+        size.bytes = bytes.length;
+        return bytes;
+    }
+
+    @Benchmark
+    public GameBoardState compactDecode() {
+        return codec.decodeState(compactBytes);
+    }
+
+    @Benchmark
+    public Object kryoFieldDecode() {
+        return fieldKryo.readClassAndObject(new Input(fieldBytes));
+    }
+
+    @Benchmark
+    public GameBoardState jsonDecode() throws IOException {
+        return objectMapper.readValue(jsonBytes, state.getClass());
+    }
+
+    private byte[] fieldEncode() {
+        fieldOutput.clear();
+        fieldKryo.writeClassAndObject(fieldOutput, state);
+        return fieldOutput.toBytes();
+    }
+}
@@ -0,0 +1,17 @@
+package asg.games.server.yipeewebserver.loadtest;
+
+import java.io.Closeable;
+
+/**
+ * One simulated seated player that sends actions over some transport.
+ */
+public interface ActionClient extends Closeable {
+
+    /**
+     * Sends one {@code PlayerActionRequest}; called from the load scheduler.
+     */
+    void sendAction();
+
+    @Override
+    void close();
+}
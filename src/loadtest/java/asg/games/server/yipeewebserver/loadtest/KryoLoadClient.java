@@ -0,0 +1,83 @@
+package asg.games.server.yipeewebserver.loadtest;
+
+import asg.games.yipee.net.packets.PlayerActionRequest;
+import asg.games.yipee.net.packets.PlayerActionResponse;
+import asg.games.yipee.net.packets.TableStateUpdateResponse;
+import asg.games.yipee.net.tools.PacketRegistrar;
+import com.esotericsoftware.kryonet.Client;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * KryoNet client for one seated player, registered with the same {@link PacketRegistrar}
+ * packet set as the server.
+ * <p>
+ * Each action carries a unique {@code clientTick}; the server echoes it as the response's
+ * {@code serverTick}, which gives the action round trip. The time from the oldest
+ * unacknowledged action to the next {@link TableStateUpdateResponse} is recorded as the
+ * action-to-broadcast latency.
+ * </p>
+ */
+public class KryoLoadClient implements ActionClient {
+    private static final int WRITE_BUFFER = 16_384;
+    private static final int OBJECT_BUFFER = 8_192;
+    private static final int CONNECT_TIMEOUT_MS = 5_000;
+
+    private final LobbyClient.Session session;
+    private final LatencyStats actionLatency;
+    private final LatencyStats broadcastLatency;
+    private final Client client = new Client(WRITE_BUFFER, OBJECT_BUFFER);
+    private final ConcurrentHashMap<Long, Long> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong nextTick = new AtomicLong();
+    private final AtomicLong oldestPending = new AtomicLong();
+
+    public KryoLoadClient(LobbyClient.Session session, LatencyStats actionLatency, LatencyStats broadcastLatency) {
+        this.session = session;
+        this.actionLatency = actionLatency;
+        this.broadcastLatency = broadcastLatency;
+    }
+
+    public void connect(String host, int tcpPort, int udpPort) throws IOException {
+        PacketRegistrar.registerPackets(client.getKryo());
+        client.addListener(new Listener() {
+            @Override
+            public void received(Connection connection, Object object) {
+                long now = System.nanoTime();
+                if (object instanceof PlayerActionResponse response) {
+                    Long sent = inFlight.remove(response.getServerTick());
+                    if (sent != null) actionLatency.record(now - sent);
+                } else if (object instanceof TableStateUpdateResponse) {
+                    long pending = oldestPending.getAndSet(0L);
+                    if (pending != 0L) broadcastLatency.record(now - pending);
+                }
+            }
+        });
+        client.start();
+        client.connect(CONNECT_TIMEOUT_MS, host, tcpPort, udpPort);
+    }
+
+    @Override
+    public void sendAction() {
+        if (!client.isConnected()) return;
+        long tick = nextTick.incrementAndGet();
+        long now = System.nanoTime();
+
+        PlayerActionRequest request = new PlayerActionRequest();
+        request.setClientId(session.clientId());
+        request.setSessionId(session.sessionId());
+        request.setClientTick(tick);
+
+        inFlight.put(tick, now);
+        oldestPending.compareAndSet(0L, now);
+        client.sendTCP(request);
+    }
+
+    @Override
+    public void close() {
+        client.stop();
+    }
+}
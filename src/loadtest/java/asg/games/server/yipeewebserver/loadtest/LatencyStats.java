@@ -0,0 +1,58 @@
+package asg.games.server.yipeewebserver.loadtest;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thread-safe latency histogram (HdrHistogram {@link Recorder}) with interval snapshots,
+ * so each load step reports only its own samples.
+ */
+public class LatencyStats {
+    private static final long MAX_TRACKABLE = TimeUnit.SECONDS.toNanos(60);
+
+    private final String name;
+    private final Recorder recorder = new Recorder(MAX_TRACKABLE, 3);
+    private final Histogram total = new Histogram(MAX_TRACKABLE, 3);
+    private Histogram interval;
+
+    public LatencyStats(String name) {
+        this.name = name;
+    }
+
+    public void record(long nanos) {
+        recorder.recordValue(Math.min(Math.max(nanos, 0L), MAX_TRACKABLE));
+    }
+
+    /**
+     * Closes the current interval and returns its histogram.
+     */
+    public synchronized Histogram snapshot() {
+        interval = recorder.getIntervalHistogram(interval);
+        total.add(interval);
+        return interval;
+    }
+
+    public synchronized Histogram getTotal() {
+        return total;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static String format(String name, Histogram h) {
+        return String.format("%s: n=%d p50=%.2fms p95=%.2fms p99=%.2fms max=%.2fms",
+                name,
+                h.getTotalCount(),
+                millis(h.getValueAtPercentile(50)),
+                millis(h.getValueAtPercentile(95)),
+                millis(h.getValueAtPercentile(99)),
+                millis(h.getMaxValue()));
+    }
+
+    public static double millis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,56 @@
+package asg.games.server.yipeewebserver.loadtest;
+
+/**
+ * Load-test settings, read from {@code -Dload.*} system properties.
+ *
+ * @param baseUrl            lobby REST base, e.g. {@code http://localhost:8080}
+ * @param kryoHost           game server host
+ * @param tcpPort            game server TCP port ({@code gameserver.port})
+ * @param udpPort            game server UDP port ({@code gameserver.udp.port})
+ * @param packetsFile        packet registration file shared with the server
+ * @param startTables        tables in the first step
+ * @param stepTables         tables added per step
+ * @param maxTables          upper bound on tables
+ * @param seatsPerTable      seated players per table (2 = one partner pair)
+ * @param actionsPerSecond   actions sent per seated client
+ * @param stepSeconds        measurement time per step
+ * @param p99BudgetMs        stop once action p99 exceeds this
+ * @param maxOverrunsPerStep stop once the server reports more tick overruns than this in a step
+ * @param webSocketClients   also send actions over WebSocket from every other client
+ * @param wsUrl              WebSocket endpoint; defaults to the {@code wsUrl} from the launch token
+ */
+public record LoadConfig(String baseUrl,
+                         String kryoHost,
+                         int tcpPort,
+                         int udpPort,
+                         String packetsFile,
+                         int startTables,
+                         int stepTables,
+                         int maxTables,
+                         int seatsPerTable,
+                         double actionsPerSecond,
+                         int stepSeconds,
+                         long p99BudgetMs,
+                         long maxOverrunsPerStep,
+                         boolean webSocketClients,
+                         String wsUrl) {
+
+    public static LoadConfig fromSystemProperties() {
+        return new LoadConfig(
+                System.getProperty("load.baseUrl", "http://localhost:8080"),
+                System.getProperty("load.kryoHost", "localhost"),
+                Integer.getInteger("load.tcpPort", 8083),
+                Integer.getInteger("load.udpPort", 55000),
+                System.getProperty("load.packetsFile", "src/main/resources/packets.xml"),
+                Integer.getInteger("load.startTables", 4),
+                Integer.getInteger("load.stepTables", 4),
+                Integer.getInteger("load.maxTables", 256),
+                Math.min(8, Math.max(1, Integer.getInteger("load.seatsPerTable", 2))),
+                Double.parseDouble(System.getProperty("load.actionsPerSecond", "8")),
+                Integer.getInteger("load.stepSeconds", 30),
+                Long.getLong("load.p99BudgetMs", 100L),
+                Long.getLong("load.maxOverrunsPerStep", 0L),
+                Boolean.getBoolean("load.webSocket"),
+                System.getProperty("load.wsUrl"));
+    }
+}
@@ -0,0 +1,192 @@
+package asg.games.server.yipeewebserver.loadtest;
+
+import asg.games.server.yipeewebserver.core.TickProfiler;
+import asg.games.server.yipeewebserver.services.RequestEntityCache;
+import asg.games.yipee.net.tools.PacketRegistrar;
+import com.fasterxml.jackson.databind.JsonNode;
+import lombok.extern.slf4j.Slf4j;
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless load generator for a locally running server.
+ * <p>
+ * Every simulated table goes through the full client flow over the lobby API (register,
+ * handshake, join room, create/join table, sit down, launch token), then each seated
+ * player connects to the game server over KryoNet (or WebSocket, see
+ * {@code -Dload.webSocket=true}) and sends {@code PlayerActionRequest}s at
+ * {@code load.actionsPerSecond}.
+ * </p>
+ * <p>
+ * The table count grows by {@code load.stepTables} every {@code load.stepSeconds} until
+ * the action p99 exceeds {@code load.p99BudgetMs}, the server's
+ * {@code yipee.tick.overrun} counter grows by more than {@code load.maxOverrunsPerStep}
+ * in a step, or {@code load.maxTables} is reached. One line per step is written to
+ * {@code target/loadtest/steps.csv}.
+ * </p>
+ * <p>
+ * Each row also carries how many lobby entity lookups the tables added in that step
+ * served from the request cache ({@code lobby_cache_hits}) versus the database
+ * ({@code lobby_cache_loads}), i.e. the queries saved per lobby flow.
+ * </p>
+ * <p>
+ * To compare allocation pressure between builds, start the server with
+ * {@code -Xlog:gc*:file=target/gc.log:uptime} and compare young collections and pause
+ * totals over the same steps.
+ * </p>
+ * Run with {@code mvn -Ploadtest test-compile exec:java -Dload.maxTables=64}.
+ */
+@Slf4j
+public class LoadGenerator {
+    private static final Path OUTPUT = Path.of("target", "loadtest", "steps.csv");
+
+    private final LoadConfig config;
+    private final LobbyClient lobby;
+    private final LatencyStats actionLatency = new LatencyStats("action");
+    private final LatencyStats broadcastLatency = new LatencyStats("action-to-broadcast");
+    private final List<ActionClient> clients = new ArrayList<>();
+    private final ScheduledExecutorService scheduler =
+            Executors.newScheduledThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()));
+    private int tables;
+
+    public LoadGenerator(LoadConfig config) {
+        this.config = config;
+        this.lobby = new LobbyClient(config.baseUrl());
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.fromSystemProperties();
+        log.info("Load test config: {}", config);
+        PacketRegistrar.reloadConfiguration(config.packetsFile());
+
+        LoadGenerator generator = new LoadGenerator(config);
+        try {
+            generator.run();
+        } finally {
+            generator.shutDown();
+        }
+    }
+
+    public void run() throws Exception {
+        String roomId = lobby.firstRoomId();
+        Files.createDirectories(OUTPUT.getParent());
+
+        try (PrintWriter csv = new PrintWriter(Files.newBufferedWriter(OUTPUT))) {
+            csv.println("tables,clients,actions,action_p50_ms,action_p99_ms,broadcast_p50_ms,broadcast_p99_ms,tick_max_ms,overruns,lobby_cache_hits,lobby_cache_loads");
+
+            int target = config.startTables();
+            while (target <= config.maxTables()) {
+                double hitsBefore = lobby.metric(RequestEntityCache.METER, "COUNT", "result:hit");
+                double loadsBefore = lobby.metric(RequestEntityCache.METER, "COUNT", "result:load");
+                while (tables < target) {
+                    addTable(roomId, tables);
+                    tables++;
+                }
+                long cacheHits = delta(hitsBefore, lobby.metric(RequestEntityCache.METER, "COUNT", "result:hit"));
+                long cacheLoads = delta(loadsBefore, lobby.metric(RequestEntityCache.METER, "COUNT", "result:load"));
+
+                double overrunsBefore = lobby.metric(TickProfiler.METER_OVERRUN, "COUNT");
+                actionLatency.snapshot();
+                broadcastLatency.snapshot();
+
+                TimeUnit.SECONDS.sleep(config.stepSeconds());
+
+                Histogram action = actionLatency.snapshot();
+                Histogram broadcast = broadcastLatency.snapshot();
+                double overrunsAfter = lobby.metric(TickProfiler.METER_OVERRUN, "COUNT");
+                long overruns = delta(overrunsBefore, overrunsAfter);
+                double tickMax = lobby.metric(TickProfiler.METER_DURATION, "MAX");
+                double tickMaxMs = tickMax < 0 ? -1 : tickMax * 1_000;
+
+                log.info("tables={} clients={} | {} | {} | tickMax={}ms overruns={} | lobbyCache hits={} loads={}",
+                        tables, clients.size(),
+                        LatencyStats.format(actionLatency.getName(), action),
+                        LatencyStats.format(broadcastLatency.getName(), broadcast),
+                        String.format("%.2f", tickMaxMs), overruns, cacheHits, cacheLoads);
+                csv.printf("%d,%d,%d,%.3f,%.3f,%.3f,%.3f,%.3f,%d,%d,%d%n",
+                        tables, clients.size(), action.getTotalCount(),
+                        LatencyStats.millis(action.getValueAtPercentile(50)),
+                        LatencyStats.millis(action.getValueAtPercentile(99)),
+                        LatencyStats.millis(broadcast.getValueAtPercentile(50)),
+                        LatencyStats.millis(broadcast.getValueAtPercentile(99)),
+                        tickMaxMs, overruns, cacheHits, cacheLoads);
+                csv.flush();
+
+                if (LatencyStats.millis(action.getValueAtPercentile(99)) > config.p99BudgetMs()) {
+                    log.warn("Action p99 over budget ({} ms) at {} tables", config.p99BudgetMs(), tables);
+                    break;
+                }
+                if (overruns > config.maxOverrunsPerStep()) {
+                    log.warn("Server tick budget broken ({} overruns) at {} tables", overruns, tables);
+                    break;
+                }
+                target += config.stepTables();
+            }
+        }
+        log.info("Total {}", LatencyStats.format(actionLatency.getName(), actionLatency.getTotal()));
+        log.info("Total {}", LatencyStats.format(broadcastLatency.getName(), broadcastLatency.getTotal()));
+    }
+
+    private static long delta(double before, double after) {
+        return before < 0 || after < 0 ? -1 : (long) (after - before);
+    }
+
+    /**
+     * Seats {@code seatsPerTable} new players at a new table and starts their action streams.
+     */
+    private void addTable(String roomId, int index) throws Exception {
+        LobbyClient.Table table = null;
+        for (int seat = 0; seat < config.seatsPerTable(); seat++) {
+            String clientId = "load-" + UUID.randomUUID();
+            LobbyClient.Session session = lobby.registerAndHandshake("load" + index + "_" + seat, clientId);
+            lobby.joinRoom(session, roomId);
+            if (table == null) {
+                table = lobby.createTable(session, roomId);
+            } else {
+                lobby.joinTable(session, roomId, table.tableNumber());
+            }
+            lobby.sitDown(session, table.tableId(), seat);
+            JsonNode launch = lobby.launchToken(session, table.tableId(), seat);
+
+            boolean useWebSocket = config.webSocketClients() && seat % 2 == 1;
+            ActionClient client = useWebSocket ? openWebSocket(session, launch) : openKryo(session);
+            clients.add(client);
+
+            long periodMicros = (long) (1_000_000 / config.actionsPerSecond());
+            scheduler.scheduleAtFixedRate(client::sendAction,
+                    ThreadLocalRandom.current().nextLong(periodMicros), periodMicros, TimeUnit.MICROSECONDS);
+        }
+    }
+
+    private ActionClient openKryo(LobbyClient.Session session) throws IOException {
+        KryoLoadClient client = new KryoLoadClient(session, actionLatency, broadcastLatency);
+        client.connect(config.kryoHost(), config.tcpPort(), config.udpPort());
+        return client;
+    }
+
+    private ActionClient openWebSocket(LobbyClient.Session session, JsonNode launch) throws Exception {
+        String url = config.wsUrl() != null ? config.wsUrl() : launch.path("wsUrl").asText(null);
+        if (url == null) {
+            throw new IllegalStateException("No WebSocket URL; set -Dload.wsUrl");
+        }
+        WebSocketLoadClient client = new WebSocketLoadClient(session, actionLatency);
+        client.connect(url);
+        return client;
+    }
+
+    private void shutDown() {
+        scheduler.shutdownNow();
+        clients.forEach(ActionClient::close);
+    }
+}
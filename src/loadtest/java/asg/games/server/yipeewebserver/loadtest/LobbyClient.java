@@ -0,0 +1,147 @@
+package asg.games.server.yipeewebserver.loadtest;
+
+import asg.games.server.yipeewebserver.controllers.ControllerContstants;
+import asg.games.server.yipeewebserver.net.api.CreateTableRequest;
+import asg.games.server.yipeewebserver.net.api.JoinRoomRequest;
+import asg.games.server.yipeewebserver.net.api.JoinTableRequest;
+import asg.games.server.yipeewebserver.net.api.LaunchTokenRequest;
+import asg.games.server.yipeewebserver.net.api.RegisterPlayerRequest;
+import asg.games.server.yipeewebserver.net.api.SitDownRequest;
+import asg.games.yipee.common.enums.ACCESS_TYPE;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Drives the lobby REST API the same way a real client does before it connects to the
+ * game server: register, handshake, join room, create/join table, sit down, launch token.
+ */
+public class LobbyClient {
+    private static final String HEADER_CLIENT_ID = "X-Client-Id";
+    private static final String HEADER_SESSION_ID = "X-Session-Id";
+
+    private final String baseUrl;
+    private final HttpClient http = HttpClient.newBuilder()
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public LobbyClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    public record Session(String playerId, String clientId, String sessionId) {}
+
+    public record Table(String tableId, int tableNumber) {}
+
+    public String firstRoomId() throws IOException, InterruptedException {
+        JsonNode rooms = send(get(ControllerContstants.API_ROOM_GET_ROOMS_PATH).build());
+        if (rooms.isEmpty()) {
+            throw new IllegalStateException("Server has no rooms");
+        }
+        return rooms.get(0).get("roomId").asText();
+    }
+
+    public Session registerAndHandshake(String name, String clientId) throws IOException, InterruptedException {
+        JsonNode registered = send(post(ControllerContstants.API_PLAYER_REGISTER_PATH,
+                new RegisterPlayerRequest(name, 1, 1500, clientId))
+                .header(HEADER_CLIENT_ID, clientId)
+                .build());
+        String playerId = registered.get("playerId").asText();
+
+        Map<String, Object> handshake = new LinkedHashMap<>();
+        handshake.put("playerId", playerId);
+        handshake.put("clientId", clientId);
+        JsonNode response = send(post(ControllerContstants.API_SESSION_HANDSHAKE_PATH, handshake).build());
+        return new Session(playerId, clientId, response.get("sessionId").asText());
+    }
+
+    public void joinRoom(Session session, String roomId) throws IOException, InterruptedException {
+        send(withSession(post(ControllerContstants.API_ROOM_JOIN_PATH, new JoinRoomRequest(roomId)), session));
+    }
+
+    public Table createTable(Session session, String roomId) throws IOException, InterruptedException {
+        JsonNode created = send(withSession(post(ControllerContstants.API_TABLE_CREATE_PATH,
+                new CreateTableRequest(roomId, false, false, ACCESS_TYPE.PUBLIC.toString())), session));
+        return new Table(created.get("tableId").asText(), created.get("tableNumber").asInt());
+    }
+
+    public void joinTable(Session session, String roomId, int tableNumber) throws IOException, InterruptedException {
+        send(withSession(post(ControllerContstants.API_TABLE_JOIN_PATH,
+                new JoinTableRequest(roomId, tableNumber, false)), session));
+    }
+
+    public void sitDown(Session session, String tableId, int seat) throws IOException, InterruptedException {
+        send(withSession(post(ControllerContstants.API_TABLE_SITDOWN_PATH, new SitDownRequest(tableId, seat)), session));
+    }
+
+    public JsonNode launchToken(Session session, String tableId, int seat) throws IOException, InterruptedException {
+        return send(withSession(post(ControllerContstants.API_GAME_LAUNCH_TOKEN_PATH,
+                new LaunchTokenRequest(tableId, seat)), session));
+    }
+
+    /**
+     * Reads a single Actuator metric statistic, e.g. {@code COUNT} of {@code yipee.tick.overrun}.
+     *
+     * @return the value, or {@code -1} if the metric is not available
+     */
+    public double metric(String name, String statistic) {
+        return metric(name, statistic, null);
+    }
+
+    /**
+     * Same as {@link #metric(String, String)}, narrowed to one tag, e.g. {@code result:hit}.
+     */
+    public double metric(String name, String statistic, String tag) {
+        try {
+            String query = tag != null ? "?tag=" + tag : "";
+            HttpRequest request = HttpRequest.newBuilder(URI.create(baseUrl + "/actuator/metrics/" + name + query)).GET().build();
+            HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+            if (response.statusCode() != 200) return -1;
+            for (JsonNode m : objectMapper.readTree(response.body()).path("measurements")) {
+                if (statistic.equals(m.path("statistic").asText())) {
+                    return m.path("value").asDouble();
+                }
+            }
+        } catch (IOException e) {
+            return -1;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return -1;
+    }
+
+    private HttpRequest.Builder get(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + ControllerContstants.API_BASE_PATH + path)).GET();
+    }
+
+    private HttpRequest.Builder post(String path, Object body) throws IOException {
+        return HttpRequest.newBuilder(URI.create(baseUrl + ControllerContstants.API_BASE_PATH + path))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(body)));
+    }
+
+    private HttpRequest withSession(HttpRequest.Builder request, Session session) {
+        return request
+                .header(HEADER_CLIENT_ID, session.clientId())
+                .header(HEADER_SESSION_ID, session.sessionId())
+                .build();
+    }
+
+    private JsonNode send(HttpRequest request) throws IOException, InterruptedException {
+        HttpResponse<String> response = http.send(request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() / 100 != 2) {
+            throw new IOException(request.method() + " " + request.uri() + " -> " + response.statusCode() + ": " + response.body());
+        }
+        String body = response.body();
+        return body == null || body.isEmpty() ? objectMapper.createObjectNode() : objectMapper.readTree(body);
+    }
+}
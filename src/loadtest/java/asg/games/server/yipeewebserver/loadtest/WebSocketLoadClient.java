@@ -0,0 +1,84 @@
+package asg.games.server.yipeewebserver.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * WebSocket client for one seated player, speaking the {@code WsPacketEnvelope} JSON format
+ * handled by {@code YipeeWebSocketHandler}. Action round trips are matched on the echoed tick.
+ */
+public class WebSocketLoadClient implements ActionClient {
+    private final LobbyClient.Session session;
+    private final LatencyStats actionLatency;
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ConcurrentHashMap<Long, Long> inFlight = new ConcurrentHashMap<>();
+    private final AtomicLong nextTick = new AtomicLong();
+    private WebSocket webSocket;
+
+    public WebSocketLoadClient(LobbyClient.Session session, LatencyStats actionLatency) {
+        this.session = session;
+        this.actionLatency = actionLatency;
+    }
+
+    public void connect(String url) throws Exception {
+        webSocket = HttpClient.newHttpClient().newWebSocketBuilder()
+                .buildAsync(URI.create(url), new WebSocket.Listener() {
+                    private final StringBuilder text = new StringBuilder();
+
+                    @Override
+                    public CompletionStage<?> onText(WebSocket ws, CharSequence data, boolean last) {
+                        text.append(data);
+                        if (last) {
+                            onMessage(text.toString());
+                            text.setLength(0);
+                        }
+                        ws.request(1);
+                        return null;
+                    }
+                })
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    private void onMessage(String json) {
+        try {
+            JsonNode node = objectMapper.readTree(json);
+            Long sent = inFlight.remove(node.path("serverTick").asLong(-1L));
+            if (sent != null) actionLatency.record(System.nanoTime() - sent);
+        } catch (Exception ignored) {
+            // Non-JSON or error frames are not part of the measurement
+        }
+    }
+
+    @Override
+    public void sendAction() {
+        if (webSocket == null || webSocket.isOutputClosed()) return;
+        long tick = nextTick.incrementAndGet();
+
+        ObjectNode payload = objectMapper.createObjectNode()
+                .put("clientId", session.clientId())
+                .put("sessionId", session.sessionId())
+                .put("clientTick", tick);
+        ObjectNode envelope = objectMapper.createObjectNode().put("packetType", "PlayerActionRequest");
+        envelope.set("payload", payload);
+
+        inFlight.put(tick, System.nanoTime());
+        // Only one outstanding send is allowed per WebSocket
+        webSocket.sendText(envelope.toString(), true).join();
+    }
+
+    @Override
+    public void close() {
+        if (webSocket != null) {
+            webSocket.sendClose(WebSocket.NORMAL_CLOSURE, "done");
+        }
+    }
+}
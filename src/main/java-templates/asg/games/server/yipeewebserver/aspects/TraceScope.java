@@ -0,0 +1,33 @@
+/**
+ * Copyright 2024 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package asg.games.server.yipeewebserver.aspects;
+
+/**
+ * Build-time scope of {@link LoggingServerAspect}, filled in from the
+ * {@code yipee.trace.typeExclusions} Maven property.
+ * <p>
+ * By default the per-tick game classes are left unwoven; build with the {@code trace-tick}
+ * profile to weave them back in.
+ * </p>
+ */
+@Untraced
+final class TraceScope {
+    /** Type pattern clause appended to the aspect's {@code pertypewithin}, e.g. {@code && !a.B}. */
+    static final String TYPE_EXCLUSIONS = "${yipee.trace.typeExclusions}";
+
+    private TraceScope() {
+    }
+}
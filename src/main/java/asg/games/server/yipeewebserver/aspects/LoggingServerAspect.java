@@ -31,25 +31,52 @@ import org.springframework.stereotype.Component;
 
 import java.lang.reflect.Method;
 import java.lang.reflect.Modifier;
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collection;
 import java.util.Iterator;
-import java.util.LinkedHashMap;
-import java.util.List;
 import java.util.Map;
 
-@Aspect("pertypewithin(!@asg.games.server.yipeewebserver.aspects.Untraced asg..*)")
+@Aspect("pertypewithin(!@asg.games.server.yipeewebserver.aspects.Untraced asg..* " + TraceScope.TYPE_EXCLUSIONS + ")")
 @Untraced
 @Component
 public class LoggingServerAspect {
     private static final String SENSITIVE_VALUE_REPLACEMENT = "*****";
     private static final int MAX_RECURSION = 10;
+    private static final int MAX_SAMPLE_DEPTH = 256;
     private static final String LOG_ARG_EXIT = "Exiting ";
     private static final String LOG_ARG_ENTER = "Entering ";
     private static final String LOG_ARG_THROWS = "Throwing ";
+    private static final String[] SENSITIVE_VALUES = {"password", "currentpassword", "secretkey"};
+    private static final int RENDER_ENTER = 0;
+    private static final int RENDER_ENTER_KEY_VALUE = 1;
+    private static final int RENDER_EXIT = 2;
+    private static final int RENDER_THROWS = 3;
+
+    // Reused per thread so rendering a trace line does not grow a new buffer every call
+    private static final ThreadLocal<RenderBuffer> RENDER_BUFFER = ThreadLocal.withInitial(RenderBuffer::new);
+    private static final ThreadLocal<SampleStack> SAMPLE_STACK = ThreadLocal.withInitial(SampleStack::new);
+
     private Logger logger;
 
+    @Untraced
+    private static final class RenderBuffer {
+        private final StringBuilder buf = new StringBuilder(256);
+        private boolean busy;
+    }
+
+    /**
+     * Remembers, per nesting level, whether the entry was sampled so the
+     * matching exit is logged too. Each level also keeps the join point that pushed
+     * it, so an exit whose entry was not advised (tracing switched on or into sampled
+     * mode in between) leaves the stack alone.
+     */
+    @Untraced
+    private static final class SampleStack {
+        private final boolean[] sampled = new boolean[MAX_SAMPLE_DEPTH];
+        private final JoinPoint.StaticPart[] entries = new JoinPoint.StaticPart[MAX_SAMPLE_DEPTH];
+        private int depth;
+        private long calls;
+    }
+
     @Pointcut("staticinitialization(*)")
     public void staticInit() {
     }
@@ -59,7 +86,16 @@ public class LoggingServerAspect {
         logger = LoggerFactory.getLogger(jps.getSignature().getDeclaringType());
     }
 
-    @Pointcut("!within(asg.games.server.yipeewebserver.aspects.UntracedObject)")
+    /**
+     * Evaluated at the join point before any {@link JoinPoint} is created, so
+     * {@link TraceSettings.TraceMode#OFF} skips the advice entirely.
+     */
+    @Pointcut("if()")
+    public static boolean traceActive() {
+        return TraceSettings.isActive();
+    }
+
+    @Pointcut("!within(asg.games.server.yipeewebserver.aspects.UntracedObject) && traceActive()")
     void tracedClasses() {
     }
 
@@ -75,59 +111,153 @@ public class LoggingServerAspect {
     void tracedStandardMethods() {
     }
 
-    @Pointcut("tracedMethods() && @annotation(asg.games.server.yipeewebserver.aspectss.TracedSpecialCase) && @annotation(asg.games.server.yipeewebserver.aspects.TracedKeyValueParams)")
+    @Pointcut("tracedMethods() && @annotation(asg.games.server.yipeewebserver.aspects.TracedSpecialCase) && @annotation(asg.games.server.yipeewebserver.aspects.TracedKeyValueParams)")
     void tracedKeyValueMethods() {
     }
 
     @Before("tracedConstructors()")
     public void traceConstructorEntry(JoinPoint thisJP) {
-        if (null != logger && logger.isTraceEnabled()) {
+        if (sampleEntry(thisJP.getStaticPart()) && null != logger && logger.isTraceEnabled()) {
             logger.trace(logEnter(thisJP));
         }
     }
 
     @AfterReturning("tracedConstructors()")
     public void traceConstructorExit(JoinPoint thisJP) {
-        if (null != logger && logger.isTraceEnabled()) {
+        if (sampleExit(thisJP.getStaticPart()) && null != logger && logger.isTraceEnabled()) {
             logger.trace(logExit(thisJP, null));
         }
     }
 
     @AfterThrowing(pointcut = "tracedConstructors()", throwing = "t")
     public void traceConstructorExit(JoinPoint thisJP, Throwable t) {
-        if (null != logger && logger.isTraceEnabled()) {
+        if (sampleExit(thisJP.getStaticPart()) && null != logger && logger.isTraceEnabled()) {
             logger.trace(logThrowing(thisJP, t));
         }
     }
 
     @Before("tracedStandardMethods()")
     public void traceMethodEntry(JoinPoint thisJP) {
-        if (null != logger && logger.isTraceEnabled()) {
+        if (sampleEntry(thisJP.getStaticPart()) && null != logger && logger.isTraceEnabled()) {
             logger.trace(logEnter(thisJP));
         }
     }
 
     @Before("tracedKeyValueMethods()")
     public void traceKeyValueMethodEntry(JoinPoint thisJP) {
-        if (null != logger && logger.isTraceEnabled()) {
+        if (sampleEntry(thisJP.getStaticPart()) && null != logger && logger.isTraceEnabled()) {
             logger.trace(logEnterWithKeyValueParams(thisJP));
         }
     }
 
     @AfterReturning(pointcut = "tracedMethods()", returning = "r")
     public void traceMethodExit(JoinPoint thisJP, Object r) {
-        if (null != logger && logger.isTraceEnabled()) {
+        if (sampleExit(thisJP.getStaticPart()) && null != logger && logger.isTraceEnabled()) {
             logger.trace(logExit(thisJP, r));
         }
     }
 
     @AfterThrowing(pointcut = "tracedMethods()", throwing = "t")
     public void traceMethodExit(JoinPoint thisJP, Throwable t) {
-        if (null != logger && logger.isTraceEnabled()) {
+        if (sampleExit(thisJP.getStaticPart()) && null != logger && logger.isTraceEnabled()) {
             logger.trace(logThrowing(thisJP, t));
         }
     }
 
+    // -------------------------------------------------------
+    // Sampling
+    // -------------------------------------------------------
+
+    private static boolean sampleEntry(JoinPoint.StaticPart entry) {
+        if (!TraceSettings.isSampled()) {
+            return true;
+        }
+        SampleStack stack = SAMPLE_STACK.get();
+        boolean sampled = stack.calls++ % TraceSettings.getSampleRate() == 0;
+        if (stack.depth < MAX_SAMPLE_DEPTH) {
+            stack.sampled[stack.depth] = sampled;
+            stack.entries[stack.depth] = entry;
+        }
+        stack.depth++;
+        return sampled;
+    }
+
+    private static boolean sampleExit(JoinPoint.StaticPart exit) {
+        if (!TraceSettings.isSampled()) {
+            return true;
+        }
+        SampleStack stack = SAMPLE_STACK.get();
+        if (stack.depth == 0) {
+            return false;
+        }
+        int top = stack.depth - 1;
+        if (top < MAX_SAMPLE_DEPTH && stack.entries[top] != exit) {
+            // Entry was never pushed for this join point; the top belongs to a caller
+            return false;
+        }
+        stack.depth = top;
+        if (top >= MAX_SAMPLE_DEPTH) {
+            return false;
+        }
+        stack.entries[top] = null;
+        return stack.sampled[top];
+    }
+
+    // -------------------------------------------------------
+    // Rendering
+    // -------------------------------------------------------
+
+    /**
+     * Renders into the thread's reusable buffer. Rendering can re-enter the aspect
+     * (a parameter's {@code toString()} may call traced getters), in which case the
+     * nested call gets a private buffer.
+     */
+    private static String render(JoinPoint joinPoint, Object value, Throwable t, int kind) {
+        RenderBuffer rb = RENDER_BUFFER.get();
+        if (rb.busy) {
+            return renderInto(new StringBuilder(128), joinPoint, value, t, kind);
+        }
+        rb.busy = true;
+        try {
+            rb.buf.setLength(0);
+            return renderInto(rb.buf, joinPoint, value, t, kind);
+        } finally {
+            rb.busy = false;
+        }
+    }
+
+    private static String renderInto(StringBuilder buf, JoinPoint joinPoint, Object value, Throwable t, int kind) {
+        switch (kind) {
+            case RENDER_ENTER -> {
+                openSignature(buf, joinPoint);
+                processStandardParams(buf, joinPoint);
+                closeSignature(buf);
+            }
+            case RENDER_ENTER_KEY_VALUE -> {
+                openSignature(buf, joinPoint);
+                processKeyValueParams(buf, joinPoint);
+                closeSignature(buf);
+            }
+            case RENDER_EXIT -> {
+                boolean sensitive = false;
+                if (joinPoint.getSignature() instanceof MethodSignature) {
+                    sensitive = ((MethodSignature) joinPoint.getSignature()).getMethod().getAnnotation(SensitiveTraceReturn.class) != null;
+                }
+                buf.append(LOG_ARG_EXIT).append(joinPoint.getSignature().getName()).append(" = ");
+                if (sensitive) {
+                    buf.append(SENSITIVE_VALUE_REPLACEMENT);
+                } else {
+                    appendValue(buf, value, 0);
+                }
+            }
+            default -> buf.append(LOG_ARG_THROWS)
+                    .append(joinPoint.getSignature().getName())
+                    .append(" - ")
+                    .append(t);
+        }
+        return buf.toString();
+    }
+
     private static boolean isContuctorOfInnerClass(JoinPoint joinPoint) {
         String kind = joinPoint.getKind();
         if (!JoinPoint.CONSTRUCTOR_CALL.equals(kind) && JoinPoint.CONSTRUCTOR_EXECUTION.equals(kind)) {
@@ -142,22 +272,14 @@ public class LoggingServerAspect {
     }
 
     private static String logEnter(JoinPoint joinPoint) {
-        StringBuffer buf = new StringBuffer();
-        openSignature(buf, joinPoint);
-        processStandardParams(buf, joinPoint);
-        closeSignature(buf);
-        return buf.toString();
+        return render(joinPoint, null, null, RENDER_ENTER);
     }
 
     private static String logEnterWithKeyValueParams(JoinPoint joinPoint) {
-        StringBuffer buf = new StringBuffer();
-        openSignature(buf, joinPoint);
-        processKeyValueParams(buf, joinPoint);
-        closeSignature(buf);
-        return buf.toString();
+        return render(joinPoint, null, null, RENDER_ENTER_KEY_VALUE);
     }
 
-    private static void processStandardParams(StringBuffer buf, JoinPoint joinPoint) {
+    private static void processStandardParams(StringBuilder buf, JoinPoint joinPoint) {
         CodeSignature sig = (CodeSignature) joinPoint.getSignature();
         String[] params = sig.getParameterNames();
         Object[] paramVals = joinPoint.getArgs();
@@ -171,7 +293,7 @@ public class LoggingServerAspect {
             if (isSensitive(params[i])) {
                 buf.append(SENSITIVE_VALUE_REPLACEMENT);
             } else {
-                buf.append(filterValue(paramVals[i]));
+                appendValue(buf, paramVals[i], 0);
             }
 
             if (i != params.length - 1) {
@@ -180,7 +302,7 @@ public class LoggingServerAspect {
         }
     }
 
-    private static void processKeyValueParams(StringBuffer buf, JoinPoint joinPoint) {
+    private static void processKeyValueParams(StringBuilder buf, JoinPoint joinPoint) {
         MethodSignature sig = (MethodSignature) joinPoint.getSignature();
         Method method = sig.getMethod();
         TracedKeyValueParams annot = (TracedKeyValueParams) method.getDeclaredAnnotation(TracedKeyValueParams.class);
@@ -229,80 +351,132 @@ public class LoggingServerAspect {
                     } else if (isSensitive(params[i])) {
                         buf.append(SENSITIVE_VALUE_REPLACEMENT);
                     } else {
-                        buf.append(filterValue(paramVals[i]));
+                        appendValue(buf, paramVals[i], 0);
                     }
                 }
             }
         }
     }
 
-    private static void openSignature(StringBuffer buf, JoinPoint joinPoint) {
+    private static void openSignature(StringBuilder buf, JoinPoint joinPoint) {
         CodeSignature sig = (CodeSignature) joinPoint.getSignature();
         buf.append(LOG_ARG_ENTER);
         buf.append(sig.getName());
         buf.append("(");
     }
 
-    private static void closeSignature(StringBuffer buf) {
+    private static void closeSignature(StringBuilder buf) {
         buf.append(")");
     }
 
-    private static void addParamDeclaration(StringBuffer buf, String paramName) {
+    private static void addParamDeclaration(StringBuilder buf, String paramName) {
         buf.append(", ");
     }
 
-    private static void addParamSeparator(StringBuffer buf) {
+    private static void addParamSeparator(StringBuilder buf) {
         buf.append(", ");
     }
 
     static String filterValue(Object value) {
-        return filterValue(value, 0);
+        StringBuilder buf = new StringBuilder();
+        appendValue(buf, value, 0);
+        return buf.toString();
     }
 
-    private static String filterValue(Object value, int level) {
+    /**
+     * Appends a filtered rendering of {@code value}. Primitives and strings are
+     * appended directly; anything else is rendered in place and masked afterwards
+     * if the rendering contains a sensitive word.
+     */
+    @SuppressWarnings("unchecked")
+    private static void appendValue(StringBuilder buf, Object value, int level) {
         if (value instanceof Map) {
-            return level < MAX_RECURSION
-                    ? filterMap((Map<Object, Object>) value, level)
-                    : "...(truncating filter value due to maximum recursion level reached)";
+            if (level < MAX_RECURSION) {
+                appendMap(buf, (Map<Object, Object>) value, level);
+            } else {
+                buf.append("...(truncating filter value due to maximum recursion level reached)");
+            }
+            return;
+        }
+        if (value == null) {
+            buf.append("null");
+        } else if (value instanceof Integer i) {
+            buf.append(i.intValue());
+        } else if (value instanceof Long l) {
+            buf.append(l.longValue());
+        } else if (value instanceof Float f) {
+            buf.append(f.floatValue());
+        } else if (value instanceof Boolean b) {
+            buf.append(b.booleanValue());
         } else {
-            return isSensitive(value) ? SENSITIVE_VALUE_REPLACEMENT : String.valueOf(value);
+            int start = buf.length();
+            buf.append(value);
+            if (containsSensitive(buf, start)) {
+                buf.setLength(start);
+                buf.append(SENSITIVE_VALUE_REPLACEMENT);
+            }
         }
     }
 
     public static String filterMap(Map<Object, Object> map) {
-        return filterMap(map, 0);
+        StringBuilder buf = new StringBuilder();
+        appendMap(buf, map, 0);
+        return buf.toString();
     }
 
-    private static String filterMap(Map<Object, Object> map, int level) {
+    private static void appendMap(StringBuilder buf, Map<Object, Object> map, int level) {
         assert map != null;
 
-        Map<Object, Object> result = new LinkedHashMap<>();
-        ArrayList<Object> keys = new ArrayList<>();
-        Iterator<Object> iterator = map.keySet().iterator();
-
-        Object key;
-        while (iterator.hasNext()) {
-            key = iterator.next();
-            keys.add(key);
-        }
-
-        iterator = keys.iterator();
-
-        while (iterator.hasNext()) {
-            key = iterator.next();
+        buf.append('{');
+        boolean first = true;
+        for (Map.Entry<Object, Object> entry : map.entrySet()) {
+            if (!first) {
+                buf.append(", ");
+            }
+            first = false;
+            Object key = entry.getKey();
+            buf.append(key).append('=');
             if (isSensitive(key)) {
-                result.put(key, SENSITIVE_VALUE_REPLACEMENT);
+                buf.append(SENSITIVE_VALUE_REPLACEMENT);
             } else {
-                result.put(key, filterValue(map.get(key), level++));
+                appendValue(buf, entry.getValue(), level + 1);
             }
         }
-        return result.toString();
+        buf.append('}');
     }
 
     static boolean isSensitive(Object value) {
-        String stringValue = String.valueOf(value);
-        List<String> sensitiveValues = Arrays.asList("password", "currentPassword", "secretKey");
-        return containsAny(stringValue, sensitiveValues);
+        if (value instanceof CharSequence cs) {
+            return containsSensitive(cs, 0);
+        }
+        return containsSensitive(String.valueOf(value), 0);
+    }
+
+    /**
+     * Case-insensitive scan of {@code text} from {@code start} for any sensitive word,
+     * without allocating lower-cased copies.
+     */
+    private static boolean containsSensitive(CharSequence text, int start) {
+        for (String word : SENSITIVE_VALUES) {
+            if (indexOfIgnoreCase(text, start, word) >= 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int indexOfIgnoreCase(CharSequence text, int start, String lowerWord) {
+        int max = text.length() - lowerWord.length();
+        outer:
+        for (int i = start; i <= max; i++) {
+            for (int j = 0; j < lowerWord.length(); j++) {
+                if (Character.toLowerCase(text.charAt(i + j)) != lowerWord.charAt(j)) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
     }
 
     static boolean containsAny(String value, Collection<String> searchValues) {
@@ -327,19 +501,10 @@ public class LoggingServerAspect {
     }
 
     private static String logExit(JoinPoint joinPoint, Object returnValue) {
-        StringBuffer buf = new StringBuffer(LOG_ARG_EXIT);
-        boolean sensitive = false;
-        if (joinPoint.getSignature() instanceof MethodSignature) {
-            sensitive = ((MethodSignature) joinPoint.getSignature()).getMethod().getAnnotation(SensitiveTraceReturn.class) != null;
-        }
-
-        buf.append(joinPoint.getSignature().getName()).append(" = ").append(sensitive ? SENSITIVE_VALUE_REPLACEMENT : filterValue(returnValue));
-        return buf.toString();
+        return render(joinPoint, returnValue, null, RENDER_EXIT);
     }
 
     private static String logThrowing(JoinPoint joinPoint, Throwable t) {
-        StringBuffer buf = new StringBuffer(LOG_ARG_THROWS);
-        buf.append(joinPoint.getSignature().getName()).append(" - ").append(t.toString());
-        return buf.toString();
+        return render(joinPoint, null, t, RENDER_THROWS);
     }
-}
\ No newline at end of file
+}
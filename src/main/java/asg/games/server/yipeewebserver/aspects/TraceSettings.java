@@ -0,0 +1,82 @@
+/**
+ * Copyright 2024 See AUTHORS file.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package asg.games.server.yipeewebserver.aspects;
+
+/**
+ * Process-wide switch for {@link LoggingServerAspect}.
+ * <p>
+ * The aspect's pointcuts consult {@link #isActive()} through an {@code if()} residue,
+ * which is evaluated before any {@code JoinPoint} is built. In {@link TraceMode#OFF}
+ * a woven call therefore costs one static volatile read and a branch.
+ * </p>
+ * <ul>
+ *     <li>{@link TraceMode#OFF} - no advice runs.</li>
+ *     <li>{@link TraceMode#FULL} - every traced call is logged (subject to the TRACE level).</li>
+ *     <li>{@link TraceMode#SAMPLED} - one in {@code sampleRate} calls is logged,
+ *     together with its matching exit.</li>
+ * </ul>
+ * To remove the weaving itself, build with the {@code no-trace} Maven profile. Single
+ * hot classes can be left unwoven in a normal build by annotating them {@link Untraced};
+ * the per-tick game classes are left unwoven by {@link TraceScope} unless the build uses
+ * the {@code trace-tick} profile.
+ */
+@Untraced
+public final class TraceSettings {
+    @Untraced
+    public enum TraceMode {
+        OFF,
+        FULL,
+        SAMPLED
+    }
+
+    private static volatile TraceMode mode = TraceMode.FULL;
+    private static volatile int sampleRate = 1000;
+    private static volatile boolean active = true;
+
+    static {
+        // Allow -Dyipee.trace.mode=OFF so nothing is traced even before Spring starts
+        String sysMode = System.getProperty("yipee.trace.mode");
+        if (sysMode != null) {
+            configure(TraceMode.valueOf(sysMode.trim().toUpperCase()),
+                    Integer.getInteger("yipee.trace.sampleRate", 1000));
+        }
+    }
+
+    private TraceSettings() {
+    }
+
+    public static void configure(TraceMode newMode, int newSampleRate) {
+        sampleRate = Math.max(1, newSampleRate);
+        mode = newMode == null ? TraceMode.FULL : newMode;
+        active = mode != TraceMode.OFF;
+    }
+
+    public static boolean isActive() {
+        return active;
+    }
+
+    public static boolean isSampled() {
+        return mode == TraceMode.SAMPLED;
+    }
+
+    public static TraceMode getMode() {
+        return mode;
+    }
+
+    public static int getSampleRate() {
+        return sampleRate;
+    }
+}
@@ -0,0 +1,41 @@
+package asg.games.server.yipeewebserver.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.task.ThreadPoolTaskSchedulerBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+
+/**
+ * Schedulers for the {@code jobs} package.
+ * <p>
+ * Jobs on a short interval that players wait on (spectator broadcasts, resync streaming,
+ * matchmaking, seat confirmation, occupancy and journal flushes) run on
+ * {@link #REALTIME_SCHEDULER}, sized by {@code yipee.scheduling.realtimePoolSize}. Cleanup
+ * and reconciliation jobs stay on the default {@code taskScheduler}
+ * ({@code spring.task.scheduling.*}), so a slow sweep never delays the fast jobs.
+ * </p>
+ */
+@Slf4j
+@Configuration
+public class SchedulingConfig {
+    public static final String REALTIME_SCHEDULER = "realtimeTaskScheduler";
+
+    /**
+     * Declared here because Spring Boot backs off its own scheduler once any other is defined.
+     */
+    @Bean
+    public ThreadPoolTaskScheduler taskScheduler(ThreadPoolTaskSchedulerBuilder builder) {
+        return builder.build();
+    }
+
+    @Bean(REALTIME_SCHEDULER)
+    public ThreadPoolTaskScheduler realtimeTaskScheduler(ThreadPoolTaskSchedulerBuilder builder,
+                                                         @Value("${yipee.scheduling.realtimePoolSize:4}") int poolSize) {
+        log.info("Realtime job scheduler with {} threads", poolSize);
+        return builder.poolSize(poolSize)
+                .threadNamePrefix("yipee-realtime-")
+                .build();
+    }
+}
@@ -1,22 +1,66 @@
 package asg.games.server.yipeewebserver.config;
 
 import asg.games.server.yipeewebserver.headless.HeadlessLauncher;
+import asg.games.server.yipeewebserver.replay.MatchJournalService;
+import asg.games.server.yipeewebserver.services.DrainService;
 import asg.games.server.yipeewebserver.services.YipeeCleanupService;
 import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerGracefulShutdownLifecycle;
 import org.springframework.context.ApplicationContext;
+import org.springframework.context.SmartLifecycle;
 import org.springframework.stereotype.Component;
 
+/**
+ * Shuts the server down in two steps. {@link #stop()} drains while clients are still
+ * connected: its lifecycle phase stops before the web server's graceful shutdown, which
+ * closes the WebSocket sessions. {@link #onShutdown()} then stops the game server and
+ * cleans up once beans are destroyed.
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
-public class ShutDownHandler {
+public class ShutDownHandler implements SmartLifecycle {
 
     private final HeadlessLauncher launcher;
     private final ApplicationContext appContext;
     private final YipeeCleanupService yipeeCleanUpService;
+    private final MatchJournalService matchJournalService;
+    private final DrainService drainService;
+
+    private volatile boolean running;
+
+    @Override
+    public void start() {
+        running = true;
+    }
+
+    /**
+     * Drains: refuses new tables, sends reconnect hints and lets games finish or hands them off.
+     */
+    @Override
+    public void stop() {
+        log.warn("Server is shutting down, draining...");
+        try {
+            drainService.drain(launcher.getActiveServerManager());
+        } catch (Exception e) {
+            log.error("shutdown: error while draining", e);
+        } finally {
+            running = false;
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return WebServerGracefulShutdownLifecycle.SMART_LIFECYCLE_PHASE + 1;
+    }
 
     @PreDestroy
     public void onShutdown() {
@@ -41,12 +85,17 @@ public class ShutDownHandler {
         }
 
         // 3) Forced purge of all tables (UNCONDITIONAL — does NOT rely on occupancy counters)
-        try {
-            log.warn("shutdown: FORCE PURGE all tables/seats/watchers/activity...");
-            yipeeCleanUpService.forceDeleteAllTables();
-            log.warn("shutdown: FORCE PURGE complete.");
-        } catch (Exception e) {
-            log.error("shutdown: error while force purging tables", e);
+        //    Skipped when games are journaled: their tables must still exist when they are recovered.
+        if (matchJournalService.isEnabled()) {
+            log.warn("shutdown: match journal enabled, keeping tables for recovery.");
+        } else {
+            try {
+                log.warn("shutdown: FORCE PURGE all tables/seats/watchers/activity...");
+                yipeeCleanUpService.forceDeleteAllTables();
+                log.warn("shutdown: FORCE PURGE complete.");
+            } catch (Exception e) {
+                log.error("shutdown: error while force purging tables", e);
+            }
         }
 
         log.warn("shutdown: complete.");
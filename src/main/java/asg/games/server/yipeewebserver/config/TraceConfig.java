@@ -0,0 +1,28 @@
+package asg.games.server.yipeewebserver.config;
+
+import asg.games.server.yipeewebserver.aspects.TraceSettings;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Applies {@code yipee.trace.mode} (OFF, FULL, SAMPLED) and {@code yipee.trace.sampleRate}
+ * to the compile-time woven {@link asg.games.server.yipeewebserver.aspects.LoggingServerAspect}.
+ */
+@Slf4j
+@Configuration
+public class TraceConfig {
+
+    @Value("${yipee.trace.mode:FULL}")
+    private TraceSettings.TraceMode mode;
+
+    @Value("${yipee.trace.sampleRate:1000}")
+    private int sampleRate;
+
+    @PostConstruct
+    void init() {
+        TraceSettings.configure(mode, sampleRate);
+        log.info("Method tracing mode={}, sampleRate={}", TraceSettings.getMode(), TraceSettings.getSampleRate());
+    }
+}
@@ -2,7 +2,7 @@ package asg.games.server.yipeewebserver.config;
 
 import asg.games.server.yipeewebserver.mvc.CurrentPlayerArgumentResolver;
 import asg.games.server.yipeewebserver.persistence.YipeeClientConnectionRepository;
-import asg.games.server.yipeewebserver.persistence.YipeePlayerRepository;
+import asg.games.server.yipeewebserver.services.RequestEntityCache;
 import asg.games.server.yipeewebserver.services.SessionService;
 import asg.games.server.yipeewebserver.web.SessionConnectionArgumentResolver;
 import lombok.RequiredArgsConstructor;
@@ -19,12 +19,12 @@ import java.util.List;
 public class WebConfig implements WebMvcConfigurer {
 
     private final YipeeClientConnectionRepository clientConnectionRepository;
-    private final YipeePlayerRepository yipeePlayerRepository;
     private final SessionService sessionService;
+    private final RequestEntityCache requestEntityCache;
 
     @Override
     public void addArgumentResolvers(List<HandlerMethodArgumentResolver> resolvers) {
         resolvers.add(new CurrentPlayerArgumentResolver(clientConnectionRepository));
-        resolvers.add(new SessionConnectionArgumentResolver(sessionService, yipeePlayerRepository));
+        resolvers.add(new SessionConnectionArgumentResolver(sessionService, requestEntityCache));
     }
 }
\ No newline at end of file
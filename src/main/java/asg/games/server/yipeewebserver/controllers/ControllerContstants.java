@@ -22,4 +22,8 @@ public class ControllerContstants {
     public static final String API_TABLE_WATCHERS_PATH = "/table/getWatchers";
     public static final String API_GAME_LAUNCH_TOKEN_PATH = "/game/getlaunchToken";
     public static final String API_GAME_WHOAMI_PATH = "/game/whoami";
+    public static final String API_LOBBY_BATCH_PATH = "/lobby/batch";
+    public static final String API_MATCHMAKING_ENQUEUE_PATH = "/matchmaking/enqueue";
+    public static final String API_MATCHMAKING_STATUS_PATH = "/matchmaking/status";
+    public static final String API_MATCHMAKING_CANCEL_PATH = "/matchmaking/cancel";
 }
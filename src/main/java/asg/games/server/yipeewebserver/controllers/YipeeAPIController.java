@@ -4,7 +4,9 @@ import asg.games.server.yipeewebserver.Version;
 import asg.games.server.yipeewebserver.annotations.SessionConnection;
 import asg.games.server.yipeewebserver.config.OpenApiConfig;
 import asg.games.server.yipeewebserver.config.ServerIdentity;
+import asg.games.server.yipeewebserver.core.GameContextFactory;
 import asg.games.server.yipeewebserver.data.PlayerConnectionEntity;
+import asg.games.server.yipeewebserver.exceptions.ClientValidationException;
 import asg.games.server.yipeewebserver.net.ConnectionContext;
 import asg.games.server.yipeewebserver.net.YipeePacketHandler;
 import asg.games.server.yipeewebserver.net.api.CreateTableRequest;
@@ -19,6 +21,11 @@ import asg.games.server.yipeewebserver.net.api.LeaveRoomRequest;
 import asg.games.server.yipeewebserver.net.api.LeaveRoomResponse;
 import asg.games.server.yipeewebserver.net.api.LeaveTableRequest;
 import asg.games.server.yipeewebserver.net.api.LeaveTableResponse;
+import asg.games.server.yipeewebserver.net.api.LobbyBatchRequest;
+import asg.games.server.yipeewebserver.net.api.LobbyBatchResponse;
+import asg.games.server.yipeewebserver.net.api.LobbyCommand;
+import asg.games.server.yipeewebserver.net.api.MatchmakingRequest;
+import asg.games.server.yipeewebserver.net.api.MatchmakingStatusResponse;
 import asg.games.server.yipeewebserver.net.api.PlayerProfileResponse;
 import asg.games.server.yipeewebserver.net.api.PlayerSummary;
 import asg.games.server.yipeewebserver.net.api.RegisterPlayerRequest;
@@ -36,21 +43,29 @@ import asg.games.server.yipeewebserver.net.api.TableDetailsSummary;
 import asg.games.server.yipeewebserver.net.api.TableSummary;
 import asg.games.server.yipeewebserver.net.api.TableWatchersResponse;
 import asg.games.server.yipeewebserver.net.api.GameWhoAmIResponse;
+import asg.games.server.yipeewebserver.net.codec.FrameCompressor;
 import asg.games.server.yipeewebserver.persistence.YipeeClientConnectionRepository;
 import asg.games.server.yipeewebserver.persistence.YipeePlayerRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeRoomRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeSeatRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeTableRepository;
 import asg.games.server.yipeewebserver.services.LaunchTokenService;
+import asg.games.server.yipeewebserver.services.MatchmakingService;
+import asg.games.server.yipeewebserver.services.RequestEntityCache;
+import asg.games.server.yipeewebserver.services.SeatAllocator;
 import asg.games.server.yipeewebserver.services.SessionService;
 import asg.games.server.yipeewebserver.services.TableService;
 import asg.games.server.yipeewebserver.services.impl.YipeeGameJPAServiceImpl;
+import asg.games.server.yipeewebserver.web.SessionConnectionArgumentResolver;
 import asg.games.yipee.core.objects.YipeePlayer;
 import asg.games.yipee.core.objects.YipeeRoom;
 import asg.games.yipee.core.objects.YipeeSeat;
 import asg.games.yipee.core.objects.YipeeTable;
 import asg.games.yipee.net.packets.ClientHandshakeRequest;
 import asg.games.yipee.net.packets.ClientHandshakeResponse;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
@@ -60,6 +75,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
@@ -70,6 +86,7 @@ import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.server.ResponseStatusException;
 
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 
 @Slf4j
@@ -80,6 +97,8 @@ import java.util.List;
 public class YipeeAPIController {
     private static final String HEADER_ARG_CLIENT_ID = "X-Client-Id";
     private static final String HEADER_ARG_USER_AGENT = "User-Agent";
+    private static final String BATCH_TOO_LARGE = "BATCH_TOO_LARGE";
+    private static final String BATCH_COMMAND_INVALID = "BATCH_COMMAND_INVALID";
 
     @Value("${gameserver.server.motd}")
     private String motd;
@@ -87,6 +106,9 @@ public class YipeeAPIController {
     @Value("${gameserver.server.serviceName}")
     private String serviceName;
 
+    @Value("${yipee.lobby.batch.maxCommands:16}")
+    private int maxBatchCommands;
+
     private final ServerIdentity serverIdentity;
     private final YipeeGameJPAServiceImpl yipeeGameService;
     private final YipeeTableRepository yipeeTableRepository;
@@ -98,6 +120,13 @@ public class YipeeAPIController {
     private final SessionService sessionService;
     private final TableService tableService;
     private final LaunchTokenService launchTokenService;
+    private final RequestEntityCache requestEntityCache;
+    private final SeatAllocator seatAllocator;
+    private final MatchmakingService matchmakingService;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final FrameCompressor frameCompressor;
+    private final GameContextFactory gameContextFactory;
 
     // -------------------------------------------------------
     // 1. Server status
@@ -182,6 +211,8 @@ public class YipeeAPIController {
     // 4. Handshake: POST /api/session/handshake
     //    Body: ClientHandshakeRequest (clientId, playerId, etc.)
     //    Uses existing YipeePacketHandler logic
+    //    X-Yipee-Compression: codecs the client can decode; the
+    //    response header carries the one chosen (see FrameCompressor)
     // -------------------------------------------------------
     @PostMapping(ControllerContstants.API_SESSION_HANDSHAKE_PATH)
     public ResponseEntity<ClientHandshakeResponse> handshake(
@@ -198,7 +229,10 @@ public class YipeeAPIController {
                 ip,
                 userAgent,
                 YipeePacketHandler.IDENTITY_PROVIDER_WORDPRESS);
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok()
+                .header(FrameCompressor.HEADER_COMPRESSION, frameCompressor.negotiate(request.getClientId(),
+                        httpRequest.getHeader(FrameCompressor.HEADER_COMPRESSION)))
+                .body(response);
     }
 
     /**
@@ -339,11 +373,13 @@ public class YipeeAPIController {
 
         YipeeRoom room = yipeeRoomRepository.findRoomById(request.roomId());
 
+        // Play Now seats the player; -1 when they only joined as a watcher
         JoinTableResponse response = new JoinTableResponse(
                 room.getId(),
                 room.getName(),
                 table.getId(),
-                player.getId()
+                player.getId(),
+                seatAllocator.seatOf(table.getId(), player.getId())
         );
         return ResponseEntity.ok(response);
     }
@@ -710,13 +746,11 @@ public class YipeeAPIController {
             throw new ResponseStatusException(HttpStatus.FORBIDDEN, "Player is not in given table");
         }
 
-        YipeePlayer validPlayer = yipeePlayerRepository.findById(playerId)
+        YipeePlayer validPlayer = requestEntityCache.findPlayer(playerId)
                 .orElseThrow(() -> new ResponseStatusException(HttpStatus.NOT_FOUND, "Player does not exist."));
 
-        // 2) Resolve gameId (whatever your model uses)
-        //String gameId = yipeeGameService.getGameIdForTable(tableId);
-        //Does each unique table request a gameID that all players share??
-        String gameId = "";
+        // 2) Resolve gameId: every player at the table shares the table's game
+        String gameId = gameContextFactory.gameIdForTable(tableId);
 
         // 3) Mint token
         String token = launchTokenService.mintLaunchToken(
@@ -745,24 +779,13 @@ public class YipeeAPIController {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Missing Bearer token");
         }
 
-        var jws = launchTokenService.verifyLaunchToken(token);
-        var c = jws.getBody();
+        // Verified identities are cached per token until exp
+        LaunchTokenService.LaunchIdentity identity = launchTokenService.verifyLaunchIdentity(token);
 
-        if (!"launch".equals(c.get("scope", String.class))) {
+        if (!"launch".equals(identity.scope())) {
             throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Wrong token scope");
         }
 
-        // Identity is derived from token
-        String playerId  = c.getSubject();
-        String playerName  = c.get("pname", String.class);;
-        int playerIcon  = c.get("picon", Integer.class);
-        int playerRating  = c.get("prate", Integer.class);
-        String clientId  = c.get("cid", String.class);
-        String sessionId = c.get("sid", String.class);
-        String gameId    = c.get("gid", String.class);
-        String tableId   = c.get("tid", String.class);
-        Instant expires  = c.getExpiration().toInstant();
-
         // OPTIONAL but strongly recommended:
         // verify sessionId is still valid and belongs to playerId/clientId
         // and verify player is actually seated at tableId/seatNo (or is a watcher)
@@ -772,18 +795,178 @@ public class YipeeAPIController {
         // tableService.assertPlayerSeated(tableId, seatNo, playerId);
 
         return new GameWhoAmIResponse(
-                playerId,
-                playerName,
-                playerIcon,
-                playerRating,
-                clientId,
-                sessionId,
-                gameId,
-                tableId,
-                expires
+                identity.playerId(),
+                identity.playerName(),
+                identity.playerIcon(),
+                identity.playerRating(),
+                identity.clientId(),
+                identity.sessionId(),
+                identity.gameId(),
+                identity.tableId(),
+                identity.expires()
         );
     }
 
+    // -------------------------------------------------------
+    // Matchmaking:
+    //    enqueue -> poll status until MATCHED -> launch token for the assigned table
+    // -------------------------------------------------------
+    @PostMapping(ControllerContstants.API_MATCHMAKING_ENQUEUE_PATH)
+    public ResponseEntity<MatchmakingStatusResponse> enqueueMatchmaking(@RequestBody MatchmakingRequest request,
+                                                                        @SessionConnection PlayerConnectionEntity conn
+    ) {
+        String roomId = request.roomId();
+        if (roomId == null || !yipeeRoomRepository.existsById(roomId)) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Room not found: " + roomId);
+        }
+        MatchmakingService.Mode mode;
+        try {
+            mode = request.mode() == null ? MatchmakingService.Mode.TWO_TEAMS : MatchmakingService.Mode.valueOf(request.mode());
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Unknown matchmaking mode: " + request.mode());
+        }
+
+        YipeePlayer player = conn.getPlayer();
+        matchmakingService.enqueue(player, roomId, mode);
+        return ResponseEntity.ok(toMatchmakingStatus(player.getId()));
+    }
+
+    @GetMapping(ControllerContstants.API_MATCHMAKING_STATUS_PATH)
+    public ResponseEntity<MatchmakingStatusResponse> getMatchmakingStatus(@SessionConnection PlayerConnectionEntity conn) {
+        return ResponseEntity.ok(toMatchmakingStatus(conn.getPlayer().getId()));
+    }
+
+    @PostMapping(ControllerContstants.API_MATCHMAKING_CANCEL_PATH)
+    public ResponseEntity<MatchmakingStatusResponse> cancelMatchmaking(@SessionConnection PlayerConnectionEntity conn) {
+        String playerId = conn.getPlayer().getId();
+        matchmakingService.cancel(playerId);
+        return ResponseEntity.ok(toMatchmakingStatus(playerId));
+    }
+
+    private MatchmakingStatusResponse toMatchmakingStatus(String playerId) {
+        MatchmakingService.Status status = matchmakingService.status(playerId);
+        if (status.ticket() != null) {
+            MatchmakingService.Ticket ticket = status.ticket();
+            return new MatchmakingStatusResponse(playerId, "QUEUED", ticket.roomId(), ticket.mode().name(),
+                    System.currentTimeMillis() - ticket.enqueuedAtMillis(), null, -1, null, -1);
+        }
+        if (status.assignment() != null) {
+            MatchmakingService.Assignment match = status.assignment();
+            return new MatchmakingStatusResponse(playerId, "MATCHED", match.roomId(), match.mode().name(),
+                    match.waitMillis(), match.tableId(), match.tableNumber(), match.gameId(), match.seatNumber());
+        }
+        return new MatchmakingStatusResponse(playerId, "NONE", null, null, 0, null, -1, null, -1);
+    }
+
+    // -------------------------------------------------------
+    // Lobby batch:
+    //    Body: LobbyBatchRequest (optional handshake + ordered commands)
+    //    Runs every command in one transaction with one session resolution,
+    //    e.g. "Play Now" = JOIN_ROOM, CREATE_TABLE, SIT_DOWN, LAUNCH_TOKEN.
+    //    Any failure rolls back the whole batch.
+    // -------------------------------------------------------
+    @PostMapping(ControllerContstants.API_LOBBY_BATCH_PATH)
+    public ResponseEntity<LobbyBatchResponse> lobbyBatch(
+            @RequestBody LobbyBatchRequest request,
+            HttpServletRequest httpRequest,
+            @RequestHeader(value = HEADER_ARG_USER_AGENT, required = false) String userAgent,
+            @RequestHeader(value = SessionConnectionArgumentResolver.HEADER_CLIENT_ID, required = false) String clientId,
+            @RequestHeader(value = SessionConnectionArgumentResolver.HEADER_SESSION_ID, required = false) String sessionId
+    ) {
+        List<LobbyCommand> commands = request.commands() != null ? request.commands() : List.of();
+        if (commands.size() > maxBatchCommands) {
+            throw new ClientValidationException(BATCH_TOO_LARGE,
+                    "A batch may hold at most " + maxBatchCommands + " commands.");
+        }
+        log.debug("Enter lobbyBatch(handshake={}, commands={})", request.handshake() != null, commands.size());
+
+        LobbyBatchResponse response = transactionTemplate.execute(status -> {
+            ClientHandshakeResponse handshake = null;
+            PlayerConnectionEntity conn;
+            if (request.handshake() != null) {
+                handshake = sessionService.processClientHandshake(request.handshake(),
+                        httpRequest.getRemoteAddr(),
+                        userAgent != null ? userAgent : "UNKNOWN",
+                        YipeePacketHandler.IDENTITY_PROVIDER_WORDPRESS);
+                conn = sessionService.requireSession(handshake.getSessionId(), request.handshake().getClientId());
+            } else {
+                conn = sessionService.requireSession(sessionId, clientId);
+            }
+            requestEntityCache.putConnection(conn);
+            return new LobbyBatchResponse(handshake, runLobbyCommands(commands, conn));
+        });
+
+        log.debug("Exit lobbyBatch()");
+        if (request.handshake() == null) {
+            return ResponseEntity.ok(response);
+        }
+        return ResponseEntity.ok()
+                .header(FrameCompressor.HEADER_COMPRESSION, frameCompressor.negotiate(request.handshake().getClientId(),
+                        httpRequest.getHeader(FrameCompressor.HEADER_COMPRESSION)))
+                .body(response);
+    }
+
+    private List<LobbyBatchResponse.Result> runLobbyCommands(List<LobbyCommand> commands, PlayerConnectionEntity conn) {
+        List<LobbyBatchResponse.Result> results = new ArrayList<>(commands.size());
+        String roomId = null;
+        String tableId = null;
+
+        for (int i = 0; i < commands.size(); i++) {
+            LobbyCommand command = commands.get(i);
+            if (command == null || command.op() == null) {
+                throw new ClientValidationException(BATCH_COMMAND_INVALID, "Command " + i + " has no op.");
+            }
+            ObjectNode args = command.args() instanceof ObjectNode node ? node.deepCopy() : objectMapper.createObjectNode();
+            log.debug("lobbyBatch[{}] op={}", i, command.op());
+
+            Object body = switch (command.op()) {
+                case JOIN_ROOM -> {
+                    JoinRoomResponse r = joinRoom(batchArgs(args, "roomId", roomId, JoinRoomRequest.class), conn).getBody();
+                    roomId = r.roomId();
+                    yield r;
+                }
+                case LEAVE_ROOM -> leaveRoom(batchArgs(args, "roomId", roomId, LeaveRoomRequest.class), conn).getBody();
+                case JOIN_TABLE -> {
+                    JoinTableResponse r = joinTable(batchArgs(args, "roomId", roomId, JoinTableRequest.class), conn).getBody();
+                    roomId = r.roomId();
+                    tableId = r.tableId();
+                    yield r;
+                }
+                case CREATE_TABLE -> {
+                    CreateTableResponse r = createTable(batchArgs(args, "roomId", roomId, CreateTableRequest.class), conn).getBody();
+                    roomId = r.roomId();
+                    tableId = r.tableId();
+                    yield r;
+                }
+                case LEAVE_TABLE -> leaveTable(batchArgs(args, "tableId", tableId, LeaveTableRequest.class), conn).getBody();
+                case SIT_DOWN -> {
+                    SitDownResponse r = sitDown(batchArgs(args, "tableId", tableId, SitDownRequest.class), conn).getBody();
+                    tableId = r.tableId();
+                    yield r;
+                }
+                case STAND_UP -> standUp(batchArgs(args, "tableId", tableId, StandUpRequest.class), conn).getBody();
+                case LAUNCH_TOKEN -> createLaunchToken(batchArgs(args, "tableId", tableId, LaunchTokenRequest.class), conn);
+            };
+            results.add(new LobbyBatchResponse.Result(command.op(), body));
+        }
+        return results;
+    }
+
+    /**
+     * Fills {@code field} from an earlier command when the caller left it out, then binds
+     * the arguments to the single endpoint's request type.
+     */
+    private <T> T batchArgs(ObjectNode args, String field, String fromBatch, Class<T> type) {
+        if (fromBatch != null && (!args.hasNonNull(field) || args.get(field).asText().isBlank())) {
+            args.put(field, fromBatch);
+        }
+        try {
+            return objectMapper.treeToValue(args, type);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            throw new ClientValidationException(BATCH_COMMAND_INVALID, "Invalid arguments for " + type.getSimpleName() + ".");
+        }
+    }
+
     // -------------------------------------------------------
     // Helper: Extract external user id from JWT / SecurityContext
     // -------------------------------------------------------
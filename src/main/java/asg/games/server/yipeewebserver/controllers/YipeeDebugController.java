@@ -3,19 +3,23 @@ package asg.games.server.yipeewebserver.controllers;
 import asg.games.server.yipeewebserver.core.GameContext;
 import asg.games.server.yipeewebserver.core.GameContextFactory;
 import asg.games.server.yipeewebserver.data.DebugGameStartRequestDto;
+import asg.games.server.yipeewebserver.net.UdpTickChannel;
 import asg.games.server.yipeewebserver.net.YipeePacketHandler;
+import asg.games.server.yipeewebserver.net.api.UdpLinkStats;
 import asg.games.yipee.net.packets.GameStartRequest;
 import asg.games.yipee.net.packets.GameStartResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.io.InvalidObjectException;
+import java.util.List;
 
 @Slf4j
 @RestController
@@ -25,6 +29,7 @@ import java.io.InvalidObjectException;
 public class YipeeDebugController {
     private final YipeePacketHandler packetHandler;
     private final GameContextFactory gameContextFactory;
+    private final UdpTickChannel udpTickChannel;
 
     @PostMapping("/game/start")
     public ResponseEntity<GameStartResponse> debugStartGame(
@@ -53,4 +58,12 @@ public class YipeeDebugController {
 
         return ResponseEntity.ok(response);
     }
+
+    /**
+     * Per-connection loss and latency of the UDP tick channel.
+     */
+    @GetMapping("/net/udp")
+    public ResponseEntity<List<UdpLinkStats>> udpStats() {
+        return ResponseEntity.ok(udpTickChannel.stats());
+    }
 }
@@ -0,0 +1,59 @@
+package asg.games.server.yipeewebserver.core;
+
+import asg.games.server.yipeewebserver.aspects.Untraced;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Adaptive broadcast policy shared by the game loops.
+ * <p>
+ * When disabled every tick is broadcast. When enabled, only the last tick of a
+ * catch-up burst is broadcast, and while bursts keep happening the broadcast
+ * divisor doubles (up to {@code maxDivisor}) so the loop sends fewer updates before
+ * it has to drop simulation ticks. It halves again once the loop keeps up.
+ * Used by a single loop thread.
+ */
+@Slf4j
+@Untraced
+final class BroadcastThrottle {
+    private final boolean adaptive;
+    private final int maxDivisor;
+    private int divisor = 1;
+    private int ticksSinceBroadcast = 0;
+
+    BroadcastThrottle(boolean adaptive, int maxDivisor) {
+        this.adaptive = adaptive;
+        this.maxDivisor = Math.max(1, maxDivisor);
+    }
+
+    /**
+     * Decides whether the current tick is broadcast.
+     *
+     * @param lastStepOfBurst {@code true} for the final tick run in this frame or wake-up
+     */
+    boolean shouldBroadcast(boolean lastStepOfBurst) {
+        if (!adaptive) return true;
+        ticksSinceBroadcast++;
+        if (lastStepOfBurst && ticksSinceBroadcast >= divisor) {
+            ticksSinceBroadcast = 0;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adjusts the divisor after a burst of {@code steps} ticks.
+     */
+    void afterBurst(int steps) {
+        if (!adaptive) return;
+        if (steps > 1 && divisor < maxDivisor) {
+            divisor = Math.min(divisor * 2, maxDivisor);
+            log.debug("Game loop behind, broadcasting every {} ticks", divisor);
+        } else if (steps <= 1 && divisor > 1) {
+            divisor = Math.max(1, divisor / 2);
+        }
+    }
+
+    int getMaxDivisor() {
+        return maxDivisor;
+    }
+}
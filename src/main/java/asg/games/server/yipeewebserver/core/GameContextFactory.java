@@ -3,17 +3,28 @@ package asg.games.server.yipeewebserver.core;
 import asg.games.server.yipeewebserver.config.ServerIdentity;
 import asg.games.server.yipeewebserver.net.ConnectionContext;
 import asg.games.server.yipeewebserver.net.ConnectionContextFactory;
+import asg.games.server.yipeewebserver.replay.MatchEventSink;
+import asg.games.server.yipeewebserver.replay.MatchJournal;
+import asg.games.server.yipeewebserver.replay.MatchJournalService;
+import asg.games.server.yipeewebserver.replay.ReplayRecorder;
 import asg.games.yipee.net.packets.AbstractClientRequest;
 import com.esotericsoftware.kryonet.Connection;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketSession;
 
+import java.io.IOException;
 import java.io.InvalidObjectException;
+import java.nio.file.Paths;
 import java.util.Collection;
+import java.util.Queue;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 /**
  * Factory responsible for building {@link GameContext} objects for all transports
@@ -35,7 +46,22 @@ public class GameContextFactory {
 
     private final ServerIdentity serverIdentity;
     private final ConnectionContextFactory connectionContextFactory;
+    private final TickProfiler tickProfiler;
+    private final MatchJournalService matchJournalService;
     private final ConcurrentHashMap<String, ServerGameManager> gameManagers = new ConcurrentHashMap<>();
+    /** tableId -> gameId of the game running on that table. */
+    private final ConcurrentHashMap<String, String> gameIdsByTable = new ConcurrentHashMap<>();
+
+    /** Games released while a tick loop runs; shut down by that loop between ticks. */
+    private final Queue<ServerGameManager> releasedGames = new ConcurrentLinkedQueue<>();
+    private volatile boolean tickLoopAttached;
+
+    /** Records every new game's inputs to {@code yipee.replay.dir} for offline re-simulation. */
+    @Value("${yipee.replay.enabled:false}")
+    private boolean replayEnabled;
+
+    @Value("${yipee.replay.dir:replays}")
+    private String replayDir;
 
     /**
      * Builds a {@link GameContext} for a KryoNet connection, updating the
@@ -120,10 +146,48 @@ public class GameContextFactory {
         ServerGameManager manager = new ServerGameManager(ServerGameManager.MAX_TICK_HISTORY);
         String gameId = generateUniqueGameId();
         manager.setGameId(gameId);
+        manager.setTickTimers(tickProfiler.forGame(gameId));
+
+        MatchEventSink sink = replayEnabled ? startRecording(manager) : MatchEventSink.NONE;
+        MatchJournal journal = matchJournalService.open(manager);
+        if (journal != null) {
+            journal.onSeed(manager.getServerTick(), manager.getGameSeed());
+            sink = sink.andThen(journal);
+        }
+        manager.setEventSink(sink);
+
         gameManagers.put(gameId, manager);
         return gameId;
     }
 
+    private MatchEventSink startRecording(ServerGameManager manager) {
+        try {
+            ReplayRecorder recorder = new ReplayRecorder(Paths.get(replayDir), manager.getGameId());
+            // The constructor already seeded the boards; record that seed as the starting point
+            recorder.onSeed(manager.getServerTick(), manager.getGameSeed());
+            return recorder;
+        } catch (IOException e) {
+            log.warn("Could not start replay recording for game {}", manager.getGameId(), e);
+            return MatchEventSink.NONE;
+        }
+    }
+
+    /**
+     * Rebuilds games that were still live when the previous run died, from their journals.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void recoverJournaledGames() {
+        for (ServerGameManager manager : matchJournalService.recover()) {
+            String gameId = manager.getGameId();
+            if (gameManagers.containsKey(gameId)) {
+                log.warn("Recovered game {} clashes with a live game; dropping it", gameId);
+                continue;
+            }
+            manager.setTickTimers(tickProfiler.forGame(gameId));
+            gameManagers.put(gameId, manager);
+        }
+    }
+
     /**
      * Returns the {@link ServerGameManager} for the given game id, or {@code null}
      * if no such game is currently registered.
@@ -132,6 +196,84 @@ public class GameContextFactory {
         return gameManagers.get(gameId);
     }
 
+    /**
+     * Returns the id of the game running on the given table, starting a new game for it
+     * if it has none yet.
+     */
+    public String gameIdForTable(String tableId) {
+        return gameIdsByTable.computeIfAbsent(tableId, id -> newGame());
+    }
+
+    /**
+     * Records that the given game runs on the given table, so the game is released
+     * with the table ({@link #releaseTableGame(String)}).
+     */
+    public void bindTable(String tableId, String gameId) {
+        gameIdsByTable.put(tableId, gameId);
+    }
+
+    /**
+     * Releases the game running on the given table, if any; see {@link #releaseGame(String)}.
+     *
+     * @return {@code true} if a game was registered for that table
+     */
+    public boolean releaseTableGame(String tableId) {
+        if (tableId == null) return false;
+        return releaseGame(gameIdsByTable.remove(tableId));
+    }
+
+    /**
+     * Unregisters the {@link ServerGameManager} for the given game id and shuts it down.
+     * <p>
+     * While a tick loop is attached the game may be in the middle of a tick, so the shutdown
+     * is handed to the loop, which runs it before its next tick ({@link #shutDownReleasedGames()});
+     * the game is no longer ticked either way. Without a tick loop it shuts down right away.
+     * </p>
+     *
+     * @return {@code true} if a game was registered under that id
+     */
+    public boolean releaseGame(String gameId) {
+        if (gameId == null) return false;
+        ServerGameManager manager = gameManagers.remove(gameId);
+        if (manager == null) return false;
+        gameIdsByTable.values().remove(gameId);
+        if (tickLoopAttached) {
+            releasedGames.offer(manager);
+        } else {
+            shutDown(manager);
+        }
+        return true;
+    }
+
+    /**
+     * Marks that a tick loop now runs the games and will call {@link #shutDownReleasedGames()}
+     * between ticks; {@code false} when it stops, which shuts down anything still pending.
+     */
+    public void setTickLoopAttached(boolean attached) {
+        tickLoopAttached = attached;
+        if (!attached) {
+            shutDownReleasedGames();
+        }
+    }
+
+    /**
+     * Shuts down the games released since the last call; only called by the tick loop,
+     * between ticks.
+     */
+    public void shutDownReleasedGames() {
+        ServerGameManager manager;
+        while ((manager = releasedGames.poll()) != null) {
+            shutDown(manager);
+        }
+    }
+
+    private void shutDown(ServerGameManager manager) {
+        manager.shutDownServer();
+        matchJournalService.release(manager.getGameId());
+        tickProfiler.release(manager.getTickTimers());
+        log.debug("Released game {}", manager.getGameId());
+    }
+
     /**
      * Returns a view of all currently registered {@link ServerGameManager} instances.
      * <p>
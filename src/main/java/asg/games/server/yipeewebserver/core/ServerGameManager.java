@@ -17,17 +17,20 @@ package asg.games.server.yipeewebserver.core;
 
 import asg.games.server.yipeewebserver.Version;
 import asg.games.server.yipeewebserver.net.api.TickedPlayerActionData;
+import asg.games.server.yipeewebserver.replay.MatchEventSink;
 import asg.games.yipee.common.game.GameBoardState;
 import asg.games.yipee.common.game.PlayerAction;
 import asg.games.yipee.core.game.YipeeGameBoard;
 import asg.games.yipee.core.objects.YipeeGameBoardState;
 import asg.games.yipee.core.objects.YipeePlayer;
 import asg.games.yipee.core.tools.TimeUtils;
+import asg.games.yipee.net.packets.TableStateUpdateResponse;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Queue;
@@ -92,6 +95,23 @@ public class ServerGameManager {
     @Getter
     private long serverTick = 0L;
 
+    /** Per-game phase timers; {@code null} when the game is not profiled. */
+    @Getter
+    @Setter
+    private TickProfiler.GameTickTimers tickTimers;
+
+    /**
+     * Tick broadcast packet of this game, refilled by {@link ServerManager} every broadcast
+     * tick instead of allocating a new one. Only valid until the next tick.
+     */
+    @Getter
+    private final TableStateUpdateResponse tickPacket = new TableStateUpdateResponse();
+
+    /** Receives the inputs of this match for replay; {@link MatchEventSink#NONE} when not recorded. */
+    @Getter
+    @Setter
+    private MatchEventSink eventSink = MatchEventSink.NONE;
+
     /**
      * Constructs a new {@code ServerGameManager} and seeds all boards.
      *
@@ -128,6 +148,7 @@ public class ServerGameManager {
      * is invoked.
      */
     public void startGameLoop() {
+        eventSink.onStart(serverTick, occupiedSeatMask());
         for (int seatId = 0; seatId < 8; seatId++) {
             ServerPlayerGameBoard board = getGameBoard(seatId);
             if (hasPlayer(seatId)) {
@@ -146,6 +167,7 @@ public class ServerGameManager {
     public void endGameLoop() {
         // Set same seeded game for 8 game boards (1 for each seat)
         log.info("Ending Game Loop.");
+        eventSink.onStop(serverTick, occupiedSeatMask());
         for (int seatId = 0; seatId < 8; seatId++) {
             ServerPlayerGameBoard board = getGameBoard(seatId);
             if (hasPlayer(seatId)) {
@@ -189,6 +211,17 @@ public class ServerGameManager {
         return isRunning;
     }
 
+    /**
+     * Returns a bit mask of the seats that currently have a player.
+     */
+    private int occupiedSeatMask() {
+        int mask = 0;
+        for (int seatId = 0; seatId < 8; seatId++) {
+            if (hasPlayer(seatId)) mask |= 1 << seatId;
+        }
+        return mask;
+    }
+
     /**
      * Checks if the board has a player set. This means a player has sat down.
      *
@@ -311,6 +344,7 @@ public class ServerGameManager {
      * @throws JsonProcessingException if any board export fails
      */
     public void update(float delta) throws JsonProcessingException {
+        eventSink.onDelta(serverTick, delta);
         incrementTick();
         gameLoopTick(delta);
     }
@@ -359,6 +393,7 @@ public class ServerGameManager {
         ServerPlayerGameBoard gameBoardObj = getGameBoard(seatId);
         if (gameBoardObj != null) {
             gameBoardObj.setPlayer(player);
+            eventSink.onSeat(serverTick, seatId, player);
         }
     }
 
@@ -376,6 +411,7 @@ public class ServerGameManager {
      * @param seed the random seed to initialize the game with
      */
     public void reset(long seed) {
+        eventSink.onSeed(serverTick, seed);
         setGameSeed(seed);
         resetGameBoards();
     }
@@ -453,11 +489,16 @@ public class ServerGameManager {
      * @throws JsonProcessingException if any board export fails
      */
     public void gameLoopTick(float delta) throws JsonProcessingException {
+        TickProfiler.GameTickTimers timers = tickTimers;
+        long start = System.nanoTime();
+
         // 1) Drain and apply actions (unchanged)
         PlayerAction action;
         while ((action = pendingActions.poll()) != null) {
+            eventSink.onAction(serverTick, action);
             processPlayerAction(action, delta, serverTick);
         }
+        if (timers != null) timers.add(TickProfiler.Phase.ACTION_DRAIN, System.nanoTime() - start);
 
         // 2) Partner-aware ticking: inject partner state, then tick pair
         for (int seatIndex = 0; seatIndex < 8; seatIndex += 2) {  // pairs: [0,1], [2,3], [4,5], [6,7]
@@ -465,10 +506,11 @@ public class ServerGameManager {
             ServerPlayerGameBoard right = gameBoardMap.get(seatIndex + 1);
             if (left == null || right == null) continue;
 
-            GameBoardState leftBoardState = left.getLatestGameState();
-            GameBoardState rightBoardState = right.getLatestGameState();
             // Only tick active boards; but always inject partner view for those that are running
             if (left.isRunning() || right.isRunning()) {
+                start = System.nanoTime();
+                GameBoardState leftBoardState = left.getLatestGameState();
+                GameBoardState rightBoardState = right.getLatestGameState();
                 YipeeGameBoard aBoard = left.getBoard();
                 YipeeGameBoard bBoard = right.getBoard();
                 if (aBoard != null && bBoard != null &&
@@ -483,15 +525,21 @@ public class ServerGameManager {
                             rightBoardState.isPartnerRight()
                     );
                 }
+                if (timers != null) timers.add(TickProfiler.Phase.PARTNER_INJECT, System.nanoTime() - start);
 
-                if (left.isRunning())  left.tick(serverTick, delta, leftBoardState,  rightBoardState);
-                if (right.isRunning()) right.tick(serverTick, delta, rightBoardState, leftBoardState);
+                if (left.isRunning())  left.tick(serverTick, delta, leftBoardState,  rightBoardState, timers);
+                if (right.isRunning()) right.tick(serverTick, delta, rightBoardState, leftBoardState, timers);
             }
         }
 
         // 3. Check Win/Loss Conditions
+        start = System.nanoTime();
         log.debug("Checking Game End conditions");
         checkGameEndConditions();
+        if (timers != null) {
+            timers.add(TickProfiler.Phase.END_CHECK, System.nanoTime() - start);
+            timers.endTick();
+        }
     }
 
     /**
@@ -595,6 +643,8 @@ public class ServerGameManager {
      */
     public void shutDownServer() {
         log.info("Attempting to shutdown GameServer...");
+        eventSink.onClose(this);
+        eventSink = MatchEventSink.NONE;
         pendingActions.clear();
         gameBoardMap.clear();
     }
@@ -727,6 +777,22 @@ public class ServerGameManager {
         return Map.copyOf(out); // Java 10+, else Collections.unmodifiableMap(new HashMap<>(out))
     }
 
+    /**
+     * Returns, per occupied seat, the newest state at or before {@code tick}. Reads only the
+     * concurrent state history, so it can run off the game loop thread.
+     */
+    public Map<Integer, GameBoardState> exportPerSeatAtOrBefore(long tick) {
+        Map<Integer, GameBoardState> out = new HashMap<>(8);
+        for (int seatId = 0; seatId < 8; seatId++) {
+            ServerPlayerGameBoard b = getGameBoard(seatId);
+            if (b != null && b.getPlayer() != null) {
+                GameBoardState s = b.getStateAtOrBefore(tick);
+                if (s != null) out.put(seatId, s);
+            }
+        }
+        return out;
+    }
+
     /*public Map<Integer, Map<Integer, GameBoardState>> exportHistoryPerSeat(int maxTicks) {
         Map<Integer, Map<Integer, GameBoardState>> out = new ConcurrentHashMap<>(8);
         for (int seatId = 0; seatId < 8; seatId++) {
@@ -1,6 +1,12 @@
 package asg.games.server.yipeewebserver.core;
 
+import asg.games.server.yipeewebserver.net.UdpAck;
+import asg.games.server.yipeewebserver.net.UdpTickChannel;
+import asg.games.server.yipeewebserver.net.UdpTickFrame;
 import asg.games.server.yipeewebserver.net.YipeePacketHandler;
+import asg.games.server.yipeewebserver.net.codec.CompressedFrame;
+import asg.games.server.yipeewebserver.net.codec.FrameCompressor;
+import asg.games.server.yipeewebserver.net.codec.GameBoardStateSerializer;
 import asg.games.server.yipeewebserver.net.listeners.YipeeKryoListener;
 import asg.games.yipee.common.enums.YipeeObject;
 import asg.games.yipee.core.objects.YipeePlayer;
@@ -9,6 +15,7 @@ import asg.games.yipee.core.tools.Util;
 import asg.games.yipee.net.packets.TableStateUpdateResponse;
 import asg.games.yipee.net.tools.PacketRegistrar;
 import com.badlogic.gdx.utils.Disposable;
+import com.esotericsoftware.kryo.Kryo;
 import com.esotericsoftware.kryonet.Connection;
 import com.esotericsoftware.kryonet.Listener;
 import com.esotericsoftware.kryonet.Server;
@@ -25,12 +32,15 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedList;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * Manages the game server, including networking, player connections, and game state updates.
@@ -48,6 +58,7 @@ public class ServerManager implements Disposable {
 
     private final YipeePacketHandler yipeePacketHandler;
     private final GameContextFactory gameContextFactory;
+    private final TickProfiler tickProfiler;
 
     // The KryoNet server instance
     Server server = new Server();
@@ -57,8 +68,20 @@ public class ServerManager implements Disposable {
 
     Map<String, List<Connection>> connectionsPerGame = new ConcurrentHashMap<>();
 
+    /** Tick packets of the current broadcast; reused every tick, only touched by the loop thread. */
+    private final List<TableStateUpdateResponse> tickResponses = new ArrayList<>();
+
     private Storage storageAdapter;
 
+    /** Board states use {@link GameBoardStateSerializer} on the wire; clients must register it too. */
+    private boolean compactBoardStates;
+
+    /** Compresses packets for clients that negotiated it at handshake; {@code null} sends all packets as is. */
+    private FrameCompressor frameCompressor;
+
+    /** Sends tick broadcasts over UDP to connections that opted in; {@code null} keeps them on TCP. */
+    private UdpTickChannel udpTickChannel;
+
     /**
      * Broadcasts the current game state to all connected clients.
      * This method should be called periodically during the game loop.
@@ -70,13 +93,48 @@ public class ServerManager implements Disposable {
     }
 
     private void sendTCPs(List<Connection> connections, TableStateUpdateResponse response) {
+        // compressed once per codec and measured once per packet, then shared by every connection using it
+        Map<FrameCompressor.Codec, Object> compressed = null;
+        Map<Object, Integer> sizes = null;
         for(Connection connection : Util.safeIterable(connections)) {
             if(connection != null && connection.isConnected()) {
-                connection.sendTCP(response);
+                FrameCompressor.Codec codec = frameCompressor != null ? frameCompressor.codecFor(connection) : null;
+                Object packet = response;
+                if (codec != null) {
+                    if (compressed == null) {
+                        compressed = new EnumMap<>(FrameCompressor.Codec.class);
+                    }
+                    packet = compressed.computeIfAbsent(codec, c -> frameCompressor.forKryo(c, response));
+                }
+                if (udpTickChannel != null && udpTickChannel.isActive(connection)) {
+                    if (sizes == null) {
+                        sizes = new IdentityHashMap<>(4);
+                    }
+                    int size = sizes.computeIfAbsent(packet, udpTickChannel::sizeOf);
+                    if (udpTickChannel.send(connection, packet, size)) continue;
+                }
+                connection.sendTCP(packet);
             }
         }
     }
 
+    /**
+     * Sends a packet built per connection to every connected client.
+     *
+     * @return number of connections the packet was sent to
+     */
+    public int sendToEachConnection(Function<Connection, Object> packetFor) {
+        int sent = 0;
+        for (Connection connection : server.getConnections()) {
+            if (connection != null && connection.isConnected()) {
+                Object packet = packetFor.apply(connection);
+                connection.sendTCP(frameCompressor != null ? frameCompressor.forKryo(connection, packet) : packet);
+                sent++;
+            }
+        }
+        return sent;
+    }
+
     public List<Connection> getConnectionsFromGameId(String gameId) {
         return connectionsPerGame.getOrDefault(gameId, Collections.emptyList());
     }
@@ -98,6 +156,35 @@ public class ServerManager implements Disposable {
         storageAdapter = yipeeGameServices;
     }
 
+    public void setCompactBoardStates(boolean compactBoardStates) {
+        this.compactBoardStates = compactBoardStates;
+    }
+
+    public void setFrameCompressor(FrameCompressor frameCompressor) {
+        this.frameCompressor = frameCompressor;
+    }
+
+    public void setUdpTickChannel(UdpTickChannel udpTickChannel) {
+        this.udpTickChannel = udpTickChannel;
+    }
+
+    /**
+     * Registers everything the server sends, in the order clients must register it.
+     */
+    private void registerWirePackets(Kryo kryo) {
+        PacketRegistrar.registerPackets(kryo);
+        if (compactBoardStates) {
+            GameBoardStateSerializer.register(kryo);
+        }
+        if (frameCompressor != null) {
+            kryo.register(CompressedFrame.class);
+        }
+        if (udpTickChannel != null && udpTickChannel.isEnabled()) {
+            kryo.register(UdpTickFrame.class);
+            kryo.register(UdpAck.class);
+        }
+    }
+
     /**
      * Sets up and starts the Kryo server, binding to the specified TCP and UDP ports.
      *
@@ -116,7 +203,23 @@ public class ServerManager implements Disposable {
 
         // Register all necessary packet classes for serialization
         PacketRegistrar.reloadConfiguration(file.getPath());
-        PacketRegistrar.registerPackets(server.getKryo());
+        registerWirePackets(server.getKryo());
+        if (compactBoardStates) {
+            log.info("Board states use the compact codec.");
+        }
+        // packets are encoded once more off the connection's buffer to measure and compress them
+        Supplier<Kryo> wireKryo = () -> {
+            Kryo kryo = new Kryo();
+            registerWirePackets(kryo);
+            return kryo;
+        };
+        if (frameCompressor != null) {
+            frameCompressor.useKryo(wireKryo);
+        }
+        if (udpTickChannel != null && udpTickChannel.isEnabled()) {
+            udpTickChannel.useKryo(wireKryo);
+            log.info("Tick broadcasts go over UDP to connections that opt in.");
+        }
         log.debug("\n" + PacketRegistrar.dumpRegisteredPackets());
 
         //LocalReg.registerPackets(server.getKryo());
@@ -124,6 +227,10 @@ public class ServerManager implements Disposable {
 
         // Add a listener to handle incoming requests
         server.addListener(new Listener.ThreadedListener(new YipeeKryoListener(yipeePacketHandler, gameContextFactory)));
+        if (udpTickChannel != null && udpTickChannel.isEnabled()) {
+            // acks are cheap; handled on the network thread so round trips are not skewed
+            server.addListener(udpTickChannel);
+        }
     }
 
     /**
@@ -192,7 +299,28 @@ public class ServerManager implements Disposable {
      * @param deltaTime The time since the last update.
      */
     public void update(float deltaTime) {
-        List<TableStateUpdateResponse> serverResponses = new LinkedList<>();
+        update(deltaTime, true);
+    }
+
+    /**
+     * Runs one simulation tick of every game and, if {@code broadcast} is set, sends
+     * the per-game tick packets. Skipping the broadcast lets a lagging loop keep the
+     * simulation rate while sending fewer updates.
+     *
+     * @param deltaTime The time since the last update.
+     * @param broadcast whether to build and send tick packets for this tick
+     */
+    public void update(float deltaTime, boolean broadcast) {
+        if (ticking.compareAndSet(false, true)) {
+            gameContextFactory.setTickLoopAttached(true);
+        }
+        // Games released by the cleanup jobs are shut down here, never mid-tick
+        gameContextFactory.shutDownReleasedGames();
+
+        long tickStart = System.nanoTime();
+        long packetBuildNanos = 0L;
+        List<TableStateUpdateResponse> serverResponses = tickResponses;
+        serverResponses.clear();
 
         for (ServerGameManager gameManager : gameContextFactory.getAllGames()) {
             // 1. Run one tick of THIS game's logic
@@ -202,16 +330,32 @@ public class ServerManager implements Disposable {
                 log.error("Error updating game {}", gameManager.getGameId(), e);
             }
 
-            // 2. Build a per-game tick packet
-            TableStateUpdateResponse tickPacket = new TableStateUpdateResponse();
+            if (!broadcast) continue;
+
+            // 2. Fill the game's reusable tick packet; sendTCP serializes it before the next tick
+            long buildStart = System.nanoTime();
+            TableStateUpdateResponse tickPacket = gameManager.getTickPacket();
             tickPacket.setServerTick(gameManager.getServerTick());  // per-game tick
             tickPacket.setGameId(gameManager.getGameId());
             tickPacket.setServerId(serverId);
             serverResponses.add(tickPacket);
+            packetBuildNanos += System.nanoTime() - buildStart;
         }
 
         // 3. Send to only active players at this table
-        broadcastServerResponses(serverResponses);
+        long tickEnd;
+        if (broadcast) {
+            long broadcastStart = System.nanoTime();
+            broadcastServerResponses(serverResponses);
+            serverResponses.clear();
+            tickEnd = System.nanoTime();
+            tickProfiler.record(TickProfiler.Phase.PACKET_BUILD, packetBuildNanos);
+            tickProfiler.record(TickProfiler.Phase.BROADCAST, tickEnd - broadcastStart);
+        } else {
+            tickEnd = System.nanoTime();
+            tickProfiler.recordBroadcastSkipped();
+        }
+        tickProfiler.recordTick(tickEnd - tickStart, (long) (deltaTime * 1_000_000_000L));
     }
 
 
@@ -224,6 +368,9 @@ public class ServerManager implements Disposable {
             log.trace("Entering Game Dispose");
 
             if (server != null) server.stop();
+            if (ticking.compareAndSet(true, false)) {
+                gameContextFactory.setTickLoopAttached(false);
+            }
             connectionsPerGame.clear();
         } catch (Exception e) {
             log.error("Error while shutting down GameServerManager", e);
@@ -78,15 +78,30 @@ public class ServerPlayerGameBoard implements Disposable {
     }
 
     public void tick(long tick, float delta, GameBoardState playerState, GameBoardState partnerState) throws JsonProcessingException {
+        tick(tick, delta, playerState, partnerState, null);
+    }
+
+    /**
+     * Same as {@link #tick(long, float, GameBoardState, GameBoardState)}, adding the board update and
+     * the export + history insert to {@code timers} when it is not {@code null}.
+     */
+    public void tick(long tick, float delta, GameBoardState playerState, GameBoardState partnerState,
+                     TickProfiler.GameTickTimers timers) throws JsonProcessingException {
         if (!isRunning || board == null) return;
         synchronized (lock) {
+            long start = System.nanoTime();
             // NOTE: partner state is injected by ServerGameManager before this tick.
             board.updateGameState(delta, playerState, partnerState);
+            long updated = System.nanoTime();
             putStateWithEviction(tick, board.exportGameState());
+            if (timers != null) {
+                timers.add(TickProfiler.Phase.BOARD_UPDATE, updated - start);
+                timers.add(TickProfiler.Phase.HISTORY_INSERT, System.nanoTime() - updated);
+            }
         }
     }
 
-    private void putStateWithEviction(long tick, GameBoardState state) {
+    void putStateWithEviction(long tick, GameBoardState state) {
         if (state == null) return;
         gameBoardStates.put(tick, state);
         if (maxHistoryTicks > 0) {
@@ -110,10 +125,8 @@ public class ServerPlayerGameBoard implements Disposable {
      * Returns the most recent game state (highest tick).
      */
     public GameBoardState getLatestGameState() {
-        return gameBoardStates.keySet().stream()
-                .max(Long::compareTo)
-                .map(gameBoardStates::get)
-                .orElse(null);
+        Map.Entry<Long, GameBoardState> entry = gameBoardStates.lastEntry();
+        return entry != null ? entry.getValue() : null;
     }
 
     /**
@@ -123,6 +136,15 @@ public class ServerPlayerGameBoard implements Disposable {
         return gameBoardStates.get(tick);
     }
 
+    /**
+     * Returns the newest state at or before {@code tick}, or {@code null} if the history
+     * does not reach back that far. Safe to call from threads other than the game loop.
+     */
+    public GameBoardState getStateAtOrBefore(long tick) {
+        Map.Entry<Long, GameBoardState> entry = gameBoardStates.floorEntry(tick);
+        return entry != null ? entry.getValue() : null;
+    }
+
     /**
      * Resets this board’s state (and optionally clears board logic).
      * @param seed optional seed for reinitializing the board
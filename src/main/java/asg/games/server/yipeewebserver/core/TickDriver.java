@@ -0,0 +1,143 @@
+package asg.games.server.yipeewebserver.core;
+
+import asg.games.server.yipeewebserver.aspects.Untraced;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Fixed-rate game loop that drives {@link ServerManager#update(float, boolean)} from its own
+ * thread, without the LibGDX backend.
+ * <p>
+ * Ticks are scheduled on an absolute {@link System#nanoTime()} timeline
+ * ({@code next += interval}), so lateness never accumulates into drift. Waiting is
+ * hybrid: the thread parks until {@code gameserver.tick.spinNanos} before the deadline
+ * and then spins with {@link Thread#onSpinWait()}, which keeps start jitter below the
+ * OS sleep granularity. How late each tick starts is recorded as {@code yipee.tick.jitter}.
+ * </p>
+ * <p>
+ * Catch-up follows the same policy as {@link YipeeServerApplication#render()}: at most
+ * {@code maxCatchUpSteps} ticks per wake-up, older ticks are dropped and counted.
+ * </p>
+ * Enabled with {@code gameserver.tick.driver=standalone}.
+ */
+@Slf4j
+@Untraced
+@Component
+@RequiredArgsConstructor
+public class TickDriver {
+    private static final String THREAD_NAME = "yipee-tick";
+
+    private final ServerManager serverManager;
+    private final TickProfiler tickProfiler;
+
+    /** Final stretch before a deadline that is busy-waited instead of parked. */
+    @Value("${gameserver.tick.spinNanos:200000}")
+    private long spinNanos;
+
+    /**
+     * Runs the tick thread at {@link Thread#MAX_PRIORITY}. Java offers no portable CPU
+     * affinity, so pinning is left to the launcher (e.g. {@code taskset}); the
+     * thread name makes it easy to find.
+     */
+    @Value("${gameserver.tick.highPriority:true}")
+    private boolean highPriority;
+
+    private volatile boolean running;
+    private Thread thread;
+
+    /**
+     * Starts the tick thread.
+     *
+     * @param tickRate            ticks per second
+     * @param maxCatchUpSteps     maximum ticks run per wake-up; older backlog is dropped
+     * @param adaptiveBroadcast   when behind, broadcast less often before dropping ticks
+     * @param maxBroadcastDivisor in adaptive mode, broadcast at least every this many ticks
+     */
+    public synchronized void start(float tickRate, int maxCatchUpSteps, boolean adaptiveBroadcast, int maxBroadcastDivisor) {
+        if (running) {
+            log.debug("TickDriver already running; ignoring start.");
+            return;
+        }
+        long intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / tickRate);
+        int maxSteps = Math.max(1, maxCatchUpSteps);
+        BroadcastThrottle throttle = new BroadcastThrottle(adaptiveBroadcast, maxBroadcastDivisor);
+
+        running = true;
+        thread = new Thread(() -> runLoop(intervalNanos, maxSteps, throttle), THREAD_NAME);
+        thread.setDaemon(true);
+        if (highPriority) {
+            thread.setPriority(Thread.MAX_PRIORITY);
+        }
+        thread.start();
+        log.info("TickDriver started: interval={}us, spin={}us, maxCatchUpSteps={}, adaptiveBroadcast={}",
+                intervalNanos / 1_000, spinNanos / 1_000, maxSteps, adaptiveBroadcast);
+    }
+
+    /**
+     * Stops the tick thread and waits for the current tick to finish.
+     */
+    public synchronized void stop() {
+        if (!running) return;
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        thread = null;
+        log.info("TickDriver stopped.");
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    private void runLoop(long intervalNanos, int maxCatchUpSteps, BroadcastThrottle throttle) {
+        float delta = intervalNanos / (float) TimeUnit.SECONDS.toNanos(1);
+        long next = System.nanoTime() + intervalNanos;
+
+        while (running) {
+            waitUntil(next);
+            if (!running) break;
+
+            long late = System.nanoTime() - next;
+            tickProfiler.recordJitter(late);
+
+            long due = late / intervalNanos + 1;
+            if (due > maxCatchUpSteps) {
+                long dropped = due - maxCatchUpSteps;
+                next += dropped * intervalNanos;
+                due = maxCatchUpSteps;
+                tickProfiler.recordDropped((int) Math.min(dropped, Integer.MAX_VALUE));
+                log.warn("Tick loop fell behind by {} ticks; dropped them (maxCatchUpSteps={})", dropped, maxCatchUpSteps);
+            }
+
+            for (int step = 0; step < due; step++) {
+                try {
+                    serverManager.update(delta, throttle.shouldBroadcast(step == due - 1));
+                } catch (RuntimeException e) {
+                    log.error("Error updating server tick.", e);
+                }
+                next += intervalNanos;
+            }
+            throttle.afterBurst((int) due);
+        }
+    }
+
+    private void waitUntil(long deadline) {
+        long remaining;
+        while (running && (remaining = deadline - System.nanoTime()) > 0) {
+            if (remaining > spinNanos) {
+                LockSupport.parkNanos(remaining - spinNanos);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
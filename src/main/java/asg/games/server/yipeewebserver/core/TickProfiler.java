@@ -0,0 +1,224 @@
+package asg.games.server.yipeewebserver.core;
+
+import asg.games.server.yipeewebserver.aspects.Untraced;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Micrometer timers for the phases of a server tick.
+ * <p>
+ * Game phases ({@link ServerGameManager#gameLoopTick(float)}) are recorded through a
+ * {@link GameTickTimers} attached to each {@link ServerGameManager}, globally and, if enabled,
+ * per game; server phases ({@link ServerManager#update(float)}) are global only. Timers publish
+ * percentile histograms so they can be scraped from {@code /actuator/metrics} or a Prometheus
+ * registry.
+ * </p>
+ * <p>
+ * Meters:
+ * <ul>
+ *     <li>{@code yipee.tick.phase{phase}} - global per-phase time per tick.</li>
+ *     <li>{@code yipee.tick.game.phase{phase,gameId}} - the same, per game; only with
+ *     {@code yipee.tick.perGameMeters}, since every game adds a set of meters.</li>
+ *     <li>{@code yipee.tick.duration} - wall time of a whole {@link ServerManager#update(float)}.</li>
+ *     <li>{@code yipee.tick.overrun} - ticks whose duration exceeded the tick interval.</li>
+ *     <li>{@code yipee.tick.jitter} - how late the standalone {@link TickDriver} started a tick.</li>
+ *     <li>{@code yipee.tick.dropped} - simulation ticks discarded by the catch-up cap.</li>
+ *     <li>{@code yipee.tick.broadcast.skipped} - ticks simulated without a broadcast.</li>
+ * </ul>
+ * </p>
+ */
+@Slf4j
+@Untraced
+@Component
+public class TickProfiler {
+    public static final String METER_PHASE = "yipee.tick.phase";
+    public static final String METER_GAME_PHASE = "yipee.tick.game.phase";
+    public static final String METER_DURATION = "yipee.tick.duration";
+    public static final String METER_OVERRUN = "yipee.tick.overrun";
+    public static final String METER_JITTER = "yipee.tick.jitter";
+    public static final String METER_DROPPED = "yipee.tick.dropped";
+    public static final String METER_BROADCAST_SKIPPED = "yipee.tick.broadcast.skipped";
+
+    private static final Duration MIN_EXPECTED = Duration.ofNanos(1_000);
+    private static final Duration MAX_EXPECTED = Duration.ofSeconds(1);
+
+    /**
+     * Measured sections of a tick. Game phases are also recorded per game.
+     */
+    @Untraced
+    public enum Phase {
+        ACTION_DRAIN(true),
+        PARTNER_INJECT(true),
+        BOARD_UPDATE(true),
+        HISTORY_INSERT(true),
+        END_CHECK(true),
+        PACKET_BUILD(false),
+        BROADCAST(false);
+
+        private final String tag = name().toLowerCase();
+        private final boolean perGame;
+
+        Phase(boolean perGame) {
+            this.perGame = perGame;
+        }
+
+        public String tag() {
+            return tag;
+        }
+    }
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final MeterRegistry registry;
+    private final boolean perGameMeters;
+    private final Timer[] globalTimers = new Timer[PHASES.length];
+    private final Timer tickDuration;
+    private final Timer tickJitter;
+    private final Counter overruns;
+    private final Counter dropped;
+    private final Counter broadcastSkipped;
+
+    public TickProfiler(MeterRegistry registry,
+                        @Value("${yipee.tick.perGameMeters:false}") boolean perGameMeters) {
+        this.registry = registry;
+        this.perGameMeters = perGameMeters;
+        for (Phase phase : PHASES) {
+            globalTimers[phase.ordinal()] = Timer.builder(METER_PHASE)
+                    .description("Time spent in one tick phase across all games")
+                    .tag("phase", phase.tag())
+                    .publishPercentileHistogram()
+                    .minimumExpectedValue(MIN_EXPECTED)
+                    .maximumExpectedValue(MAX_EXPECTED)
+                    .register(registry);
+        }
+        tickDuration = Timer.builder(METER_DURATION)
+                .description("Wall time of one server tick over all games")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(registry);
+        tickJitter = Timer.builder(METER_JITTER)
+                .description("Delay between a tick's scheduled and actual start")
+                .publishPercentileHistogram()
+                .minimumExpectedValue(MIN_EXPECTED)
+                .maximumExpectedValue(MAX_EXPECTED)
+                .register(registry);
+        overruns = Counter.builder(METER_OVERRUN)
+                .description("Server ticks that took longer than the tick interval")
+                .register(registry);
+        dropped = Counter.builder(METER_DROPPED)
+                .description("Simulation ticks discarded because the loop fell too far behind")
+                .register(registry);
+        broadcastSkipped = Counter.builder(METER_BROADCAST_SKIPPED)
+                .description("Simulation ticks run without broadcasting state")
+                .register(registry);
+    }
+
+    /**
+     * Records a global (server-level) phase.
+     */
+    public void record(Phase phase, long nanos) {
+        globalTimers[phase.ordinal()].record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Records the wall time of one server tick and counts it as an overrun if it
+     * took longer than {@code tickIntervalNanos}.
+     *
+     * @return {@code true} if the tick overran its interval
+     */
+    public boolean recordTick(long nanos, long tickIntervalNanos) {
+        tickDuration.record(nanos, TimeUnit.NANOSECONDS);
+        if (nanos > tickIntervalNanos) {
+            overruns.increment();
+            log.debug("Tick overran interval: took={}us, interval={}us", nanos / 1_000, tickIntervalNanos / 1_000);
+            return true;
+        }
+        return false;
+    }
+
+    public void recordJitter(long nanos) {
+        tickJitter.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDropped(int ticks) {
+        dropped.increment(ticks);
+    }
+
+    public void recordBroadcastSkipped() {
+        broadcastSkipped.increment();
+    }
+
+    /**
+     * Creates the per-game timers for a new game. Without {@code yipee.tick.perGameMeters}
+     * the game's phases only feed the global timers.
+     */
+    public GameTickTimers forGame(String gameId) {
+        Timer[] gameTimers = new Timer[PHASES.length];
+        if (!perGameMeters) {
+            return new GameTickTimers(this, gameTimers);
+        }
+        for (Phase phase : PHASES) {
+            if (!phase.perGame) continue;
+            gameTimers[phase.ordinal()] = Timer.builder(METER_GAME_PHASE)
+                    .description("Time spent in one tick phase for a single game")
+                    .tags("phase", phase.tag(), "gameId", gameId)
+                    .publishPercentiles(0.5, 0.95, 0.99)
+                    .register(registry);
+        }
+        return new GameTickTimers(this, gameTimers);
+    }
+
+    /**
+     * Removes the per-game meters of a released game.
+     */
+    public void release(GameTickTimers timers) {
+        if (timers == null) return;
+        for (Timer timer : timers.gameTimers) {
+            if (timer != null) registry.remove(timer);
+        }
+    }
+
+    /**
+     * Accumulates phase time for one game over a single tick and records it once per
+     * phase when the tick ends, so a phase that runs per seat (board update, history
+     * insert) produces one sample per tick. Used only by the game loop thread.
+     */
+    @Untraced
+    public static final class GameTickTimers {
+        private final TickProfiler profiler;
+        private final Timer[] gameTimers;
+        private final long[] pending = new long[PHASES.length];
+
+        private GameTickTimers(TickProfiler profiler, Timer[] gameTimers) {
+            this.profiler = profiler;
+            this.gameTimers = gameTimers;
+        }
+
+        public void add(Phase phase, long nanos) {
+            pending[phase.ordinal()] += nanos;
+        }
+
+        /**
+         * Records the accumulated phase times and resets them for the next tick.
+         */
+        public void endTick() {
+            for (int i = 0; i < pending.length; i++) {
+                long nanos = pending[i];
+                if (nanos == 0) continue;
+                if (gameTimers[i] != null) {
+                    gameTimers[i].record(nanos, TimeUnit.NANOSECONDS);
+                }
+                profiler.globalTimers[i].record(nanos, TimeUnit.NANOSECONDS);
+                pending[i] = 0;
+            }
+        }
+    }
+}
@@ -35,14 +35,25 @@ public class YipeeServerApplication extends ApplicationAdapter {
     private float tickInterval = CONST_SRV_TICK_INTERVAL;
     private float accumulator = 0f;
 
+    // Catch-up policy: at most maxCatchUpSteps ticks per frame, anything older is dropped
+    private int maxCatchUpSteps = 5;
+    private BroadcastThrottle broadcastThrottle = new BroadcastThrottle(false, 1);
+    private final TickProfiler tickProfiler;
+
     /**
      * Constructor for YipeeServerApplication.
      */
     public YipeeServerApplication(ApplicationContext appContext,
                                   YipeePacketHandler yipeePacketHandler,
-                                  GameContextFactory gameContextFactory) {
+                                  GameContextFactory gameContextFactory,
+                                  TickProfiler tickProfiler) {
         this.appContext = appContext;
-        daemon = new ServerManager(yipeePacketHandler, gameContextFactory);
+        this.tickProfiler = tickProfiler;
+        daemon = new ServerManager(yipeePacketHandler, gameContextFactory, tickProfiler);
+    }
+
+    public ServerManager getServerManager() {
+        return daemon;
     }
 
     /**
@@ -65,6 +76,20 @@ public class YipeeServerApplication extends ApplicationAdapter {
         log.debug("tick rate interval = {}.", tickInterval);
     }
 
+    /**
+     * Bounds how hard the loop tries to catch up after a stall.
+     *
+     * @param maxCatchUpSteps     maximum simulation ticks per frame; older backlog is dropped
+     * @param adaptiveBroadcast   when behind, broadcast less often before dropping simulation ticks
+     * @param maxBroadcastDivisor in adaptive mode, broadcast at least every this many ticks
+     */
+    public void setCatchUpPolicy(int maxCatchUpSteps, boolean adaptiveBroadcast, int maxBroadcastDivisor) {
+        this.maxCatchUpSteps = Math.max(1, maxCatchUpSteps);
+        this.broadcastThrottle = new BroadcastThrottle(adaptiveBroadcast, maxBroadcastDivisor);
+        log.info("Catch-up policy: maxCatchUpSteps={}, adaptiveBroadcast={}, maxBroadcastDivisor={}",
+                this.maxCatchUpSteps, adaptiveBroadcast, broadcastThrottle.getMaxDivisor());
+    }
+
     public void setForgroundFPS(int fps) {
         Gdx.graphics.setForegroundFPS(fps);
     }
@@ -91,6 +116,12 @@ public class YipeeServerApplication extends ApplicationAdapter {
 
     /**
      * Updates the server logic in fixed-timestep intervals.
+     * <p>
+     * At most {@code maxCatchUpSteps} ticks run per frame. A backlog larger than that
+     * (e.g. after a GC pause) is clamped and the discarded ticks are counted instead of
+     * being replayed back to back. In adaptive mode, catch-up ticks skip the broadcast
+     * and, while the loop keeps falling behind, only every n-th tick is broadcast.
+     * </p>
      * Captures exceptions during the update process and logs them.
      */
     @Override
@@ -103,12 +134,25 @@ public class YipeeServerApplication extends ApplicationAdapter {
             log.trace("accumulator={}", accumulator);
             log.trace("tickInterval={}", tickInterval);
 
+            float maxAccumulator = tickInterval * maxCatchUpSteps;
+            if (accumulator > maxAccumulator) {
+                int dropped = (int) ((accumulator - maxAccumulator) / tickInterval);
+                accumulator = maxAccumulator;
+                if (dropped > 0) {
+                    tickProfiler.recordDropped(dropped);
+                    log.warn("Game loop fell behind by {} ticks; dropped them (maxCatchUpSteps={})", dropped, maxCatchUpSteps);
+                }
+            }
+
             // Run game logic in fixed tick intervals
-            while (accumulator >= tickInterval) {
-                daemon.update(tickInterval);
+            int steps = 0;
+            while (accumulator >= tickInterval && steps < maxCatchUpSteps) {
                 accumulator -= tickInterval;
+                steps++;
+                daemon.update(tickInterval, broadcastThrottle.shouldBroadcast(accumulator < tickInterval));
                 log.trace("accumulator={}", accumulator);
             }
+            broadcastThrottle.afterBurst(steps);
         } catch (Exception e) {
             log.error("Error updating server thread.", e);
             throw new GdxRuntimeException("Error updating server thread.", e);
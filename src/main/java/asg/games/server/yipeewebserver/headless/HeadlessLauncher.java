@@ -1,8 +1,13 @@
 package asg.games.server.yipeewebserver.headless;
 
 import asg.games.server.yipeewebserver.core.GameContextFactory;
+import asg.games.server.yipeewebserver.core.ServerManager;
+import asg.games.server.yipeewebserver.core.TickDriver;
+import asg.games.server.yipeewebserver.core.TickProfiler;
 import asg.games.server.yipeewebserver.core.YipeeServerApplication;
+import asg.games.server.yipeewebserver.net.UdpTickChannel;
 import asg.games.server.yipeewebserver.net.YipeePacketHandler;
+import asg.games.server.yipeewebserver.net.codec.FrameCompressor;
 import asg.games.server.yipeewebserver.services.impl.YipeeGameJPAServiceImpl;
 import com.badlogic.gdx.ApplicationListener;
 import com.badlogic.gdx.backends.headless.HeadlessApplication;
@@ -10,8 +15,13 @@ import com.badlogic.gdx.backends.headless.HeadlessApplicationConfiguration;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.SpringApplication;
 import org.springframework.context.ApplicationContext;
 import org.springframework.stereotype.Component;
+import org.xml.sax.SAXException;
+
+import javax.xml.parsers.ParserConfigurationException;
+import java.io.IOException;
 
 import java.util.Arrays;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -24,6 +34,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
  *     <li>Creating and configuring a {@link HeadlessApplication} instance.</li>
  *     <li>Wiring the {@link YipeeServerApplication} with ports, tick rate, and storage.</li>
  *     <li>Exposing a {@link #shutDown()} hook to cleanly stop the headless server.</li>
+ *     <li>Alternatively ({@code gameserver.tick.driver=standalone}) running the server on a
+ *     {@link TickDriver} thread without any LibGDX backend.</li>
  * </ul>
  * It is designed to be used as a Spring-managed bean, but also provides a
  * {@code main} entry point for manual launching if needed.
@@ -33,6 +45,8 @@ import java.util.concurrent.atomic.AtomicBoolean;
 @Component
 @RequiredArgsConstructor
 public class HeadlessLauncher {
+    private static final String DRIVER_STANDALONE = "standalone";
+
     /**
      * The underlying LibGDX headless application instance.
      * <p>
@@ -59,10 +73,35 @@ public class HeadlessLauncher {
     @Value("${gameserver.logLevel}")
     private static int serverLogLevel;
 
+    @Value("${gameserver.tick.maxCatchUpSteps:5}")
+    private int maxCatchUpSteps;
+
+    @Value("${gameserver.tick.adaptiveBroadcast:false}")
+    private boolean adaptiveBroadcast;
+
+    @Value("${gameserver.tick.maxBroadcastDivisor:4}")
+    private int maxBroadcastDivisor;
+
+    /**
+     * {@code gdx} runs the loop inside a LibGDX {@link HeadlessApplication};
+     * {@code standalone} uses the {@link TickDriver} thread and no LibGDX backend.
+     */
+    @Value("${gameserver.tick.driver:gdx}")
+    private String tickDriverMode;
+
+    /** Sends board states over Kryo with the compact codec; clients must register it as well. */
+    @Value("${gameserver.net.compactStates:false}")
+    private boolean compactStates;
+
     private final YipeePacketHandler yipeePacketHandler;
     private final GameContextFactory gameContextFactory;
     private final ApplicationContext appContext;
     private final YipeeGameJPAServiceImpl yipeeGameJPAService;
+    private final TickProfiler tickProfiler;
+    private final ServerManager serverManager;
+    private final TickDriver tickDriver;
+    private final FrameCompressor frameCompressor;
+    private final UdpTickChannel udpTickChannel;
 
     /**
      * Optional standalone entry point for launching the headless server without Spring.
@@ -90,16 +129,64 @@ public class HeadlessLauncher {
             log.debug("HeadlessLauncher already started; ignoring duplicate launch.");
             return;
         }
-        log.info("Launching headless server: tcp={} udp={} tickRate={}", tcpPort, udpPort, tickRate);
+        log.info("Launching headless server: tcp={} udp={} tickRate={} driver={}", tcpPort, udpPort, tickRate, tickDriverMode);
+
+        if (isStandalone()) {
+            launchStandalone(tcpPort, udpPort, tickRate);
+            return;
+        }
 
         // Create YipeeServerApplication and pass configuration
-        YipeeServerApplication yipeeServerApplication = new YipeeServerApplication(appContext, yipeePacketHandler, gameContextFactory);
+        YipeeServerApplication yipeeServerApplication = new YipeeServerApplication(appContext, yipeePacketHandler, gameContextFactory, tickProfiler);
         yipeeServerApplication.setConfiguration(tcpPort, udpPort, tickRate, yipeeGameJPAService);
+        yipeeServerApplication.setCatchUpPolicy(maxCatchUpSteps, adaptiveBroadcast, maxBroadcastDivisor);
+        yipeeServerApplication.getServerManager().setCompactBoardStates(compactStates);
+        yipeeServerApplication.getServerManager().setFrameCompressor(frameCompressor);
+        yipeeServerApplication.getServerManager().setUdpTickChannel(udpTickChannel);
 
         // Start the LibGDX application with custom configuration
         createApplication(yipeeServerApplication);
     }
 
+    /**
+     * Starts the Kryo server and the {@link TickDriver} without a LibGDX backend.
+     */
+    private void launchStandalone(int tcpPort, int udpPort, float tickRate) {
+        serverManager.setDBService(yipeeGameJPAService);
+        serverManager.setCompactBoardStates(compactStates);
+        serverManager.setFrameCompressor(frameCompressor);
+        serverManager.setUdpTickChannel(udpTickChannel);
+        try {
+            serverManager.setUpKryoServer(tcpPort, udpPort);
+        } catch (IOException e) {
+            log.error("Error creating server thread. Cannot proceed with server set up.", e);
+            SpringApplication.exit(appContext, () -> -10);
+            return;
+        } catch (ParserConfigurationException | SAXException e) {
+            log.error("There was an issue creating the server daemon.", e);
+            SpringApplication.exit(appContext, () -> -11);
+            return;
+        }
+        tickDriver.start(tickRate, maxCatchUpSteps, adaptiveBroadcast, maxBroadcastDivisor);
+    }
+
+    /**
+     * Returns the {@link ServerManager} running the Kryo server for the active driver,
+     * or {@code null} if the server is not running.
+     */
+    public ServerManager getActiveServerManager() {
+        if (!started.get()) return null;
+        if (isStandalone()) return serverManager;
+        if (app != null && app.getApplicationListener() instanceof YipeeServerApplication yipeeServerApplication) {
+            return yipeeServerApplication.getServerManager();
+        }
+        return null;
+    }
+
+    private boolean isStandalone() {
+        return DRIVER_STANDALONE.equalsIgnoreCase(tickDriverMode);
+    }
+
     /**
      * Creates the underlying {@link HeadlessApplication} using the provided
      * {@link YipeeServerApplication} and the default configuration.
@@ -148,6 +235,12 @@ public class HeadlessLauncher {
         if (!started.compareAndSet(true, false)) {
             return; // not running
         }
+        if (isStandalone()) {
+            tickDriver.stop();
+            try { serverManager.dispose(); } catch (Throwable t) { log.warn("Error while disposing server manager", t); }
+            log.info("HeadlessLauncher stopped.");
+            return;
+        }
         if (app == null) return;
 
         try {
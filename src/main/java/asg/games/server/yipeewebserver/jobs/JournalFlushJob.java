@@ -0,0 +1,23 @@
+package asg.games.server.yipeewebserver.jobs;
+
+import asg.games.server.yipeewebserver.config.SchedulingConfig;
+import asg.games.server.yipeewebserver.replay.MatchJournalService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class JournalFlushJob {
+
+    private final MatchJournalService matchJournalService;
+
+    @Scheduled(fixedDelayString = "${yipee.journal.forceMs:1000}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void runJournalFlush() {
+        if (matchJournalService.isEnabled()) {
+            matchJournalService.forceAll();
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package asg.games.server.yipeewebserver.jobs;
+
+import asg.games.server.yipeewebserver.config.SchedulingConfig;
+import asg.games.server.yipeewebserver.services.MatchmakingService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class MatchmakingJob {
+
+    private final MatchmakingService matchmakingService;
+
+    @Scheduled(fixedDelayString = "${yipee.matchmaking.intervalMs:250}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void runMatchmaking() {
+        matchmakingService.formMatches();
+    }
+}
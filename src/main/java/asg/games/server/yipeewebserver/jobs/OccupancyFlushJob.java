@@ -0,0 +1,21 @@
+package asg.games.server.yipeewebserver.jobs;
+
+import asg.games.server.yipeewebserver.config.SchedulingConfig;
+import asg.games.server.yipeewebserver.services.TableOccupancyIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class OccupancyFlushJob {
+
+    private final TableOccupancyIndex tableOccupancyIndex;
+
+    @Scheduled(fixedDelayString = "${yipee.tables.occupancyFlushMs:1000}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void runOccupancyFlush() {
+        tableOccupancyIndex.flush();
+    }
+}
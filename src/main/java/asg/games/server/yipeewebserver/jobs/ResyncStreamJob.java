@@ -0,0 +1,24 @@
+package asg.games.server.yipeewebserver.jobs;
+
+import asg.games.server.yipeewebserver.config.SchedulingConfig;
+import asg.games.server.yipeewebserver.net.ResyncService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Streams the next chunks of pending resyncs, off the tick thread.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ResyncStreamJob {
+
+    private final ResyncService resyncService;
+
+    @Scheduled(fixedDelayString = "${yipee.resync.intervalMs:50}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void runResyncStream() {
+        resyncService.streamChunks();
+    }
+}
@@ -0,0 +1,81 @@
+package asg.games.server.yipeewebserver.jobs;
+
+import asg.games.server.yipeewebserver.config.SchedulingConfig;
+import asg.games.server.yipeewebserver.services.SeatAllocator;
+import asg.games.server.yipeewebserver.services.impl.YipeeGameJPAServiceImpl;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes Play Now seat reservations held by {@link SeatAllocator} to the database in batches.
+ * <p>
+ * If a batch fails, its reservations are written one per transaction so a single bad one
+ * cannot hold the rest back. A reservation that keeps failing is dropped after
+ * {@code yipee.seats.confirmAttempts} tries.
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SeatConfirmJob {
+
+    private final SeatAllocator seatAllocator;
+    private final YipeeGameJPAServiceImpl yipeeGameService;
+
+    /** Failed writes per reservation; only touched by the scheduled run. */
+    private final Map<SeatAllocator.Reservation, Integer> failures = new HashMap<>();
+
+    @Value("${yipee.seats.confirmBatch:500}")
+    private int batchSize;
+
+    @Value("${yipee.seats.confirmAttempts:10}")
+    private int maxAttempts;
+
+    @Scheduled(fixedDelayString = "${yipee.seats.confirmMs:200}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void runSeatConfirm() {
+        List<SeatAllocator.Reservation> batch;
+        do {
+            batch = seatAllocator.drainPending(batchSize);
+            if (batch.isEmpty()) return;
+            try {
+                int seated = yipeeGameService.confirmSeatReservations(batch);
+                log.debug("Confirmed {} of {} seat reservations", seated, batch.size());
+            } catch (RuntimeException e) {
+                log.warn("Failed to confirm {} seat reservations, retrying one at a time", batch.size(), e);
+                if (!confirmEach(batch)) return;
+            }
+            batch.forEach(failures::remove);
+        } while (batch.size() == batchSize);
+    }
+
+    /**
+     * @return {@code false} if any reservation failed again
+     */
+    private boolean confirmEach(List<SeatAllocator.Reservation> batch) {
+        boolean allConfirmed = true;
+        for (SeatAllocator.Reservation reservation : batch) {
+            try {
+                yipeeGameService.confirmSeatReservations(List.of(reservation));
+                failures.remove(reservation);
+            } catch (RuntimeException e) {
+                allConfirmed = false;
+                int attempts = failures.merge(reservation, 1, Integer::sum);
+                if (attempts < maxAttempts) {
+                    seatAllocator.requeue(List.of(reservation));
+                } else {
+                    log.warn("Dropping seat reservation after {} failed attempts: {}", attempts, reservation, e);
+                    failures.remove(reservation);
+                    seatAllocator.drop(reservation);
+                }
+            }
+        }
+        return allConfirmed;
+    }
+}
@@ -0,0 +1,24 @@
+package asg.games.server.yipeewebserver.jobs;
+
+import asg.games.server.yipeewebserver.config.SchedulingConfig;
+import asg.games.server.yipeewebserver.net.SpectatorBroadcaster;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Publishes the delayed spectator frames, off the tick thread.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class SpectatorBroadcastJob {
+
+    private final SpectatorBroadcaster spectatorBroadcaster;
+
+    @Scheduled(fixedDelayString = "${yipee.spectator.intervalMs:500}", scheduler = SchedulingConfig.REALTIME_SCHEDULER)
+    public void runSpectatorBroadcast() {
+        spectatorBroadcaster.publishFrames();
+    }
+}
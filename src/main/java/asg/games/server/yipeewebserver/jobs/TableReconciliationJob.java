@@ -13,8 +13,14 @@ public class TableReconciliationJob {
 
     private final YipeeCleanupService cleanupService;
 
-    @Scheduled(fixedDelayString = "${yipee.tables.reconcileMs:60000}")
+    @Scheduled(fixedDelayString = "${yipee.tables.reconcileMs:600000}")
     public void runTableReconciliations() {
+        cleanupService.reconcileDirtyTables();
+    }
+
+    @Scheduled(fixedDelayString = "${yipee.tables.fullReconcileMs:3600000}",
+            initialDelayString = "${yipee.tables.fullReconcileMs:3600000}")
+    public void runFullTableReconciliation() {
         cleanupService.reconcileTableActivity();
     }
 }
\ No newline at end of file
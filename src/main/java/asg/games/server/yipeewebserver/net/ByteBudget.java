@@ -0,0 +1,47 @@
+package asg.games.server.yipeewebserver.net;
+
+/**
+ * Bytes per second a background sender may hand to WebSocket sessions, refilled
+ * continuously and holding at most one second's worth. Not thread-safe; each sender
+ * owns one and only uses it from its scheduler thread.
+ * <p>
+ * The budget may go negative: the message that overdraws it is still sent whole, and
+ * the following passes pay it back.
+ * </p>
+ */
+final class ByteBudget {
+    private long bytesPerSecond;
+    private double bytes;
+    private long lastRefillNanos;
+
+    /**
+     * Tops the budget up for the time since the last refill.
+     *
+     * @param bytesPerSecond current limit; {@code 0} disables the budget
+     */
+    void refill(long bytesPerSecond) {
+        refill(bytesPerSecond, System.nanoTime());
+    }
+
+    void refill(long bytesPerSecond, long nowNanos) {
+        this.bytesPerSecond = bytesPerSecond;
+        if (lastRefillNanos == 0L) {
+            bytes = bytesPerSecond;
+        } else {
+            double earned = (nowNanos - lastRefillNanos) / 1_000_000_000d * bytesPerSecond;
+            bytes = Math.min(bytesPerSecond, bytes + earned);
+        }
+        lastRefillNanos = nowNanos;
+    }
+
+    /**
+     * {@code true} once nothing more may be sent until the next refill.
+     */
+    boolean isSpent() {
+        return bytesPerSecond > 0 && bytes <= 0;
+    }
+
+    void spend(long sent) {
+        bytes -= sent;
+    }
+}
@@ -0,0 +1,330 @@
+package asg.games.server.yipeewebserver.net;
+
+import asg.games.server.yipeewebserver.aspects.Untraced;
+import asg.games.server.yipeewebserver.core.GameContextFactory;
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.server.yipeewebserver.net.api.ResyncDelta;
+import asg.games.server.yipeewebserver.net.api.ResyncKeyframe;
+import asg.games.server.yipeewebserver.net.codec.FrameCompressor;
+import asg.games.yipee.common.game.GameBoardState;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Catches a player who reconnects mid-game up with the live game.
+ * <p>
+ * A resync sends the latest keyframe of the game, one {@link ResyncKeyframe} chunk per occupied
+ * seat all taken at the same tick, then a {@link ResyncDelta} with the seats whose board changed
+ * while the keyframe was streaming. Once the delta marked {@code complete} arrives, the client
+ * follows the live traffic. States come from the seats' concurrent state history, so the
+ * tick thread does no work for resyncs.
+ * </p>
+ * <p>
+ * Chunks are streamed by {@link #streamChunks()} (run by {@code ResyncStreamJob} every
+ * {@code yipee.resync.intervalMs}), at most {@code yipee.resync.chunksPerPass} per resync and
+ * pass, so one small message at a time sits in the connection ahead of its normal traffic.
+ * A reconnect storm is held back three ways: at most {@code yipee.resync.maxActive} resyncs
+ * stream at once while the rest wait in arrival order, no more than {@code yipee.resync.maxQueued}
+ * may wait, and all resync traffic shares a budget of {@code yipee.resync.maxBytesPerSecond}.
+ * Chunks are compressed with {@link FrameCompressor} if the client negotiated it.
+ * </p>
+ * <p>
+ * Meters:
+ * <ul>
+ *     <li>{@code yipee.resync.active} - resyncs streaming.</li>
+ *     <li>{@code yipee.resync.queued} - resyncs waiting for a streaming slot.</li>
+ *     <li>{@code yipee.resync.chunks{kind}} - {@code keyframe} and {@code delta} chunks sent.</li>
+ *     <li>{@code yipee.resync.bytes} - bytes sent.</li>
+ *     <li>{@code yipee.resync.completed{result}} - resyncs {@code done}, {@code aborted} by a closed
+ *     session or ended game, or {@code rejected} because the queue was full.</li>
+ *     <li>{@code yipee.resync.duration} - time from request to the complete delta, queueing included.</li>
+ * </ul>
+ * </p>
+ */
+@Slf4j
+@Untraced
+@Component
+public class ResyncService {
+    public static final String METER_ACTIVE = "yipee.resync.active";
+    public static final String METER_QUEUED = "yipee.resync.queued";
+    public static final String METER_CHUNKS = "yipee.resync.chunks";
+    public static final String METER_BYTES = "yipee.resync.bytes";
+    public static final String METER_COMPLETED = "yipee.resync.completed";
+    public static final String METER_DURATION = "yipee.resync.duration";
+
+    public static final String PACKET_KEYFRAME = "ResyncKeyframe";
+    public static final String PACKET_DELTA = "ResyncDelta";
+
+    private final GameContextFactory gameContextFactory;
+    private final ObjectMapper objectMapper;
+    private final FrameCompressor frameCompressor;
+
+    /** Resyncs waiting for a streaming slot, in arrival order. */
+    private final Queue<Resync> waiting = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger waitingCount = new AtomicInteger();
+    /** WebSocket session id → its resync; a session has at most one. */
+    private final Map<String, Resync> bySession = new ConcurrentHashMap<>();
+    /** Only used by the streaming thread. */
+    private final List<Resync> active = new ArrayList<>();
+    private final AtomicInteger activeCount = new AtomicInteger();
+
+    private final Counter keyframeChunks;
+    private final Counter deltaChunks;
+    private final Counter bytesSent;
+    private final Counter done;
+    private final Counter aborted;
+    private final Counter rejected;
+    private final Timer duration;
+
+    // Only used by the streaming thread.
+    private final ByteBudget budget = new ByteBudget();
+    private int rotation;
+
+    @Value("${yipee.resync.maxActive:32}")
+    private int maxActive;
+
+    @Value("${yipee.resync.maxQueued:1024}")
+    private int maxQueued;
+
+    @Value("${yipee.resync.chunksPerPass:2}")
+    private int chunksPerPass;
+
+    /** Resync bytes per second across all sessions; {@code 0} disables the budget. */
+    @Value("${yipee.resync.maxBytesPerSecond:2097152}")
+    private long maxBytesPerSecond;
+
+    public enum Admission { QUEUED, UNKNOWN_GAME, BUSY }
+
+    /** Wire shape of a chunk, matching {@code WsPacketEnvelope}. */
+    record ChunkEnvelope(String packetType, Object payload) {}
+
+    /** One session's resync; its progress is only touched by the streaming thread. */
+    private static final class Resync {
+        final String gameId;
+        final WebSocketSession session;
+        final FrameCompressor.Codec compression;
+        final long requestedNanos = System.nanoTime();
+        volatile boolean cancelled;
+
+        /** Occupied seats at {@link #keyframeTick}; {@code null} until the first chunk. */
+        List<Map.Entry<Integer, GameBoardState>> keyframe;
+        long keyframeTick;
+        int nextChunk;
+        final Map<Integer, GameBoardState> sent = new HashMap<>();
+
+        Resync(String gameId, WebSocketSession session, FrameCompressor.Codec compression) {
+            this.gameId = gameId;
+            this.session = session;
+            this.compression = compression;
+        }
+    }
+
+    public ResyncService(GameContextFactory gameContextFactory,
+                         ObjectMapper objectMapper,
+                         FrameCompressor frameCompressor,
+                         MeterRegistry meterRegistry) {
+        this.gameContextFactory = gameContextFactory;
+        this.objectMapper = objectMapper;
+        this.frameCompressor = frameCompressor;
+        Gauge.builder(METER_ACTIVE, activeCount, AtomicInteger::get)
+                .description("Resyncs streaming")
+                .register(meterRegistry);
+        Gauge.builder(METER_QUEUED, waitingCount, AtomicInteger::get)
+                .description("Resyncs waiting for a streaming slot")
+                .register(meterRegistry);
+        keyframeChunks = chunks(meterRegistry, "keyframe");
+        deltaChunks = chunks(meterRegistry, "delta");
+        bytesSent = Counter.builder(METER_BYTES)
+                .description("Bytes sent to resyncing sessions")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        done = completed(meterRegistry, "done");
+        aborted = completed(meterRegistry, "aborted");
+        rejected = completed(meterRegistry, "rejected");
+        duration = Timer.builder(METER_DURATION)
+                .description("Time from resync request to the complete delta")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private static Counter chunks(MeterRegistry registry, String kind) {
+        return Counter.builder(METER_CHUNKS)
+                .description("Resync chunks sent by kind")
+                .tag("kind", kind)
+                .register(registry);
+    }
+
+    private static Counter completed(MeterRegistry registry, String result) {
+        return Counter.builder(METER_COMPLETED)
+                .description("Resyncs by outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    /**
+     * Queues a resync of {@code gameId} for {@code session}, replacing any it already had.
+     * {@code session} must be the connection's decorated session from {@link YipeeWebSocketHandler}.
+     *
+     * @param compression codec to compress chunks with, or {@code null}
+     */
+    public Admission start(String gameId, WebSocketSession session, FrameCompressor.Codec compression) {
+        if (gameId == null || gameContextFactory.getGame(gameId) == null) {
+            return Admission.UNKNOWN_GAME;
+        }
+        cancel(session);
+        if (waitingCount.get() >= maxQueued) {
+            rejected.increment();
+            return Admission.BUSY;
+        }
+        Resync resync = new Resync(gameId, session, compression);
+        bySession.put(session.getId(), resync);
+        waitingCount.incrementAndGet();
+        waiting.add(resync);
+        log.debug("Session {} queued for resync of game {}", session.getId(), gameId);
+        return Admission.QUEUED;
+    }
+
+    /**
+     * Drops the resync of {@code session}, if any; its chunks stop with the next pass.
+     */
+    public void cancel(WebSocketSession session) {
+        Resync resync = bySession.remove(session.getId());
+        if (resync != null) {
+            resync.cancelled = true;
+        }
+    }
+
+    /**
+     * Sends the next chunks of the streaming resyncs within the bandwidth budget, admitting
+     * waiting ones as slots free up. Called from a single scheduler thread.
+     */
+    public void streamChunks() {
+        admit();
+        if (active.isEmpty()) return;
+        budget.refill(maxBytesPerSecond);
+
+        int count = active.size();
+        int start = Math.floorMod(rotation++, count);
+        List<Resync> finished = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            Resync resync = active.get((start + i) % count);
+            ServerGameManager game = gameContextFactory.getGame(resync.gameId);
+            if (resync.cancelled || !resync.session.isOpen() || game == null) {
+                aborted.increment();
+                finished.add(resync);
+                continue;
+            }
+            for (int chunk = 0; chunk < chunksPerPass; chunk++) {
+                if (budget.isSpent()) break;
+                long bytes = sendNextChunk(resync, game);
+                if (bytes < 0) {
+                    finished.add(resync);
+                    break;
+                }
+                budget.spend(bytes);
+                bytesSent.increment(bytes);
+            }
+        }
+        for (Resync resync : finished) {
+            active.remove(resync);
+            bySession.remove(resync.session.getId(), resync);
+        }
+        activeCount.set(active.size());
+    }
+
+    private void admit() {
+        while (active.size() < maxActive) {
+            Resync resync = waiting.poll();
+            if (resync == null) break;
+            waitingCount.decrementAndGet();
+            if (!resync.cancelled) {
+                active.add(resync);
+            }
+        }
+        activeCount.set(active.size());
+    }
+
+    /**
+     * Sends the resync's next keyframe chunk, or its delta once the keyframe is out.
+     *
+     * @return bytes sent, or {@code -1} when the resync is over (complete or failed)
+     */
+    private long sendNextChunk(Resync resync, ServerGameManager game) {
+        if (resync.keyframe == null) {
+            resync.keyframeTick = game.getServerTick();
+            resync.keyframe = new ArrayList<>(game.exportPerSeatAtOrBefore(resync.keyframeTick).entrySet());
+            resync.keyframe.sort(Map.Entry.comparingByKey());
+        }
+
+        if (resync.nextChunk < resync.keyframe.size()) {
+            int chunk = resync.nextChunk++;
+            Map.Entry<Integer, GameBoardState> seat = resync.keyframe.get(chunk);
+            resync.sent.put(seat.getKey(), seat.getValue());
+            long bytes = send(resync, PACKET_KEYFRAME, new ResyncKeyframe(resync.gameId, resync.keyframeTick,
+                    chunk, resync.keyframe.size(), seat.getKey(), seat.getValue()));
+            if (bytes >= 0) keyframeChunks.increment();
+            return bytes;
+        }
+
+        // seats whose state moved on while the keyframe was streaming
+        long toTick = game.getServerTick();
+        Map<Integer, GameBoardState> changed = new HashMap<>();
+        for (Map.Entry<Integer, GameBoardState> seat : game.exportPerSeatAtOrBefore(toTick).entrySet()) {
+            if (resync.sent.get(seat.getKey()) != seat.getValue()) {
+                changed.put(seat.getKey(), seat.getValue());
+            }
+        }
+        long bytes = send(resync, PACKET_DELTA, new ResyncDelta(resync.gameId, resync.keyframeTick, toTick, changed, true));
+        if (bytes >= 0) {
+            deltaChunks.increment();
+            budget.spend(bytes);
+            bytesSent.increment(bytes);
+            done.increment();
+            duration.record(System.nanoTime() - resync.requestedNanos, TimeUnit.NANOSECONDS);
+            log.debug("Session {} resynced to tick {} of game {}", resync.session.getId(), toTick, resync.gameId);
+        }
+        return -1;
+    }
+
+    /**
+     * @return bytes sent, or {@code -1} if the chunk could not be encoded or sent
+     */
+    private long send(Resync resync, String packetType, Object payload) {
+        WebSocketSession session = resync.session;
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(new ChunkEnvelope(packetType, payload));
+            byte[] frame = resync.compression != null
+                    ? frameCompressor.compress(resync.compression, json, FrameCompressor.TRANSPORT_WS)
+                    : null;
+            WebSocketMessage<?> message = frame != null ? new BinaryMessage(frame) : new TextMessage(json);
+            session.sendMessage(message);
+            return message.getPayloadLength();
+        } catch (IOException | SessionLimitExceededException e) {
+            log.debug("Aborting resync of session {} after failed send", session.getId(), e);
+            aborted.increment();
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package asg.games.server.yipeewebserver.net;
+
+import asg.games.server.yipeewebserver.aspects.Untraced;
+import asg.games.server.yipeewebserver.core.GameContextFactory;
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.server.yipeewebserver.net.api.SpectatorSnapshot;
+import asg.games.server.yipeewebserver.net.codec.CompactStateCodec;
+import asg.games.server.yipeewebserver.net.codec.FrameCompressor;
+import asg.games.yipee.common.game.GameBoardState;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spectator channel: a low-rate, delayed snapshot stream per game, shared by all of its watchers.
+ * <p>
+ * Players get every tick from {@link asg.games.server.yipeewebserver.core.ServerManager} on the
+ * tick thread. Watchers do not: {@link #publishFrames()} (run by {@code SpectatorBroadcastJob}
+ * every {@code yipee.spectator.intervalMs}) reads each watched game's state history as it was
+ * {@code yipee.spectator.delayMs} ago, encodes it once into a single {@link TextMessage} and
+ * hands that same message to every watcher of the game. The tick thread does no work for
+ * spectators, and a game with hundreds of watchers costs one encode per frame.
+ * Watchers that ask for the compact encoding get a {@link BinaryMessage} in the
+ * {@link CompactStateCodec} layout instead; each encoding is built only if some watcher of
+ * the game uses it. Watchers whose client negotiated compression get the frame compressed by
+ * {@link FrameCompressor}, again once per frame however many of them there are.
+ * </p>
+ * <p>
+ * Watchers are the connections' {@link ConcurrentWebSocketSessionDecorator} sessions from
+ * {@link YipeeWebSocketHandler}, which also carry the connection's replies and so never drop
+ * what is queued. A watcher whose connection already has more than
+ * {@code yipee.spectator.bufferSizeLimit} bytes queued skips the frame instead, so a slow
+ * watcher loses frames without holding up the others or losing its replies. All spectator traffic shares a budget of
+ * {@code yipee.spectator.maxBytesPerSecond}. Games are served in rotating order, and once the
+ * budget is spent the remaining games skip the frame and are counted as dropped.
+ * </p>
+ * <p>
+ * Meters:
+ * <ul>
+ *     <li>{@code yipee.spectator.watchers} - sessions currently watching a game.</li>
+ *     <li>{@code yipee.spectator.frames{result}} - frames {@code sent} or dropped for {@code budget};
+ *     {@code backlog} counts frames skipped for one backed-up watcher.</li>
+ *     <li>{@code yipee.spectator.bytes} - bytes handed to watcher sessions.</li>
+ *     <li>{@code yipee.spectator.encode{encoding}} - time to encode one game's snapshot.</li>
+ *     <li>{@code yipee.spectator.fanout} - time to hand one frame to all watchers of a game.</li>
+ * </ul>
+ * </p>
+ */
+@Slf4j
+@Untraced
+@Component
+public class SpectatorBroadcaster {
+    public static final String METER_WATCHERS = "yipee.spectator.watchers";
+    public static final String METER_FRAMES = "yipee.spectator.frames";
+    public static final String METER_BYTES = "yipee.spectator.bytes";
+    public static final String METER_ENCODE = "yipee.spectator.encode";
+    public static final String METER_FANOUT = "yipee.spectator.fanout";
+
+    public static final String PACKET_SNAPSHOT = "SpectatorSnapshot";
+
+    private final GameContextFactory gameContextFactory;
+    private final ObjectMapper objectMapper;
+    private final FrameCompressor frameCompressor;
+
+    /** gameId → watchers of that game. */
+    private final Map<String, Set<Watcher>> watchersByGame = new ConcurrentHashMap<>();
+    /** WebSocket session id → its watch; a session watches at most one game. */
+    private final Map<String, Watcher> watchersBySession = new ConcurrentHashMap<>();
+    /** gameId → tick of the last frame sent, so an idle game is not re-sent. */
+    private final Map<String, Long> lastSentTick = new ConcurrentHashMap<>();
+
+    private final Counter framesSent;
+    private final Counter framesDropped;
+    private final Counter framesBacklogged;
+    private final Counter bytesSent;
+    private final Timer jsonEncodeTimer;
+    private final Timer compactEncodeTimer;
+    private final Timer fanoutTimer;
+    /** Only used by the publishing thread. */
+    private final CompactStateCodec compactCodec = new CompactStateCodec();
+
+    // Only used by the publishing thread.
+    private final ByteBudget budget = new ByteBudget();
+    private int rotation;
+
+    @Value("${yipee.spectator.delayMs:3000}")
+    private long delayMs;
+
+    /** Spectator bytes per second across all games; {@code 0} disables the budget. */
+    @Value("${yipee.spectator.maxBytesPerSecond:4194304}")
+    private long maxBytesPerSecond;
+
+    /** Bytes already queued for a watcher's connection above which it skips frames. */
+    @Value("${yipee.spectator.bufferSizeLimit:262144}")
+    private int bufferSizeLimit;
+
+    @Value("${gameserver.tickrate:30.0}")
+    private float tickRate;
+
+    /**
+     * One watching session; {@code session} is the decorated session all sends to it go through.
+     *
+     * @param compact     receives binary {@link CompactStateCodec} frames instead of JSON
+     * @param compression codec its client negotiated, or {@code null}
+     */
+    record Watcher(String gameId, WebSocketSession session, boolean compact, FrameCompressor.Codec compression) {}
+
+    /** Wire shape of a frame, matching {@code WsPacketEnvelope}. */
+    record SnapshotEnvelope(String packetType, SpectatorSnapshot payload) {}
+
+    public SpectatorBroadcaster(GameContextFactory gameContextFactory,
+                                ObjectMapper objectMapper,
+                                FrameCompressor frameCompressor,
+                                MeterRegistry meterRegistry) {
+        this.gameContextFactory = gameContextFactory;
+        this.objectMapper = objectMapper;
+        this.frameCompressor = frameCompressor;
+        Gauge.builder(METER_WATCHERS, watchersBySession, Map::size)
+                .description("Sessions watching a game")
+                .register(meterRegistry);
+        framesSent = Counter.builder(METER_FRAMES)
+                .description("Spectator frames by outcome")
+                .tag("result", "sent")
+                .register(meterRegistry);
+        framesDropped = Counter.builder(METER_FRAMES)
+                .description("Spectator frames by outcome")
+                .tag("result", "budget")
+                .register(meterRegistry);
+        framesBacklogged = Counter.builder(METER_FRAMES)
+                .description("Spectator frames by outcome")
+                .tag("result", "backlog")
+                .register(meterRegistry);
+        bytesSent = Counter.builder(METER_BYTES)
+                .description("Bytes sent to spectators")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        jsonEncodeTimer = Timer.builder(METER_ENCODE)
+                .description("Time to encode one spectator snapshot")
+                .tag("encoding", "json")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        compactEncodeTimer = Timer.builder(METER_ENCODE)
+                .description("Time to encode one spectator snapshot")
+                .tag("encoding", "compact")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        fanoutTimer = Timer.builder(METER_FANOUT)
+                .description("Time to hand one spectator frame to every watcher of a game")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Starts streaming {@code gameId} to {@code session}, replacing whatever it watched before.
+     * {@code session} must be the connection's decorated session from {@link YipeeWebSocketHandler}.
+     *
+     * @param compact     send binary {@link CompactStateCodec} frames instead of JSON
+     * @param compression codec to compress frames with, or {@code null}
+     * @return {@code false} if no such game is running
+     */
+    public boolean watch(String gameId, WebSocketSession session, boolean compact, FrameCompressor.Codec compression) {
+        if (gameId == null || gameContextFactory.getGame(gameId) == null) {
+            return false;
+        }
+        unwatch(session);
+        Watcher watcher = new Watcher(gameId, session, compact, compression);
+        watchersBySession.put(session.getId(), watcher);
+        // add inside compute so it cannot race removeWatcher dropping an emptied set
+        watchersByGame.compute(gameId, (id, set) -> {
+            Set<Watcher> watchers = set != null ? set : ConcurrentHashMap.newKeySet();
+            watchers.add(watcher);
+            return watchers;
+        });
+        log.debug("Session {} watching game {}", session.getId(), gameId);
+        return true;
+    }
+
+    /**
+     * Stops streaming to {@code session}. Does nothing if it was not watching.
+     */
+    public void unwatch(WebSocketSession session) {
+        Watcher watcher = watchersBySession.remove(session.getId());
+        if (watcher != null) {
+            removeWatcher(watcher);
+        }
+    }
+
+    public boolean isWatching(WebSocketSession session) {
+        return watchersBySession.containsKey(session.getId());
+    }
+
+    public long getDelayMs() {
+        return delayMs;
+    }
+
+    /**
+     * Sends one delayed frame of every watched game within the bandwidth budget.
+     * Called from a single scheduler thread.
+     */
+    public void publishFrames() {
+        if (watchersByGame.isEmpty()) return;
+        budget.refill(maxBytesPerSecond);
+
+        long delayTicks = Math.max(0L, (long) (delayMs * tickRate / 1_000f));
+        List<String> gameIds = new ArrayList<>(watchersByGame.keySet());
+        int count = gameIds.size();
+        int start = Math.floorMod(rotation++, count);
+
+        for (int i = 0; i < count; i++) {
+            String gameId = gameIds.get((start + i) % count);
+            Set<Watcher> watchers = watchersByGame.get(gameId);
+            if (watchers == null || watchers.isEmpty()) continue;
+
+            ServerGameManager game = gameContextFactory.getGame(gameId);
+            if (game == null) {
+                dropGame(gameId);
+                continue;
+            }
+
+            long tick = game.getServerTick() - delayTicks;
+            if (tick <= 0 || lastSentTick.getOrDefault(gameId, 0L) >= tick) continue;
+
+            if (budget.isSpent()) {
+                framesDropped.increment();
+                continue;
+            }
+
+            Map<Integer, GameBoardState> seats = game.exportPerSeatAtOrBefore(tick);
+            if (seats.isEmpty()) continue;
+            lastSentTick.put(gameId, tick);
+
+            long fanoutStart = System.nanoTime();
+            long bytes = fanOut(watchers, new Frame(new SpectatorSnapshot(gameId, tick, delayTicks, seats)));
+            fanoutTimer.record(System.nanoTime() - fanoutStart, TimeUnit.NANOSECONDS);
+
+            budget.spend(bytes);
+            bytesSent.increment(bytes);
+            framesSent.increment();
+        }
+    }
+
+    /**
+     * One game's snapshot and its encodings, each built on first use.
+     */
+    private final class Frame {
+        private final SpectatorSnapshot snapshot;
+        private TextMessage json;
+        private BinaryMessage compact;
+        private boolean failed;
+        /** Per codec, the message sent to compressing watchers: compressed, or the plain one if that did not pay off. */
+        private final WebSocketMessage<?>[] compressedJson = new WebSocketMessage<?>[FrameCompressor.Codec.values().length];
+        private final WebSocketMessage<?>[] compressedCompact = new WebSocketMessage<?>[FrameCompressor.Codec.values().length];
+
+        private Frame(SpectatorSnapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        WebSocketMessage<?> messageFor(Watcher watcher) {
+            WebSocketMessage<?> plain = watcher.compact() ? compact() : json();
+            FrameCompressor.Codec codec = watcher.compression();
+            if (codec == null || plain == null) return plain;
+            WebSocketMessage<?>[] compressed = watcher.compact() ? compressedCompact : compressedJson;
+            if (compressed[codec.ordinal()] == null) {
+                byte[] raw = watcher.compact() ? compact.getPayload().array() : json.asBytes();
+                byte[] frame = frameCompressor.compress(codec, raw, FrameCompressor.TRANSPORT_WS);
+                compressed[codec.ordinal()] = frame != null ? new BinaryMessage(frame) : plain;
+            }
+            return compressed[codec.ordinal()];
+        }
+
+        private TextMessage json() {
+            if (json == null && !failed) {
+                long start = System.nanoTime();
+                try {
+                    json = new TextMessage(objectMapper.writeValueAsBytes(new SnapshotEnvelope(PACKET_SNAPSHOT, snapshot)));
+                } catch (JsonProcessingException e) {
+                    failed = true;
+                    log.warn("Could not encode spectator snapshot of game {}", snapshot.gameId(), e);
+                }
+                jsonEncodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            return json;
+        }
+
+        private BinaryMessage compact() {
+            if (compact == null) {
+                long start = System.nanoTime();
+                compact = new BinaryMessage(compactCodec.encodeSnapshot(snapshot));
+                compactEncodeTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            }
+            return compact;
+        }
+    }
+
+    /**
+     * Hands the frame to every open watcher.
+     *
+     * @return bytes sent
+     */
+    private long fanOut(Set<Watcher> watchers, Frame frame) {
+        long bytes = 0L;
+        for (Watcher watcher : watchers) {
+            WebSocketSession session = watcher.session();
+            if (!session.isOpen()) {
+                dropWatcher(watcher);
+                continue;
+            }
+            if (isBackedUp(session)) {
+                framesBacklogged.increment();
+                continue;
+            }
+            WebSocketMessage<?> message = frame.messageFor(watcher);
+            if (message == null) continue;
+            try {
+                session.sendMessage(message);
+                bytes += message.getPayloadLength();
+            } catch (IOException | SessionLimitExceededException e) {
+                log.debug("Dropping spectator {} after failed send", session.getId(), e);
+                dropWatcher(watcher);
+            }
+        }
+        return bytes;
+    }
+
+    private boolean isBackedUp(WebSocketSession session) {
+        return session instanceof ConcurrentWebSocketSessionDecorator decorator
+                && decorator.getBufferSize() > bufferSizeLimit;
+    }
+
+    private void dropWatcher(Watcher watcher) {
+        watchersBySession.remove(watcher.session().getId(), watcher);
+        removeWatcher(watcher);
+    }
+
+    private void removeWatcher(Watcher watcher) {
+        watchersByGame.computeIfPresent(watcher.gameId(), (id, set) -> {
+            set.remove(watcher);
+            if (!set.isEmpty()) return set;
+            lastSentTick.remove(id);
+            return null;
+        });
+    }
+
+    /**
+     * Forgets a game that is no longer running along with its watchers.
+     */
+    private void dropGame(String gameId) {
+        Set<Watcher> watchers = watchersByGame.remove(gameId);
+        lastSentTick.remove(gameId);
+        if (watchers == null) return;
+        for (Watcher watcher : watchers) {
+            watchersBySession.remove(watcher.session().getId(), watcher);
+        }
+        log.debug("Game {} ended; released {} spectators", gameId, watchers.size());
+    }
+}
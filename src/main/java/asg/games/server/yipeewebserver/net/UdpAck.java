@@ -0,0 +1,14 @@
+package asg.games.server.yipeewebserver.net;
+
+/**
+ * Sent by the client over UDP to receive tick broadcasts on {@link UdpTickChannel}: once after
+ * connecting (with zeros) to opt in, then every few frames and at least every
+ * {@code gameserver.udp.ackTimeoutMs / 4} while frames arrive. While ticks arrive over TCP
+ * instead, sending one every few seconds moves the connection back to UDP once it can be.
+ */
+public class UdpAck {
+    /** Highest {@link UdpTickFrame#sequence} received. */
+    public long sequence;
+    /** Frames received so far, counting each sequence once. */
+    public long received;
+}
@@ -0,0 +1,318 @@
+package asg.games.server.yipeewebserver.net;
+
+import asg.games.server.yipeewebserver.aspects.Untraced;
+import asg.games.server.yipeewebserver.net.api.UdpLinkStats;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryonet.Connection;
+import com.esotericsoftware.kryonet.Listener;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Unreliable channel for tick broadcasts: fresh board states go over KryoNet UDP so a lost
+ * packet never holds newer ones back, while commands and their replies stay on TCP.
+ * <p>
+ * A connection opts in by sending a {@link UdpAck} over UDP, which also proves the server can
+ * reach it. Its tick packets are then wrapped in a {@link UdpTickFrame} with a per-connection
+ * sequence number and sent with {@code sendUDP}; the client drops frames that arrive out of order.
+ * A packet that does not fit {@code gameserver.udp.maxPacketBytes} goes over TCP instead.
+ * </p>
+ * <p>
+ * The client keeps acknowledging, and each ack updates the connection's loss rate and round
+ * trip time ({@link #stats()}). If frames go unacknowledged for {@code gameserver.udp.ackTimeoutMs},
+ * or a send fails, the connection falls back to TCP; the next ack after
+ * {@code gameserver.udp.retryMs} moves it back to UDP. Connections that never opt in, e.g.
+ * older clients, only ever see TCP.
+ * </p>
+ * <p>
+ * Meters:
+ * <ul>
+ *     <li>{@code yipee.udp.links} - connections receiving ticks over UDP.</li>
+ *     <li>{@code yipee.udp.frames{result}} - tick packets {@code sent} over UDP, or sent over
+ *     TCP because they were {@code oversize} or the UDP send {@code failed}.</li>
+ *     <li>{@code yipee.udp.lost} - frames clients reported missing.</li>
+ *     <li>{@code yipee.udp.rtt} - time from sending a frame to its ack.</li>
+ *     <li>{@code yipee.udp.fallbacks{reason}} - switches to TCP after a {@code timeout} or failed {@code send}.</li>
+ * </ul>
+ * </p>
+ */
+@Slf4j
+@Untraced
+@Component
+public class UdpTickChannel extends Listener {
+    public static final String METER_LINKS = "yipee.udp.links";
+    public static final String METER_FRAMES = "yipee.udp.frames";
+    public static final String METER_LOST = "yipee.udp.lost";
+    public static final String METER_RTT = "yipee.udp.rtt";
+    public static final String METER_FALLBACKS = "yipee.udp.fallbacks";
+
+    private static final String FALLBACK_TIMEOUT = "timeout";
+    private static final String FALLBACK_SEND = "send";
+
+    /** Bytes {@link UdpTickFrame} adds around the packet: class id and sequence. */
+    private static final int FRAME_OVERHEAD = 16;
+    /** Send times kept per connection for round trips; a power of two. */
+    private static final int SENT_HISTORY = 256;
+    /** Weight of the newest sample in the smoothed loss rate and round trip. */
+    private static final double SMOOTHING = 0.125;
+
+    /** Kryo connection id → its UDP link; only connections that opted in. */
+    private final Map<Integer, Link> links = new ConcurrentHashMap<>();
+
+    private final Counter framesSent;
+    private final Counter framesOversize;
+    private final Counter framesFailed;
+    private final Counter framesLost;
+    private final Counter timeoutFallbacks;
+    private final Counter sendFallbacks;
+    private final Timer rttTimer;
+
+    private volatile ThreadLocal<Kryo> wireKryo;
+    private final ThreadLocal<Output> wireOutput = ThreadLocal.withInitial(() -> new Output(2048, -1));
+
+    @Value("${gameserver.udp.tickBroadcast:true}")
+    private boolean enabled;
+
+    /** Largest tick frame sent over UDP; stays below the path MTU and KryoNet's object buffer. */
+    @Value("${gameserver.udp.maxPacketBytes:1400}")
+    private int maxPacketBytes;
+
+    @Value("${gameserver.udp.ackTimeoutMs:2000}")
+    private long ackTimeoutMs;
+
+    @Value("${gameserver.udp.retryMs:30000}")
+    private long retryMs;
+
+    /** UDP state of one connection; sends and acks run on different threads and lock it. */
+    private static final class Link {
+        final Connection connection;
+        final UdpTickFrame frame = new UdpTickFrame();
+        final long[] sentSequence = new long[SENT_HISTORY];
+        final long[] sentNanos = new long[SENT_HISTORY];
+        volatile boolean udp = true;
+        long sequence;
+        long ackedSequence;
+        long ackedReceived;
+        long lost;
+        /** Since when sent frames are waiting for an ack; {@code 0} when none are. */
+        long awaitingSinceNanos;
+        long retryAtNanos;
+        double lossRate;
+        double rttMillis;
+        String fallback;
+
+        Link(Connection connection) {
+            this.connection = connection;
+        }
+    }
+
+    public UdpTickChannel(MeterRegistry meterRegistry) {
+        Gauge.builder(METER_LINKS, links, UdpTickChannel::countUdp)
+                .description("Connections receiving tick broadcasts over UDP")
+                .register(meterRegistry);
+        framesSent = frames(meterRegistry, "sent");
+        framesOversize = frames(meterRegistry, "oversize");
+        framesFailed = frames(meterRegistry, "failed");
+        framesLost = Counter.builder(METER_LOST)
+                .description("Tick frames clients reported missing")
+                .register(meterRegistry);
+        timeoutFallbacks = fallbacks(meterRegistry, FALLBACK_TIMEOUT);
+        sendFallbacks = fallbacks(meterRegistry, FALLBACK_SEND);
+        rttTimer = Timer.builder(METER_RTT)
+                .description("Time from sending a tick frame over UDP to its ack")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private static Counter frames(MeterRegistry registry, String result) {
+        return Counter.builder(METER_FRAMES)
+                .description("Tick packets considered for UDP by outcome")
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Counter fallbacks(MeterRegistry registry, String reason) {
+        return Counter.builder(METER_FALLBACKS)
+                .description("Connections switched from UDP to TCP by reason")
+                .tag("reason", reason)
+                .register(registry);
+    }
+
+    private static double countUdp(Map<Integer, Link> links) {
+        int count = 0;
+        for (Link link : links.values()) {
+            if (link.udp) count++;
+        }
+        return count;
+    }
+
+    /**
+     * Sets how tick packets are encoded to check they fit a datagram; must match the server's
+     * Kryo registrations. Until this is called, ticks go over TCP.
+     */
+    public void useKryo(Supplier<Kryo> kryoFactory) {
+        wireKryo = ThreadLocal.withInitial(kryoFactory);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @return whether tick packets for {@code connection} should be offered to {@link #send}
+     */
+    public boolean isActive(Connection connection) {
+        if (!enabled || wireKryo == null) return false;
+        Link link = links.get(connection.getID());
+        return link != null && link.udp;
+    }
+
+    /**
+     * Encoded size of {@code packet}, for {@link #send}. A broadcast measures each distinct
+     * packet once and passes the size along for every connection.
+     */
+    public int sizeOf(Object packet) {
+        Output output = wireOutput.get();
+        output.clear();
+        wireKryo.get().writeClassAndObject(output, packet);
+        return output.position();
+    }
+
+    /**
+     * Sends a tick packet over UDP.
+     *
+     * @param size encoded size of {@code packet}, from {@link #sizeOf(Object)}
+     * @return {@code false} if the caller must send it over TCP instead
+     */
+    public boolean send(Connection connection, Object packet, int size) {
+        Link link = links.get(connection.getID());
+        if (link == null || !link.udp) return false;
+        if (size + FRAME_OVERHEAD > maxPacketBytes) {
+            framesOversize.increment();
+            return false;
+        }
+        long now = System.nanoTime();
+        synchronized (link) {
+            if (link.awaitingSinceNanos != 0L
+                    && now - link.awaitingSinceNanos > TimeUnit.MILLISECONDS.toNanos(ackTimeoutMs)) {
+                fallBack(link, FALLBACK_TIMEOUT, now);
+                timeoutFallbacks.increment();
+                return false;
+            }
+            long sequence = ++link.sequence;
+            link.frame.sequence = sequence;
+            link.frame.packet = packet;
+            int slot = (int) (sequence & (SENT_HISTORY - 1));
+            link.sentSequence[slot] = sequence;
+            link.sentNanos[slot] = now;
+            int sent;
+            try {
+                sent = connection.sendUDP(link.frame);
+            } catch (IllegalStateException e) {
+                sent = 0; // no longer connected via UDP
+            } finally {
+                link.frame.packet = null;
+            }
+            if (sent <= 0) {
+                link.sequence--; // never went out, so not lost either
+                fallBack(link, FALLBACK_SEND, now);
+                sendFallbacks.increment();
+                framesFailed.increment();
+                return false;
+            }
+            if (link.awaitingSinceNanos == 0L) {
+                link.awaitingSinceNanos = now;
+            }
+        }
+        framesSent.increment();
+        return true;
+    }
+
+    private void fallBack(Link link, String reason, long now) {
+        link.udp = false;
+        link.fallback = reason;
+        link.awaitingSinceNanos = 0L;
+        link.retryAtNanos = now + TimeUnit.MILLISECONDS.toNanos(retryMs);
+        log.info("Connection {} falls back to TCP tick broadcasts ({})", link.connection.getID(), reason);
+    }
+
+    @Override
+    public void received(Connection connection, Object object) {
+        if (!(object instanceof UdpAck ack) || !enabled) return;
+        if (connection.getRemoteAddressUDP() == null) return; // UDP not registered; ticks stay on TCP
+        long now = System.nanoTime();
+        Link link = links.computeIfAbsent(connection.getID(), id -> {
+            log.debug("Connection {} opted in to UDP tick broadcasts", id);
+            return new Link(connection);
+        });
+        synchronized (link) {
+            if (!link.udp) {
+                if (now - link.retryAtNanos < 0) return;
+                link.udp = true;
+                log.info("Connection {} back on UDP tick broadcasts", connection.getID());
+            }
+            acknowledge(link, ack, now);
+        }
+    }
+
+    private void acknowledge(Link link, UdpAck ack, long now) {
+        long sequence = Math.min(ack.sequence, link.sequence);
+        if (sequence > link.ackedSequence) {
+            int slot = (int) (sequence & (SENT_HISTORY - 1));
+            if (link.sentSequence[slot] == sequence) {
+                long rtt = now - link.sentNanos[slot];
+                rttTimer.record(rtt, TimeUnit.NANOSECONDS);
+                link.rttMillis = smooth(link.rttMillis, rtt / 1_000_000d, link.ackedSequence == 0L);
+            }
+            long sentSince = sequence - link.ackedSequence;
+            long receivedSince = Math.max(0L, Math.min(sentSince, ack.received - link.ackedReceived));
+            long lostSince = sentSince - receivedSince;
+            if (lostSince > 0) {
+                link.lost += lostSince;
+                framesLost.increment(lostSince);
+            }
+            link.lossRate = smooth(link.lossRate, (double) lostSince / sentSince, link.ackedSequence == 0L);
+            link.ackedSequence = sequence;
+            link.ackedReceived = ack.received;
+        }
+        link.awaitingSinceNanos = link.sequence > link.ackedSequence ? now : 0L;
+    }
+
+    private static double smooth(double average, double sample, boolean first) {
+        return first ? sample : average + SMOOTHING * (sample - average);
+    }
+
+    @Override
+    public void disconnected(Connection connection) {
+        links.remove(connection.getID());
+    }
+
+    /**
+     * @return UDP state of every connection that opted in
+     */
+    public List<UdpLinkStats> stats() {
+        List<UdpLinkStats> out = new ArrayList<>(links.size());
+        for (Link link : links.values()) {
+            synchronized (link) {
+                out.add(new UdpLinkStats(link.connection.getID(),
+                        String.valueOf(link.connection.getRemoteAddressUDP()),
+                        link.udp, link.sequence, link.ackedSequence, link.lost,
+                        link.lossRate, link.rttMillis, link.fallback));
+            }
+        }
+        return out;
+    }
+}
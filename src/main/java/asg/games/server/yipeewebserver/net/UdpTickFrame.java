@@ -0,0 +1,15 @@
+package asg.games.server.yipeewebserver.net;
+
+/**
+ * Tick broadcast sent over UDP by {@link UdpTickChannel}. {@code sequence} counts up by one per
+ * frame sent to the connection; a client keeps the highest it has seen and drops any frame at
+ * or below it, since a fresher state has already arrived.
+ * <p>
+ * {@code packet} is the tick packet itself, or a {@code CompressedFrame} of it if the client
+ * negotiated compression.
+ * </p>
+ */
+public class UdpTickFrame {
+    public long sequence;
+    public Object packet;
+}
@@ -4,6 +4,7 @@ import asg.games.server.yipeewebserver.config.ServerIdentity;
 import asg.games.server.yipeewebserver.core.GameContext;
 import asg.games.server.yipeewebserver.core.GameContextFactory;
 import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.server.yipeewebserver.net.codec.FrameCompressor;
 import asg.games.server.yipeewebserver.tools.NetUtil;
 import asg.games.yipee.net.errors.ErrorCode;
 import asg.games.yipee.net.errors.ErrorMapper;
@@ -52,6 +53,9 @@ public class YipeePacketHandler {
     private final ServerIdentity serverIdentity;
     private final ConnectionContextFactory connectionContextFactory;
     private final GameContextFactory gameContextFactory;
+    private final FrameCompressor frameCompressor;
+
+    private static final ThreadLocal<TableStatePackets> TABLE_STATE_PACKETS = ThreadLocal.withInitial(TableStatePackets::new);
     public static final String IDENTITY_PROVIDER_WORDPRESS = "WORDPRESS";
 
     // ========================================================================
@@ -201,22 +205,47 @@ public class YipeePacketHandler {
         // TODO: Get table information by getTableId()
         // TODO: Record user requesting update
         // TODO: generate SeatStateUpdate request from list of gamestates for each seat
-        TableStateUpdateResponse tableUpdateRes = new TableStateUpdateResponse();
+        TableStatePackets packets = TABLE_STATE_PACKETS.get();
+        TableStateUpdateResponse tableUpdateRes = packets.table;
         NetUtil.copyEnvelope(req, tableUpdateRes);
         tableUpdateRes.setGameId(gameContext.gameId());
-        tableUpdateRes.setSeatState1(buildSeatStateUpdateResponse(gameContext.gameId(), gameContext.serverTick(), gameContext,  null ));
-        tableUpdateRes.setSeatState2(buildSeatStateUpdateResponse(gameContext.gameId(), gameContext.serverTick(), gameContext,  null ));
-        tableUpdateRes.setSeatState3(buildSeatStateUpdateResponse(gameContext.gameId(), gameContext.serverTick(), gameContext,  null ));
-        tableUpdateRes.setSeatState4(buildSeatStateUpdateResponse(gameContext.gameId(), gameContext.serverTick(), gameContext,  null ));
-        tableUpdateRes.setSeatState5(buildSeatStateUpdateResponse(gameContext.gameId(), gameContext.serverTick(), gameContext,  null ));
-        tableUpdateRes.setSeatState6(buildSeatStateUpdateResponse(gameContext.gameId(), gameContext.serverTick(), gameContext,  null ));
-        tableUpdateRes.setSeatState7(buildSeatStateUpdateResponse(gameContext.gameId(), gameContext.serverTick(), gameContext,  null ));
-        tableUpdateRes.setSeatState8(buildSeatStateUpdateResponse(gameContext.gameId(), gameContext.serverTick(), gameContext,  null ));
+        for (SeatStateUpdateResponse seatState : packets.seats) {
+            seatState.getStates().clear();
+            fillSeatStateUpdateResponse(seatState, gameContext.gameId(), gameContext);
+        }
 
         NetUtil.stampServerMeta(tableUpdateRes, serverIdentity);
         return tableUpdateRes;
     }
 
+    /**
+     * Per-thread {@link TableStateUpdateResponse} with its eight seat packets, reused by
+     * {@link #handleTableStateUpdate}. Every transport serializes the response before the
+     * thread handles its next request (Kryo in {@code sendTCP}, WebSocket in
+     * {@code writeValueAsString}), so the instance is free again by then; callers must not
+     * keep it past that point. Each use overwrites every field that is set and clears the
+     * seat state lists.
+     */
+    private static final class TableStatePackets {
+        private final TableStateUpdateResponse table = new TableStateUpdateResponse();
+        private final SeatStateUpdateResponse[] seats = new SeatStateUpdateResponse[8];
+
+        private TableStatePackets() {
+            for (int seat = 0; seat < seats.length; seat++) {
+                seats[seat] = new SeatStateUpdateResponse();
+                seats[seat].setStates(new ArrayList<>());
+            }
+            table.setSeatState1(seats[0]);
+            table.setSeatState2(seats[1]);
+            table.setSeatState3(seats[2]);
+            table.setSeatState4(seats[3]);
+            table.setSeatState5(seats[4]);
+            table.setSeatState6(seats[5]);
+            table.setSeatState7(seats[6]);
+            table.setSeatState8(seats[7]);
+        }
+    }
+
     /**
      * TableStateUpdateRequest might be admin/host-only. Typically you either:
      *  - apply a state patch and then broadcast, or
@@ -264,11 +293,15 @@ public class YipeePacketHandler {
             Object allStatesPayload
     ) {
         SeatStateUpdateResponse resp = new SeatStateUpdateResponse();
-        resp.setGameId(gameId);
         resp.setStates(new ArrayList<>());
+        fillSeatStateUpdateResponse(resp, gameId, gameContext);
+        return resp;
+    }
+
+    private void fillSeatStateUpdateResponse(SeatStateUpdateResponse resp, String gameId, GameContext gameContext) {
+        resp.setGameId(gameId);
         resp.setServerTick(gameContext.serverTick());
         NetUtil.stampServerMeta(resp, serverIdentity);
-        return resp;
     }
 
     // ========================================================================
@@ -343,7 +376,8 @@ public class YipeePacketHandler {
     public void handleKryoRequest(Connection connection, AbstractClientRequest request, GameContext gameContext) {
         AbstractServerResponse resp = handle(gameContext, request);
         if (resp != null && connection != null && connection.isConnected()) {
-            connection.sendTCP(resp);
+            // join-time snapshots are the large ones; compressed if this client negotiated it
+            connection.sendTCP(frameCompressor.forKryo(connection, resp));
         }
     }
 }
\ No newline at end of file
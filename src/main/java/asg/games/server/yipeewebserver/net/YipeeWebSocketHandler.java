@@ -2,6 +2,7 @@ package asg.games.server.yipeewebserver.net;
 
 import asg.games.server.yipeewebserver.core.GameContextFactory;
 import asg.games.server.yipeewebserver.data.WsPacketEnvelope;
+import asg.games.server.yipeewebserver.net.codec.FrameCompressor;
 import asg.games.yipee.net.packets.AbstractClientRequest;
 import asg.games.yipee.net.packets.AbstractServerResponse;
 import asg.games.yipee.net.packets.GameStartRequest;
@@ -13,24 +14,108 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.CloseStatus;
 import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
 import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+import org.springframework.web.socket.handler.SessionLimitExceededException;
 import org.springframework.web.socket.handler.TextWebSocketHandler;
 
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * WebSocket endpoint for game packets, spectating and resyncs.
+ * <p>
+ * A {@link WebSocketSession} is not safe for concurrent sends, and replies, spectator frames,
+ * resync chunks and drain notices are sent from different threads. Each connection is wrapped
+ * once in a {@link ConcurrentWebSocketSessionDecorator} when it opens, and every send to it goes
+ * through that decorator. Replies, errors, resync chunks and drain notices are never dropped: a
+ * connection that falls behind by more than {@code yipee.ws.bufferSizeLimit} bytes is closed.
+ * Only spectator frames are lossy; {@link SpectatorBroadcaster} skips them for a connection
+ * whose backlog is over {@code yipee.spectator.bufferSizeLimit}, well below that limit.
+ * </p>
+ */
 @Slf4j
 @Component
 @RequiredArgsConstructor
 public class YipeeWebSocketHandler extends TextWebSocketHandler {
+    /**
+     * Starts the delayed spectator stream of {@code payload.gameId}; see {@link SpectatorBroadcaster}.
+     * {@code payload.encoding = "compact"} selects binary frames; {@code payload.clientId} applies
+     * the compression that client negotiated at handshake.
+     */
+    public static final String PACKET_SPECTATE = "SpectateRequest";
+    /** Stops the spectator stream of this session. */
+    public static final String PACKET_SPECTATE_STOP = "SpectateStopRequest";
+    public static final String ENCODING_COMPACT = "compact";
+    /**
+     * Catches a reconnecting player up with {@code payload.gameId}; see {@link ResyncService}.
+     * {@code payload.clientId} applies the compression that client negotiated at handshake.
+     */
+    public static final String PACKET_RESYNC = "ResyncRequest";
+
     private final YipeePacketHandler packetHandler;
     private final GameContextFactory gameContextFactory;
+    private final SpectatorBroadcaster spectatorBroadcaster;
+    private final FrameCompressor frameCompressor;
+    private final ResyncService resyncService;
     private final ObjectMapper objectMapper = new ObjectMapper();
+    /** Session id → the decorated session all sends go through. */
+    private final Map<String, WebSocketSession> sessions = new ConcurrentHashMap<>();
+
+    @Value("${yipee.ws.sendTimeLimitMs:2000}")
+    private int sendTimeLimitMs;
+
+    /** Bytes queued for one connection before it is closed. */
+    @Value("${yipee.ws.bufferSizeLimit:1048576}")
+    private int bufferSizeLimit;
 
     @Override
     public void afterConnectionEstablished(WebSocketSession session) {
         log.info("WebSocket connected: {}", session.getId());
-        // If you want, you can stash sessionId ↔ session in a map here
-        // for pushing broadcasts later.
+        sessions.put(session.getId(), new ConcurrentWebSocketSessionDecorator(
+                session, sendTimeLimitMs, bufferSizeLimit, ConcurrentWebSocketSessionDecorator.OverflowStrategy.TERMINATE));
+    }
+
+    /**
+     * The decorated session to send to {@code session} through.
+     */
+    private WebSocketSession outbound(WebSocketSession session) {
+        WebSocketSession decorated = sessions.get(session.getId());
+        return decorated != null ? decorated : session;
+    }
+
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, @NotNull CloseStatus status) {
+        sessions.remove(session.getId());
+        spectatorBroadcaster.unwatch(session);
+        resyncService.cancel(session);
+    }
+
+    /**
+     * Sends a text message built per session to every open session.
+     *
+     * @return number of sessions the message was sent to
+     */
+    public int sendToEachSession(Function<WebSocketSession, String> messageFor) {
+        int sent = 0;
+        for (WebSocketSession session : sessions.values()) {
+            if (!session.isOpen()) continue;
+            try {
+                session.sendMessage(new TextMessage(messageFor.apply(session)));
+                sent++;
+            } catch (IOException | SessionLimitExceededException e) {
+                log.warn("Could not send to WebSocket {}", session.getId(), e);
+            }
+        }
+        return sent;
     }
 
     @Override
@@ -41,6 +126,15 @@ public class YipeeWebSocketHandler extends TextWebSocketHandler {
         WsPacketEnvelope envelope = objectMapper.readValue(payload, WsPacketEnvelope.class);
         JsonNode node = envelope.getPayload();
 
+        if (PACKET_SPECTATE.equals(envelope.getPacketType()) || PACKET_SPECTATE_STOP.equals(envelope.getPacketType())) {
+            handleSpectate(session, envelope.getPacketType(), node);
+            return;
+        }
+        if (PACKET_RESYNC.equals(envelope.getPacketType())) {
+            handleResync(session, node);
+            return;
+        }
+
         AbstractClientRequest request = switch (envelope.getPacketType()) {
             case "GameStartRequest" -> objectMapper.treeToValue(node, GameStartRequest.class);
             case "PlayerActionRequest" -> objectMapper.treeToValue(node, PlayerActionRequest.class);
@@ -48,7 +142,7 @@ public class YipeeWebSocketHandler extends TextWebSocketHandler {
             case "TableStateUpdateRequest" -> objectMapper.treeToValue(node, TableStateUpdateRequest.class);
             default -> {
                 log.warn("Unknown or unsupported packetType on WS: {}", envelope.getPacketType());
-                session.sendMessage(new TextMessage(
+                outbound(session).sendMessage(new TextMessage(
                         "{\"error\":\"Unknown or unsupported packetType: " + envelope.getPacketType() + "\"}"));
                 yield null;
             }
@@ -64,8 +158,56 @@ public class YipeeWebSocketHandler extends TextWebSocketHandler {
         // You can either:
         // 1) send the plain response, or
         // 2) re-wrap it in a WsPacketEnvelope with a "responseType" if you prefer
-        String json = objectMapper.writeValueAsString(response);
-        session.sendMessage(new TextMessage(json));
+        byte[] json = objectMapper.writeValueAsBytes(response);
+        outbound(session).sendMessage(messageFor(request.getClientId(), json));
+    }
+
+    /**
+     * JSON as a text message, or as a binary {@link FrameCompressor} frame if the client
+     * negotiated compression and it pays off.
+     */
+    private WebSocketMessage<?> messageFor(String clientId, byte[] json) {
+        FrameCompressor.Codec codec = frameCompressor.codecFor(clientId);
+        byte[] frame = codec != null ? frameCompressor.compress(codec, json, FrameCompressor.TRANSPORT_WS) : null;
+        return frame != null ? new BinaryMessage(frame) : new TextMessage(json);
+    }
+
+    /**
+     * Watches or stops watching a game. Spectators get {@link SpectatorBroadcaster} frames
+     * instead of the per-tick player broadcast.
+     */
+    private void handleSpectate(WebSocketSession session, String packetType, JsonNode node) throws IOException {
+        if (PACKET_SPECTATE_STOP.equals(packetType)) {
+            spectatorBroadcaster.unwatch(session);
+            outbound(session).sendMessage(new TextMessage("{\"spectating\":null}"));
+            return;
+        }
+        String gameId = (node != null && node.hasNonNull("gameId")) ? node.get("gameId").asText() : null;
+        boolean compact = node != null && ENCODING_COMPACT.equalsIgnoreCase(node.path("encoding").asText());
+        FrameCompressor.Codec compression = node != null ? frameCompressor.codecFor(node.path("clientId").asText(null)) : null;
+        if (!spectatorBroadcaster.watch(gameId, outbound(session), compact, compression)) {
+            outbound(session).sendMessage(
+                    new TextMessage("{\"error\":\"Unknown game: " + gameId + "\"}"));
+            return;
+        }
+        outbound(session).sendMessage(new TextMessage(objectMapper.writeValueAsString(
+                Map.of("spectating", gameId, "delayMs", spectatorBroadcaster.getDelayMs(),
+                        "encoding", compact ? ENCODING_COMPACT : "json",
+                        "compression", compression != null ? compression.token() : FrameCompressor.CODEC_NONE))));
+    }
+
+    /**
+     * Queues a resync; the chunks follow from {@link ResyncService}, this only acknowledges it.
+     */
+    private void handleResync(WebSocketSession session, JsonNode node) throws IOException {
+        String gameId = (node != null && node.hasNonNull("gameId")) ? node.get("gameId").asText() : null;
+        FrameCompressor.Codec compression = node != null ? frameCompressor.codecFor(node.path("clientId").asText(null)) : null;
+        String reply = switch (resyncService.start(gameId, outbound(session), compression)) {
+            case QUEUED -> objectMapper.writeValueAsString(Map.of("resync", gameId));
+            case UNKNOWN_GAME -> "{\"error\":\"Unknown game: " + gameId + "\"}";
+            case BUSY -> "{\"error\":\"Resync busy; retry later\"}";
+        };
+        outbound(session).sendMessage(new TextMessage(reply));
     }
 
     @Override
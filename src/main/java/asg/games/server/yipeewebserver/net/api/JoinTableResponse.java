@@ -4,5 +4,6 @@ public record JoinTableResponse(
         String roomId,
         String roomName,
         String tableId,
-        String playerId
+        String playerId,
+        int seatNumber
 ) {}
\ No newline at end of file
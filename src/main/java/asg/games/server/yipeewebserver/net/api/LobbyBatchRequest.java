@@ -0,0 +1,17 @@
+package asg.games.server.yipeewebserver.net.api;
+
+import asg.games.yipee.net.packets.ClientHandshakeRequest;
+
+import java.util.List;
+
+/**
+ * Ordered lobby commands run in one transaction.
+ *
+ * @param handshake optional; when set the batch opens a new session first instead of
+ *                  using the {@code X-Session-Id} header
+ * @param commands  commands to run, in order
+ */
+public record LobbyBatchRequest(
+        ClientHandshakeRequest handshake,
+        List<LobbyCommand> commands
+) {}
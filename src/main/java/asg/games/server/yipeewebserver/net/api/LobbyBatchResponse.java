@@ -0,0 +1,15 @@
+package asg.games.server.yipeewebserver.net.api;
+
+import asg.games.yipee.net.packets.ClientHandshakeResponse;
+
+import java.util.List;
+
+public record LobbyBatchResponse(
+        ClientHandshakeResponse handshake,
+        List<Result> results
+) {
+    /**
+     * Response of one command, the same body its single endpoint returns.
+     */
+    public record Result(LobbyCommand.Op op, Object response) {}
+}
@@ -0,0 +1,24 @@
+package asg.games.server.yipeewebserver.net.api;
+
+import com.fasterxml.jackson.databind.JsonNode;
+
+/**
+ * One operation of a {@link LobbyBatchRequest}.
+ * <p>
+ * {@code args} is the body the matching single endpoint accepts, e.g. a
+ * {@link SitDownRequest} for {@link Op#SIT_DOWN}. A missing {@code roomId} or
+ * {@code tableId} is taken from the room or table of an earlier command in the batch.
+ * </p>
+ */
+public record LobbyCommand(Op op, JsonNode args) {
+    public enum Op {
+        JOIN_ROOM,
+        LEAVE_ROOM,
+        JOIN_TABLE,
+        CREATE_TABLE,
+        LEAVE_TABLE,
+        SIT_DOWN,
+        STAND_UP,
+        LAUNCH_TOKEN
+    }
+}
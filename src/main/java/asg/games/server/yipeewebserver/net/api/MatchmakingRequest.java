@@ -0,0 +1,9 @@
+package asg.games.server.yipeewebserver.net.api;
+
+/**
+ * @param mode {@code TWO_TEAMS} or {@code FOUR_TEAMS}; defaults to {@code TWO_TEAMS}
+ */
+public record MatchmakingRequest(
+        String roomId,
+        String mode
+) {}
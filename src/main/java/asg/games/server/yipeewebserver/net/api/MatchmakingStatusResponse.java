@@ -0,0 +1,16 @@
+package asg.games.server.yipeewebserver.net.api;
+
+/**
+ * @param status {@code QUEUED}, {@code MATCHED} or {@code NONE}
+ */
+public record MatchmakingStatusResponse(
+        String playerId,
+        String status,
+        String roomId,
+        String mode,
+        long waitMillis,
+        String tableId,
+        int tableNumber,
+        String gameId,
+        int seatNumber
+) {}
@@ -0,0 +1,19 @@
+package asg.games.server.yipeewebserver.net.api;
+
+import asg.games.yipee.common.game.GameBoardState;
+
+import java.util.Map;
+
+/**
+ * Seats whose board changed between {@code fromTick} and {@code toTick}, newest state each.
+ * Applied on top of the keyframe (or the previous delta) of the same resync.
+ *
+ * @param complete the client is caught up to {@code toTick} and should follow live traffic from here
+ */
+public record ResyncDelta(
+        String gameId,
+        long fromTick,
+        long toTick,
+        Map<Integer, GameBoardState> seats,
+        boolean complete
+) {}
@@ -0,0 +1,20 @@
+package asg.games.server.yipeewebserver.net.api;
+
+import asg.games.yipee.common.game.GameBoardState;
+
+/**
+ * One seat of the keyframe a reconnecting player is rebuilt from; a resync sends one per
+ * occupied seat, all taken at the same tick.
+ *
+ * @param keyframeTick tick every seat of the keyframe was taken at (or just before)
+ * @param chunk        index of this seat among the keyframe's chunks, from {@code 0}
+ * @param chunks       number of keyframe chunks
+ */
+public record ResyncKeyframe(
+        String gameId,
+        long keyframeTick,
+        int chunk,
+        int chunks,
+        int seat,
+        GameBoardState state
+) {}
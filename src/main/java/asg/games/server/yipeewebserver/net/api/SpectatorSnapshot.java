@@ -0,0 +1,19 @@
+package asg.games.server.yipeewebserver.net.api;
+
+import asg.games.yipee.common.game.GameBoardState;
+
+import java.util.Map;
+
+/**
+ * Delayed view of a game sent to spectators.
+ *
+ * @param serverTick tick the seat states were taken at (or just before)
+ * @param delayTicks how many ticks the snapshot trails the live game
+ * @param seats      seat index → board state, occupied seats only
+ */
+public record SpectatorSnapshot(
+        String gameId,
+        long serverTick,
+        long delayTicks,
+        Map<Integer, GameBoardState> seats
+) {}
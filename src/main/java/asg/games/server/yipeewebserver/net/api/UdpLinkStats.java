@@ -0,0 +1,24 @@
+package asg.games.server.yipeewebserver.net.api;
+
+/**
+ * UDP tick channel state of one Kryo connection.
+ *
+ * @param udp       tick broadcasts currently go over UDP; {@code false} after a fallback to TCP
+ * @param sent      tick frames sent over UDP
+ * @param acked     highest sequence the client acknowledged
+ * @param lost      frames the client reported missing
+ * @param lossRate  smoothed fraction of frames lost, from the client's acks
+ * @param rttMillis smoothed time from sending a frame to its ack, including the client's ack delay
+ * @param fallback  why the connection last fell back to TCP, or {@code null}
+ */
+public record UdpLinkStats(
+        int connectionId,
+        String remoteAddress,
+        boolean udp,
+        long sent,
+        long acked,
+        long lost,
+        double lossRate,
+        double rttMillis,
+        String fallback
+) {}
@@ -0,0 +1,451 @@
+package asg.games.server.yipeewebserver.net.codec;
+
+import asg.games.server.yipeewebserver.aspects.Untraced;
+import asg.games.server.yipeewebserver.net.api.SpectatorSnapshot;
+import asg.games.yipee.common.game.GameBoardState;
+import asg.games.yipee.common.game.GamePhase;
+import asg.games.yipee.core.objects.YipeeGameBoardState;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact binary layout of a {@link GameBoardState}, shared by the Kryo transport
+ * ({@link GameBoardStateSerializer}) and the binary WebSocket frames of the spectator stream.
+ * <pre>
+ * state   : byte VERSION, varint flags (fastDown, debug, partnerRight, hasGameStarted),
+ *           varlong currentStateTimeStamp, zigzag (previousStateTimeStamp - current),
+ *           zigzag (serverGameStartTime - current), varint phase ordinal + 1,
+ *           varint brokenBlockCount, zigzag currentBlockPointer, idIndex, yahooDuration, boardNumber,
+ *           float pieceFallTimer, pieceLockTimer, blockAnimationTimer,
+ *           string name, gameClock, ref piece, ref nextPiece, ref nextBlocks,
+ *           ints countOfBreaks, powersKeep, powers, specialPieces, bits ids,
+ *           cells playerCells, partnerCells, object brokenCells
+ * ints    : varint (length + 1), zigzag values; 0 is null
+ * bits    : varint (length + 1), ceil(length / 8) bytes
+ * cells   : varint 0 null | 1 packed: varint rows, varint cols, zigzag min, byte bits, packed (value - min)
+ *                         | 2 ragged: varint rows, ints per row
+ * ref     : varint 0 null | 1 literal follows | n &gt;= 2 entry n - 2 of the {@link Dictionary}
+ * object  : Kryo class and object
+ * snapshot: byte FRAME_SNAPSHOT, string gameId, varlong serverTick, varlong delayTicks,
+ *           varint seats, per seat byte seatId and state
+ * </pre>
+ * A board is a small grid of block codes, so {@code packed} cells take
+ * {@code bits = log2(max - min + 1)} bits each, and an empty board takes none. Piece strings
+ * and the piece sequence ({@code nextBlocks}) are shared by every board of a game; the
+ * {@link Dictionary} sends each distinct value once per message and references it afterwards.
+ * {@code cellsToDrop} is transient animation state and is not carried.
+ * <p>
+ * Not thread-safe: each user owns its own codec, like the replay codec.
+ * </p>
+ */
+@Untraced
+public final class CompactStateCodec {
+    public static final byte VERSION = 1;
+    public static final byte FRAME_SNAPSHOT = 1;
+
+    private static final int FLAG_FAST_DOWN = 1;
+    private static final int FLAG_DEBUG = 1 << 1;
+    private static final int FLAG_PARTNER_RIGHT = 1 << 2;
+    private static final int FLAG_GAME_STARTED = 1 << 3;
+
+    private static final int CELLS_NULL = 0;
+    private static final int CELLS_PACKED = 1;
+    private static final int CELLS_RAGGED = 2;
+
+    private static final int REF_NULL = 0;
+    private static final int REF_LITERAL = 1;
+    private static final int REF_FIRST_ENTRY = 2;
+
+    private static final GamePhase[] PHASES = GamePhase.values();
+
+    private final Kryo kryo = new Kryo();
+    private final Output output = new Output(1024, -1);
+
+    public CompactStateCodec() {
+        kryo.setRegistrationRequired(false);
+        GameBoardStateSerializer.register(kryo);
+    }
+
+    /**
+     * Values already sent in the current message. The writer maps value to index, the reader
+     * keeps the list; both add in the same order, so indexes agree.
+     */
+    public static final class Dictionary {
+        private final Map<Object, Integer> ids = new HashMap<>();
+        private final List<Object> entries = new ArrayList<>();
+    }
+
+    /**
+     * Encodes a spectator snapshot as one binary frame with a single dictionary.
+     */
+    public byte[] encodeSnapshot(SpectatorSnapshot snapshot) {
+        output.clear();
+        Dictionary dictionary = new Dictionary();
+        output.writeByte(FRAME_SNAPSHOT);
+        output.writeString(snapshot.gameId());
+        output.writeVarLong(snapshot.serverTick(), true);
+        output.writeVarLong(snapshot.delayTicks(), true);
+        output.writeVarInt(snapshot.seats().size(), true);
+        for (Map.Entry<Integer, GameBoardState> seat : snapshot.seats().entrySet()) {
+            output.writeByte(seat.getKey());
+            writeState(kryo, output, seat.getValue(), dictionary);
+        }
+        return output.toBytes();
+    }
+
+    public SpectatorSnapshot decodeSnapshot(byte[] frame) {
+        Input input = new Input(frame);
+        byte type = input.readByte();
+        if (type != FRAME_SNAPSHOT) {
+            throw new IllegalArgumentException("Not a snapshot frame: " + type);
+        }
+        Dictionary dictionary = new Dictionary();
+        String gameId = input.readString();
+        long serverTick = input.readVarLong(true);
+        long delayTicks = input.readVarLong(true);
+        int count = input.readVarInt(true);
+        Map<Integer, GameBoardState> seats = new LinkedHashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            int seatId = input.readByte();
+            seats.put(seatId, readState(kryo, input, dictionary));
+        }
+        return new SpectatorSnapshot(gameId, serverTick, delayTicks, seats);
+    }
+
+    /**
+     * Encodes a single state with a fresh dictionary.
+     */
+    public byte[] encodeState(GameBoardState state) {
+        output.clear();
+        writeState(kryo, output, state, new Dictionary());
+        return output.toBytes();
+    }
+
+    public YipeeGameBoardState decodeState(byte[] bytes) {
+        return readState(kryo, new Input(bytes), new Dictionary());
+    }
+
+    static void writeState(Kryo kryo, Output out, GameBoardState state, Dictionary dictionary) {
+        out.writeByte(VERSION);
+        int flags = (state.isFastDown() ? FLAG_FAST_DOWN : 0)
+                | (state.isDebug() ? FLAG_DEBUG : 0)
+                | (state.isPartnerRight() ? FLAG_PARTNER_RIGHT : 0)
+                | (state.isHasGameStarted() ? FLAG_GAME_STARTED : 0);
+        out.writeVarInt(flags, true);
+
+        long current = state.getCurrentStateTimeStamp();
+        out.writeVarLong(current, true);
+        out.writeVarLong(state.getPreviousStateTimeStamp() - current, false);
+        out.writeVarLong(state.getServerGameStartTime() - current, false);
+        GamePhase phase = state.getCurrentPhase();
+        out.writeVarInt(phase == null ? 0 : phase.ordinal() + 1, true);
+
+        out.writeVarInt(state.getBrokenBlockCount(), true);
+        out.writeVarInt(state.getCurrentBlockPointer(), false);
+        out.writeVarInt(state.getIdIndex(), false);
+        out.writeVarInt(state.getYahooDuration(), false);
+        out.writeVarInt(state.getBoardNumber(), false);
+        out.writeFloat(state.getPieceFallTimer());
+        out.writeFloat(state.getPieceLockTimer());
+        out.writeFloat(state.getBlockAnimationTimer());
+
+        out.writeString(state.getName());
+        out.writeString(state.getGameClock());
+        writeStringRef(out, state.getPiece(), dictionary);
+        writeStringRef(out, state.getNextPiece(), dictionary);
+        writeObjectRef(kryo, out, state.getNextBlocks(), dictionary);
+
+        writeInts(out, state.getCountOfBreaks());
+        writeInts(out, state.getPowersKeep());
+        writeInts(out, state.getPowers());
+        writeInts(out, state.getSpecialPieces());
+        writeBits(out, state.getIds());
+
+        writeCells(out, state.getPlayerCells());
+        writeCells(out, state.getPartnerCells());
+        kryo.writeClassAndObject(out, state.getBrokenCells());
+    }
+
+    static YipeeGameBoardState readState(Kryo kryo, Input in, Dictionary dictionary) {
+        byte version = in.readByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unsupported board state version " + version);
+        }
+        YipeeGameBoardState state = new YipeeGameBoardState();
+        int flags = in.readVarInt(true);
+        state.setFastDown((flags & FLAG_FAST_DOWN) != 0);
+        state.setDebug((flags & FLAG_DEBUG) != 0);
+        state.setPartnerRight((flags & FLAG_PARTNER_RIGHT) != 0);
+        state.setHasGameStarted((flags & FLAG_GAME_STARTED) != 0);
+
+        long current = in.readVarLong(true);
+        state.setCurrentStateTimeStamp(current);
+        state.setPreviousStateTimeStamp(current + in.readVarLong(false));
+        state.setServerGameStartTime(current + in.readVarLong(false));
+        int phase = in.readVarInt(true);
+        state.setCurrentPhase(phase == 0 ? null : PHASES[phase - 1]);
+
+        state.setBrokenBlockCount(in.readVarInt(true));
+        state.setCurrentBlockPointer(in.readVarInt(false));
+        state.setIdIndex(in.readVarInt(false));
+        state.setYahooDuration(in.readVarInt(false));
+        state.setBoardNumber(in.readVarInt(false));
+        state.setPieceFallTimer(in.readFloat());
+        state.setPieceLockTimer(in.readFloat());
+        state.setBlockAnimationTimer(in.readFloat());
+
+        state.setName(in.readString());
+        state.setGameClock(in.readString());
+        state.setPiece(readStringRef(in, dictionary));
+        state.setNextPiece(readStringRef(in, dictionary));
+        state.setNextBlocks(readObjectRef(kryo, in, dictionary));
+
+        state.setCountOfBreaks(readInts(in));
+        state.setPowersKeep(readInts(in));
+        state.setPowers(toList(readInts(in)));
+        state.setSpecialPieces(toList(readInts(in)));
+        state.setIds(readBits(in));
+
+        state.setPlayerCells(readCells(in));
+        state.setPartnerCells(readCells(in));
+        state.setBrokenCells(kryo.readClassAndObject(in));
+        return state;
+    }
+
+    // ------------------------------------------------------------------
+    //  Dictionary references
+    // ------------------------------------------------------------------
+
+    private static void writeStringRef(Output out, String value, Dictionary dictionary) {
+        if (writeRef(out, value, dictionary)) {
+            out.writeString(value);
+        }
+    }
+
+    private static String readStringRef(Input in, Dictionary dictionary) {
+        int ref = in.readVarInt(true);
+        if (ref != REF_LITERAL) return (String) resolve(ref, dictionary);
+        String value = in.readString();
+        dictionary.entries.add(value);
+        return value;
+    }
+
+    private static void writeObjectRef(Kryo kryo, Output out, Object value, Dictionary dictionary) {
+        if (writeRef(out, value, dictionary)) {
+            kryo.writeClassAndObject(out, value);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T readObjectRef(Kryo kryo, Input in, Dictionary dictionary) {
+        int ref = in.readVarInt(true);
+        if (ref != REF_LITERAL) return (T) resolve(ref, dictionary);
+        Object value = kryo.readClassAndObject(in);
+        dictionary.entries.add(value);
+        return (T) value;
+    }
+
+    /**
+     * Writes the reference to {@code value}.
+     *
+     * @return {@code true} if the caller must write the literal
+     */
+    private static boolean writeRef(Output out, Object value, Dictionary dictionary) {
+        if (value == null) {
+            out.writeVarInt(REF_NULL, true);
+            return false;
+        }
+        Integer id = dictionary.ids.get(value);
+        if (id != null) {
+            out.writeVarInt(id + REF_FIRST_ENTRY, true);
+            return false;
+        }
+        dictionary.ids.put(value, dictionary.ids.size());
+        out.writeVarInt(REF_LITERAL, true);
+        return true;
+    }
+
+    private static Object resolve(int ref, Dictionary dictionary) {
+        if (ref == REF_NULL) return null;
+        int index = ref - REF_FIRST_ENTRY;
+        if (index >= dictionary.entries.size()) {
+            throw new IllegalArgumentException("Unknown dictionary entry " + index);
+        }
+        return dictionary.entries.get(index);
+    }
+
+    // ------------------------------------------------------------------
+    //  Arrays
+    // ------------------------------------------------------------------
+
+    private static void writeInts(Output out, int[] values) {
+        if (values == null) {
+            out.writeVarInt(0, true);
+            return;
+        }
+        out.writeVarInt(values.length + 1, true);
+        for (int value : values) {
+            out.writeVarInt(value, false);
+        }
+    }
+
+    private static void writeInts(Output out, Iterable<Integer> values) {
+        if (values == null) {
+            out.writeVarInt(0, true);
+            return;
+        }
+        List<Integer> list = new ArrayList<>();
+        values.forEach(list::add);
+        out.writeVarInt(list.size() + 1, true);
+        for (Integer value : list) {
+            out.writeVarInt(value, false);
+        }
+    }
+
+    private static int[] readInts(Input in) {
+        int length = in.readVarInt(true) - 1;
+        if (length < 0) return null;
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            values[i] = in.readVarInt(false);
+        }
+        return values;
+    }
+
+    private static List<Integer> toList(int[] values) {
+        if (values == null) return null;
+        List<Integer> list = new ArrayList<>(values.length);
+        for (int value : values) list.add(value);
+        return list;
+    }
+
+    private static void writeBits(Output out, boolean[] bits) {
+        if (bits == null) {
+            out.writeVarInt(0, true);
+            return;
+        }
+        out.writeVarInt(bits.length + 1, true);
+        int current = 0;
+        for (int i = 0; i < bits.length; i++) {
+            if (bits[i]) current |= 1 << (i & 7);
+            if ((i & 7) == 7) {
+                out.writeByte(current);
+                current = 0;
+            }
+        }
+        if ((bits.length & 7) != 0) out.writeByte(current);
+    }
+
+    private static boolean[] readBits(Input in) {
+        int length = in.readVarInt(true) - 1;
+        if (length < 0) return null;
+        boolean[] bits = new boolean[length];
+        int current = 0;
+        for (int i = 0; i < length; i++) {
+            if ((i & 7) == 0) current = in.readByte();
+            bits[i] = (current & (1 << (i & 7))) != 0;
+        }
+        return bits;
+    }
+
+    // ------------------------------------------------------------------
+    //  Cells
+    // ------------------------------------------------------------------
+
+    static void writeCells(Output out, int[][] cells) {
+        if (cells == null) {
+            out.writeVarInt(CELLS_NULL, true);
+            return;
+        }
+        int cols = cells.length == 0 || cells[0] == null ? 0 : cells[0].length;
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int[] row : cells) {
+            if (row == null || row.length != cols) {
+                writeRaggedCells(out, cells);
+                return;
+            }
+            for (int value : row) {
+                if (value < min) min = value;
+                if (value > max) max = value;
+            }
+        }
+        if (cols == 0) min = max = 0;
+        long range = (long) max - min;
+        int bits = 64 - Long.numberOfLeadingZeros(range);
+
+        out.writeVarInt(CELLS_PACKED, true);
+        out.writeVarInt(cells.length, true);
+        out.writeVarInt(cols, true);
+        out.writeVarInt(min, false);
+        out.writeByte(bits);
+        if (bits == 0) return;
+
+        long buffer = 0L;
+        int buffered = 0;
+        for (int[] row : cells) {
+            for (int value : row) {
+                buffer |= ((long) value - min) << buffered;
+                buffered += bits;
+                while (buffered >= 8) {
+                    out.writeByte((byte) buffer);
+                    buffer >>>= 8;
+                    buffered -= 8;
+                }
+            }
+        }
+        if (buffered > 0) out.writeByte((byte) buffer);
+    }
+
+    private static void writeRaggedCells(Output out, int[][] cells) {
+        out.writeVarInt(CELLS_RAGGED, true);
+        out.writeVarInt(cells.length, true);
+        for (int[] row : cells) {
+            writeInts(out, row);
+        }
+    }
+
+    static int[][] readCells(Input in) {
+        int mode = in.readVarInt(true);
+        if (mode == CELLS_NULL) return null;
+        int rows = in.readVarInt(true);
+        int[][] cells = new int[rows][];
+        if (mode == CELLS_RAGGED) {
+            for (int r = 0; r < rows; r++) {
+                cells[r] = readInts(in);
+            }
+            return cells;
+        }
+        if (mode != CELLS_PACKED) {
+            throw new IllegalArgumentException("Unknown cell encoding " + mode);
+        }
+        int cols = in.readVarInt(true);
+        int min = in.readVarInt(false);
+        int bits = in.readByte();
+        long mask = (1L << bits) - 1;
+
+        long buffer = 0L;
+        int buffered = 0;
+        for (int r = 0; r < rows; r++) {
+            int[] row = new int[cols];
+            for (int c = 0; c < cols; c++) {
+                while (buffered < bits) {
+                    buffer |= (in.readByte() & 0xFFL) << buffered;
+                    buffered += 8;
+                }
+                row[c] = (int) ((buffer & mask) + min);
+                buffer >>>= bits;
+                buffered -= bits;
+            }
+            cells[r] = row;
+        }
+        return cells;
+    }
+}
@@ -0,0 +1,18 @@
+package asg.games.server.yipeewebserver.net.codec;
+
+/**
+ * Kryo packet carrying another packet compressed by {@link FrameCompressor}: {@code data}
+ * restores with {@link FrameCompressor#decompress(byte[])} to the Kryo bytes of the original,
+ * class id included. Only sent to clients that negotiated compression; they register it after
+ * the packet classes (and {@link GameBoardStateSerializer}, if used), as the server does.
+ */
+public class CompressedFrame {
+    public byte[] data;
+
+    public CompressedFrame() {
+    }
+
+    public CompressedFrame(byte[] data) {
+        this.data = data;
+    }
+}
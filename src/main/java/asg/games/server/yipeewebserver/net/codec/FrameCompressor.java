@@ -0,0 +1,374 @@
+package asg.games.server.yipeewebserver.net.codec;
+
+import asg.games.server.yipeewebserver.aspects.Untraced;
+import asg.games.server.yipeewebserver.net.ConnectionContext;
+import asg.games.server.yipeewebserver.net.ConnectionContextFactory;
+import asg.games.server.yipeewebserver.tools.TtlCache;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Output;
+import com.esotericsoftware.kryonet.Connection;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Optional per-frame compression of large server packets, negotiated per client at handshake.
+ * <p>
+ * The client lists the codecs it can decode in the {@value #HEADER_COMPRESSION} header of the
+ * handshake (e.g. {@code deflate-dict-1, deflate}); {@link #negotiate(String, String)} picks the
+ * first one this server supports and the handshake echoes it back in the same header, or
+ * {@value #CODEC_NONE}. From then on, packets to that client of at least
+ * {@code yipee.compression.minBytes} are sent compressed if that makes them smaller:
+ * <ul>
+ *     <li>Kryo: as a {@link CompressedFrame} packet wrapping the Kryo bytes of the original.</li>
+ *     <li>WebSocket: as a binary message instead of the JSON text message.</li>
+ * </ul>
+ * Smaller packets go out as before, so a client that negotiated must accept both forms.
+ * </p>
+ * <p>
+ * Frame layout: {@value #FRAME_MAGIC} ({@code 'Z'}), the codec id, the uncompressed length as
+ * a Kryo varint, then a raw deflate stream (no zlib header). {@code deflate-dict-1} presets the
+ * deflater with {@code compression/board-state-v1.dict}, a sample of board state and packet
+ * JSON, so even a single small board compresses; clients must ship the same file. A new
+ * dictionary gets a new codec id instead of replacing this one.
+ * </p>
+ * <p>
+ * Meters, tagged with {@code transport} ({@code kryo}, {@code ws}):
+ * <ul>
+ *     <li>{@code yipee.compression.frames{result}} - packets {@code compressed}, {@code skipped}
+ *     below the threshold, or sent raw because compression did not make them smaller ({@code expanded}).</li>
+ *     <li>{@code yipee.compression.bytes{stage}} - bytes before ({@code in}) and after ({@code out})
+ *     compression of the packets that were compressed.</li>
+ *     <li>{@code yipee.compression.time} - time to compress one packet, including rejected attempts.</li>
+ * </ul>
+ * Bytes saved per second of {@code time} is what {@code minBytes} trades against.
+ * </p>
+ */
+@Slf4j
+@Untraced
+@Component
+public class FrameCompressor {
+    public static final String HEADER_COMPRESSION = "X-Yipee-Compression";
+    public static final String CODEC_NONE = "none";
+    public static final String TRANSPORT_KRYO = "kryo";
+    public static final String TRANSPORT_WS = "ws";
+
+    public static final String METER_FRAMES = "yipee.compression.frames";
+    public static final String METER_BYTES = "yipee.compression.bytes";
+    public static final String METER_TIME = "yipee.compression.time";
+
+    public static final byte FRAME_MAGIC = 0x5A;
+    private static final String DICTIONARY_RESOURCE = "/compression/board-state-v1.dict";
+    private static final byte[] DICTIONARY = loadDictionary();
+
+    /** Codecs in order of preference when a client offers several. */
+    public enum Codec {
+        DEFLATE_DICT("deflate-dict-1", (byte) 2, DICTIONARY),
+        DEFLATE("deflate", (byte) 1, null);
+
+        private final String token;
+        private final byte id;
+        private final byte[] dictionary;
+
+        Codec(String token, byte id, byte[] dictionary) {
+            this.token = token;
+            this.id = id;
+            this.dictionary = dictionary;
+        }
+
+        public String token() {
+            return token;
+        }
+
+        static Codec fromToken(String token) {
+            for (Codec codec : values()) {
+                if (codec.token.equalsIgnoreCase(token)) return codec;
+            }
+            return null;
+        }
+
+        static Codec fromId(byte id) {
+            for (Codec codec : values()) {
+                if (codec.id == id) return codec;
+            }
+            return null;
+        }
+    }
+
+    private final ConnectionContextFactory connectionContextFactory;
+    private final Map<String, Meters> meters;
+
+    /** clientId → negotiated codec. */
+    private final TtlCache<String, Codec> negotiated;
+
+    /** Deflaters hold native memory; one per sending thread, reset per frame. */
+    private final ThreadLocal<Deflater> deflaters;
+    private final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[8192]);
+    private volatile ThreadLocal<Kryo> wireKryo;
+    private final ThreadLocal<Output> wireOutput = ThreadLocal.withInitial(() -> new Output(8192, -1));
+
+    @Value("${yipee.compression.enabled:true}")
+    private boolean enabled;
+
+    /** Packets smaller than this are never compressed. */
+    @Value("${yipee.compression.minBytes:2048}")
+    private int minBytes;
+
+    /** How long a client's negotiated codec is kept without a new handshake. */
+    @Value("${yipee.compression.negotiationTtlSeconds:86400}")
+    private long negotiationTtlSeconds;
+
+    private record Meters(Counter compressed, Counter skipped, Counter expanded,
+                          Counter bytesIn, Counter bytesOut, Timer time) {}
+
+    public FrameCompressor(ConnectionContextFactory connectionContextFactory,
+                           MeterRegistry meterRegistry,
+                           @Value("${yipee.compression.level:1}") int level,
+                           @Value("${yipee.compression.maxClients:10000}") int maxClients) {
+        this.connectionContextFactory = connectionContextFactory;
+        this.negotiated = new TtlCache<>(maxClients);
+        this.deflaters = ThreadLocal.withInitial(() -> new Deflater(level, true));
+        this.meters = Map.of(
+                TRANSPORT_KRYO, meters(meterRegistry, TRANSPORT_KRYO),
+                TRANSPORT_WS, meters(meterRegistry, TRANSPORT_WS));
+    }
+
+    private static Meters meters(MeterRegistry registry, String transport) {
+        return new Meters(
+                frames(registry, transport, "compressed"),
+                frames(registry, transport, "skipped"),
+                frames(registry, transport, "expanded"),
+                bytes(registry, transport, "in"),
+                bytes(registry, transport, "out"),
+                Timer.builder(METER_TIME)
+                        .description("Time to compress one packet")
+                        .tag("transport", transport)
+                        .publishPercentiles(0.5, 0.95, 0.99)
+                        .register(registry));
+    }
+
+    private static Counter frames(MeterRegistry registry, String transport, String result) {
+        return Counter.builder(METER_FRAMES)
+                .description("Packets considered for compression by outcome")
+                .tag("transport", transport)
+                .tag("result", result)
+                .register(registry);
+    }
+
+    private static Counter bytes(MeterRegistry registry, String transport, String stage) {
+        return Counter.builder(METER_BYTES)
+                .description("Size of compressed packets before and after compression")
+                .baseUnit("bytes")
+                .tag("transport", transport)
+                .tag("stage", stage)
+                .register(registry);
+    }
+
+    /**
+     * Picks the codec for {@code clientId} from its {@value #HEADER_COMPRESSION} offer and
+     * remembers it. A missing or unsupported offer turns compression off for the client.
+     *
+     * @return the token to echo in the handshake response
+     */
+    public String negotiate(String clientId, String offer) {
+        if (clientId == null) return CODEC_NONE;
+        Codec chosen = null;
+        if (enabled && offer != null) {
+            for (String token : offer.split(",")) {
+                Codec codec = Codec.fromToken(token.strip());
+                if (codec != null && (chosen == null || codec.ordinal() < chosen.ordinal())) {
+                    chosen = codec;
+                }
+            }
+        }
+        if (chosen == null) {
+            negotiated.invalidate(clientId);
+            return CODEC_NONE;
+        }
+        negotiated.put(clientId, chosen, System.currentTimeMillis() + negotiationTtlSeconds * 1_000L);
+        log.debug("Client {} negotiated {} compression", clientId, chosen.token());
+        return chosen.token();
+    }
+
+    /**
+     * @return the codec negotiated by {@code clientId}, or {@code null} to send uncompressed
+     */
+    public Codec codecFor(String clientId) {
+        return clientId != null ? negotiated.get(clientId) : null;
+    }
+
+    /**
+     * @return the codec negotiated by the client on {@code connection}, or {@code null} if the
+     * connection has not sent a request yet or its client did not negotiate one
+     */
+    public Codec codecFor(Connection connection) {
+        ConnectionContext context = connectionContextFactory.getConnectionContextByConnectionId(connection.getID());
+        return context != null ? codecFor(context.clientId) : null;
+    }
+
+    /**
+     * Sets how Kryo packets are encoded before compression; must match the server's Kryo
+     * registrations. Until this is called, Kryo packets are sent uncompressed.
+     */
+    public void useKryo(Supplier<Kryo> kryoFactory) {
+        wireKryo = ThreadLocal.withInitial(kryoFactory);
+    }
+
+    /**
+     * Returns {@code packet} as it should be sent to {@code connection}: a {@link CompressedFrame}
+     * if the client negotiated compression and it pays off, otherwise {@code packet} itself.
+     */
+    public Object forKryo(Connection connection, Object packet) {
+        Codec codec = codecFor(connection);
+        return codec != null ? forKryo(codec, packet) : packet;
+    }
+
+    /**
+     * Same as {@link #forKryo(Connection, Object)} for a known codec, so a broadcast can
+     * compress a packet once and send the result to every client using that codec.
+     */
+    public Object forKryo(Codec codec, Object packet) {
+        ThreadLocal<Kryo> kryo = wireKryo;
+        if (kryo == null || packet == null) return packet;
+        Output output = wireOutput.get();
+        output.clear();
+        kryo.get().writeClassAndObject(output, packet);
+        byte[] frame = compress(codec, output.getBuffer(), output.position(), TRANSPORT_KRYO);
+        return frame != null ? new CompressedFrame(frame) : packet;
+    }
+
+    /**
+     * Compresses {@code raw} into a frame.
+     *
+     * @return the frame, or {@code null} to send {@code raw} as is
+     */
+    public byte[] compress(Codec codec, byte[] raw, String transport) {
+        return compress(codec, raw, raw.length, transport);
+    }
+
+    private byte[] compress(Codec codec, byte[] raw, int length, String transport) {
+        Meters meter = meters.get(transport);
+        if (!enabled || length < minBytes) {
+            meter.skipped().increment();
+            return null;
+        }
+        long start = System.nanoTime();
+        byte[] frame = deflate(codec, raw, length);
+        meter.time().record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (frame == null) {
+            meter.expanded().increment();
+            return null;
+        }
+        meter.compressed().increment();
+        meter.bytesIn().increment(length);
+        meter.bytesOut().increment(frame.length);
+        return frame;
+    }
+
+    /**
+     * @return the frame, or {@code null} if it would not be smaller than {@code length}
+     */
+    private byte[] deflate(Codec codec, byte[] raw, int length) {
+        Deflater deflater = deflaters.get();
+        deflater.reset();
+        if (codec.dictionary != null) {
+            deflater.setDictionary(codec.dictionary);
+        }
+        deflater.setInput(raw, 0, length);
+        deflater.finish();
+
+        byte[] out = scratch.get();
+        if (out.length < length) {
+            out = new byte[Integer.highestOneBit(length) << 1];
+            scratch.set(out);
+        }
+        int header = writeHeader(out, codec, length);
+        int limit = length - 1; // must come out smaller than the packet
+        int pos = header;
+        while (!deflater.finished()) {
+            if (pos >= limit) return null;
+            pos += deflater.deflate(out, pos, limit - pos);
+        }
+        return Arrays.copyOf(out, pos);
+    }
+
+    private static int writeHeader(byte[] out, Codec codec, int length) {
+        out[0] = FRAME_MAGIC;
+        out[1] = codec.id;
+        int pos = 2;
+        int value = length;
+        while ((value & ~0x7F) != 0) {
+            out[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * Restores the packet bytes of a frame; the client side of {@link #compress}.
+     *
+     * @throws IllegalArgumentException if {@code frame} is not a valid frame
+     */
+    public static byte[] decompress(byte[] frame) {
+        if (frame.length < 3 || frame[0] != FRAME_MAGIC) {
+            throw new IllegalArgumentException("Not a compressed frame");
+        }
+        Codec codec = Codec.fromId(frame[1]);
+        if (codec == null) {
+            throw new IllegalArgumentException("Unknown compression codec " + frame[1]);
+        }
+        int pos = 2;
+        int length = 0;
+        for (int shift = 0; ; shift += 7) {
+            if (pos >= frame.length || shift > 28) throw new IllegalArgumentException("Bad frame length");
+            byte b = frame[pos++];
+            length |= (b & 0x7F) << shift;
+            if (b >= 0) break;
+        }
+
+        Inflater inflater = new Inflater(true);
+        try {
+            if (codec.dictionary != null) {
+                inflater.setDictionary(codec.dictionary);
+            }
+            inflater.setInput(frame, pos, frame.length - pos);
+            byte[] raw = new byte[length];
+            int read = 0;
+            while (read < length) {
+                int n = inflater.inflate(raw, read, length - read);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) break;
+                read += n;
+            }
+            if (read != length) throw new IllegalArgumentException("Truncated frame");
+            return raw;
+        } catch (DataFormatException e) {
+            throw new IllegalArgumentException("Corrupt frame", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] loadDictionary() {
+        try (InputStream in = FrameCompressor.class.getResourceAsStream(DICTIONARY_RESOURCE)) {
+            if (in == null) throw new IllegalStateException("Missing " + DICTIONARY_RESOURCE);
+            return in.readAllBytes();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
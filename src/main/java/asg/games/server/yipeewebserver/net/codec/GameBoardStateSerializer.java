@@ -0,0 +1,49 @@
+package asg.games.server.yipeewebserver.net.codec;
+
+import asg.games.server.yipeewebserver.aspects.Untraced;
+import asg.games.yipee.common.game.GameBoardState;
+import asg.games.yipee.core.objects.YipeeGameBoardState;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.Serializer;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+
+/**
+ * Kryo serializer writing board states in the {@link CompactStateCodec} layout instead of
+ * field by field. The piece dictionary lives in Kryo's graph context, so it spans every state
+ * of one packet (e.g. the eight seats of a table update) and is reset with the packet.
+ * <p>
+ * Both ends must register it: {@link #register(Kryo)} after the packet classes.
+ * </p>
+ */
+@Untraced
+public class GameBoardStateSerializer extends Serializer<GameBoardState> {
+
+    /**
+     * Replaces the serializer of {@link YipeeGameBoardState}, keeping its registration id
+     * when the class is already registered.
+     */
+    public static void register(Kryo kryo) {
+        kryo.register(YipeeGameBoardState.class, new GameBoardStateSerializer());
+    }
+
+    @Override
+    public void write(Kryo kryo, Output output, GameBoardState state) {
+        CompactStateCodec.writeState(kryo, output, state, dictionary(kryo));
+    }
+
+    @Override
+    public GameBoardState read(Kryo kryo, Input input, Class<GameBoardState> type) {
+        return CompactStateCodec.readState(kryo, input, dictionary(kryo));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static CompactStateCodec.Dictionary dictionary(Kryo kryo) {
+        Object dictionary = kryo.getGraphContext().get(CompactStateCodec.Dictionary.class);
+        if (dictionary == null) {
+            dictionary = new CompactStateCodec.Dictionary();
+            kryo.getGraphContext().put(CompactStateCodec.Dictionary.class, dictionary);
+        }
+        return (CompactStateCodec.Dictionary) dictionary;
+    }
+}
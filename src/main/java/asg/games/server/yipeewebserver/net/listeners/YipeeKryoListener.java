@@ -2,6 +2,7 @@ package asg.games.server.yipeewebserver.net.listeners;
 
 import asg.games.server.yipeewebserver.core.GameContext;
 import asg.games.server.yipeewebserver.core.GameContextFactory;
+import asg.games.server.yipeewebserver.net.UdpAck;
 import asg.games.server.yipeewebserver.net.YipeePacketHandler;
 import asg.games.yipee.net.errors.YipeeBadRequestException;
 import asg.games.yipee.net.errors.YipeeException;
@@ -37,6 +38,9 @@ public class YipeeKryoListener extends Listener {
                 log.trace("Received FrameworkMessage from client: {}", object.getClass().getName());
                 return;
             }
+            if (object instanceof UdpAck) {
+                return; // handled by UdpTickChannel
+            }
             if (object instanceof AbstractClientRequest request) {
                 log.trace("received instance of {}...", AbstractClientRequest.class.getSimpleName());
                 GameContext gameContext = gameContextFactory.fromKryo(connection, request);
@@ -4,9 +4,14 @@ package asg.games.server.yipeewebserver.persistence;
 // CRUD refers Create, Read, Update, Delete
 
 import asg.games.server.yipeewebserver.data.PlayerConnectionEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -37,4 +42,20 @@ public interface YipeeClientConnectionRepository extends YipeeRepository<PlayerC
     void deleteAllByPlayerId(String playerId);
 
     Optional<PlayerConnectionEntity> findByPlayerIdAndClientId(String playerId, String clientId);
-}
\ No newline at end of file
+
+    // Players owning at least one expired connection, one chunk at a time
+    @Query("""
+      select distinct c.player.id
+      from PlayerConnectionEntity c
+      where c.lastActivity < :cutoff and c.player is not null
+    """)
+    List<String> findPlayerIdsWithActivityBefore(@Param("cutoff") Instant cutoff, Pageable pageable);
+
+    @Modifying
+    @Query("delete from PlayerConnectionEntity c where c.player.id in :playerIds")
+    int deleteAllByPlayerIdIn(@Param("playerIds") Collection<String> playerIds);
+
+    @Modifying
+    @Query("delete from PlayerConnectionEntity c where c.player is null and c.lastActivity < :cutoff")
+    int deleteOrphanedBefore(@Param("cutoff") Instant cutoff);
+}
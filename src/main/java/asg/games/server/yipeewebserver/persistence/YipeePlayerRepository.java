@@ -4,8 +4,17 @@ package asg.games.server.yipeewebserver.persistence;
 // CRUD refers Create, Read, Update, Delete
 
 import asg.games.yipee.core.objects.YipeePlayer;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
+
 @Repository
 public interface YipeePlayerRepository extends YipeeRepository<YipeePlayer, String> {
-}
\ No newline at end of file
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from YipeePlayer p where p.id in :playerIds")
+    int deleteAllByIdIn(@Param("playerIds") Collection<String> playerIds);
+}
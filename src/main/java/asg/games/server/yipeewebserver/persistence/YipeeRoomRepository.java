@@ -4,8 +4,12 @@ package asg.games.server.yipeewebserver.persistence;
 // CRUD refers Create, Read, Update, Delete
 
 import asg.games.yipee.core.objects.YipeeRoom;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,4 +18,12 @@ public interface YipeeRoomRepository extends YipeeRepository<YipeeRoom, String>
     List<YipeeRoom> findByPlayers_Id(String playerId);
 
     YipeeRoom findRoomById(String roomId);
-}
\ No newline at end of file
+
+    // Rooms containing any of these players, with the full player set loaded in the same query
+    @EntityGraph(attributePaths = "players")
+    @Query("""
+      select r from YipeeRoom r
+      where r.id in (select r2.id from YipeeRoom r2 join r2.players p where p.id in :playerIds)
+    """)
+    List<YipeeRoom> findWithPlayersByPlayerIdIn(@Param("playerIds") Collection<String> playerIds);
+}
@@ -1,9 +1,12 @@
 package asg.games.server.yipeewebserver.persistence;
 
 import asg.games.yipee.core.objects.YipeeSeat;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -32,4 +35,44 @@ public interface YipeeSeatRepository extends YipeeRepository<YipeeSeat, String>
       group by s.parentTable.id
     """)
     List<TableSeatCount> countOccupiedSeatsByTable();
-}
\ No newline at end of file
+
+    @Query("""
+      select s.parentTable.id as tableId, count(s) as occupiedCount
+      from YipeeSeat s
+      where s.seatedPlayer is not null and s.parentTable.id in :tableIds
+      group by s.parentTable.id
+    """)
+    List<TableSeatCount> countOccupiedSeatsByTableIds(@Param("tableIds") Collection<String> tableIds);
+
+    @Query("""
+      select s.seatedPlayer.id
+      from YipeeSeat s
+      where s.parentTable.id = :tableId and s.seatedPlayer is not null
+    """)
+    List<String> findSeatedPlayerIdsByTableId(@Param("tableId") String tableId);
+
+    interface SeatedPlayerRef {
+        String getTableId();
+        String getPlayerId();
+    }
+
+    @Query("""
+      select s.parentTable.id as tableId, s.seatedPlayer.id as playerId
+      from YipeeSeat s
+      where s.seatedPlayer.id in :playerIds
+    """)
+    List<SeatedPlayerRef> findSeatedRefsByPlayerIdIn(@Param("playerIds") Collection<String> playerIds);
+
+    // Set-based equivalent of YipeeSeat#standUp for every seat held by these players
+    @Modifying
+    @Query("""
+      update YipeeSeat s
+      set s.seatedPlayer = null, s.isSeatReady = false
+      where s.seatedPlayer.id in :playerIds
+    """)
+    int standUpAllByPlayerIdIn(@Param("playerIds") Collection<String> playerIds);
+
+    @Modifying
+    @Query("delete from YipeeSeat s where s.parentTable.id in :tableIds")
+    int deleteAllByParentTableIdIn(@Param("tableIds") Collection<String> tableIds);
+}
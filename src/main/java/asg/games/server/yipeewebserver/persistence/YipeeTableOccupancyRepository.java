@@ -1,10 +1,16 @@
 package asg.games.server.yipeewebserver.persistence;
 
 import asg.games.server.yipeewebserver.data.YipeeTableOccupancyEntity;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -14,4 +20,56 @@ public interface YipeeTableOccupancyRepository extends JpaRepository<YipeeTableO
             int seatedCount,
             Instant cutoff
     );
+
+    // Single-statement +/- adjustment, clamped at zero
+    @Modifying
+    @Transactional
+    @Query("""
+      update YipeeTableOccupancyEntity o
+      set o.seatedCount = case when o.seatedCount + :delta < 0 then 0 else o.seatedCount + :delta end,
+          o.lastOccupancyChange = :now
+      where o.tableId in :tableIds
+    """)
+    int adjustSeatedCount(@Param("tableIds") Collection<String> tableIds,
+                          @Param("delta") int delta,
+                          @Param("now") Instant now);
+
+    @Modifying
+    @Transactional
+    @Query("""
+      update YipeeTableOccupancyEntity o
+      set o.seatedCount = :seatedCount,
+          o.lastOccupancyChange = :now
+      where o.tableId = :tableId
+    """)
+    int setSeatedCount(@Param("tableId") String tableId,
+                       @Param("seatedCount") int seatedCount,
+                       @Param("now") Instant now);
+
+    // Keyset page of stale, empty tables
+    @Query("""
+      select o.tableId
+      from YipeeTableOccupancyEntity o
+      where o.seatedCount = 0 and o.lastOccupancyChange < :cutoff and o.tableId > :afterTableId
+      order by o.tableId
+    """)
+    List<String> findStaleTableIdsAfter(@Param("cutoff") Instant cutoff,
+                                        @Param("afterTableId") String afterTableId,
+                                        Pageable pageable);
+
+    // Re-check inside the purge transaction, in case someone sat down meanwhile
+    @Query("""
+      select o.tableId
+      from YipeeTableOccupancyEntity o
+      where o.tableId in :tableIds and o.seatedCount = 0 and o.lastOccupancyChange < :cutoff
+    """)
+    List<String> findStaleTableIdsIn(@Param("tableIds") Collection<String> tableIds,
+                                     @Param("cutoff") Instant cutoff);
+
+    @Query("select o.gameId from YipeeTableOccupancyEntity o where o.tableId in :tableIds and o.gameId is not null")
+    List<String> findGameIdsByTableIdIn(@Param("tableIds") Collection<String> tableIds);
+
+    @Modifying
+    @Query("delete from YipeeTableOccupancyEntity o where o.tableId in :tableIds")
+    int deleteAllByTableIdIn(@Param("tableIds") Collection<String> tableIds);
 }
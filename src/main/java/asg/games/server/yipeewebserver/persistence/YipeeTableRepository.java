@@ -1,9 +1,13 @@
 package asg.games.server.yipeewebserver.persistence;
 
 import asg.games.yipee.core.objects.YipeeTable;
+import org.springframework.data.jpa.repository.EntityGraph;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -30,4 +34,29 @@ public interface YipeeTableRepository extends YipeeRepository<YipeeTable, String
       group by t.id
     """)
     List<TableWatcherCount> countWatchersByTable();
-}
\ No newline at end of file
+
+    @Query("""
+      select t.id as tableId, count(p) as watcherCount
+      from YipeeTable t
+      left join t.watchers p
+      where t.id in :tableIds
+      group by t.id
+    """)
+    List<TableWatcherCount> countWatchersByTableIds(@Param("tableIds") Collection<String> tableIds);
+
+    // Tables watched by any of these players, with the full watcher set loaded in the same query
+    @EntityGraph(attributePaths = "watchers")
+    @Query("""
+      select t from YipeeTable t
+      where t.id in (select t2.id from YipeeTable t2 join t2.watchers w where w.id in :playerIds)
+    """)
+    List<YipeeTable> findWithWatchersByWatcherIdIn(@Param("playerIds") Collection<String> playerIds);
+
+    @EntityGraph(attributePaths = "watchers")
+    @Query("select t from YipeeTable t where t.id in :tableIds")
+    List<YipeeTable> findWithWatchersByIdIn(@Param("tableIds") Collection<String> tableIds);
+
+    @Modifying(clearAutomatically = true)
+    @Query("delete from YipeeTable t where t.id in :tableIds")
+    int deleteAllByIdIn(@Param("tableIds") Collection<String> tableIds);
+}
@@ -0,0 +1,103 @@
+package asg.games.server.yipeewebserver.replay;
+
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.yipee.common.game.PlayerAction;
+import asg.games.yipee.core.objects.YipeePlayer;
+
+/**
+ * Receives the inputs of a match as {@link ServerGameManager} consumes them, in order.
+ * Together with the seed these are enough to re-simulate the match deterministically.
+ * <p>
+ * Calls come from the game loop thread (or from the thread that starts/stops the match);
+ * implementations must not block.
+ * </p>
+ */
+public interface MatchEventSink {
+
+    /** Sink that ignores everything; the default for unrecorded games. */
+    MatchEventSink NONE = new MatchEventSink() {
+    };
+
+    /** Boards were (re)seeded after {@code tick}. */
+    default void onSeed(long tick, long seed) {
+    }
+
+    /**
+     * The next tick runs with {@code delta}. Called before every tick; sinks that only keep
+     * changes (like {@link ReplayRecorder}) skip repeats themselves.
+     */
+    default void onDelta(long tick, float delta) {
+    }
+
+    /** {@code player} took {@code seatId} after {@code tick}; {@code null} clears the seat. */
+    default void onSeat(long tick, int seatId, YipeePlayer player) {
+    }
+
+    /** Boards in {@code seatMask} (bit per seat) were started after {@code tick}. */
+    default void onStart(long tick, int seatMask) {
+    }
+
+    /** Boards in {@code seatMask} were stopped after {@code tick}. */
+    default void onStop(long tick, int seatMask) {
+    }
+
+    /** {@code action} was applied during {@code tick}. */
+    default void onAction(long tick, PlayerAction action) {
+    }
+
+    /** The match is over; {@code game} holds the final state. */
+    default void onClose(ServerGameManager game) {
+    }
+
+    /**
+     * Returns a sink that forwards every event to this sink and then to {@code next}.
+     */
+    default MatchEventSink andThen(MatchEventSink next) {
+        if (next == null || next == NONE) return this;
+        if (this == NONE) return next;
+        MatchEventSink first = this;
+        return new MatchEventSink() {
+            @Override
+            public void onSeed(long tick, long seed) {
+                first.onSeed(tick, seed);
+                next.onSeed(tick, seed);
+            }
+
+            @Override
+            public void onDelta(long tick, float delta) {
+                first.onDelta(tick, delta);
+                next.onDelta(tick, delta);
+            }
+
+            @Override
+            public void onSeat(long tick, int seatId, YipeePlayer player) {
+                first.onSeat(tick, seatId, player);
+                next.onSeat(tick, seatId, player);
+            }
+
+            @Override
+            public void onStart(long tick, int seatMask) {
+                first.onStart(tick, seatMask);
+                next.onStart(tick, seatMask);
+            }
+
+            @Override
+            public void onStop(long tick, int seatMask) {
+                first.onStop(tick, seatMask);
+                next.onStop(tick, seatMask);
+            }
+
+            @Override
+            public void onAction(long tick, PlayerAction action) {
+                first.onAction(tick, action);
+                next.onAction(tick, action);
+            }
+
+            @Override
+            public void onClose(ServerGameManager game) {
+                first.onClose(game);
+                next.onClose(game);
+            }
+        };
+    }
+}
@@ -0,0 +1,229 @@
+package asg.games.server.yipeewebserver.replay;
+
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.yipee.common.game.PlayerAction;
+import asg.games.yipee.core.objects.YipeePlayer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Append-only, memory-mapped journal of one live game, used to rebuild it after a crash.
+ * <p>
+ * Records use the {@link ReplayCodec} layout plus periodic CHECKPOINT records (tick and
+ * state hash every {@code checkpointTicks}). Each record is encoded into a scratch buffer
+ * and copied into the mapped region with its type byte written last, so a record torn by a
+ * crash reads as the zero end marker. Appends only touch memory; the page cache survives a
+ * JVM crash, and {@link #force()} (driven by a scheduled job) bounds the loss on an OS crash.
+ * </p>
+ * <p>
+ * Appends come from the game loop thread; {@link #force()} may run concurrently.
+ * A journal whose game ends normally is deleted on {@link #onClose(ServerGameManager)}.
+ * </p>
+ */
+@Slf4j
+public class MatchJournal implements MatchEventSink {
+    static final String FILE_SUFFIX = ".yjnl";
+    private static final int REGION_SIZE = 1 << 20;
+
+    private final Path file;
+    private final ServerGameManager game;
+    private final int checkpointTicks;
+    private final FileChannel channel;
+    private final ByteArrayOutputStream scratchBytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream scratch = new DataOutputStream(scratchBytes);
+    private final ReplayCodec codec = new ReplayCodec();
+
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long lastTick;
+    private long lastCheckpoint;
+    private float lastDelta = Float.NaN;
+    private volatile boolean dirty;
+    private volatile boolean closed;
+
+    MatchJournal(Path file, ServerGameManager game, int checkpointTicks) throws IOException {
+        this.file = file;
+        this.game = game;
+        this.checkpointTicks = Math.max(1, checkpointTicks);
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        this.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+        this.lastCheckpoint = game.getServerTick();
+
+        scratch.writeInt(ReplayCodec.MAGIC);
+        scratch.writeByte(ReplayCodec.VERSION);
+        scratch.writeUTF(game.getGameId());
+        scratch.writeLong(System.currentTimeMillis());
+        byte[] header = scratchBytes.toByteArray();
+        region.put(header);
+        dirty = true;
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void onSeed(long tick, long seed) {
+        try {
+            if (begin(ReplayCodec.SEED, tick)) {
+                scratch.writeLong(seed);
+                commit();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onDelta(long tick, float delta) {
+        try {
+            if (tick - lastCheckpoint >= checkpointTicks && begin(ReplayCodec.CHECKPOINT, tick)) {
+                byte[] hash = ReplayCodec.stateHash(game);
+                scratch.writeByte(hash.length);
+                scratch.write(hash);
+                commit();
+                lastCheckpoint = tick;
+            }
+            if (Float.compare(delta, lastDelta) != 0 && begin(ReplayCodec.DELTA, tick)) {
+                scratch.writeFloat(delta);
+                commit();
+                lastDelta = delta;
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onSeat(long tick, int seatId, YipeePlayer player) {
+        try {
+            if (begin(ReplayCodec.SEAT, tick)) {
+                ReplayCodec.writeSeat(scratch, seatId, player);
+                commit();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onStart(long tick, int seatMask) {
+        try {
+            if (begin(ReplayCodec.START, tick)) {
+                scratch.writeByte(seatMask);
+                commit();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onStop(long tick, int seatMask) {
+        try {
+            if (begin(ReplayCodec.STOP, tick)) {
+                scratch.writeByte(seatMask);
+                commit();
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onAction(long tick, PlayerAction action) {
+        if (action == null) return;
+        try {
+            if (begin(ReplayCodec.ACTION, tick)) {
+                byte[] bytes = codec.encodeAction(action);
+                ReplayCodec.writeVarLong(scratch, bytes.length);
+                scratch.write(bytes);
+                commit();
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * The game ended normally, so there is nothing to recover: drop the journal.
+     */
+    @Override
+    public void onClose(ServerGameManager game) {
+        close();
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Could not delete journal {}", file, e);
+        }
+    }
+
+    /**
+     * Flushes written records to the storage device.
+     */
+    public void force() {
+        if (closed || !dirty) return;
+        dirty = false;
+        try {
+            region.force();
+        } catch (RuntimeException e) {
+            // The region may have been swapped out by the game loop; it was forced then
+            log.debug("Journal force raced with a region switch for {}", file, e);
+        }
+    }
+
+    /**
+     * Forces and closes the journal, keeping the file for recovery.
+     */
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        try {
+            region.force();
+            channel.close();
+        } catch (IOException | RuntimeException e) {
+            log.warn("Error closing journal {}", file, e);
+        }
+    }
+
+    private boolean begin(byte type, long tick) throws IOException {
+        if (closed) return false;
+        scratchBytes.reset();
+        scratch.writeByte(type);
+        ReplayCodec.writeVarLong(scratch, tick - lastTick);
+        lastTick = tick;
+        return true;
+    }
+
+    /**
+     * Copies the scratch record into the mapped file, type byte last.
+     */
+    private void commit() throws IOException {
+        byte[] record = scratchBytes.toByteArray();
+        if (region.remaining() < record.length + 1) {
+            // Next region starts exactly at the write position, so there is never a gap of zeros
+            region.force();
+            regionStart += region.position();
+            region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, Math.max(REGION_SIZE, record.length + 1));
+        }
+        int position = region.position();
+        region.put(position + 1, record, 1, record.length - 1);
+        region.put(position, record[0]);
+        region.position(position + record.length);
+        dirty = true;
+    }
+
+    private void fail(Exception e) {
+        log.warn("Journal {} failed, game {} will not be recoverable", file, game.getGameId(), e);
+        close();
+    }
+}
@@ -0,0 +1,146 @@
+package asg.games.server.yipeewebserver.replay;
+
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Owns the {@link MatchJournal}s of live games and rebuilds unfinished games on startup.
+ * <p>
+ * Recovery re-simulates each leftover journal from its seed (the board library cannot load
+ * an exported state), checking every checkpoint hash on the way; the rebuilt game is journaled
+ * again from scratch into a fresh file. A journal that fails to recover is kept as
+ * {@code *.yjnl.failed} for inspection.
+ * </p>
+ */
+@Slf4j
+@Component
+public class MatchJournalService {
+    private static final String FAILED_SUFFIX = ".failed";
+
+    private final ConcurrentHashMap<String, MatchJournal> journals = new ConcurrentHashMap<>();
+
+    @Value("${yipee.journal.enabled:false}")
+    private boolean enabled;
+
+    @Value("${yipee.journal.dir:journal}")
+    private String directory;
+
+    @Value("${yipee.journal.checkpointTicks:300}")
+    private int checkpointTicks;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Starts journaling {@code game}.
+     *
+     * @return the journal, or {@code null} if journaling is disabled or the file could not be created
+     */
+    public MatchJournal open(ServerGameManager game) {
+        if (!enabled) return null;
+        try {
+            Path dir = Paths.get(directory);
+            Files.createDirectories(dir);
+            MatchJournal journal = new MatchJournal(dir.resolve(game.getGameId() + MatchJournal.FILE_SUFFIX), game, checkpointTicks);
+            journals.put(game.getGameId(), journal);
+            return journal;
+        } catch (IOException e) {
+            log.warn("Could not open journal for game {}", game.getGameId(), e);
+            return null;
+        }
+    }
+
+    /**
+     * Forgets the journal of a released game. The journal itself deletes its file when the game closes.
+     */
+    public void release(String gameId) {
+        if (gameId != null) journals.remove(gameId);
+    }
+
+    /**
+     * Flushes every live journal to the storage device.
+     */
+    public void forceAll() {
+        journals.values().forEach(MatchJournal::force);
+    }
+
+    /**
+     * Rebuilds every game left behind by a previous run.
+     *
+     * @return the recovered games, journaled again and ready to be registered
+     */
+    public List<ServerGameManager> recover() {
+        List<ServerGameManager> recovered = new ArrayList<>();
+        if (!enabled) return recovered;
+
+        Path dir = Paths.get(directory);
+        if (!Files.isDirectory(dir)) return recovered;
+
+        List<Path> leftovers;
+        try (Stream<Path> files = Files.list(dir)) {
+            leftovers = files.filter(p -> p.toString().endsWith(MatchJournal.FILE_SUFFIX)).sorted().toList();
+        } catch (IOException e) {
+            log.error("Could not list journal directory {}", dir, e);
+            return recovered;
+        }
+
+        for (Path file : leftovers) {
+            ServerGameManager game = recover(file);
+            if (game != null) recovered.add(game);
+        }
+        if (!leftovers.isEmpty()) {
+            log.warn("Recovered {} of {} journaled games", recovered.size(), leftovers.size());
+        }
+        return recovered;
+    }
+
+    private ServerGameManager recover(Path file) {
+        Path old = file.resolveSibling(file.getFileName() + FAILED_SUFFIX);
+        try {
+            Files.move(file, old, StandardCopyOption.REPLACE_EXISTING);
+            RecordedMatch match = RecordedMatch.read(old);
+
+            ServerGameManager game = new ServerGameManager(ServerGameManager.MAX_TICK_HISTORY);
+            game.setGameId(match.gameId());
+            MatchJournal journal = open(game);
+            if (journal != null) game.setEventSink(journal);
+
+            ReplaySimulator.Result result = ReplaySimulator.rebuild(match, game);
+            if (result.divergedAt() >= 0) {
+                log.warn("Recovered game {} diverged from its journal at tick {}; continuing from the replayed state",
+                        match.gameId(), result.divergedAt());
+            }
+            Files.deleteIfExists(old);
+            log.info("Recovered game {} at tick {} in {}ms", match.gameId(), result.ticks(), result.nanos() / 1_000_000);
+            return game;
+        } catch (IOException | RuntimeException e) {
+            log.error("Could not recover journal {}; kept as {}", file, old, e);
+            MatchJournal partial = journals.remove(file.getFileName().toString().replace(MatchJournal.FILE_SUFFIX, ""));
+            if (partial != null) partial.onClose(null);
+            return null;
+        }
+    }
+
+    /**
+     * Keeps the journals on a normal shutdown so games can be recovered on the next start.
+     */
+    @PreDestroy
+    public void closeAll() {
+        journals.values().forEach(MatchJournal::close);
+        journals.clear();
+    }
+}
@@ -0,0 +1,101 @@
+package asg.games.server.yipeewebserver.replay;
+
+import asg.games.yipee.common.game.PlayerAction;
+import asg.games.yipee.core.objects.YipeePlayer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A replay log loaded into memory.
+ *
+ * @param gameId    recorded game id
+ * @param startedAt epoch millis when recording started
+ * @param events    inputs in the order they were consumed
+ * @param finalTick last simulated tick, or {@code -1} if the log was cut short
+ * @param finalHash state hash written at the end, or {@code null} if the log was cut short
+ */
+public record RecordedMatch(String gameId, long startedAt, List<Event> events, long finalTick, byte[] finalHash) {
+
+    /**
+     * One recorded input; only the fields for its {@code type} are set.
+     * For SEAT records {@code seatMask} holds the seat id.
+     */
+    public record Event(byte type, long tick, long seed, float delta, int seatMask, PlayerAction action,
+                        YipeePlayer player, byte[] hash) {}
+
+    public boolean isComplete() {
+        return finalHash != null;
+    }
+
+    /**
+     * Reads a replay log or match journal. A log without an END record (e.g. after a crash)
+     * is returned with everything up to the last complete record.
+     */
+    public static RecordedMatch read(Path file) throws IOException {
+        ReplayCodec codec = new ReplayCodec();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != ReplayCodec.MAGIC) {
+                throw new IOException(file + " is not a replay log");
+            }
+            byte version = in.readByte();
+            if (version != ReplayCodec.VERSION) {
+                throw new IOException("Unsupported replay version " + version + " in " + file);
+            }
+            String gameId = in.readUTF();
+            long startedAt = in.readLong();
+
+            List<Event> events = new ArrayList<>();
+            long tick = 0;
+            while (true) {
+                byte type;
+                try {
+                    type = in.readByte();
+                } catch (EOFException e) {
+                    return new RecordedMatch(gameId, startedAt, events, -1, null);
+                }
+                if (type == 0) {
+                    return new RecordedMatch(gameId, startedAt, events, -1, null);
+                }
+                try {
+                    tick += ReplayCodec.readVarLong(in);
+                    switch (type) {
+                        case ReplayCodec.SEED -> events.add(new Event(type, tick, in.readLong(), 0f, 0, null, null, null));
+                        case ReplayCodec.DELTA -> events.add(new Event(type, tick, 0L, in.readFloat(), 0, null, null, null));
+                        case ReplayCodec.START, ReplayCodec.STOP ->
+                                events.add(new Event(type, tick, 0L, 0f, in.readUnsignedByte(), null, null, null));
+                        case ReplayCodec.SEAT -> {
+                            int seatId = in.readUnsignedByte();
+                            events.add(new Event(type, tick, 0L, 0f, seatId, null, ReplayCodec.readSeatPlayer(in), null));
+                        }
+                        case ReplayCodec.ACTION -> {
+                            byte[] bytes = new byte[(int) ReplayCodec.readVarLong(in)];
+                            in.readFully(bytes);
+                            events.add(new Event(type, tick, 0L, 0f, 0, codec.decodeAction(bytes), null, null));
+                        }
+                        case ReplayCodec.CHECKPOINT -> {
+                            byte[] hash = new byte[in.readUnsignedByte()];
+                            in.readFully(hash);
+                            events.add(new Event(type, tick, 0L, 0f, 0, null, null, hash));
+                        }
+                        case ReplayCodec.END -> {
+                            byte[] hash = new byte[in.readUnsignedByte()];
+                            in.readFully(hash);
+                            return new RecordedMatch(gameId, startedAt, events, tick, hash);
+                        }
+                        default -> throw new IOException("Unknown record type " + type + " in " + file);
+                    }
+                } catch (EOFException | RuntimeException e) {
+                    // Torn last record; everything before it is intact
+                    return new RecordedMatch(gameId, startedAt, events, -1, null);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,141 @@
+package asg.games.server.yipeewebserver.replay;
+
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.server.yipeewebserver.net.api.TickedPlayerActionData;
+import asg.games.yipee.common.game.GameBoardState;
+import asg.games.yipee.common.game.PlayerAction;
+import asg.games.yipee.core.objects.YipeePlayer;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Binary layout of a replay log ({@code .yrpl}) and the helpers shared by the writer,
+ * reader and simulator.
+ * <pre>
+ * header : int MAGIC, byte VERSION, UTF gameId, long startedAtMillis
+ * record : byte type, varlong (tick - previousTick), payload
+ *   SEED   long seed
+ *   DELTA  float delta
+ *   SEAT   byte seatId, boolean seated, [UTF playerId, UTF playerName]
+ *   START  byte seatMask
+ *   STOP   byte seatMask
+ *   ACTION varint length, Kryo bytes of the PlayerAction
+ *   END    byte hashLength, SHA-256 of the final per-seat states
+ *   CHECKPOINT byte hashLength, SHA-256 of the per-seat states after that tick
+ * </pre>
+ * A zero type byte marks the end of the written data (journals are pre-allocated with zeros).
+ * Ticks are delta-encoded, so a typical action record is a handful of bytes plus the action.
+ * Not thread-safe: each writer/reader owns its own codec.
+ */
+final class ReplayCodec {
+    static final int MAGIC = 0x59525031; // "YRP1"
+    static final byte VERSION = 1;
+    static final String FILE_SUFFIX = ".yrpl";
+
+    static final byte SEED = 1;
+    static final byte DELTA = 2;
+    static final byte START = 3;
+    static final byte STOP = 4;
+    static final byte ACTION = 5;
+    static final byte END = 6;
+    static final byte SEAT = 7;
+    static final byte CHECKPOINT = 8;
+
+    private static final ObjectMapper STATE_MAPPER = new ObjectMapper();
+
+    private final Kryo kryo = new Kryo();
+    private final Output output = new Output(256, -1);
+
+    ReplayCodec() {
+        // Fixed ids keep the common classes to a single byte; anything else is written by name
+        kryo.setRegistrationRequired(false);
+        kryo.register(PlayerAction.class, 100);
+        kryo.register(PlayerAction.ActionType.class, 101);
+        kryo.register(TickedPlayerActionData.class, 102);
+    }
+
+    byte[] encodeAction(PlayerAction action) {
+        output.clear();
+        kryo.writeClassAndObject(output, action);
+        return output.toBytes();
+    }
+
+    PlayerAction decodeAction(byte[] bytes) {
+        return (PlayerAction) kryo.readClassAndObject(new Input(bytes));
+    }
+
+    static void writeSeat(DataOutput out, int seatId, YipeePlayer player) throws IOException {
+        out.writeByte(seatId);
+        out.writeBoolean(player != null);
+        if (player != null) {
+            out.writeUTF(player.getId() != null ? player.getId() : "");
+            out.writeUTF(player.getName() != null ? player.getName() : "");
+        }
+    }
+
+    static YipeePlayer readSeatPlayer(DataInput in) throws IOException {
+        if (!in.readBoolean()) return null;
+        YipeePlayer player = new YipeePlayer();
+        String id = in.readUTF();
+        if (!id.isEmpty()) player.setId(id);
+        player.setName(in.readUTF());
+        return player;
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = in.readByte();
+            value |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    /**
+     * SHA-256 over the latest state of every occupied seat, in seat order.
+     */
+    static byte[] stateHash(ServerGameManager game) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            Map<Integer, GameBoardState> states = new TreeMap<>(game.exportLatestPerSeat());
+            for (Map.Entry<Integer, GameBoardState> entry : states.entrySet()) {
+                digest.update(entry.getKey().byteValue());
+                digest.update(STATE_MAPPER.writeValueAsBytes(entry.getValue()));
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException | JsonProcessingException e) {
+            throw new IllegalStateException("Could not hash game state", e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        if (bytes == null) return "-";
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return sb.toString();
+    }
+}
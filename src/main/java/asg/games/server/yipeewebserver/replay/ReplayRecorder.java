@@ -0,0 +1,144 @@
+package asg.games.server.yipeewebserver.replay;
+
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.yipee.common.game.PlayerAction;
+import asg.games.yipee.core.objects.YipeePlayer;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Appends one game's inputs to a compact binary log (see {@link ReplayCodec} for the layout).
+ * <p>
+ * Writes are buffered; the file is complete once {@link #onClose(ServerGameManager)} has
+ * written the final tick and state hash. An I/O failure disables the recorder for the
+ * rest of the match instead of disturbing the game loop.
+ * </p>
+ */
+@Slf4j
+public class ReplayRecorder implements MatchEventSink {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final Path file;
+    private final ReplayCodec codec = new ReplayCodec();
+    private DataOutputStream out;
+    private long lastTick;
+    private float lastDelta = Float.NaN;
+
+    public ReplayRecorder(Path directory, String gameId) throws IOException {
+        Files.createDirectories(directory);
+        long startedAt = System.currentTimeMillis();
+        this.file = directory.resolve(gameId + "-" + startedAt + ReplayCodec.FILE_SUFFIX);
+        this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+        out.writeInt(ReplayCodec.MAGIC);
+        out.writeByte(ReplayCodec.VERSION);
+        out.writeUTF(gameId);
+        out.writeLong(startedAt);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    @Override
+    public void onSeed(long tick, long seed) {
+        try {
+            if (header(ReplayCodec.SEED, tick)) out.writeLong(seed);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onDelta(long tick, float delta) {
+        if (Float.compare(delta, lastDelta) == 0) return;
+        try {
+            if (header(ReplayCodec.DELTA, tick)) {
+                out.writeFloat(delta);
+                lastDelta = delta;
+            }
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onSeat(long tick, int seatId, YipeePlayer player) {
+        try {
+            if (header(ReplayCodec.SEAT, tick)) ReplayCodec.writeSeat(out, seatId, player);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onStart(long tick, int seatMask) {
+        try {
+            if (header(ReplayCodec.START, tick)) out.writeByte(seatMask);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onStop(long tick, int seatMask) {
+        try {
+            if (header(ReplayCodec.STOP, tick)) out.writeByte(seatMask);
+        } catch (IOException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onAction(long tick, PlayerAction action) {
+        if (action == null) return;
+        try {
+            if (header(ReplayCodec.ACTION, tick)) {
+                byte[] bytes = codec.encodeAction(action);
+                ReplayCodec.writeVarLong(out, bytes.length);
+                out.write(bytes);
+            }
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    @Override
+    public void onClose(ServerGameManager game) {
+        if (out == null) return;
+        try {
+            byte[] hash = ReplayCodec.stateHash(game);
+            if (header(ReplayCodec.END, game.getServerTick())) {
+                out.writeByte(hash.length);
+                out.write(hash);
+            }
+            out.close();
+            log.debug("Replay for game {} written to {} ({} ticks)", game.getGameId(), file, game.getServerTick());
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        } finally {
+            out = null;
+        }
+    }
+
+    private boolean header(byte type, long tick) throws IOException {
+        if (out == null) return false;
+        out.writeByte(type);
+        ReplayCodec.writeVarLong(out, tick - lastTick);
+        lastTick = tick;
+        return true;
+    }
+
+    private void fail(Exception e) {
+        log.warn("Replay recording to {} failed, disabling it for this game", file, e);
+        try {
+            if (out != null) out.close();
+        } catch (IOException ignored) {
+        }
+        out = null;
+    }
+}
@@ -0,0 +1,107 @@
+package asg.games.server.yipeewebserver.replay;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Stream;
+
+/**
+ * Re-simulates recorded matches offline, for post-mortems and throughput measurements.
+ * <p>
+ * Arguments are {@code .yrpl} files or directories containing them. Games run in parallel on
+ * {@code -Dreplay.threads} threads (default: available processors), each
+ * {@code -Dreplay.iterations} times (default 1). Per-game ticks/s and the determinism check
+ * (final state hash vs. the recorded one) are logged; the exit code is 1 if any game diverged.
+ * </p>
+ * <pre>
+ * mvn exec:java -Dexec.mainClass=asg.games.server.yipeewebserver.replay.ReplayRunner -Dexec.args=replays
+ * </pre>
+ */
+@Slf4j
+public final class ReplayRunner {
+
+    private ReplayRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("Usage: ReplayRunner <file.yrpl|directory>...");
+            System.exit(2);
+        }
+        int threads = Integer.getInteger("replay.threads", Runtime.getRuntime().availableProcessors());
+        int iterations = Math.max(1, Integer.getInteger("replay.iterations", 1));
+
+        List<RecordedMatch> matches = new ArrayList<>();
+        for (Path file : collect(args)) {
+            try {
+                RecordedMatch match = RecordedMatch.read(file);
+                if (!match.isComplete()) {
+                    log.warn("{} has no end record; replaying what was recorded without a determinism check", file);
+                }
+                matches.add(match);
+            } catch (IOException e) {
+                log.error("Skipping unreadable replay {}", file, e);
+            }
+        }
+        if (matches.isEmpty()) {
+            log.error("No replays found.");
+            System.exit(2);
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+        long start = System.nanoTime();
+        List<Future<ReplaySimulator.Result>> futures = new ArrayList<>();
+        for (int i = 0; i < iterations; i++) {
+            for (RecordedMatch match : matches) {
+                futures.add(pool.submit(() -> ReplaySimulator.simulate(match)));
+            }
+        }
+
+        long totalTicks = 0;
+        int diverged = 0;
+        for (Future<ReplaySimulator.Result> future : futures) {
+            ReplaySimulator.Result result = future.get();
+            totalTicks += result.ticks();
+            double seconds = result.nanos() / 1e9;
+            if (result.deterministic()) {
+                log.info("game={} ticks={} time={}ms ticks/s={} hash={}", result.gameId(), result.ticks(),
+                        result.nanos() / 1_000_000, Math.round(result.ticks() / seconds), ReplayCodec.hex(result.hash()));
+            } else {
+                diverged++;
+                log.error("game={} DIVERGED (first bad checkpoint={}) after {} ticks: recorded={} replayed={}",
+                        result.gameId(), result.divergedAt(), result.ticks(),
+                        ReplayCodec.hex(result.recorded()), ReplayCodec.hex(result.hash()));
+            }
+        }
+        pool.shutdown();
+
+        double wallSeconds = (System.nanoTime() - start) / 1e9;
+        log.info("Replayed {} games x {} on {} threads: {} ticks in {}s ({} ticks/s), {} diverged",
+                matches.size(), iterations, threads, totalTicks, String.format("%.2f", wallSeconds),
+                Math.round(totalTicks / wallSeconds), diverged);
+        System.exit(diverged == 0 ? 0 : 1);
+    }
+
+    private static List<Path> collect(String[] args) throws IOException {
+        List<Path> files = new ArrayList<>();
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (Files.isDirectory(path)) {
+                try (Stream<Path> walk = Files.walk(path)) {
+                    walk.filter(p -> p.toString().endsWith(ReplayCodec.FILE_SUFFIX)).sorted().forEach(files::add);
+                }
+            } else {
+                files.add(path);
+            }
+        }
+        return files;
+    }
+}
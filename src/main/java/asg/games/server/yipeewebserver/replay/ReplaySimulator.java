@@ -0,0 +1,108 @@
+package asg.games.server.yipeewebserver.replay;
+
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.yipee.core.objects.YipeePlayer;
+import com.fasterxml.jackson.core.JsonProcessingException;
+
+import java.util.Arrays;
+
+/**
+ * Re-simulates a {@link RecordedMatch} on a {@link ServerGameManager} as fast as possible.
+ * <p>
+ * Events are replayed in log order. Seed/seat/start/stop/delta events were recorded between
+ * ticks, so the simulation is first advanced to their tick; an action recorded at tick
+ * {@code t} was drained during tick {@code t}, so it is queued once the simulation
+ * reaches {@code t - 1}. Checkpoint hashes are compared as they are reached.
+ * </p>
+ */
+public final class ReplaySimulator {
+    private static final float DEFAULT_DELTA = 1.0f / 30;
+
+    /**
+     * @param gameId      recorded game id
+     * @param ticks       ticks simulated
+     * @param nanos       wall time of the simulation
+     * @param hash        state hash after the last tick
+     * @param recorded    hash stored in the log, or {@code null}
+     * @param divergedAt  first checkpoint tick whose hash did not match, or {@code -1}
+     */
+    public record Result(String gameId, long ticks, long nanos, byte[] hash, byte[] recorded, long divergedAt) {
+        public boolean deterministic() {
+            return divergedAt < 0 && (recorded == null || Arrays.equals(hash, recorded));
+        }
+    }
+
+    private ReplaySimulator() {
+    }
+
+    /**
+     * Replays {@code match} on a fresh, unrecorded game.
+     */
+    public static Result simulate(RecordedMatch match) throws JsonProcessingException {
+        ServerGameManager game = new ServerGameManager(ServerGameManager.MAX_TICK_HISTORY);
+        game.setGameId(match.gameId());
+        return rebuild(match, game);
+    }
+
+    /**
+     * Replays {@code match} on {@code game}, leaving it at the last recorded tick. Any
+     * {@link MatchEventSink} already attached to {@code game} sees the replayed inputs again.
+     */
+    public static Result rebuild(RecordedMatch match, ServerGameManager game) throws JsonProcessingException {
+        long start = System.nanoTime();
+        float delta = DEFAULT_DELTA;
+        long divergedAt = -1;
+
+        for (RecordedMatch.Event event : match.events()) {
+            if (event.type() == ReplayCodec.ACTION) {
+                delta = advanceTo(game, event.tick() - 1, delta);
+                game.addPlayerAction(event.action());
+                continue;
+            }
+            delta = advanceTo(game, event.tick(), delta);
+            switch (event.type()) {
+                case ReplayCodec.SEED -> game.reset(event.seed());
+                case ReplayCodec.DELTA -> delta = event.delta();
+                case ReplayCodec.SEAT -> game.setGameBoardObjectPlayer(event.seatMask(), event.player());
+                case ReplayCodec.START -> {
+                    seatPlayers(game, event.seatMask());
+                    game.startGameLoop();
+                }
+                case ReplayCodec.STOP -> game.endGameLoop();
+                case ReplayCodec.CHECKPOINT -> {
+                    if (divergedAt < 0 && !Arrays.equals(event.hash(), ReplayCodec.stateHash(game))) {
+                        divergedAt = event.tick();
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        long lastTick = match.finalTick() >= 0 ? match.finalTick() : game.getServerTick();
+        advanceTo(game, lastTick, delta);
+
+        return new Result(match.gameId(), game.getServerTick(), System.nanoTime() - start,
+                ReplayCodec.stateHash(game), match.finalHash(), divergedAt);
+    }
+
+    private static float advanceTo(ServerGameManager game, long tick, float delta) throws JsonProcessingException {
+        while (game.getServerTick() < tick) {
+            game.update(delta);
+        }
+        return delta;
+    }
+
+    /**
+     * Logs recorded before seats were journaled only know which seats started; give those
+     * seats a placeholder player so they run.
+     */
+    private static void seatPlayers(ServerGameManager game, int seatMask) {
+        for (int seatId = 0; seatId < 8; seatId++) {
+            if ((seatMask & (1 << seatId)) != 0 && game.getGameBoardPlayer(seatId) == null) {
+                YipeePlayer player = new YipeePlayer();
+                player.setName("replay" + seatId);
+                game.setGameBoardObjectPlayer(seatId, player);
+            }
+        }
+    }
+}
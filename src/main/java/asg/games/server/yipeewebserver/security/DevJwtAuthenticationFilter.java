@@ -1,6 +1,7 @@
 package asg.games.server.yipeewebserver.security;
 
 import asg.games.server.yipeewebserver.persistence.YipeePlayerRepository;
+import asg.games.server.yipeewebserver.tools.TtlCache;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.FilterChain;
@@ -9,6 +10,7 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Component;
@@ -28,6 +30,11 @@ import java.util.Collections;
  *   icon     = icon key/URL
  *
  * No signature verification. DO NOT use in production.
+ *
+ * Parsed identities are cached by token hash until the token's {@code exp} (or
+ * {@code yipee.auth.identityTtlSeconds} without one), and a player id found in the
+ * database is remembered for {@code yipee.auth.playerExistsTtlSeconds}, so repeated
+ * requests with the same token skip decoding, JSON parsing and the DB lookup.
  */
 @Slf4j
 @Component
@@ -40,6 +47,24 @@ public class DevJwtAuthenticationFilter extends OncePerRequestFilter {
     private final ObjectMapper objectMapper = new ObjectMapper();
     private final YipeePlayerRepository yipeePlayerRepository;
 
+    @Value("${yipee.auth.tokenCacheSize:10000}")
+    private int tokenCacheSize;
+
+    @Value("${yipee.auth.identityTtlSeconds:300}")
+    private long identityTtlSeconds;
+
+    @Value("${yipee.auth.playerExistsTtlSeconds:60}")
+    private long playerExistsTtlSeconds;
+
+    private TtlCache<String, JwtIdentity> identities;
+    private TtlCache<String, Boolean> knownPlayers;
+
+    @Override
+    protected void initFilterBean() {
+        identities = new TtlCache<>(tokenCacheSize);
+        knownPlayers = new TtlCache<>(tokenCacheSize);
+    }
+
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
@@ -50,10 +75,10 @@ public class DevJwtAuthenticationFilter extends OncePerRequestFilter {
             String token = header.substring("Bearer ".length()).trim();
             log.debug("Token starts: {}", token.substring(0, Math.min(20, token.length())));
             try {
-                JwtIdentity identity = parseJwt(token);
+                JwtIdentity identity = cachedIdentity(token);
                 if (identity != null && identity.playerId() != null) {
 
-                    boolean exists = yipeePlayerRepository.existsById(identity.playerId());
+                    boolean exists = playerExists(identity.playerId());
                     if (!exists) {
                         log.warn("Dev JWT sub not found in DB: {}", identity.playerId());
                         // don’t set auth; let downstream return 401/403
@@ -76,6 +101,36 @@ public class DevJwtAuthenticationFilter extends OncePerRequestFilter {
         chain.doFilter(request, response);
     }
 
+    private JwtIdentity cachedIdentity(String token) throws IOException {
+        String cacheKey = TtlCache.tokenKey(token);
+        JwtIdentity identity = identities.get(cacheKey);
+        if (identity == null) {
+            identity = parseJwt(token);
+            if (identity != null) {
+                long now = System.currentTimeMillis();
+                long expiresAt = identity.expiresAtMillis() != null
+                        ? Math.min(identity.expiresAtMillis(), now + identityTtlSeconds * 1000)
+                        : now + identityTtlSeconds * 1000;
+                identities.put(cacheKey, identity, expiresAt);
+            }
+        }
+        return identity;
+    }
+
+    /**
+     * Only positive answers are cached, so a player who registers after a miss is seen at once.
+     */
+    private boolean playerExists(String playerId) {
+        if (knownPlayers.get(playerId) != null) {
+            return true;
+        }
+        boolean exists = yipeePlayerRepository.existsById(playerId);
+        if (exists) {
+            knownPlayers.put(playerId, Boolean.TRUE, System.currentTimeMillis() + playerExistsTtlSeconds * 1000);
+        }
+        return exists;
+    }
+
     private JwtIdentity parseJwt(String token) throws IOException {
         String[] parts = token.split("\\.");
         if (parts.length < 2) return null;
@@ -92,9 +147,10 @@ public class DevJwtAuthenticationFilter extends OncePerRequestFilter {
 
         // icon can be int or string; treat as string to be safe
         String icon = node.path("icon").asText(null);
+        Long expiresAtMillis = node.hasNonNull("exp") ? node.get("exp").asLong() * 1000 : null;
 
         if (playerId == null) return null;
-        return new JwtIdentity(playerId, username, rating, icon);
+        return new JwtIdentity(playerId, username, rating, icon, expiresAtMillis);
     }
 
     private static String padBase64Url(String s) {
@@ -103,5 +159,5 @@ public class DevJwtAuthenticationFilter extends OncePerRequestFilter {
         return s + "====".substring(mod);
     }
 
-    public record JwtIdentity(String playerId, String username, Integer rating, String icon) {}
+    public record JwtIdentity(String playerId, String username, Integer rating, String icon, Long expiresAtMillis) {}
 }
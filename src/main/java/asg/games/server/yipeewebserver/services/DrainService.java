@@ -0,0 +1,147 @@
+package asg.games.server.yipeewebserver.services;
+
+import asg.games.server.yipeewebserver.config.ServerIdentity;
+import asg.games.server.yipeewebserver.core.GameContextFactory;
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.server.yipeewebserver.core.ServerManager;
+import asg.games.server.yipeewebserver.net.YipeeWebSocketHandler;
+import asg.games.server.yipeewebserver.replay.MatchJournalService;
+import asg.games.yipee.net.errors.ErrorCode;
+import asg.games.yipee.net.packets.ErrorResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.availability.AvailabilityChangeEvent;
+import org.springframework.boot.availability.ReadinessState;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Drains this instance before it stops, so a rolling restart hands games over instead of
+ * destroying them.
+ * <p>
+ * {@link #drain(ServerManager)}:
+ * <ol>
+ *     <li>Marks the instance as draining: readiness goes to {@code REFUSING_TRAFFIC} and new
+ *     tables are refused.</li>
+ *     <li>Tells every connected client to reconnect elsewhere. Each client gets its own
+ *     random delay within {@code yipee.drain.reconnectSpreadMs}, so they do not all land on
+ *     the remaining instances at once.</li>
+ *     <li>Keeps the game loop running until every game has finished or
+ *     {@code yipee.drain.deadlineMs} has passed.</li>
+ *     <li>Hands the games still running over through their match journals, which the next
+ *     instance recovers on startup. Without journaling they are lost, and a warning says so.</li>
+ * </ol>
+ * </p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DrainService {
+    /** Message of the {@link ErrorResponse} sent to clients; details carry {@code reconnectAfterMs=<n>}. */
+    public static final String DRAIN_MESSAGE = "SERVER_DRAINING";
+    public static final String RECONNECT_AFTER_PREFIX = "reconnectAfterMs=";
+
+    private final GameContextFactory gameContextFactory;
+    private final MatchJournalService matchJournalService;
+    private final YipeeWebSocketHandler webSocketHandler;
+    private final ServerIdentity serverIdentity;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${yipee.drain.deadlineMs:30000}")
+    private long deadlineMs;
+
+    @Value("${yipee.drain.pollMs:500}")
+    private long pollMs;
+
+    @Value("${yipee.drain.reconnectSpreadMs:10000}")
+    private long reconnectSpreadMs;
+
+    private volatile boolean draining;
+
+    /**
+     * Outcome of a drain.
+     *
+     * @param finished   games that ended before the deadline
+     * @param handedOff  games still running, left in their journals for the next instance
+     * @param abandoned  games still running without a journal
+     */
+    public record DrainResult(int finished, int handedOff, int abandoned) {}
+
+    public boolean isDraining() {
+        return draining;
+    }
+
+    /**
+     * Drains this instance; blocks for at most {@code yipee.drain.deadlineMs}.
+     *
+     * @param kryoServer the server manager whose connections are notified, or {@code null}
+     */
+    public synchronized DrainResult drain(ServerManager kryoServer) {
+        int before = gameContextFactory.getAllGames().size();
+        if (!draining) {
+            draining = true;
+            AvailabilityChangeEvent.publish(eventPublisher, this, ReadinessState.REFUSING_TRAFFIC);
+            log.warn("drain: refusing new tables, {} games live, deadline={}ms", before, deadlineMs);
+            notifyClients(kryoServer);
+        }
+
+        long deadline = System.nanoTime() + deadlineMs * 1_000_000L;
+        int running = countRunning();
+        while (running > 0 && System.nanoTime() < deadline) {
+            log.info("drain: waiting for {} running games", running);
+            try {
+                Thread.sleep(pollMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            running = countRunning();
+        }
+
+        DrainResult result;
+        if (running == 0) {
+            result = new DrainResult(before, 0, 0);
+        } else if (matchJournalService.isEnabled()) {
+            matchJournalService.forceAll();
+            result = new DrainResult(before - running, running, 0);
+        } else {
+            log.warn("drain: deadline passed with {} running games and no match journal; they will be lost", running);
+            result = new DrainResult(before - running, 0, running);
+        }
+        log.warn("drain: done {}", result);
+        return result;
+    }
+
+    private int countRunning() {
+        int running = 0;
+        for (ServerGameManager game : gameContextFactory.getAllGames()) {
+            if (game.isRunning()) running++;
+        }
+        return running;
+    }
+
+    private void notifyClients(ServerManager kryoServer) {
+        int kryo = 0;
+        if (kryoServer != null) {
+            kryo = kryoServer.sendToEachConnection(connection -> {
+                ErrorResponse notice = new ErrorResponse();
+                notice.setServerId(serverIdentity.getFullId());
+                notice.setServerTimestamp(System.currentTimeMillis());
+                notice.setCode(ErrorCode.INTERNAL_ERROR);
+                notice.setMessage(DRAIN_MESSAGE);
+                notice.setDetails(RECONNECT_AFTER_PREFIX + reconnectDelay());
+                return notice;
+            });
+        }
+        int ws = webSocketHandler.sendToEachSession(session ->
+                "{\"message\":\"" + DRAIN_MESSAGE + "\",\"reconnectAfterMs\":" + reconnectDelay() + "}");
+        log.warn("drain: sent reconnect hints to {} kryo and {} websocket clients", kryo, ws);
+    }
+
+    private long reconnectDelay() {
+        return reconnectSpreadMs > 0 ? ThreadLocalRandom.current().nextLong(reconnectSpreadMs) : 0L;
+    }
+}
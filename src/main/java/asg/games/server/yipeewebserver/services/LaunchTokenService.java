@@ -1,5 +1,6 @@
 package asg.games.server.yipeewebserver.services;
 
+import asg.games.server.yipeewebserver.tools.TtlCache;
 import io.jsonwebtoken.Claims;
 import io.jsonwebtoken.Jws;
 import io.jsonwebtoken.Jwts;
@@ -20,15 +21,32 @@ public class LaunchTokenService {
 
     private final SecretKey key;
     private final Duration ttl;
+    private final TtlCache<String, LaunchIdentity> verified;
+
+    /**
+     * Claims of a verified launch token.
+     */
+    public record LaunchIdentity(String scope,
+                                 String playerId,
+                                 String playerName,
+                                 int playerIcon,
+                                 int playerRating,
+                                 String clientId,
+                                 String sessionId,
+                                 String gameId,
+                                 String tableId,
+                                 Instant expires) {}
 
     public LaunchTokenService(
             @Value("${security.jwt.secret}") String secret,
-            @Value("${yipee.launch.ttlSeconds:120}") long ttlSeconds
+            @Value("${yipee.launch.ttlSeconds:120}") long ttlSeconds,
+            @Value("${yipee.auth.tokenCacheSize:10000}") int tokenCacheSize
     ) {
         // IMPORTANT: for HS256, secret must be long enough (>= 32 bytes is a safe baseline).
         // If it's too short, JJWT will throw WeakKeyException.
         this.key = Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8));
         this.ttl = Duration.ofSeconds(ttlSeconds);
+        this.verified = new TtlCache<>(tokenCacheSize);
     }
 
     public String mintLaunchToken(String playerId,
@@ -60,6 +78,36 @@ public class LaunchTokenService {
                 .compact();
     }
 
+    /**
+     * Verifies a launch token and returns its claims. A token that verified before is
+     * answered from a cache keyed by its hash until its {@code exp}, skipping the HMAC
+     * check and claim parsing. Invalid tokens are never cached.
+     */
+    public LaunchIdentity verifyLaunchIdentity(String token) {
+        String cacheKey = TtlCache.tokenKey(token);
+        LaunchIdentity identity = verified.get(cacheKey);
+        if (identity != null) {
+            return identity;
+        }
+
+        Claims c = verifyLaunchToken(token).getBody();
+        Integer icon = c.get("picon", Integer.class);
+        Integer rating = c.get("prate", Integer.class);
+        identity = new LaunchIdentity(
+                c.get("scope", String.class),
+                c.getSubject(),
+                c.get("pname", String.class),
+                icon != null ? icon : 0,
+                rating != null ? rating : 0,
+                c.get("cid", String.class),
+                c.get("sid", String.class),
+                c.get("gid", String.class),
+                c.get("tid", String.class),
+                c.getExpiration().toInstant());
+        verified.put(cacheKey, identity, identity.expires().toEpochMilli());
+        return identity;
+    }
+
     public Jws<Claims> verifyLaunchToken(String token) {
         return Jwts.parserBuilder()
                 .setSigningKey(key)
@@ -0,0 +1,369 @@
+package asg.games.server.yipeewebserver.services;
+
+import asg.games.server.yipeewebserver.core.GameContextFactory;
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.server.yipeewebserver.services.impl.YipeeGameJPAServiceImpl;
+import asg.games.yipee.core.objects.YipeePlayer;
+import asg.games.yipee.core.objects.YipeeTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Rating-based matchmaking queues.
+ * <p>
+ * Each room and {@link Mode} has its own queue, kept sorted by {@link YipeePlayer#getRating()}.
+ * {@link #formMatches()} (run by {@code MatchmakingJob}) walks each queue once, sliding a
+ * window of {@link Mode#players()} neighbours over it. A window becomes a match when its
+ * rating spread fits the tolerance of every ticket in it. A ticket's tolerance starts at
+ * {@code yipee.matchmaking.baseSpread} and widens by {@code widenPerSecond} while it waits,
+ * up to {@code maxSpread}. A pass is linear in the queue length and never touches the
+ * database.
+ * </p>
+ * <p>
+ * A formed group is balanced into partner pairs, strongest with weakest, on seats 0-1,
+ * 2-3 and so on. It then gets a running {@link ServerGameManager}, a new table and its seats;
+ * the table is committed last. If any step fails the tickets go back into the queue with their
+ * original wait time.
+ * Players poll {@link #status(String)} for the assignment.
+ * </p>
+ */
+@Slf4j
+@Service
+public class MatchmakingService {
+    public static final String METER_QUEUED = "yipee.matchmaking.queued";
+    public static final String METER_MATCHES = "yipee.matchmaking.matches";
+    public static final String METER_WAIT = "yipee.matchmaking.wait";
+    public static final String METER_PASS = "yipee.matchmaking.pass";
+
+    private final YipeeGameJPAServiceImpl yipeeGameService;
+    private final GameContextFactory gameContextFactory;
+    private final DrainService drainService;
+
+    private final ConcurrentHashMap<String, MatchQueue> queues = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Ticket> tickets = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, Assignment> assignments = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+    private final Counter matches;
+    private final Timer waitTimer;
+    private final Timer passTimer;
+
+    @Value("${yipee.matchmaking.baseSpread:100}")
+    private int baseSpread;
+
+    @Value("${yipee.matchmaking.widenPerSecond:25}")
+    private int widenPerSecond;
+
+    @Value("${yipee.matchmaking.maxSpread:1000}")
+    private int maxSpread;
+
+    /** How long a formed match stays readable through {@link #status(String)}. */
+    @Value("${yipee.matchmaking.assignmentTtlMs:60000}")
+    private long assignmentTtlMs;
+
+    /**
+     * Match size. Every mode seats partner pairs on consecutive seats.
+     */
+    public enum Mode {
+        /** Two teams of two, seats 0-3. */
+        TWO_TEAMS(2),
+        /** Four teams of two, seats 0-7. */
+        FOUR_TEAMS(4);
+
+        private final int teams;
+
+        Mode(int teams) {
+            this.teams = teams;
+        }
+
+        public int players() {
+            return teams * 2;
+        }
+    }
+
+    /**
+     * A queued player. Ordered by rating, then by arrival.
+     */
+    public record Ticket(String playerId, YipeePlayer player, int rating, String roomId, Mode mode,
+                         long enqueuedAtMillis, long sequence) {
+        long waitMillis(long now) {
+            return Math.max(0, now - enqueuedAtMillis);
+        }
+    }
+
+    /**
+     * Where a matched player was seated.
+     */
+    public record Assignment(String playerId, String roomId, Mode mode, String tableId, int tableNumber,
+                             String gameId, int seatNumber, long waitMillis, long matchedAtMillis) {}
+
+    /**
+     * Queue state of one player.
+     *
+     * @param ticket     set while the player is queued
+     * @param assignment set once the player was matched
+     */
+    public record Status(Ticket ticket, Assignment assignment) {}
+
+    private static final Comparator<Ticket> BY_RATING = Comparator
+            .comparingInt(Ticket::rating)
+            .thenComparingLong(Ticket::sequence);
+
+    /**
+     * One room and mode. Guarded by its own monitor; enqueue, cancel and the
+     * matchmaking pass are the only users.
+     */
+    private static final class MatchQueue {
+        private final TreeSet<Ticket> byRating = new TreeSet<>(BY_RATING);
+    }
+
+    public MatchmakingService(YipeeGameJPAServiceImpl yipeeGameService,
+                              GameContextFactory gameContextFactory,
+                              DrainService drainService,
+                              MeterRegistry meterRegistry) {
+        this.yipeeGameService = yipeeGameService;
+        this.gameContextFactory = gameContextFactory;
+        this.drainService = drainService;
+        Gauge.builder(METER_QUEUED, tickets, ConcurrentHashMap::size)
+                .description("Players waiting in matchmaking queues")
+                .register(meterRegistry);
+        this.matches = Counter.builder(METER_MATCHES)
+                .description("Matches formed and started")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder(METER_WAIT)
+                .description("Time a player waited in the queue before being matched")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.passTimer = Timer.builder(METER_PASS)
+                .description("Duration of one matchmaking pass over all queues")
+                .register(meterRegistry);
+    }
+
+    // -------------------------------------------------------
+    // Queueing
+    // -------------------------------------------------------
+
+    /**
+     * Queues a player, or returns their existing ticket if they are already queued.
+     */
+    public Ticket enqueue(YipeePlayer player, String roomId, Mode mode) {
+        String playerId = player.getId();
+        Ticket existing = tickets.get(playerId);
+        if (existing != null) {
+            return existing;
+        }
+        assignments.remove(playerId);
+
+        Ticket ticket = new Ticket(playerId, player, player.getRating(), roomId, mode,
+                System.currentTimeMillis(), sequence.incrementAndGet());
+        if (tickets.putIfAbsent(playerId, ticket) != null) {
+            return tickets.get(playerId);
+        }
+        MatchQueue queue = queue(roomId, mode);
+        synchronized (queue) {
+            queue.byRating.add(ticket);
+        }
+        log.debug("Queued player {} (rating {}) for {} in room {}", playerId, ticket.rating(), mode, roomId);
+        return ticket;
+    }
+
+    /**
+     * Removes a player from their queue.
+     *
+     * @return {@code true} if the player was queued
+     */
+    public boolean cancel(String playerId) {
+        Ticket ticket = tickets.remove(playerId);
+        if (ticket == null) return false;
+        MatchQueue queue = queue(ticket.roomId(), ticket.mode());
+        synchronized (queue) {
+            queue.byRating.remove(ticket);
+        }
+        return true;
+    }
+
+    public Status status(String playerId) {
+        return new Status(tickets.get(playerId), assignments.get(playerId));
+    }
+
+    public int queuedCount() {
+        return tickets.size();
+    }
+
+    // -------------------------------------------------------
+    // Match formation
+    // -------------------------------------------------------
+
+    /**
+     * Forms and starts every match the current queues allow.
+     *
+     * @return number of matches started
+     */
+    public int formMatches() {
+        return formMatches(System.currentTimeMillis());
+    }
+
+    int formMatches(long now) {
+        if (drainService.isDraining()) {
+            return 0;
+        }
+        long start = System.nanoTime();
+        int started = 0;
+
+        for (MatchQueue queue : queues.values()) {
+            List<List<Ticket>> groups;
+            synchronized (queue) {
+                groups = takeGroups(queue, now);
+            }
+            for (List<Ticket> group : groups) {
+                if (startMatch(group, now)) {
+                    started++;
+                }
+            }
+        }
+        assignments.values().removeIf(a -> now - a.matchedAtMillis() > assignmentTtlMs);
+
+        passTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        if (started > 0) {
+            log.debug("Matchmaking pass started {} matches, {} players still queued", started, tickets.size());
+        }
+        return started;
+    }
+
+    /**
+     * Removes and returns the groups that fit their tolerance, scanning the sorted queue once.
+     */
+    private List<List<Ticket>> takeGroups(MatchQueue queue, long now) {
+        List<List<Ticket>> groups = new ArrayList<>();
+        if (queue.byRating.isEmpty()) return groups;
+        int size = queue.byRating.first().mode().players();
+        if (queue.byRating.size() < size) return groups;
+
+        Ticket[] window = new Ticket[size];
+        int filled = 0;
+        Iterator<Ticket> it = queue.byRating.iterator();
+        while (it.hasNext()) {
+            if (filled == size) {
+                // Slide by one: drop the lowest rated ticket of the window
+                System.arraycopy(window, 1, window, 0, size - 1);
+                filled--;
+            }
+            window[filled++] = it.next();
+            if (filled < size) continue;
+
+            int spread = window[size - 1].rating() - window[0].rating();
+            if (spread <= tolerance(window, now)) {
+                groups.add(List.of(window.clone()));
+                filled = 0;
+            }
+        }
+        for (List<Ticket> group : groups) {
+            group.forEach(queue.byRating::remove);
+        }
+        return groups;
+    }
+
+    /**
+     * The tightest tolerance in the window, so no player is matched outside their own.
+     */
+    private int tolerance(Ticket[] window, long now) {
+        long tightest = Long.MAX_VALUE;
+        for (Ticket ticket : window) {
+            long widened = baseSpread + widenPerSecond * (ticket.waitMillis(now) / 1_000);
+            tightest = Math.min(tightest, Math.min(widened, maxSpread));
+        }
+        return (int) tightest;
+    }
+
+    /**
+     * Starts the group's game, then creates the table and seats the group in one
+     * transaction. On failure the game is released and the tickets are put back into
+     * their queue; no table or seat was committed.
+     */
+    private boolean startMatch(List<Ticket> group, long now) {
+        if (group.stream().anyMatch(ticket -> tickets.get(ticket.playerId()) != ticket)) {
+            // Someone cancelled after the pass took the group; the rest wait for the next pass
+            requeue(group);
+            return false;
+        }
+        Ticket first = group.get(0);
+        List<Ticket> seating = pairPartners(group);
+        List<String> playerIds = seating.stream().map(Ticket::playerId).toList();
+
+        String gameId = gameContextFactory.newGame();
+        try {
+            // The game is only reachable through the table, so start it first and commit the
+            // table last: nothing can fail once the seats exist
+            ServerGameManager game = gameContextFactory.getGame(gameId);
+            for (int seat = 0; seat < seating.size(); seat++) {
+                game.setGameBoardObjectPlayer(seat, seating.get(seat).player());
+            }
+            game.startGameLoop();
+
+            YipeeTable table = yipeeGameService.createMatchTable(first.roomId(), gameId, playerIds);
+            gameContextFactory.bindTable(table.getId(), gameId);
+
+            for (int seat = 0; seat < seating.size(); seat++) {
+                Ticket ticket = seating.get(seat);
+                long waited = ticket.waitMillis(now);
+                assignments.put(ticket.playerId(), new Assignment(ticket.playerId(), ticket.roomId(), ticket.mode(),
+                        table.getId(), table.getTableNumber(), gameId, seat, waited, now));
+                tickets.remove(ticket.playerId(), ticket);
+                waitTimer.record(waited, TimeUnit.MILLISECONDS);
+            }
+            matches.increment();
+            log.info("Matched {} players into table {} (game {}) in room {}, ratings {}..{}",
+                    seating.size(), table.getTableNumber(), gameId, first.roomId(),
+                    group.get(0).rating(), group.get(group.size() - 1).rating());
+            return true;
+        } catch (RuntimeException e) {
+            log.warn("Could not start match in room {}; requeueing {} players", first.roomId(), group.size(), e);
+            gameContextFactory.releaseGame(gameId);
+            requeue(group);
+            return false;
+        }
+    }
+
+    /**
+     * Orders a rating-sorted group so that partners (seats 0-1, 2-3, ...) pair the
+     * strongest remaining player with the weakest, which evens out team ratings.
+     */
+    static List<Ticket> pairPartners(List<Ticket> sortedGroup) {
+        List<Ticket> seating = new ArrayList<>(sortedGroup.size());
+        int low = 0;
+        int high = sortedGroup.size() - 1;
+        while (low < high) {
+            seating.add(sortedGroup.get(high--));
+            seating.add(sortedGroup.get(low++));
+        }
+        return seating;
+    }
+
+    private void requeue(List<Ticket> group) {
+        for (Ticket ticket : group) {
+            // Skip players who cancelled while the match was being set up
+            if (tickets.get(ticket.playerId()) != ticket) continue;
+            MatchQueue queue = queue(ticket.roomId(), ticket.mode());
+            synchronized (queue) {
+                queue.byRating.add(ticket);
+            }
+        }
+    }
+
+    private MatchQueue queue(String roomId, Mode mode) {
+        return queues.computeIfAbsent(roomId + '|' + mode.name(), key -> new MatchQueue());
+    }
+}
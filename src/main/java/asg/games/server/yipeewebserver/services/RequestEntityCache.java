@@ -0,0 +1,171 @@
+package asg.games.server.yipeewebserver.services;
+
+import asg.games.server.yipeewebserver.data.PlayerConnectionEntity;
+import asg.games.server.yipeewebserver.persistence.YipeePlayerRepository;
+import asg.games.server.yipeewebserver.persistence.YipeeTableRepository;
+import asg.games.yipee.core.objects.YipeePlayer;
+import asg.games.yipee.core.objects.YipeeTable;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Per-request memo of the player, connection and tables a lobby call works on, so the
+ * argument resolver, controller and services share one load instead of each querying again.
+ * <p>
+ * State lives in the current request's attributes; outside an HTTP request (Kryo threads,
+ * scheduled jobs) every call goes straight to the repository. A cached entity is only
+ * returned while it is still managed by the current persistence context, so callers that
+ * modify it inside a transaction never get a detached copy.
+ * </p>
+ * <p>
+ * Hits and loads are counted as {@code yipee.request.entity.cache{result=hit|load}}.
+ * </p>
+ */
+@Slf4j
+@Component
+public class RequestEntityCache {
+    public static final String METER = "yipee.request.entity.cache";
+    private static final String ATTRIBUTE = RequestEntityCache.class.getName();
+
+    private final YipeePlayerRepository yipeePlayerRepository;
+    private final YipeeTableRepository yipeeTableRepository;
+    private final Counter hits;
+    private final Counter loads;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Entities seen in one request. Only used by the request thread.
+     */
+    private static final class RequestEntities {
+        private PlayerConnectionEntity connection;
+        private final Map<String, YipeePlayer> players = new HashMap<>();
+        private final Map<String, YipeeTable> tables = new HashMap<>();
+        private final Map<String, Boolean> playerAtTable = new HashMap<>();
+    }
+
+    public RequestEntityCache(YipeePlayerRepository yipeePlayerRepository,
+                              YipeeTableRepository yipeeTableRepository,
+                              MeterRegistry meterRegistry) {
+        this.yipeePlayerRepository = yipeePlayerRepository;
+        this.yipeeTableRepository = yipeeTableRepository;
+        this.hits = Counter.builder(METER).tag("result", "hit")
+                .description("Lobby entity lookups answered from the request cache")
+                .register(meterRegistry);
+        this.loads = Counter.builder(METER).tag("result", "load")
+                .description("Lobby entity lookups that went to the database")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Remembers the connection resolved for this request, and its player.
+     */
+    public void putConnection(PlayerConnectionEntity connection) {
+        RequestEntities entities = current();
+        if (entities == null || connection == null) return;
+        entities.connection = connection;
+        YipeePlayer player = connection.getPlayer();
+        if (player != null && player.getId() != null) {
+            entities.players.put(player.getId(), player);
+        }
+    }
+
+    public PlayerConnectionEntity getConnection() {
+        RequestEntities entities = current();
+        return entities != null ? entities.connection : null;
+    }
+
+    public Optional<YipeePlayer> findPlayer(String playerId) {
+        RequestEntities entities = current();
+        if (entities == null || playerId == null) {
+            return yipeePlayerRepository.findById(playerId);
+        }
+        YipeePlayer cached = entities.players.get(playerId);
+        if (cached != null && isManaged(cached)) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        loads.increment();
+        Optional<YipeePlayer> player = yipeePlayerRepository.findById(playerId);
+        player.ifPresent(p -> entities.players.put(playerId, p));
+        return player;
+    }
+
+    public Optional<YipeeTable> findTable(String tableId) {
+        RequestEntities entities = current();
+        if (entities == null || tableId == null) {
+            return yipeeTableRepository.findById(tableId);
+        }
+        YipeeTable cached = entities.tables.get(tableId);
+        if (cached != null && isManaged(cached)) {
+            hits.increment();
+            return Optional.of(cached);
+        }
+        loads.increment();
+        Optional<YipeeTable> table = yipeeTableRepository.findById(tableId);
+        table.ifPresent(t -> entities.tables.put(tableId, t));
+        return table;
+    }
+
+    /**
+     * Memoizes "is this player seated at or watching this table" for the request.
+     *
+     * @param query the database check, run at most once per table and player
+     */
+    public boolean isPlayerAtTable(String tableId, String playerId, BooleanSupplier query) {
+        RequestEntities entities = current();
+        if (entities == null) {
+            return query.getAsBoolean();
+        }
+        String key = tableId + '|' + playerId;
+        Boolean cached = entities.playerAtTable.get(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        loads.increment();
+        boolean atTable = query.getAsBoolean();
+        entities.playerAtTable.put(key, atTable);
+        return atTable;
+    }
+
+    /**
+     * Drops memoized seat checks for a table whose seats or watchers changed in this request.
+     */
+    public void tableChanged(String tableId) {
+        RequestEntities entities = current();
+        if (entities == null || tableId == null) return;
+        entities.playerAtTable.keySet().removeIf(key -> key.startsWith(tableId + '|'));
+    }
+
+    private boolean isManaged(Object entity) {
+        try {
+            return entityManager.contains(entity);
+        } catch (RuntimeException e) {
+            return false;
+        }
+    }
+
+    private static RequestEntities current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes == null) return null;
+        RequestEntities entities = (RequestEntities) attributes.getAttribute(ATTRIBUTE, RequestAttributes.SCOPE_REQUEST);
+        if (entities == null) {
+            entities = new RequestEntities();
+            attributes.setAttribute(ATTRIBUTE, entities, RequestAttributes.SCOPE_REQUEST);
+        }
+        return entities;
+    }
+}
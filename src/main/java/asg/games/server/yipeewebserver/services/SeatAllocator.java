@@ -0,0 +1,459 @@
+package asg.games.server.yipeewebserver.services;
+
+import asg.games.server.yipeewebserver.tools.TransactionCallbacks;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+/**
+ * In-memory free-seat index used by "Play Now".
+ * <p>
+ * Each room keeps its tables that still have a free seat ordered by table number, so
+ * lower-numbered tables fill first. A seat is taken with a single compare-and-set on
+ * its slot; there are no locks, and two players racing for the same seat simply move
+ * on to the next slot instead of failing in the database.
+ * </p>
+ * <p>
+ * A Play Now reservation is queued and written to {@code YT_SEATS} later by
+ * {@link #drainPending(int)} (see {@code SeatConfirmJob}). Explicit sit-downs claim
+ * their seat here before touching the database and give it back if their transaction
+ * rolls back. Stand-ups release the seat once committed. Rooms are loaded lazily on
+ * the first Play Now; tables of rooms that were never loaded are not tracked.
+ * </p>
+ * <p>
+ * The index is local to this instance. A reservation that finds its seat taken in the
+ * database when it is confirmed is counted as a conflict and moved to another free
+ * seat, preferably at the same table.
+ * </p>
+ */
+@Slf4j
+@Component
+public class SeatAllocator {
+    public static final String METER_RESERVATIONS = "yipee.seats.reservations";
+
+    private final ConcurrentHashMap<String, RoomSeats> rooms = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, TableSeats> tables = new ConcurrentHashMap<>();
+    private final ConcurrentLinkedQueue<Reservation> pending = new ConcurrentLinkedQueue<>();
+    private final Counter reserved;
+    private final Counter full;
+    private final Counter conflicts;
+    private final Counter dropped;
+
+    /**
+     * A seat held for a player.
+     */
+    public record Reservation(String roomId, String tableId, int tableNumber, int seatNumber, String playerId) {}
+
+    /**
+     * Seat layout of one table as loaded from the database.
+     *
+     * @param seatedPlayerIds player per seat, {@code null} for a free seat; same order as {@code seatNumbers}
+     */
+    public record TableSnapshot(String tableId, int tableNumber, int[] seatNumbers, String[] seatedPlayerIds) {}
+
+    private static final class RoomSeats {
+        private final String roomId;
+        private final ConcurrentSkipListMap<Integer, TableSeats> open = new ConcurrentSkipListMap<>();
+        private final ConcurrentHashMap<String, Reservation> byPlayer = new ConcurrentHashMap<>();
+
+        private RoomSeats(String roomId) {
+            this.roomId = roomId;
+        }
+    }
+
+    private static final class TableSeats {
+        private final RoomSeats room;
+        private final String tableId;
+        private final int tableNumber;
+        private final int[] seatNumbers;
+        private final AtomicReferenceArray<String> seats;
+        private final AtomicInteger free;
+
+        private TableSeats(RoomSeats room, TableSnapshot snapshot) {
+            this.room = room;
+            this.tableId = snapshot.tableId();
+            this.tableNumber = snapshot.tableNumber();
+            this.seatNumbers = snapshot.seatNumbers().clone();
+            this.seats = new AtomicReferenceArray<>(snapshot.seatedPlayerIds().clone());
+            int open = 0;
+            for (String playerId : snapshot.seatedPlayerIds()) {
+                if (playerId == null) open++;
+            }
+            this.free = new AtomicInteger(open);
+        }
+
+        private int indexOf(int seatNumber) {
+            for (int i = 0; i < seatNumbers.length; i++) {
+                if (seatNumbers[i] == seatNumber) return i;
+            }
+            return -1;
+        }
+
+        private int tryReserve(String playerId) {
+            for (int i = 0; i < seats.length(); i++) {
+                if (seats.get(i) == null && seats.compareAndSet(i, null, playerId)) {
+                    free.decrementAndGet();
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private boolean release(int index, String playerId) {
+            if (!seats.compareAndSet(index, playerId, null)) return false;
+            if (free.incrementAndGet() == 1) {
+                room.open.put(tableNumber, this);
+            }
+            return true;
+        }
+
+        private Reservation reservation(int index, String playerId) {
+            return new Reservation(room.roomId, tableId, tableNumber, seatNumbers[index], playerId);
+        }
+    }
+
+    public SeatAllocator(MeterRegistry meterRegistry) {
+        this.reserved = Counter.builder(METER_RESERVATIONS).tag("result", "reserved")
+                .description("Play Now seats reserved in memory")
+                .register(meterRegistry);
+        this.full = Counter.builder(METER_RESERVATIONS).tag("result", "full")
+                .description("Play Now requests that found no free seat")
+                .register(meterRegistry);
+        this.conflicts = Counter.builder(METER_RESERVATIONS).tag("result", "conflict")
+                .description("Reservations moved because the seat was taken in the database")
+                .register(meterRegistry);
+        this.dropped = Counter.builder(METER_RESERVATIONS).tag("result", "dropped")
+                .description("Reservations given up after they repeatedly failed to be written")
+                .register(meterRegistry);
+    }
+
+    // -------------------------------------------------------
+    // Play Now
+    // -------------------------------------------------------
+
+    /**
+     * Reserves the first free seat in the room, or returns the seat the player already
+     * holds there. The reservation is queued for {@link #drainPending(int)} once the
+     * surrounding transaction commits; if it rolls back the seat is freed again.
+     *
+     * @param loader loads the room's tables if the room is not indexed yet
+     */
+    public Optional<Reservation> reserve(String roomId, String playerId, Supplier<List<TableSnapshot>> loader) {
+        RoomSeats room = load(roomId, loader);
+        Reservation existing = room.byPlayer.get(playerId);
+        if (existing != null && holds(existing)) {
+            return Optional.of(existing);
+        }
+        return reserveIn(room, null, playerId, true);
+    }
+
+    /**
+     * Adds a newly created table to its room's index, if that room is indexed.
+     */
+    public void registerTable(String roomId, TableSnapshot snapshot) {
+        TransactionCallbacks.afterCommit(() -> {
+            RoomSeats room = rooms.get(roomId);
+            if (room == null) return;
+            addTable(room, snapshot);
+        });
+    }
+
+    // -------------------------------------------------------
+    // Explicit seats
+    // -------------------------------------------------------
+
+    /**
+     * Claims a specific seat for a sit-down and, once the transaction commits, frees any
+     * other seat the player held. Tables that are not indexed always succeed; the database
+     * check decides for them. The claim is undone if the surrounding transaction rolls back.
+     *
+     * @return {@code false} if another player holds the seat
+     */
+    public boolean claim(String tableId, int seatNumber, String playerId) {
+        TableSeats table = tables.get(tableId);
+        if (table == null) return true;
+        int index = table.indexOf(seatNumber);
+        if (index < 0) return true;
+
+        String holder = table.seats.get(index);
+        if (playerId.equals(holder)) return true;
+        if (holder != null || !table.seats.compareAndSet(index, null, playerId)) {
+            return false;
+        }
+        if (table.free.decrementAndGet() == 0) {
+            closeIfFull(table);
+        }
+        Reservation claimed = table.reservation(index, playerId);
+        Reservation previous = table.room.byPlayer.put(playerId, claimed);
+        // The database still seats the player on their old seat until the sit-down commits
+        TransactionCallbacks.afterCommit(() -> {
+            for (int i = 0; i < table.seats.length(); i++) {
+                if (i != index) table.release(i, playerId);
+            }
+            if (previous != null && !previous.tableId().equals(tableId)) {
+                releaseSeat(previous);
+            }
+        });
+        TransactionCallbacks.onRollback(() -> {
+            if (previous != null) {
+                table.room.byPlayer.replace(playerId, claimed, previous);
+            } else {
+                table.room.byPlayer.remove(playerId, claimed);
+            }
+            table.release(index, playerId);
+        });
+        return true;
+    }
+
+    /**
+     * Frees every seat the player holds at the table once the transaction commits.
+     */
+    public void release(String tableId, String playerId) {
+        TransactionCallbacks.afterCommit(() -> {
+            TableSeats table = tables.get(tableId);
+            if (table == null) return;
+            for (int i = 0; i < table.seats.length(); i++) {
+                if (table.release(i, playerId)) {
+                    table.room.byPlayer.remove(playerId, table.reservation(i, playerId));
+                }
+            }
+        });
+    }
+
+    /**
+     * Frees the player's seat in every indexed room once the transaction commits,
+     * e.g. when the player is removed.
+     */
+    public void releasePlayer(String playerId) {
+        TransactionCallbacks.afterCommit(() -> rooms.values().forEach(room -> {
+            Reservation reservation = room.byPlayer.remove(playerId);
+            if (reservation != null) releaseSeat(reservation);
+        }));
+    }
+
+    /**
+     * Drops a table, e.g. after it was deleted.
+     */
+    public void evict(String tableId) {
+        TransactionCallbacks.afterCommit(() -> {
+            TableSeats table = tables.remove(tableId);
+            if (table == null) return;
+            table.room.open.remove(table.tableNumber, table);
+            table.room.byPlayer.values().removeIf(r -> r.tableId().equals(tableId));
+        });
+    }
+
+    // -------------------------------------------------------
+    // Confirmation
+    // -------------------------------------------------------
+
+    /**
+     * Takes up to {@code max} queued Play Now reservations for writing to the database.
+     */
+    public List<Reservation> drainPending(int max) {
+        List<Reservation> batch = new ArrayList<>();
+        Reservation next;
+        while (batch.size() < max && (next = pending.poll()) != null) {
+            batch.add(next);
+        }
+        return batch;
+    }
+
+    /**
+     * Returns reservations that could not be written so the next drain retries them.
+     */
+    public void requeue(List<Reservation> reservations) {
+        pending.addAll(reservations);
+    }
+
+    /**
+     * {@code true} while the player still holds the reserved seat.
+     */
+    public boolean holds(Reservation reservation) {
+        TableSeats table = tables.get(reservation.tableId());
+        if (table == null) return false;
+        int index = table.indexOf(reservation.seatNumber());
+        return index >= 0 && reservation.playerId().equals(table.seats.get(index));
+    }
+
+    /**
+     * Records that the database already seats {@code occupantId} where the reservation
+     * pointed, and reserves another seat for the player: at the same table if one is
+     * free, otherwise the first free seat in the room. The new reservation is queued
+     * like any other.
+     *
+     * @return the new reservation, or empty if the room has no free seat left
+     */
+    public Optional<Reservation> conflict(Reservation reservation, String occupantId) {
+        TableSeats table = tables.get(reservation.tableId());
+        if (table == null) return Optional.empty();
+        int index = table.indexOf(reservation.seatNumber());
+        if (index < 0 || !table.seats.compareAndSet(index, reservation.playerId(), occupantId)) {
+            return Optional.empty();
+        }
+        table.room.byPlayer.remove(reservation.playerId(), reservation);
+        conflicts.increment();
+        log.debug("Seat reservation conflict: table={}, seat={}, reserved={}, seated={}",
+                reservation.tableId(), reservation.seatNumber(), reservation.playerId(), occupantId);
+        // Not tied to the caller's transaction: the conflicting seat is already given up
+        return reserveIn(table.room, table, reservation.playerId(), false);
+    }
+
+    /**
+     * Gives up a reservation that could not be written, e.g. after repeated failures.
+     */
+    public void drop(Reservation reservation) {
+        TableSeats table = tables.get(reservation.tableId());
+        if (table == null) return;
+        int index = table.indexOf(reservation.seatNumber());
+        if (index >= 0 && table.release(index, reservation.playerId())) {
+            table.room.byPlayer.remove(reservation.playerId(), reservation);
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Seat the player holds at the table, or {@code -1}.
+     */
+    public int seatOf(String tableId, String playerId) {
+        TableSeats table = tables.get(tableId);
+        if (table == null || playerId == null) return -1;
+        for (int i = 0; i < table.seats.length(); i++) {
+            if (playerId.equals(table.seats.get(i))) return table.seatNumbers[i];
+        }
+        return -1;
+    }
+
+    public int pendingCount() {
+        return pending.size();
+    }
+
+    // -------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------
+
+    private RoomSeats load(String roomId, Supplier<List<TableSnapshot>> loader) {
+        RoomSeats existing = rooms.get(roomId);
+        if (existing != null) {
+            return existing;
+        }
+        RoomSeats loaded = new RoomSeats(roomId);
+        List<TableSeats> loadedTables = new ArrayList<>();
+        for (TableSnapshot snapshot : loader.get()) {
+            TableSeats table = new TableSeats(loaded, snapshot);
+            loadedTables.add(table);
+            if (table.free.get() > 0) {
+                loaded.open.put(table.tableNumber, table);
+            }
+            for (int i = 0; i < table.seats.length(); i++) {
+                String playerId = table.seats.get(i);
+                if (playerId != null) loaded.byPlayer.put(playerId, table.reservation(i, playerId));
+            }
+        }
+        RoomSeats raced = rooms.putIfAbsent(roomId, loaded);
+        if (raced != null) {
+            return raced;
+        }
+        loadedTables.forEach(table -> tables.put(table.tableId, table));
+        log.debug("Indexed seats of room {}: {} tables, {} open", roomId, loadedTables.size(), loaded.open.size());
+        return loaded;
+    }
+
+    /**
+     * @param transactional queue the reservation only once the surrounding transaction
+     *                      commits, and give the seat back if it rolls back
+     */
+    private Optional<Reservation> reserveIn(RoomSeats room, TableSeats preferred, String playerId,
+                                            boolean transactional) {
+        if (preferred != null) {
+            Reservation reservation = tryReserve(room, preferred, playerId, transactional);
+            if (reservation != null) return Optional.of(reservation);
+        }
+        for (TableSeats table : room.open.values()) {
+            if (table == preferred) continue;
+            Reservation reservation = tryReserve(room, table, playerId, transactional);
+            if (reservation != null) return Optional.of(reservation);
+        }
+        full.increment();
+        return Optional.empty();
+    }
+
+    private Reservation tryReserve(RoomSeats room, TableSeats table, String playerId, boolean transactional) {
+        int index = table.tryReserve(playerId);
+        if (index < 0) {
+            closeIfFull(table);
+            return null;
+        }
+        if (table.free.get() == 0) {
+            closeIfFull(table);
+        }
+        Reservation reservation = table.reservation(index, playerId);
+        Reservation raced = putReservation(room, reservation);
+        if (raced != null) {
+            // The same player won another seat concurrently; keep that one
+            table.release(index, playerId);
+            return raced;
+        }
+        reserved.increment();
+        if (!transactional) {
+            pending.add(reservation);
+            return reservation;
+        }
+        TransactionCallbacks.afterCommit(() -> pending.add(reservation));
+        TransactionCallbacks.onRollback(() -> {
+            room.byPlayer.remove(playerId, reservation);
+            table.release(index, playerId);
+        });
+        return reservation;
+    }
+
+    private void addTable(RoomSeats room, TableSnapshot snapshot) {
+        TableSeats table = new TableSeats(room, snapshot);
+        // A later snapshot of the same table (e.g. after seating its creator) replaces the first
+        TableSeats previous = tables.put(table.tableId, table);
+        if (previous != null) {
+            room.open.remove(previous.tableNumber, previous);
+        }
+        if (table.free.get() > 0) {
+            room.open.put(table.tableNumber, table);
+        }
+        for (int i = 0; i < table.seats.length(); i++) {
+            String playerId = table.seats.get(i);
+            if (playerId != null) room.byPlayer.put(playerId, table.reservation(i, playerId));
+        }
+    }
+
+    private void closeIfFull(TableSeats table) {
+        table.room.open.remove(table.tableNumber, table);
+        // A release may have reopened the table between the check and the remove
+        if (table.free.get() > 0) {
+            table.room.open.putIfAbsent(table.tableNumber, table);
+        }
+    }
+
+    private Reservation putReservation(RoomSeats room, Reservation reservation) {
+        Reservation previous = room.byPlayer.putIfAbsent(reservation.playerId(), reservation);
+        if (previous == null) return null;
+        if (holds(previous)) return previous;
+        room.byPlayer.put(reservation.playerId(), reservation);
+        return null;
+    }
+
+    private void releaseSeat(Reservation reservation) {
+        TableSeats table = tables.get(reservation.tableId());
+        if (table == null) return;
+        int index = table.indexOf(reservation.seatNumber());
+        if (index >= 0) table.release(index, reservation.playerId());
+    }
+}
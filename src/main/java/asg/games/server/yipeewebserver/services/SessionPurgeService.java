@@ -0,0 +1,99 @@
+package asg.games.server.yipeewebserver.services;
+
+import asg.games.server.yipeewebserver.persistence.YipeeClientConnectionRepository;
+import asg.games.server.yipeewebserver.persistence.YipeePlayerRepository;
+import asg.games.server.yipeewebserver.persistence.YipeeRoomRepository;
+import asg.games.server.yipeewebserver.persistence.YipeeSeatRepository;
+import asg.games.server.yipeewebserver.persistence.YipeeTableRepository;
+import asg.games.yipee.core.objects.YipeePlayer;
+import asg.games.yipee.core.objects.YipeeRoom;
+import asg.games.yipee.core.objects.YipeeTable;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Set-based removal of players and everything that references them.
+ * <p>
+ * This is the bulk counterpart of
+ * {@link asg.games.server.yipeewebserver.services.impl.YipeeGameJPAServiceImpl#removePlayerCompletely(String)}:
+ * instead of a handful of finders and deletes per player, one chunk of players is
+ * removed with a fixed number of statements, each call in its own transaction.
+ * </p>
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class SessionPurgeService {
+    private final YipeeClientConnectionRepository connectionRepo;
+    private final YipeePlayerRepository yipeePlayerRepository;
+    private final YipeeRoomRepository yipeeRoomRepository;
+    private final YipeeTableRepository yipeeTableRepository;
+    private final YipeeSeatRepository yipeeSeatRepository;
+    private final TableOccupancyIndex tableOccupancyIndex;
+    private final TableActivityTracker tableActivityTracker;
+    private final SeatAllocator seatAllocator;
+
+    /**
+     * Removes one chunk of players: stands them up, drops their watcher and room
+     * membership rows, then deletes their connections and the players themselves.
+     *
+     * @param playerIds players to remove
+     * @return number of players deleted
+     */
+    @Transactional
+    public int purgePlayers(Collection<String> playerIds) {
+        if (playerIds.isEmpty()) {
+            return 0;
+        }
+
+        // 1) Seats: tell the occupancy index who is leaving which table, then one UPDATE
+        for (YipeeSeatRepository.SeatedPlayerRef ref : yipeeSeatRepository.findSeatedRefsByPlayerIdIn(playerIds)) {
+            tableOccupancyIndex.playerStood(ref.getTableId(), ref.getPlayerId());
+            tableActivityTracker.markDirty(ref.getTableId());
+        }
+        int seats = yipeeSeatRepository.standUpAllByPlayerIdIn(playerIds);
+        playerIds.forEach(seatAllocator::releasePlayer);
+
+        // 2) Watcher and room join rows go through the owning collections; each side is
+        //    loaded with a single query and the row deletes are flushed together
+        List<YipeePlayer> players = yipeePlayerRepository.findAllById(playerIds);
+
+        List<YipeeTable> tables = yipeeTableRepository.findWithWatchersByWatcherIdIn(playerIds);
+        for (YipeeTable table : tables) {
+            players.stream()
+                    .filter(table.getWatchers()::contains)
+                    .forEach(table::removeWatcher);
+            tableActivityTracker.markDirty(table.getId());
+        }
+
+        List<YipeeRoom> rooms = yipeeRoomRepository.findWithPlayersByPlayerIdIn(playerIds);
+        for (YipeeRoom room : rooms) {
+            players.stream()
+                    .filter(room.getPlayers()::contains)
+                    .forEach(room::leaveRoom);
+        }
+        yipeeTableRepository.flush();
+
+        // 3) Connections, then the players themselves
+        int connections = connectionRepo.deleteAllByPlayerIdIn(playerIds);
+        int deleted = yipeePlayerRepository.deleteAllByIdIn(playerIds);
+
+        log.debug("Purged chunk: players={}, seats={}, tables={}, rooms={}, connections={}",
+                deleted, seats, tables.size(), rooms.size(), connections);
+        return deleted;
+    }
+
+    /**
+     * Deletes expired connection rows that no longer reference a player.
+     */
+    @Transactional
+    public int purgeOrphanedConnections(Instant cutoff) {
+        return connectionRepo.deleteOrphanedBefore(cutoff);
+    }
+}
@@ -0,0 +1,58 @@
+package asg.games.server.yipeewebserver.services;
+
+import asg.games.server.yipeewebserver.tools.TransactionCallbacks;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects the ids of tables whose seats or watchers changed since the last
+ * reconciliation pass, so {@link YipeeCleanupService#reconcileDirtyTables()}
+ * only has to look at those tables instead of scanning every activity row.
+ * <p>
+ * Tables are marked once the mutating transaction has committed, so a pass that
+ * drains an id always sees the change that marked it.
+ * </p>
+ */
+@Slf4j
+@Component
+public class TableActivityTracker {
+    private final Set<String> dirtyTables = ConcurrentHashMap.newKeySet();
+
+    public void markDirty(String tableId) {
+        if (tableId != null) {
+            TransactionCallbacks.afterCommit(() -> dirtyTables.add(tableId));
+        }
+    }
+
+    /**
+     * Removes and returns the current set of dirty table ids.
+     * Tables marked while draining are either returned now or kept for the next pass.
+     */
+    public List<String> drain() {
+        List<String> drained = new ArrayList<>();
+        Iterator<String> it = dirtyTables.iterator();
+        while (it.hasNext()) {
+            drained.add(it.next());
+            it.remove();
+        }
+        return drained;
+    }
+
+    /**
+     * Puts table ids back after a failed pass so they are retried.
+     */
+    public void requeue(Collection<String> tableIds) {
+        dirtyTables.addAll(tableIds);
+    }
+
+    public int size() {
+        return dirtyTables.size();
+    }
+}
@@ -0,0 +1,318 @@
+package asg.games.server.yipeewebserver.services;
+
+import asg.games.server.yipeewebserver.data.YipeeTableOccupancyEntity;
+import asg.games.server.yipeewebserver.persistence.YipeeSeatRepository;
+import asg.games.server.yipeewebserver.persistence.YipeeTableOccupancyRepository;
+import asg.games.server.yipeewebserver.tools.TransactionCallbacks;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory, authoritative index of who is seated at each lobby table.
+ * <p>
+ * Every seat mutation (sit, stand, leave table/room, player removal) reports here
+ * once its transaction has committed. Each table owns its own lock, so concurrent
+ * sit/stand on different tables never contend, and a seat change on the same table
+ * is applied exactly once (sitting twice or switching seats is not double counted).
+ * </p>
+ * <p>
+ * The persisted {@link YipeeTableOccupancyEntity#getSeatedCount()} is kept in step by
+ * {@link #flush()}, which groups pending changes by delta and writes each group with a
+ * single {@code UPDATE ... SET seatedCount = seatedCount + :delta} statement. Tables
+ * are loaded lazily from {@code YT_SEATS} on first read; a freshly loaded table is
+ * written back with its absolute count once, after which only deltas are sent. A commit
+ * that touches a table not in the index never queries from its after-commit callback: the
+ * change is already in {@code YT_SEATS}, so the table is only marked and loaded by the next
+ * read or {@link #flush()}.
+ * A table that has been empty and fully flushed for {@code yipee.tables.occupancyIdleMs}
+ * is dropped from the index by {@link #flush()}, so the index only holds tables in use.
+ * </p>
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class TableOccupancyIndex {
+    private final YipeeSeatRepository yipeeSeatRepository;
+    private final YipeeTableOccupancyRepository occupancyRepository;
+
+    private final ConcurrentHashMap<String, TableOccupancy> tables = new ConcurrentHashMap<>();
+    /** Tables changed by a commit while not in the index; reloaded by the next read or flush. */
+    private final Set<String> staleTables = ConcurrentHashMap.newKeySet();
+
+    @Value("${yipee.tables.occupancyIdleMs:300000}")
+    private long idleMs;
+
+    /**
+     * Per-table state. All fields are guarded by the instance monitor.
+     */
+    private static final class TableOccupancy {
+        private final Set<String> seatedPlayers = new HashSet<>();
+        private int pendingDelta;
+        private boolean resync;
+        /** Removed from {@link #tables}; a mutation that finds this set marks the table stale. */
+        private boolean retired;
+        private long touchedNanos = System.nanoTime();
+    }
+
+    // -------------------------------------------------------
+    // Mutations (applied after commit)
+    // -------------------------------------------------------
+
+    /**
+     * Registers a newly created table with no seated players.
+     */
+    public void registerTable(String tableId) {
+        if (tableId == null) return;
+        tables.putIfAbsent(tableId, new TableOccupancy());
+    }
+
+    public void playerSeated(String tableId, String playerId) {
+        TransactionCallbacks.afterCommit(() -> applyCommitted(tableId, playerId, true));
+    }
+
+    public void playerStood(String tableId, String playerId) {
+        TransactionCallbacks.afterCommit(() -> applyCommitted(tableId, playerId, false));
+    }
+
+    private void applyCommitted(String tableId, String playerId, boolean seated) {
+        TableOccupancy occ = tables.get(tableId);
+        if (occ != null) {
+            synchronized (occ) {
+                if (!occ.retired) {
+                    if (seated ? occ.seatedPlayers.add(playerId) : occ.seatedPlayers.remove(playerId)) {
+                        occ.pendingDelta += seated ? 1 : -1;
+                    }
+                    occ.touchedNanos = System.nanoTime();
+                    return;
+                }
+            }
+        }
+        staleTables.add(tableId);
+    }
+
+    /**
+     * Drops a table from the index, e.g. after it was deleted.
+     * The next touch reloads it from the database.
+     */
+    public void evict(String tableId) {
+        TransactionCallbacks.afterCommit(() -> {
+            staleTables.remove(tableId);
+            TableOccupancy occ = tables.get(tableId);
+            if (occ != null) retire(tableId, occ);
+        });
+    }
+
+    public void clear() {
+        TransactionCallbacks.afterCommit(() -> {
+            staleTables.clear();
+            tables.forEach(this::retire);
+        });
+    }
+
+    /**
+     * @return number of tables currently held in memory
+     */
+    public int size() {
+        return tables.size();
+    }
+
+    // -------------------------------------------------------
+    // Reads
+    // -------------------------------------------------------
+
+    public int seatedCount(String tableId) {
+        TableOccupancy occ = load(tableId);
+        synchronized (occ) {
+            return occ.seatedPlayers.size();
+        }
+    }
+
+    public boolean isSeated(String tableId, String playerId) {
+        TableOccupancy occ = load(tableId);
+        synchronized (occ) {
+            return occ.seatedPlayers.contains(playerId);
+        }
+    }
+
+    /**
+     * Seated count of a table already in the index; never loads from the database.
+     *
+     * @return the count, or {@code -1} if the table is not in the index
+     */
+    public int knownSeatedCount(String tableId) {
+        TableOccupancy occ = tables.get(tableId);
+        if (occ == null) return -1;
+        synchronized (occ) {
+            return occ.seatedPlayers.size();
+        }
+    }
+
+    /**
+     * Returns {@code true} only if the table is already in the index and has seated
+     * players; never loads from the database.
+     */
+    public boolean isKnownOccupied(String tableId) {
+        TableOccupancy occ = tables.get(tableId);
+        if (occ == null) return false;
+        synchronized (occ) {
+            return !occ.seatedPlayers.isEmpty();
+        }
+    }
+
+    // -------------------------------------------------------
+    // Persistence
+    // -------------------------------------------------------
+
+    /**
+     * Writes pending occupancy changes to {@code YT_TABLE_ACTIVITY}.
+     *
+     * @return number of tables whose persisted count was updated.
+     */
+    public int flush() {
+        Map<Integer, List<String>> byDelta = new HashMap<>();
+        Map<String, Integer> absolute = new HashMap<>();
+        long idleBefore = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(idleMs);
+
+        for (String tableId : staleTables) {
+            try {
+                load(tableId);
+            } catch (RuntimeException e) {
+                log.warn("Failed to load occupancy for table {}, will retry", tableId, e);
+            }
+        }
+
+        tables.forEach((tableId, occ) -> {
+            synchronized (occ) {
+                if (occ.seatedPlayers.isEmpty() && occ.pendingDelta == 0 && !occ.resync
+                        && occ.touchedNanos - idleBefore <= 0) {
+                    // Empty and flushed by an earlier pass; reloaded on next touch
+                    occ.retired = true;
+                    tables.remove(tableId, occ);
+                } else if (occ.resync) {
+                    absolute.put(tableId, occ.seatedPlayers.size());
+                    occ.resync = false;
+                    occ.pendingDelta = 0;
+                } else if (occ.pendingDelta != 0) {
+                    byDelta.computeIfAbsent(occ.pendingDelta, d -> new ArrayList<>()).add(tableId);
+                    occ.pendingDelta = 0;
+                }
+            }
+        });
+
+        if (byDelta.isEmpty() && absolute.isEmpty()) {
+            return 0;
+        }
+
+        Instant now = Instant.now();
+        int updated = 0;
+
+        for (Map.Entry<Integer, List<String>> entry : byDelta.entrySet()) {
+            int delta = entry.getKey();
+            List<String> tableIds = entry.getValue();
+            try {
+                int rows = occupancyRepository.adjustSeatedCount(tableIds, delta, now);
+                updated += rows;
+                if (rows < tableIds.size()) {
+                    // Some tables have no activity row yet; write their absolute count next time
+                    tableIds.forEach(this::markResync);
+                }
+            } catch (RuntimeException e) {
+                log.warn("Failed to flush occupancy delta {} for {} tables, will retry", delta, tableIds.size(), e);
+                tableIds.forEach(id -> restoreDelta(id, delta));
+            }
+        }
+
+        for (Map.Entry<String, Integer> entry : absolute.entrySet()) {
+            String tableId = entry.getKey();
+            int seated = entry.getValue();
+            try {
+                if (occupancyRepository.setSeatedCount(tableId, seated, now) == 0) {
+                    YipeeTableOccupancyEntity occ = new YipeeTableOccupancyEntity(tableId);
+                    occ.setSeatedCount(seated);
+                    occupancyRepository.save(occ);
+                }
+                updated++;
+            } catch (RuntimeException e) {
+                log.warn("Failed to write occupancy for table {}, will retry", tableId, e);
+                markResync(tableId);
+            }
+        }
+
+        log.debug("Flushed occupancy: {} delta groups, {} absolute writes, {} rows",
+                byDelta.size(), absolute.size(), updated);
+        return updated;
+    }
+
+    // -------------------------------------------------------
+    // Helpers
+    // -------------------------------------------------------
+
+    private TableOccupancy load(String tableId) {
+        TableOccupancy existing = tables.get(tableId);
+        if (existing == null) {
+            staleTables.remove(tableId);
+            TableOccupancy loaded = query(tableId);
+            TableOccupancy raced = tables.putIfAbsent(tableId, loaded);
+            return raced != null ? raced : loaded;
+        }
+        if (!staleTables.contains(tableId)) {
+            return existing;
+        }
+        // A commit missed this entry while it was being loaded or retired; hold it so no
+        // change lands on it between the query and the swap
+        synchronized (existing) {
+            if (existing.retired) return load(tableId);
+            staleTables.remove(tableId);
+            TableOccupancy loaded = query(tableId);
+            existing.retired = true;
+            tables.replace(tableId, existing, loaded);
+            return loaded;
+        }
+    }
+
+    private TableOccupancy query(String tableId) {
+        TableOccupancy loaded = new TableOccupancy();
+        loaded.seatedPlayers.addAll(yipeeSeatRepository.findSeatedPlayerIdsByTableId(tableId));
+        loaded.resync = true;
+        return loaded;
+    }
+
+    private void retire(String tableId, TableOccupancy occ) {
+        synchronized (occ) {
+            occ.retired = true;
+            tables.remove(tableId, occ);
+        }
+    }
+
+    /**
+     * Makes the next {@link #flush()} write the table's absolute count instead of a delta,
+     * e.g. after the persisted count was found out of step with the index.
+     */
+    public void markResync(String tableId) {
+        TableOccupancy occ = tables.get(tableId);
+        if (occ == null) return;
+        synchronized (occ) {
+            occ.resync = true;
+        }
+    }
+
+    private void restoreDelta(String tableId, int delta) {
+        TableOccupancy occ = tables.get(tableId);
+        if (occ == null) return;
+        synchronized (occ) {
+            occ.pendingDelta += delta;
+        }
+    }
+}
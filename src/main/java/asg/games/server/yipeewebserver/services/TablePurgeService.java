@@ -0,0 +1,73 @@
+package asg.games.server.yipeewebserver.services;
+
+import asg.games.server.yipeewebserver.persistence.YipeeSeatRepository;
+import asg.games.server.yipeewebserver.persistence.YipeeTableOccupancyRepository;
+import asg.games.server.yipeewebserver.persistence.YipeeTableRepository;
+import asg.games.yipee.core.objects.YipeeTable;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Deletes one chunk of empty tables with bulk statements instead of
+ * cascading entity deletes.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class TablePurgeService {
+    private final YipeeTableRepository yipeeTableRepository;
+    private final YipeeSeatRepository yipeeSeatRepository;
+    private final YipeeTableOccupancyRepository occupancyRepository;
+    private final TableOccupancyIndex tableOccupancyIndex;
+    private final SeatAllocator seatAllocator;
+
+    /**
+     * Outcome of one purge chunk.
+     *
+     * @param tableIds tables that were deleted
+     * @param gameIds  game ids that were attached to those tables; matchmaking records the
+     *                 game it starts on the table's activity row
+     */
+    public record PurgeResult(List<String> tableIds, List<String> gameIds) {}
+
+    /**
+     * Deletes the given tables if they are still empty and stale: seats, watcher
+     * rows, the tables themselves and their activity rows.
+     *
+     * @param candidateIds tables found stale by the caller
+     * @param cutoff       last-occupancy cutoff used to find them
+     */
+    @Transactional
+    public PurgeResult purgeTables(Collection<String> candidateIds, Instant cutoff) {
+        List<String> tableIds = occupancyRepository.findStaleTableIdsIn(candidateIds, cutoff).stream()
+                .filter(id -> !tableOccupancyIndex.isKnownOccupied(id))
+                .toList();
+        if (tableIds.isEmpty()) {
+            return new PurgeResult(List.of(), List.of());
+        }
+
+        List<String> gameIds = occupancyRepository.findGameIdsByTableIdIn(tableIds);
+
+        // Watcher join rows are owned by the table; clear them in one load + batched delete
+        List<YipeeTable> tables = yipeeTableRepository.findWithWatchersByIdIn(tableIds);
+        tables.forEach(table -> table.getWatchers().clear());
+        yipeeTableRepository.flush();
+
+        int seats = yipeeSeatRepository.deleteAllByParentTableIdIn(tableIds);
+        int deleted = yipeeTableRepository.deleteAllByIdIn(tableIds);
+        int activity = occupancyRepository.deleteAllByTableIdIn(tableIds);
+
+        tableIds.forEach(tableOccupancyIndex::evict);
+        tableIds.forEach(seatAllocator::evict);
+
+        log.debug("Purged table chunk: tables={}, seats={}, activityRows={}, games={}",
+                deleted, seats, activity, gameIds.size());
+        return new PurgeResult(tableIds, gameIds);
+    }
+}
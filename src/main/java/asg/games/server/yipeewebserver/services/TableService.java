@@ -1,8 +1,6 @@
 package asg.games.server.yipeewebserver.services;
 
-import asg.games.server.yipeewebserver.data.YipeeTableOccupancyEntity;
 import asg.games.server.yipeewebserver.persistence.YipeeSeatRepository;
-import asg.games.server.yipeewebserver.persistence.YipeeTableOccupancyRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeTableRepository;
 import asg.games.server.yipeewebserver.services.impl.YipeeGameJPAServiceImpl;
 import asg.games.yipee.core.objects.YipeeSeat;
@@ -17,32 +15,30 @@ import org.springframework.stereotype.Service;
 public class TableService {
 
     private final YipeeGameJPAServiceImpl yipeeGameService;
-    private final YipeeTableOccupancyRepository occupancyRepository;
+    private final TableOccupancyIndex occupancyIndex;
     private final YipeeSeatRepository yipeeSeatRepository;
     private final YipeeTableRepository yipeeTableRepository;
+    private final RequestEntityCache requestEntityCache;
+    private final SeatAllocator seatAllocator;
 
     public boolean isPlayerAtTable(String tableId, String playerId) {
         log.debug("isPlayerAtTable=(tableId={}, playerId={})",tableId, playerId);
         if (playerId == null || playerId.isBlank()) return false;
+        // Play Now seats are held in memory until SeatConfirmJob writes them
+        if (seatAllocator.seatOf(tableId, playerId) >= 0) return true;
 
-        log.debug("existsByParentTable_IdAndSeatedPlayer_Id={}",yipeeSeatRepository.existsByParentTable_IdAndSeatedPlayer_Id(tableId, playerId));
-        log.debug("existsByIdAndWatchers_Id={}",yipeeTableRepository.existsByIdAndWatchers_Id(tableId, playerId));
-        return yipeeSeatRepository.existsByParentTable_IdAndSeatedPlayer_Id(tableId, playerId)
-                || yipeeTableRepository.existsByIdAndWatchers_Id(tableId, playerId);
+        return requestEntityCache.isPlayerAtTable(tableId, playerId, () ->
+                yipeeSeatRepository.existsByParentTable_IdAndSeatedPlayer_Id(tableId, playerId)
+                        || yipeeTableRepository.existsByIdAndWatchers_Id(tableId, playerId));
     }
 
     @Transactional
     public YipeeSeat sitDown(String tableId, String playerId, int seatNumber) {
         YipeeSeat seat = yipeeGameService.sitDown(playerId, tableId, seatNumber);
+        requestEntityCache.tableChanged(tableId);
 
-        // update occupancy index here if you want, trusting game logic
-        YipeeTableOccupancyEntity occ = occupancyRepository.findById(tableId).orElseGet(() -> new YipeeTableOccupancyEntity(tableId));
-        occ.setSeatedCount(
-                (int) seat.getParentTable().getSeats().stream()
-                        .filter(YipeeSeat::isOccupied)
-                        .count()
-        );
-        occupancyRepository.save(occ);
+        // Occupancy index is authoritative; persisted count follows via OccupancyFlushJob
+        occupancyIndex.playerSeated(tableId, playerId);
 
         return seat;
     }
@@ -53,12 +49,13 @@ public class TableService {
         log.debug("Enter standUp(tableId={}, playerId={})", tableId, playerId);
         // 1) Domain logic
         YipeeSeat seat = yipeeGameService.standUp(playerId, tableId);
+        requestEntityCache.tableChanged(tableId);
 
-        // 2) Occupancy index
-        occupancyRepository.findById(tableId).ifPresent(occ -> {
-            occ.decrementSeated();
-            occupancyRepository.save(occ);
-        });
+        // 2) Occupancy index and seat allocator (which may hold an unconfirmed Play Now seat)
+        if (seat != null) {
+            occupancyIndex.playerStood(tableId, playerId);
+        }
+        seatAllocator.release(tableId, playerId);
 
         log.debug("Exit standUp()={}", seat);
         return seat;
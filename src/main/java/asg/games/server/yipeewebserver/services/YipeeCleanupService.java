@@ -1,16 +1,18 @@
 package asg.games.server.yipeewebserver.services;
 
-import asg.games.server.yipeewebserver.data.PlayerConnectionEntity;
+import asg.games.server.yipeewebserver.core.GameContextFactory;
 import asg.games.server.yipeewebserver.data.YipeeTableOccupancyEntity;
 import asg.games.server.yipeewebserver.persistence.YipeeClientConnectionRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeSeatRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeTableOccupancyRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeTableRepository;
-import asg.games.server.yipeewebserver.services.impl.YipeeGameJPAServiceImpl;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.time.Duration;
 import java.time.Instant;
@@ -25,30 +27,60 @@ public class YipeeCleanupService {
     private static final Duration EMPTY_TABLE_TIMEOUT = Duration.ofMinutes(10);
 
     private final YipeeClientConnectionRepository connectionRepo;
-    private final YipeeGameJPAServiceImpl yipeeGameJPAServiceImpl;
     private final YipeeTableRepository yipeeTableRepository;
     private final YipeeSeatRepository yipeeSeatRepository;
     private final YipeeTableOccupancyRepository yipeeTableOccupancyRepository;
+    private final TableOccupancyIndex tableOccupancyIndex;
+    private final TableActivityTracker tableActivityTracker;
+    private final SessionPurgeService sessionPurgeService;
+    private final TablePurgeService tablePurgeService;
+    private final GameContextFactory gameContextFactory;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${yipee.connection.cleanupChunkSize:200}")
+    private int cleanupChunkSize;
+
+    @Value("${yipee.tables.cleanupChunkSize:200}")
+    private int tableCleanupChunkSize;
 
     // 10 minutes default (configurable)
     private static final long TIMEOUT_SECONDS = 600;
 
-    @Transactional
+    /**
+     * Removes players whose connections have been idle longer than the timeout.
+     * <p>
+     * Works in chunks of {@code yipee.connection.cleanupChunkSize} players, each purged
+     * with set-based statements in its own transaction, so a mass disconnect never holds
+     * one long transaction over the lobby tables.
+     * </p>
+     *
+     * @return number of players removed
+     */
     public int cleanupExpiredSessions() {
         Instant cutoff = Instant.now().minusSeconds(TIMEOUT_SECONDS);
+        long start = System.nanoTime();
 
         int deleted = 0;
-        List<PlayerConnectionEntity> expiredConnections = connectionRepo.findByLastActivityBefore(cutoff);
-        for (PlayerConnectionEntity conn : expiredConnections) {
-            deleted++;
-            String playerId = conn.getPlayer().getId();
-            // delete the connection first (or inside removePlayerCompletely)
-            connectionRepo.delete(conn);
-            yipeeGameJPAServiceImpl.removePlayerCompletely(playerId);
+        int chunks = 0;
+        while (true) {
+            List<String> playerIds = connectionRepo.findPlayerIdsWithActivityBefore(cutoff, PageRequest.of(0, cleanupChunkSize));
+            if (playerIds.isEmpty()) {
+                break;
+            }
+            int purged = sessionPurgeService.purgePlayers(playerIds);
+            chunks++;
+            deleted += purged;
+            if (purged == 0) {
+                log.warn("Expired session chunk of {} players removed nothing; stopping this pass", playerIds.size());
+                break;
+            }
         }
+        int orphaned = sessionPurgeService.purgeOrphanedConnections(cutoff);
 
-        if (deleted > 0) {
-            log.info("Cleaned up {} expired player connections", deleted);
+        if (deleted > 0 || orphaned > 0) {
+            long elapsedMs = Math.max(1, (System.nanoTime() - start) / 1_000_000L);
+            log.info("Cleaned up {} expired players (+{} orphaned connections) in {} chunks, {}ms, {} players/s",
+                    deleted, orphaned, chunks, elapsedMs, deleted * 1000L / elapsedMs);
         }
 
         return deleted;
@@ -70,35 +102,66 @@ public class YipeeCleanupService {
 
         // Activity rows are separate and must be cleared explicitly
         yipeeTableOccupancyRepository.deleteAll();
+        tableOccupancyIndex.clear();
 
         log.warn("FORCE PURGE: done.");
     }
 
-    @Transactional
+    /**
+     * Purges tables that have had no seated players since the timeout.
+     * <p>
+     * Pages through stale table ids in id order ({@code yipee.tables.cleanupChunkSize}
+     * per page) and deletes each page with bulk statements in its own transaction.
+     * Game managers running on the purged tables, lobby or matchmaking, are released
+     * once the chunk commits.
+     * </p>
+     */
     public void cleanupEmptyTables() {
         log.debug("Enter cleanupEmptyTables()");
         Instant cutoff = Instant.now().minusSeconds(TIMEOUT_SECONDS);
-
-        var stale = yipeeTableOccupancyRepository.findBySeatedCountAndLastOccupancyChangeBefore(0, cutoff);
-        log.debug("stale=" + stale);
+        long start = System.nanoTime();
 
         int deleted = 0;
-        for (YipeeTableOccupancyEntity occ : stale) {
-            log.debug("occEntity={}",occ);
+        int released = 0;
+        String afterTableId = "";
+        while (true) {
+            List<String> page = yipeeTableOccupancyRepository.findStaleTableIdsAfter(cutoff, afterTableId,
+                    PageRequest.of(0, tableCleanupChunkSize));
+            if (page.isEmpty()) {
+                break;
+            }
+            afterTableId = page.get(page.size() - 1);
 
-            String tableId = occ.getTableId();
-            log.debug("tableId={}",tableId);
-            if (yipeeTableRepository.existsById(tableId)) {
-                yipeeTableRepository.deleteById(tableId);
+            TablePurgeService.PurgeResult result = tablePurgeService.purgeTables(page, cutoff);
+            deleted += result.tableIds().size();
+            // Lobby games are only known in memory; matchmaking games are on the activity rows too
+            for (String tableId : result.tableIds()) {
+                if (gameContextFactory.releaseTableGame(tableId)) {
+                    released++;
+                }
+            }
+            for (String gameId : result.gameIds()) {
+                if (gameContextFactory.releaseGame(gameId)) {
+                    released++;
+                }
             }
-            yipeeTableOccupancyRepository.delete(occ);
-            deleted++;
+        }
+
+        if (deleted > 0) {
+            log.info("Purged {} empty tables, released {} games in {}ms",
+                    deleted, released, (System.nanoTime() - start) / 1_000_000L);
         }
         log.debug("Exit cleanupEmptyTables()={}", deleted);
     }
 
+    /**
+     * Full sweep: compares every activity row against YT_SEATS and the watcher join table.
+     * Runs on the slow {@code yipee.tables.fullReconcileMs} cadence; the regular pass is
+     * {@link #reconcileDirtyTables()}.
+     */
     @Transactional
     public void reconcileTableActivity() {
+        long start = System.nanoTime();
         Instant now = Instant.now();
 
         Map<String, Integer> seatTruth = new HashMap<>();
@@ -112,27 +175,118 @@ public class YipeeCleanupService {
         }
 
         // iterate all activity rows (or all tables; pick one as the "source list")
+        int examined = 0;
+        int changed = 0;
         for (YipeeTableOccupancyEntity occ : yipeeTableOccupancyRepository.findAll()) {
-            int occupiedSeats = seatTruth.getOrDefault(occ.getTableId(), 0);
-            int watchers = watcherTruth.getOrDefault(occ.getTableId(), 0);
+            examined++;
+            if (applyActivityTruth(occ, seatTruth, watcherTruth, now)) {
+                changed++;
+            }
+        }
+
+        log.info("Full table reconciliation: examined={}, changed={}, elapsedMs={}",
+                examined, changed, (System.nanoTime() - start) / 1_000_000L);
+    }
 
-            boolean changed =
-                    occ.getSeatedCount() != occupiedSeats ||
-                            occ.getWatcherCount() != watchers;
+    /**
+     * Incremental pass: only reconciles tables reported dirty by the mutation paths
+     * since the previous pass, {@code yipee.tables.cleanupChunkSize} tables per transaction.
+     * Ids of the failed chunk and those after it are requeued if the pass fails.
+     */
+    public void reconcileDirtyTables() {
+        List<String> dirty = tableActivityTracker.drain();
+        if (dirty.isEmpty()) {
+            log.debug("No dirty tables to reconcile");
+            return;
+        }
 
-            if (changed) {
-                occ.setSeatedCount(occupiedSeats);
-                occ.setWatcherCount(watchers);
-                occ.setLastOccupancyChange(now);
+        long start = System.nanoTime();
+        int examined = 0;
+        int changed = 0;
+        for (int from = 0; from < dirty.size(); from += tableCleanupChunkSize) {
+            List<String> chunk = dirty.subList(from, Math.min(from + tableCleanupChunkSize, dirty.size()));
+            try {
+                int[] result = transactionTemplate.execute(status -> reconcileTables(chunk));
+                examined += result[0];
+                changed += result[1];
+            } catch (RuntimeException e) {
+                tableActivityTracker.requeue(dirty.subList(from, dirty.size()));
+                throw e;
+            }
+        }
+
+        log.debug("Incremental table reconciliation: dirty={}, examined={}, changed={}, elapsedMs={}",
+                dirty.size(), examined, changed, (System.nanoTime() - start) / 1_000_000L);
+    }
+
+    /**
+     * @return tables examined and changed
+     */
+    private int[] reconcileTables(List<String> tableIds) {
+        Instant now = Instant.now();
+        Map<String, Integer> seatTruth = new HashMap<>();
+        for (var r : yipeeSeatRepository.countOccupiedSeatsByTableIds(tableIds)) {
+            seatTruth.put(r.getTableId(), (int) r.getOccupiedCount());
+        }
+
+        Map<String, Integer> watcherTruth = new HashMap<>();
+        for (var r : yipeeTableRepository.countWatchersByTableIds(tableIds)) {
+            watcherTruth.put(r.getTableId(), (int) r.getWatcherCount());
+        }
+
+        int examined = 0;
+        int changed = 0;
+        for (YipeeTableOccupancyEntity occ : yipeeTableOccupancyRepository.findAllById(tableIds)) {
+            examined++;
+            if (applyActivityTruth(occ, seatTruth, watcherTruth, now)) {
+                changed++;
+            }
+        }
+        return new int[]{examined, changed};
+    }
+
+    private boolean applyActivityTruth(YipeeTableOccupancyEntity occ,
+                                       Map<String, Integer> seatTruth,
+                                       Map<String, Integer> watcherTruth,
+                                       Instant now) {
+        String tableId = occ.getTableId();
+        int occupiedSeats = seatTruth.getOrDefault(tableId, 0);
+        int watchers = watcherTruth.getOrDefault(tableId, 0);
+
+        // The index owns the seated count of the tables it holds: a persisted count that
+        // lags behind it only has deltas still waiting for OccupancyFlushJob
+        boolean seatsChanged = false;
+        int indexed = tableOccupancyIndex.knownSeatedCount(tableId);
+        if (indexed >= 0 && indexed != occupiedSeats) {
+            // Drift between YT_SEATS and the index; reload it from the seats
+            log.info("Occupancy drift on table {}: indexed={}, seats={}", tableId, indexed, occupiedSeats);
+            tableOccupancyIndex.evict(tableId);
+            seatsChanged = occ.getSeatedCount() != occupiedSeats;
+        } else if (indexed >= 0) {
+            if (occ.getSeatedCount() != occupiedSeats) {
+                // Pending or in-flight deltas; an absolute write settles it either way
+                tableOccupancyIndex.markResync(tableId);
             }
+        } else {
+            seatsChanged = occ.getSeatedCount() != occupiedSeats;
+        }
 
-            // If you add lastEmptyAt:
-            boolean empty = occupiedSeats == 0 && watchers == 0; // or only seats, your choice
-            if (empty) {
-                if (occ.getLastEmptyAt() == null) occ.setLastEmptyAt(now);
-            } else {
-                occ.setLastEmptyAt(null);
+        boolean changed = seatsChanged || occ.getWatcherCount() != watchers;
+        if (changed) {
+            if (seatsChanged) {
+                occ.setSeatedCount(occupiedSeats);
             }
+            occ.setWatcherCount(watchers);
+            occ.setLastOccupancyChange(now);
+        }
+
+        // If you add lastEmptyAt:
+        boolean empty = occupiedSeats == 0 && watchers == 0; // or only seats, your choice
+        if (empty) {
+            if (occ.getLastEmptyAt() == null) occ.setLastEmptyAt(now);
+        } else {
+            occ.setLastEmptyAt(null);
         }
+        return changed;
     }
-}
\ No newline at end of file
+}
@@ -9,6 +9,11 @@ import asg.games.server.yipeewebserver.persistence.YipeeRoomRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeSeatRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeTableOccupancyRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeTableRepository;
+import asg.games.server.yipeewebserver.services.DrainService;
+import asg.games.server.yipeewebserver.services.RequestEntityCache;
+import asg.games.server.yipeewebserver.services.SeatAllocator;
+import asg.games.server.yipeewebserver.services.TableActivityTracker;
+import asg.games.server.yipeewebserver.services.TableOccupancyIndex;
 import asg.games.yipee.common.enums.YipeeObject;
 import asg.games.yipee.core.objects.YipeePlayer;
 import asg.games.yipee.core.objects.YipeeRoom;
@@ -46,6 +51,11 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
     private final YipeeSeatRepository yipeeSeatRepository;
     private final YipeeClientConnectionRepository yipeeClientConnectionRepository;
     private final YipeeTableOccupancyRepository yipeeTableOccupancyRepository;
+    private final TableOccupancyIndex tableOccupancyIndex;
+    private final TableActivityTracker tableActivityTracker;
+    private final DrainService drainService;
+    private final RequestEntityCache requestEntityCache;
+    private final SeatAllocator seatAllocator;
 
     @PostConstruct
     public void init() {
@@ -337,6 +347,23 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
                                   boolean rated,
                                   boolean soundOn,
                                   String accessType) {
+        YipeeTable table = createUnindexedTable(playerId, roomId, rated, soundOn, accessType);
+        seatAllocator.registerTable(roomId, seatSnapshot(table));
+        return table;
+    }
+
+    /**
+     * Creates a table without adding it to {@link SeatAllocator}; callers that seat players
+     * right away register it once, after seating, so Play Now never sees it half full.
+     */
+    private YipeeTable createUnindexedTable(String playerId,
+                                            String roomId,
+                                            boolean rated,
+                                            boolean soundOn,
+                                            String accessType) {
+        if (drainService.isDraining()) {
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Server is draining; create the table on another instance");
+        }
         YipeeTable table = createLocalTable(playerId,
                 roomId,
                 rated,
@@ -345,6 +372,8 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
         );
 
         yipeeTableOccupancyRepository.save(new YipeeTableOccupancyEntity(table.getId()));
+        tableOccupancyIndex.registerTable(table.getId());
+        tableActivityTracker.markDirty(table.getId());
 
         return table;
     }
@@ -376,17 +405,39 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
         return table;
     }
 
+    /**
+     * Creates a table for a matchmaking group and seats the players in the given order
+     * (seat 0, 1, ...). The table's activity row records the game it runs.
+     */
+    @Transactional
+    public YipeeTable createMatchTable(String roomId, String gameId, List<String> playerIdsBySeat) {
+        YipeeTable table = createUnindexedTable(playerIdsBySeat.get(0), roomId, true, true, "public");
+        String tableId = table.getId();
+
+        for (int seat = 0; seat < playerIdsBySeat.size(); seat++) {
+            String playerId = playerIdsBySeat.get(seat);
+            sitDown(playerId, tableId, seat);
+            tableOccupancyIndex.playerSeated(tableId, playerId);
+        }
+
+        yipeeTableOccupancyRepository.findById(tableId).ifPresent(occ -> {
+            occ.setRoomId(roomId);
+            occ.setGameId(gameId);
+        });
+        seatAllocator.registerTable(roomId, seatSnapshot(table));
+        return table;
+    }
+
     @Transactional
     public YipeeTable joinTable(String playerId,
                                 String roomId,
                                 Integer tableNumber,
                                 boolean createIfMissing) {
 
-        YipeeRoom room = getRoomById(roomId);
-
         YipeeTable table = null;
         if(tableNumber > 0) {
             // Explicit table selection (e.g. clicking "Play Now" on a specific table)
+            YipeeRoom room = getRoomById(roomId);
             table = room.getTableIndexMap().values().stream()
                     .filter(Objects::nonNull)
                     .filter(t -> t.getTableNumber() == tableNumber)
@@ -410,20 +461,32 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
                         );
                     });
         } else {
-            // PLAY NOW PATH: auto-pick a table
-            table = findExistingTableWithFreeSeat(room)
-                    .orElseGet(() -> {
-                        if (!createIfMissing) {
-                            throw new IllegalStateException("No free tables and createIfMissing=false");
-                        }
+            // PLAY NOW PATH: reserve a free seat in memory; SeatConfirmJob writes it to YT_SEATS
+            Optional<SeatAllocator.Reservation> reservation = seatAllocator.reserve(roomId, playerId,
+                    () -> getRoomById(roomId).getTableIndexMap().values().stream()
+                            .filter(Objects::nonNull)
+                            .map(YipeeGameJPAServiceImpl::seatSnapshot)
+                            .toList());
+
+            if (reservation.isPresent()) {
+                table = yipeeTableRepository.getReferenceById(reservation.get().tableId());
+            } else {
+                if (!createIfMissing) {
+                    throw new IllegalStateException("No free tables and createIfMissing=false");
+                }
 
-                        return createTable(
-                                playerId,
-                                roomId,
-                                false,
-                                true,
-                                "public");
-                    });
+                table = createUnindexedTable(
+                        playerId,
+                        roomId,
+                        false,
+                        true,
+                        "public");
+
+                // Nobody else can see the new table yet, so seat its creator directly
+                autoSeatPlayer(table, playerId);
+                tableOccupancyIndex.playerSeated(table.getId(), playerId);
+                seatAllocator.registerTable(roomId, seatSnapshot(table));
+            }
         }
 
         return table;
@@ -477,27 +540,76 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
     }
 
 
-    private Optional<YipeeTable> findExistingTableWithFreeSeat(YipeeRoom room) {
-        if (room == null || room.getTableIndexMap() == null || room.getTableIndexMap().isEmpty()) {
-            return Optional.empty();
-        }
+    private static SeatAllocator.TableSnapshot seatSnapshot(YipeeTable table) {
+        List<YipeeSeat> seats = table.getSeats().stream()
+                .filter(Objects::nonNull)
+                .sorted(java.util.Comparator.comparingInt(YipeeSeat::getSeatNumber))
+                .toList();
 
-        // Sort by table number so "Play Now" prefers lower-numbered tables first
-        return room.getTableIndexMap().values().stream()
-                .sorted(java.util.Comparator.comparingInt(YipeeTable::getTableNumber))
-                .filter(this::tableHasFreeSeat)
-                .findFirst();
+        int[] seatNumbers = new int[seats.size()];
+        String[] seatedPlayerIds = new String[seats.size()];
+        for (int i = 0; i < seats.size(); i++) {
+            YipeeSeat seat = seats.get(i);
+            YipeePlayer seated = seat.getSeatedPlayer();
+            seatNumbers[i] = seat.getSeatNumber();
+            seatedPlayerIds[i] = seated != null ? seated.getId() : null;
+        }
+        return new SeatAllocator.TableSnapshot(table.getId(), table.getTableNumber(), seatNumbers, seatedPlayerIds);
     }
 
-    private boolean tableHasFreeSeat(YipeeTable table) {
-        if (table == null || table.getSeats() == null) {
-            return false;
+    /**
+     * Writes Play Now reservations from {@link SeatAllocator} to their seats.
+     * Reservations the player gave up in the meantime are skipped; seats already taken
+     * in the database are reported back as conflicts, which moves the player to another seat.
+     *
+     * @return number of players seated
+     */
+    @Transactional
+    public int confirmSeatReservations(List<SeatAllocator.Reservation> reservations) {
+        int seated = 0;
+        for (SeatAllocator.Reservation reservation : reservations) {
+            if (!seatAllocator.holds(reservation)) {
+                continue;
+            }
+            String tableId = reservation.tableId();
+            String playerId = reservation.playerId();
+
+            YipeeTable table = yipeeTableRepository.findById(tableId).orElse(null);
+            YipeePlayer player = yipeePlayerRepository.findById(playerId).orElse(null);
+            YipeeSeat seat = table == null ? null : table.getSeats().stream()
+                    .filter(s -> s != null && s.getSeatNumber() == reservation.seatNumber())
+                    .findFirst()
+                    .orElse(null);
+            if (seat == null || player == null) {
+                seatAllocator.release(tableId, playerId);
+                continue;
+            }
+
+            YipeePlayer occupant = seat.getSeatedPlayer();
+            if (occupant != null && !playerId.equals(occupant.getId())) {
+                // The player was already told this seat; move them rather than drop them
+                Optional<SeatAllocator.Reservation> moved = seatAllocator.conflict(reservation, occupant.getId());
+                if (moved.isPresent()) {
+                    log.info("Seat {} at table {} was taken; player {} moved to seat {} at table {}",
+                            reservation.seatNumber(), tableId, playerId,
+                            moved.get().seatNumber(), moved.get().tableId());
+                } else {
+                    log.info("Seat {} at table {} was taken and room {} has no free seat left for player {}",
+                            reservation.seatNumber(), tableId, reservation.roomId(), playerId);
+                }
+                continue;
+            }
+
+            seat.setSeatedPlayer(player);
+            seat.setSeatReady(false);
+            table.removeWatcher(player);
+            tableOccupancyIndex.playerSeated(tableId, playerId);
+            tableActivityTracker.markDirty(tableId);
+            seated++;
         }
-        return table.getSeats().stream()
-                .anyMatch(seat -> seat != null && !seat.isOccupied());
+        return seated;
     }
 
-
     @Transactional
     public void leaveRoom(String playerId, String roomId) {
         YipeePlayer player = yipeePlayerRepository.findById(playerId)
@@ -510,11 +622,15 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
         room.getTableIndexMap().values().forEach(table -> {
             // remove as watcher
             table.removeWatcher(player);
+            tableActivityTracker.markDirty(table.getId());
+            requestEntityCache.tableChanged(table.getId());
+            seatAllocator.release(table.getId(), playerId);
 
             // stand up from any seat they occupy
             table.getSeats().forEach(seat -> {
                 if (player.equals(seat.getSeatedPlayer())) {
                     seat.standUp();  // clears ready + seatedPlayer
+                    tableOccupancyIndex.playerStood(table.getId(), playerId);
                 }
             });
         });
@@ -545,11 +661,15 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
 
         // 1) Remove as watcher
         table.getWatchers().remove(player);
+        tableActivityTracker.markDirty(tableId);
+        requestEntityCache.tableChanged(tableId);
+        seatAllocator.release(tableId, playerId);
 
         // 2) Stand up from any seat they occupy at this table
         table.getSeats().forEach(seat -> {
             if (player.equals(seat.getSeatedPlayer())) {
                 seat.standUp();
+                tableOccupancyIndex.playerStood(tableId, playerId);
             }
         });
 
@@ -559,11 +679,11 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
 
     @Transactional
     public YipeeSeat sitDown(String playerId, String tableId, int seatNumber) {
-        // Load managed entities
-        YipeeTable table = yipeeTableRepository.findById(tableId)
+        // Load managed entities (shared with the rest of the request)
+        YipeeTable table = requestEntityCache.findTable(tableId)
                 .orElseThrow(() -> new IllegalArgumentException("Table not found: " + tableId));
 
-        YipeePlayer player = yipeePlayerRepository.findById(playerId)
+        YipeePlayer player = requestEntityCache.findPlayer(playerId)
                 .orElseThrow(() -> new IllegalArgumentException("Player not found: " + playerId));
 
         // 1) Make sure player is not already seated at this table
@@ -584,7 +704,11 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
                         new IllegalArgumentException("Seat " + seatNumber + " not found for table " + tableId)
                 );
 
-        // 3) Ensure that seat is not already occupied
+        // 3) Ensure that seat is not already occupied or reserved by Play Now
+        if (!seatAllocator.claim(tableId, seatNumber, playerId)) {
+            throw new IllegalStateException(
+                    "Seat " + seatNumber + " at table " + tableId + " is reserved by another player");
+        }
         if (targetSeat.isOccupied() && targetSeat.getSeatedPlayer() != null) {
             throw new IllegalStateException(
                     "Seat " + seatNumber + " at table " + tableId + " is already occupied by player "
@@ -600,6 +724,7 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
 
         // 5) Remove player from watchers list if they sit down
         table.removeWatcher(player);
+        tableActivityTracker.markDirty(tableId);
 
         return targetSeat;
     }
@@ -625,6 +750,8 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
 
         table.addWatcher(player);
         yipeeTableRepository.save(table);
+        tableActivityTracker.markDirty(tableId);
+        requestEntityCache.tableChanged(tableId);
 
         return seat;
     }
@@ -651,13 +778,20 @@ public class YipeeGameJPAServiceImpl extends AbstractStorage {
         yipeeTableRepository.findByWatchers_Id(playerId).forEach(table -> {
             log.debug("Removing player from table=" + table.getName());
             table.removeWatcher(player);
+            tableActivityTracker.markDirty(table.getId());
         });
 
         // 3) Stand them up from all seats
         // clears seatedPlayer + isSeatReady
         // or explicitly: seat.setSeatedPlayer(null); seat.setSeatReady(false);
         log.debug("Remove all seated players");
-        yipeeSeatRepository.findBySeatedPlayer_Id(playerId).forEach(YipeeSeat::standUp);
+        yipeeSeatRepository.findBySeatedPlayer_Id(playerId).forEach(seat -> {
+            String tableId = seat.getParentTable().getId();
+            seat.standUp();
+            tableOccupancyIndex.playerStood(tableId, playerId);
+            tableActivityTracker.markDirty(tableId);
+        });
+        seatAllocator.releasePlayer(playerId);
 
         // 4) Remove PlayerConnectionEntity rows for this player (if you like)
         log.debug("Remove all connected players");
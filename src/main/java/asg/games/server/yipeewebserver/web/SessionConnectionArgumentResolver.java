@@ -3,8 +3,8 @@ package asg.games.server.yipeewebserver.web;
 import asg.games.server.yipeewebserver.annotations.SessionConnection;
 import asg.games.server.yipeewebserver.data.PlayerConnectionEntity;
 import asg.games.server.yipeewebserver.exceptions.ClientValidationException;
-import asg.games.server.yipeewebserver.persistence.YipeePlayerRepository;
 import asg.games.server.yipeewebserver.security.DevJwtAuthenticationFilter;
+import asg.games.server.yipeewebserver.services.RequestEntityCache;
 import asg.games.server.yipeewebserver.services.SessionService;
 import asg.games.yipee.core.objects.YipeePlayer;
 import jakarta.servlet.http.HttpServletRequest;
@@ -28,7 +28,7 @@ public class SessionConnectionArgumentResolver implements HandlerMethodArgumentR
     public static final String HEADER_SESSION_ID = "X-Session-Id";
 
     private final SessionService sessionService;
-    private final YipeePlayerRepository yipeePlayerRepository;
+    private final RequestEntityCache requestEntityCache;
 
     @Override
     public boolean supportsParameter(MethodParameter parameter) {
@@ -54,7 +54,9 @@ public class SessionConnectionArgumentResolver implements HandlerMethodArgumentR
         log.debug("sessionId={}", sessionId);
         // Preferred: header-based session (existing behavior)
         if (sessionId != null && !sessionId.isBlank() && clientId != null && !clientId.isBlank()) {
-            return sessionService.requireSession(sessionId, clientId);
+            PlayerConnectionEntity connection = sessionService.requireSession(sessionId, clientId);
+            requestEntityCache.putConnection(connection);
+            return connection;
         }
 
         // Fallback: JWT-authenticated user
@@ -78,7 +80,7 @@ public class SessionConnectionArgumentResolver implements HandlerMethodArgumentR
                 // Pick the method you already have (examples):
                 //return sessionService.requireSession(sessionId, clientId);
                 // or sessionService.getOrCreateConnection(playerId);
-                YipeePlayer player = yipeePlayerRepository.findById(playerId).orElse(null);
+                YipeePlayer player = requestEntityCache.findPlayer(playerId).orElse(null);
                 log.debug("Exit resolveArgument()={}", player);
                 return player;
             }
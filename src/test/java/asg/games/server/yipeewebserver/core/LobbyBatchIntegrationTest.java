@@ -0,0 +1,140 @@
+package asg.games.server.yipeewebserver.core;
+
+import asg.games.server.yipeewebserver.controllers.ControllerContstants;
+import asg.games.server.yipeewebserver.net.api.CreateTableRequest;
+import asg.games.server.yipeewebserver.net.api.JoinRoomRequest;
+import asg.games.server.yipeewebserver.net.api.LobbyBatchRequest;
+import asg.games.server.yipeewebserver.net.api.LobbyCommand;
+import asg.games.server.yipeewebserver.net.api.RegisterPlayerRequest;
+import asg.games.yipee.common.enums.ACCESS_TYPE;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Runs {@code POST /api/lobby/batch} against the in-memory H2 database and checks that
+ * the batch is all or nothing.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("perf")
+public class LobbyBatchIntegrationTest {
+    private static final String HEADER_CLIENT_ID = "X-Client-Id";
+    private static final String HEADER_SESSION_ID = "X-Session-Id";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private String roomId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JsonNode rooms = getJson(get(api(ControllerContstants.API_ROOM_GET_ROOMS_PATH)));
+        assertThat(rooms.size()).as("rooms loaded from rooms.xml").isPositive();
+        roomId = rooms.get(0).get("roomId").asText();
+    }
+
+    @Test
+    void lobbyBatch_failingCommandRollsBackEarlierCommands() throws Exception {
+        Map<String, String> session = registerAndHandshake("batch-rollback", "batch-rollback-client");
+        int tablesBefore = tableCount();
+
+        List<LobbyCommand> commands = new ArrayList<>(joinRoomAndCreateTable());
+        commands.add(new LobbyCommand(null, null));
+        MvcResult result = batch(session, commands);
+
+        assertThat(result.getResponse().getStatus()).isBetween(400, 499);
+        assertThat(tableCount()).as("table created earlier in the batch").isEqualTo(tablesBefore);
+        assertThat(roomPlayerIds()).as("room joined earlier in the batch").doesNotContain(session.get("playerId"));
+    }
+
+    @Test
+    void lobbyBatch_commitsAllCommandsTogether() throws Exception {
+        Map<String, String> session = registerAndHandshake("batch-commit", "batch-commit-client");
+        int tablesBefore = tableCount();
+
+        MvcResult result = batch(session, joinRoomAndCreateTable());
+
+        assertThat(result.getResponse().getStatus()).isEqualTo(200);
+        JsonNode results = objectMapper.readTree(result.getResponse().getContentAsString()).get("results");
+        assertThat(results.size()).isEqualTo(2);
+        assertThat(tableCount()).isEqualTo(tablesBefore + 1);
+        assertThat(roomPlayerIds()).contains(session.get("playerId"));
+    }
+
+    private List<LobbyCommand> joinRoomAndCreateTable() {
+        return List.of(
+                new LobbyCommand(LobbyCommand.Op.JOIN_ROOM, objectMapper.valueToTree(new JoinRoomRequest(roomId))),
+                // roomId comes from the JOIN_ROOM before it
+                new LobbyCommand(LobbyCommand.Op.CREATE_TABLE, objectMapper.valueToTree(
+                        new CreateTableRequest(null, false, false, ACCESS_TYPE.PUBLIC.toString()))));
+    }
+
+    private MvcResult batch(Map<String, String> session, List<LobbyCommand> commands) throws Exception {
+        return mockMvc.perform(post(api(ControllerContstants.API_LOBBY_BATCH_PATH))
+                        .header(HEADER_CLIENT_ID, session.get("clientId"))
+                        .header(HEADER_SESSION_ID, session.get("sessionId"))
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new LobbyBatchRequest(null, commands))))
+                .andReturn();
+    }
+
+    private Map<String, String> registerAndHandshake(String name, String clientId) throws Exception {
+        JsonNode registered = getJson(post(api(ControllerContstants.API_PLAYER_REGISTER_PATH))
+                .header(HEADER_CLIENT_ID, clientId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new RegisterPlayerRequest(name, 1, 1500, clientId))));
+        String playerId = registered.get("playerId").asText();
+
+        Map<String, Object> handshake = new LinkedHashMap<>();
+        handshake.put("playerId", playerId);
+        handshake.put("clientId", clientId);
+        JsonNode response = getJson(post(api(ControllerContstants.API_SESSION_HANDSHAKE_PATH))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(handshake)));
+
+        return Map.of("playerId", playerId, "clientId", clientId, "sessionId", response.get("sessionId").asText());
+    }
+
+    private int tableCount() throws Exception {
+        return getJson(get(api(ControllerContstants.API_TABLE_GET_TABLES_PATH)).param("roomId", roomId)).size();
+    }
+
+    private List<String> roomPlayerIds() throws Exception {
+        List<String> playerIds = new ArrayList<>();
+        getJson(get(api(ControllerContstants.API_ROOM_GET_PLAYERS_PATH)).param("roomId", roomId))
+                .get("players").forEach(player -> playerIds.add(player.get("playerId").asText()));
+        return playerIds;
+    }
+
+    private JsonNode getJson(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        assertThat(result.getResponse().getStatus()).isBetween(200, 299);
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private static String api(String path) {
+        return ControllerContstants.API_BASE_PATH + path;
+    }
+}
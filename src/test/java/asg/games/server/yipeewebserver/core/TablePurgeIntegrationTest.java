@@ -0,0 +1,165 @@
+package asg.games.server.yipeewebserver.core;
+
+import asg.games.server.yipeewebserver.controllers.ControllerContstants;
+import asg.games.server.yipeewebserver.net.api.CreateTableRequest;
+import asg.games.server.yipeewebserver.net.api.JoinRoomRequest;
+import asg.games.server.yipeewebserver.net.api.RegisterPlayerRequest;
+import asg.games.server.yipeewebserver.persistence.YipeeTableOccupancyRepository;
+import asg.games.server.yipeewebserver.persistence.YipeeTableRepository;
+import asg.games.server.yipeewebserver.services.YipeeCleanupService;
+import asg.games.yipee.common.enums.ACCESS_TYPE;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Runs {@link YipeeCleanupService#cleanupEmptyTables()} against the in-memory H2 database
+ * on a lobby table that belongs to a room and has a game running on it.
+ */
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("perf")
+public class TablePurgeIntegrationTest {
+    private static final String HEADER_CLIENT_ID = "X-Client-Id";
+    private static final String HEADER_SESSION_ID = "X-Session-Id";
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private YipeeCleanupService cleanupService;
+
+    @Autowired
+    private GameContextFactory gameContextFactory;
+
+    @Autowired
+    private YipeeTableRepository yipeeTableRepository;
+
+    @Autowired
+    private YipeeTableOccupancyRepository occupancyRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private String roomId;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        JsonNode rooms = getJson(get(api(ControllerContstants.API_ROOM_GET_ROOMS_PATH)));
+        assertThat(rooms.size()).as("rooms loaded from rooms.xml").isPositive();
+        roomId = rooms.get(0).get("roomId").asText();
+    }
+
+    @Test
+    void cleanupEmptyTables_purgesStaleRoomTableAndReleasesItsGame() throws Exception {
+        Map<String, String> session = registerAndHandshake("purge-owner", "purge-owner-client");
+        postJson(session, ControllerContstants.API_ROOM_JOIN_PATH, new JoinRoomRequest(roomId));
+        String tableId = postJson(session, ControllerContstants.API_TABLE_CREATE_PATH,
+                new CreateTableRequest(roomId, false, false, ACCESS_TYPE.PUBLIC.toString())).get("tableId").asText();
+        // The game a launch token would hand out for this table
+        String gameId = gameContextFactory.gameIdForTable(tableId);
+        assertThat(tableIds()).contains(tableId);
+
+        backdate(tableId);
+        cleanupService.cleanupEmptyTables();
+
+        assertThat(yipeeTableRepository.existsById(tableId)).isFalse();
+        assertThat(occupancyRepository.existsById(tableId)).isFalse();
+        assertThat(tableIds()).as("tables listed for the room").doesNotContain(tableId);
+        assertThat(roomPlayerIds()).as("players stay in the room").contains(session.get("playerId"));
+        assertThat(gameContextFactory.getGame(gameId)).isNull();
+    }
+
+    @Test
+    void cleanupEmptyTables_keepsRecentlyUsedTable() throws Exception {
+        Map<String, String> session = registerAndHandshake("purge-recent", "purge-recent-client");
+        postJson(session, ControllerContstants.API_ROOM_JOIN_PATH, new JoinRoomRequest(roomId));
+        String tableId = postJson(session, ControllerContstants.API_TABLE_CREATE_PATH,
+                new CreateTableRequest(roomId, false, false, ACCESS_TYPE.PUBLIC.toString())).get("tableId").asText();
+        String gameId = gameContextFactory.gameIdForTable(tableId);
+
+        cleanupService.cleanupEmptyTables();
+
+        assertThat(yipeeTableRepository.existsById(tableId)).isTrue();
+        assertThat(tableIds()).contains(tableId);
+        assertThat(gameContextFactory.getGame(gameId)).isNotNull();
+    }
+
+    /** Moves the table's last occupancy change past the cleanup timeout. */
+    private void backdate(String tableId) {
+        transactionTemplate.executeWithoutResult(status -> occupancyRepository.findById(tableId).orElseThrow()
+                .setLastOccupancyChange(Instant.now().minusSeconds(3600)));
+    }
+
+    private JsonNode postJson(Map<String, String> session, String path, Object body) throws Exception {
+        return getJson(post(api(path))
+                .header(HEADER_CLIENT_ID, session.get("clientId"))
+                .header(HEADER_SESSION_ID, session.get("sessionId"))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(body)));
+    }
+
+    private Map<String, String> registerAndHandshake(String name, String clientId) throws Exception {
+        JsonNode registered = getJson(post(api(ControllerContstants.API_PLAYER_REGISTER_PATH))
+                .header(HEADER_CLIENT_ID, clientId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new RegisterPlayerRequest(name, 1, 1500, clientId))));
+        String playerId = registered.get("playerId").asText();
+
+        Map<String, Object> handshake = new LinkedHashMap<>();
+        handshake.put("playerId", playerId);
+        handshake.put("clientId", clientId);
+        JsonNode response = getJson(post(api(ControllerContstants.API_SESSION_HANDSHAKE_PATH))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(handshake)));
+
+        return Map.of("playerId", playerId, "clientId", clientId, "sessionId", response.get("sessionId").asText());
+    }
+
+    private List<String> tableIds() throws Exception {
+        List<String> tableIds = new ArrayList<>();
+        getJson(get(api(ControllerContstants.API_TABLE_GET_TABLES_PATH)).param("roomId", roomId))
+                .forEach(table -> tableIds.add(table.get("tableId").asText()));
+        return tableIds;
+    }
+
+    private List<String> roomPlayerIds() throws Exception {
+        List<String> playerIds = new ArrayList<>();
+        getJson(get(api(ControllerContstants.API_ROOM_GET_PLAYERS_PATH)).param("roomId", roomId))
+                .get("players").forEach(player -> playerIds.add(player.get("playerId").asText()));
+        return playerIds;
+    }
+
+    private JsonNode getJson(RequestBuilder request) throws Exception {
+        MvcResult result = mockMvc.perform(request).andReturn();
+        assertThat(result.getResponse().getStatus()).isBetween(200, 299);
+        return objectMapper.readTree(result.getResponse().getContentAsString());
+    }
+
+    private static String api(String path) {
+        return ControllerContstants.API_BASE_PATH + path;
+    }
+}
@@ -6,10 +6,12 @@ import asg.games.server.yipeewebserver.controllers.YipeeAPIController;
 import asg.games.server.yipeewebserver.data.PlayerConnectionEntity;
 import asg.games.server.yipeewebserver.net.YipeePacketHandler;
 import asg.games.server.yipeewebserver.net.api.*;
+import asg.games.server.yipeewebserver.net.codec.FrameCompressor;
 import asg.games.server.yipeewebserver.persistence.YipeeClientConnectionRepository;
 import asg.games.server.yipeewebserver.persistence.YipeePlayerRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeRoomRepository;
 import asg.games.server.yipeewebserver.persistence.YipeeTableRepository;
+import asg.games.server.yipeewebserver.services.SeatAllocator;
 import asg.games.server.yipeewebserver.services.SessionService;
 import asg.games.server.yipeewebserver.services.TableService;
 import asg.games.server.yipeewebserver.services.impl.YipeeGameJPAServiceImpl;
@@ -73,6 +75,12 @@ public class YipeeApiEndToEndTest {
     @Mock
     private TableService tableService;
 
+    @Mock
+    private SeatAllocator seatAllocator;
+
+    @Mock
+    private FrameCompressor frameCompressor;
+
     @InjectMocks
     private YipeeAPIController controller;
 
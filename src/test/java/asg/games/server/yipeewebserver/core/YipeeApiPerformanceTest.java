@@ -0,0 +1,377 @@
+package asg.games.server.yipeewebserver.core;
+
+import asg.games.server.yipeewebserver.controllers.ControllerContstants;
+import asg.games.server.yipeewebserver.net.api.CreateTableRequest;
+import asg.games.server.yipeewebserver.net.api.JoinRoomRequest;
+import asg.games.server.yipeewebserver.net.api.JoinTableRequest;
+import asg.games.server.yipeewebserver.net.api.LaunchTokenRequest;
+import asg.games.server.yipeewebserver.net.api.RegisterPlayerRequest;
+import asg.games.server.yipeewebserver.net.api.SitDownRequest;
+import asg.games.server.yipeewebserver.net.api.StandUpRequest;
+import asg.games.server.yipeewebserver.services.RequestEntityCache;
+import asg.games.yipee.common.enums.ACCESS_TYPE;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.persistence.EntityManagerFactory;
+import lombok.extern.slf4j.Slf4j;
+import net.ttddyy.dsproxy.QueryCountHolder;
+import net.ttddyy.dsproxy.support.ProxyDataSourceBuilder;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Query-count and latency regression tests for {@link asg.games.server.yipeewebserver.controllers.YipeeAPIController}.
+ * <p>
+ * Boots the full Spring context against an in-memory H2 database with the
+ * {@link DataSource} wrapped in a counting proxy and Hibernate statistics enabled,
+ * then drives a scripted lobby scenario through MockMvc:
+ * N players register, handshake and join a room, every other player creates a table,
+ * the partner joins it, both sit down, request a game launch token, stand up and list
+ * the room's tables.
+ * </p>
+ * <p>
+ * Each call is measured individually. The test fails when an endpoint's worst-case
+ * statement count or p95 latency exceeds the budget recorded in
+ * {@code src/test/resources/perf/lobby-api-baselines.properties}. Statement counts are
+ * deterministic, so a query budget above the measured count is reported as stale: a change
+ * that removes queries should lower the budget in the same commit, or the saving is not gated.
+ * Run with {@code -Dyipee.perf.record=true} to write the measured values to
+ * {@code target/perf/lobby-api-measured.properties}. A query budget marked
+ * {@code <endpoint>.unverified=true} is an estimate that was never recorded; it is only
+ * compared and logged, not gated, until the measured count replaces it.
+ * </p>
+ * <p>
+ * Tagged {@code perf}, which a plain {@code mvn test} excludes because the latency budgets
+ * depend on the machine; run it with {@code mvn -Pperf test -Dtest=YipeeApiPerformanceTest}.
+ * </p>
+ * <p>
+ * Endpoints that resolve the session player and then use it again ({@code sitDown},
+ * {@code launchToken}) must also hit the {@link RequestEntityCache} on every call, so the
+ * player is loaded once per request.
+ * </p>
+ */
+@Slf4j
+@Tag("perf")
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("perf")
+public class YipeeApiPerformanceTest {
+    private static final String BASELINE_RESOURCE = "perf/lobby-api-baselines.properties";
+    private static final Path MEASURED_OUTPUT = Path.of("target", "perf", "lobby-api-measured.properties");
+    private static final String HEADER_CLIENT_ID = "X-Client-Id";
+    private static final String HEADER_SESSION_ID = "X-Session-Id";
+    private static final List<String> REQUEST_CACHE_ENDPOINTS = List.of("sitDown", "launchToken");
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, EndpointSamples> samples = new LinkedHashMap<>();
+    private Statistics statistics;
+    private Counter requestCacheHits;
+    private boolean recording;
+
+    /**
+     * Wraps the application {@link DataSource} so every JDBC statement is counted
+     * per thread in {@link QueryCountHolder}. MockMvc dispatches on the calling
+     * thread, so the counts line up with the request being measured.
+     */
+    @TestConfiguration
+    static class CountingDataSourceConfig {
+        @Bean
+        static BeanPostProcessor countingDataSourcePostProcessor() {
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    if (bean instanceof DataSource dataSource) {
+                        return ProxyDataSourceBuilder.create(dataSource)
+                                .name("yipee-perf")
+                                .countQuery()
+                                .build();
+                    }
+                    return bean;
+                }
+            };
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        requestCacheHits = meterRegistry.get(RequestEntityCache.METER).tag("result", "hit").counter();
+        samples.clear();
+        recording = false;
+    }
+
+    @Test
+    void lobbyScenario_staysWithinRecordedBaselines() throws Exception {
+        Properties baselines = loadBaselines();
+        int players = Integer.parseInt(baselines.getProperty("scenario.players", "8"));
+        int warmupPlayers = Integer.parseInt(baselines.getProperty("scenario.warmupPlayers", "4"));
+
+        String roomId = firstRoomId();
+
+        // Warm up JIT, connection pool and Hibernate caches without recording
+        runLobbyScenario("warmup", roomId, warmupPlayers);
+
+        samples.clear();
+        recording = true;
+        runLobbyScenario("perf", roomId, players);
+        recording = false;
+
+        writeMeasured();
+
+        List<String> regressions = new ArrayList<>();
+        List<String> stale = new ArrayList<>();
+        List<String> unverified = new ArrayList<>();
+        for (Map.Entry<String, EndpointSamples> entry : samples.entrySet()) {
+            String endpoint = entry.getKey();
+            EndpointSamples s = entry.getValue();
+            log.info("{}: calls={}, maxQueries={}, p95Ms={}, entityLoads={}, collectionFetches={}, requestCacheHits={}",
+                    endpoint, s.size(), s.maxQueries(), s.p95Millis(), s.entityLoads, s.collectionFetches,
+                    s.cacheHits.stream().mapToLong(Long::longValue).sum());
+            if (REQUEST_CACHE_ENDPOINTS.contains(endpoint) && s.minCacheHits() < 1) {
+                regressions.add(endpoint + ": a call reloaded the session player instead of using the request cache");
+            }
+
+            String maxQueries = baselines.getProperty(endpoint + ".maxQueries");
+            String p95Ms = baselines.getProperty(endpoint + ".p95Ms");
+            if (maxQueries == null || p95Ms == null) {
+                regressions.add(endpoint + ": no baseline recorded");
+                continue;
+            }
+            if (Boolean.parseBoolean(baselines.getProperty(endpoint + ".unverified"))) {
+                if (s.maxQueries() != Long.parseLong(maxQueries)) {
+                    unverified.add(endpoint + ": " + s.maxQueries() + " queries, estimate " + maxQueries);
+                }
+            } else if (s.maxQueries() > Long.parseLong(maxQueries)) {
+                regressions.add(endpoint + ": " + s.maxQueries() + " queries > baseline " + maxQueries);
+            } else if (s.maxQueries() < Long.parseLong(maxQueries)) {
+                stale.add(endpoint + ": " + s.maxQueries() + " queries < baseline " + maxQueries);
+            }
+            if (s.p95Millis() > Long.parseLong(p95Ms)) {
+                regressions.add(endpoint + ": p95 " + s.p95Millis() + "ms > baseline " + p95Ms + "ms");
+            }
+        }
+
+        if (!stale.isEmpty()) {
+            log.warn("Query budgets above the measured counts, re-record the baselines: {}", stale);
+        }
+        if (!unverified.isEmpty()) {
+            log.warn("Query budgets never recorded differ from the measured counts, record the baselines: {}", unverified);
+        }
+        assertThat(regressions).as("Lobby API performance regressions").isEmpty();
+    }
+
+    // ------------------------------------------------------------------------
+    // Scenario
+    // ------------------------------------------------------------------------
+
+    private void runLobbyScenario(String prefix, String roomId, int players) throws Exception {
+        List<Session> sessions = new ArrayList<>(players);
+        for (int i = 0; i < players; i++) {
+            sessions.add(registerAndHandshake(prefix + "-player-" + i, prefix + "-client-" + i));
+        }
+
+        for (Session session : sessions) {
+            measure("joinRoom", withSession(post(api(ControllerContstants.API_ROOM_JOIN_PATH)), session)
+                    .content(json(new JoinRoomRequest(roomId))));
+        }
+
+        for (int i = 0; i + 1 < sessions.size(); i += 2) {
+            Session owner = sessions.get(i);
+            Session partner = sessions.get(i + 1);
+
+            JsonNode created = measure("createTable", withSession(post(api(ControllerContstants.API_TABLE_CREATE_PATH)), owner)
+                    .content(json(new CreateTableRequest(roomId, false, false, ACCESS_TYPE.PUBLIC.toString()))));
+            String tableId = created.get("tableId").asText();
+            int tableNumber = created.get("tableNumber").asInt();
+
+            measure("joinTable", withSession(post(api(ControllerContstants.API_TABLE_JOIN_PATH)), partner)
+                    .content(json(new JoinTableRequest(roomId, tableNumber, false))));
+
+            measure("sitDown", withSession(post(api(ControllerContstants.API_TABLE_SITDOWN_PATH)), owner)
+                    .content(json(new SitDownRequest(tableId, 0))));
+            measure("sitDown", withSession(post(api(ControllerContstants.API_TABLE_SITDOWN_PATH)), partner)
+                    .content(json(new SitDownRequest(tableId, 1))));
+
+            measure("launchToken", withSession(post(api(ControllerContstants.API_GAME_LAUNCH_TOKEN_PATH)), owner)
+                    .content(json(new LaunchTokenRequest(tableId, 0))));
+            measure("launchToken", withSession(post(api(ControllerContstants.API_GAME_LAUNCH_TOKEN_PATH)), partner)
+                    .content(json(new LaunchTokenRequest(tableId, 1))));
+
+            measure("getTables", get(api(ControllerContstants.API_TABLE_GET_TABLES_PATH)).param("roomId", roomId));
+
+            measure("standUp", withSession(post(api(ControllerContstants.API_TABLE_STANDUP_PATH)), owner)
+                    .content(json(new StandUpRequest(tableId))));
+            measure("standUp", withSession(post(api(ControllerContstants.API_TABLE_STANDUP_PATH)), partner)
+                    .content(json(new StandUpRequest(tableId))));
+
+            measure("getTables", get(api(ControllerContstants.API_TABLE_GET_TABLES_PATH)).param("roomId", roomId));
+        }
+    }
+
+    private Session registerAndHandshake(String name, String clientId) throws Exception {
+        JsonNode registered = measure("register", post(api(ControllerContstants.API_PLAYER_REGISTER_PATH))
+                .header(HEADER_CLIENT_ID, clientId)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json(new RegisterPlayerRequest(name, 1, 1500, clientId))));
+        String playerId = registered.get("playerId").asText();
+
+        Map<String, Object> handshake = new LinkedHashMap<>();
+        handshake.put("playerId", playerId);
+        handshake.put("clientId", clientId);
+        JsonNode response = measure("handshake", post(api(ControllerContstants.API_SESSION_HANDSHAKE_PATH))
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(json(handshake)));
+
+        return new Session(playerId, clientId, response.get("sessionId").asText());
+    }
+
+    private String firstRoomId() throws Exception {
+        MvcResult result = mockMvc.perform(get(api(ControllerContstants.API_ROOM_GET_ROOMS_PATH))).andReturn();
+        JsonNode rooms = objectMapper.readTree(result.getResponse().getContentAsString());
+        assertThat(rooms.size()).as("rooms loaded from rooms.xml").isPositive();
+        return rooms.get(0).get("roomId").asText();
+    }
+
+    // ------------------------------------------------------------------------
+    // Measurement
+    // ------------------------------------------------------------------------
+
+    private JsonNode measure(String endpoint, MockHttpServletRequestBuilder request) throws Exception {
+        QueryCountHolder.clear();
+        statistics.clear();
+        double hitsBefore = requestCacheHits.count();
+
+        long start = System.nanoTime();
+        MvcResult result = mockMvc.perform(request).andReturn();
+        long elapsed = System.nanoTime() - start;
+
+        int status = result.getResponse().getStatus();
+        assertThat(status).as(endpoint + " status").isBetween(200, 299);
+
+        if (recording) {
+            EndpointSamples s = samples.computeIfAbsent(endpoint, k -> new EndpointSamples());
+            s.queries.add(QueryCountHolder.getGrandTotal().getTotal());
+            s.nanos.add(elapsed);
+            s.entityLoads += statistics.getEntityLoadCount();
+            s.collectionFetches += statistics.getCollectionFetchCount();
+            s.cacheHits.add((long) (requestCacheHits.count() - hitsBefore));
+        }
+
+        String body = result.getResponse().getContentAsString();
+        return body.isEmpty() ? objectMapper.createObjectNode() : objectMapper.readTree(body);
+    }
+
+    private MockHttpServletRequestBuilder withSession(MockHttpServletRequestBuilder request, Session session) {
+        return request
+                .header(HEADER_CLIENT_ID, session.clientId())
+                .header(HEADER_SESSION_ID, session.sessionId())
+                .contentType(MediaType.APPLICATION_JSON);
+    }
+
+    private String json(Object value) throws IOException {
+        return objectMapper.writeValueAsString(value);
+    }
+
+    private static String api(String path) {
+        return ControllerContstants.API_BASE_PATH + path;
+    }
+
+    private Properties loadBaselines() throws IOException {
+        Properties baselines = new Properties();
+        try (InputStream in = new ClassPathResource(BASELINE_RESOURCE).getInputStream()) {
+            baselines.load(in);
+        }
+        return baselines;
+    }
+
+    private void writeMeasured() throws IOException {
+        if (!Boolean.getBoolean("yipee.perf.record")) {
+            return;
+        }
+        Properties measured = new Properties();
+        samples.forEach((endpoint, s) -> {
+            measured.setProperty(endpoint + ".maxQueries", Long.toString(s.maxQueries()));
+            measured.setProperty(endpoint + ".p95Ms", Long.toString(s.p95Millis()));
+        });
+        Files.createDirectories(MEASURED_OUTPUT.getParent());
+        try (OutputStream out = Files.newOutputStream(MEASURED_OUTPUT)) {
+            measured.store(out, "Measured by YipeeApiPerformanceTest");
+        }
+        log.info("Wrote measured values to {}", MEASURED_OUTPUT.toAbsolutePath());
+    }
+
+    private record Session(String playerId, String clientId, String sessionId) {}
+
+    private static final class EndpointSamples {
+        private final List<Long> queries = new ArrayList<>();
+        private final List<Long> nanos = new ArrayList<>();
+        private final List<Long> cacheHits = new ArrayList<>();
+        private long entityLoads;
+        private long collectionFetches;
+
+        int size() {
+            return nanos.size();
+        }
+
+        long maxQueries() {
+            return queries.stream().mapToLong(Long::longValue).max().orElse(0);
+        }
+
+        long minCacheHits() {
+            return cacheHits.stream().mapToLong(Long::longValue).min().orElse(0);
+        }
+
+        long p95Millis() {
+            long[] sorted = nanos.stream().mapToLong(Long::longValue).toArray();
+            Arrays.sort(sorted);
+            int idx = (int) Math.ceil(sorted.length * 0.95) - 1;
+            return sorted[Math.max(idx, 0)] / 1_000_000L;
+        }
+    }
+}
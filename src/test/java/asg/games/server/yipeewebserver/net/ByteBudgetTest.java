@@ -0,0 +1,53 @@
+package asg.games.server.yipeewebserver.net;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class ByteBudgetTest {
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void firstRefill_grantsOneSecond() {
+        ByteBudget budget = new ByteBudget();
+        budget.refill(1000, SECOND);
+
+        budget.spend(999);
+        assertThat(budget.isSpent()).isFalse();
+        budget.spend(1);
+        assertThat(budget.isSpent()).isTrue();
+    }
+
+    @Test
+    void overdraft_isPaidBackByLaterRefills() {
+        ByteBudget budget = new ByteBudget();
+        budget.refill(1000, SECOND);
+        budget.spend(2500);
+
+        budget.refill(1000, 2 * SECOND);
+        assertThat(budget.isSpent()).isTrue(); // -500
+        budget.refill(1000, 2 * SECOND + SECOND / 2);
+        assertThat(budget.isSpent()).isTrue(); // 0
+        budget.refill(1000, 3 * SECOND);
+        assertThat(budget.isSpent()).isFalse();
+    }
+
+    @Test
+    void refill_holdsAtMostOneSecond() {
+        ByteBudget budget = new ByteBudget();
+        budget.refill(1000, SECOND);
+        budget.refill(1000, 60 * SECOND);
+
+        budget.spend(1000);
+        assertThat(budget.isSpent()).isTrue();
+    }
+
+    @Test
+    void zeroRate_neverSpends() {
+        ByteBudget budget = new ByteBudget();
+        budget.refill(0, SECOND);
+        budget.spend(1_000_000);
+
+        assertThat(budget.isSpent()).isFalse();
+    }
+}
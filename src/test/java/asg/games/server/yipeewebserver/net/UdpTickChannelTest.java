@@ -0,0 +1,116 @@
+package asg.games.server.yipeewebserver.net;
+
+import asg.games.server.yipeewebserver.net.api.UdpLinkStats;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryonet.Connection;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.net.InetSocketAddress;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class UdpTickChannelTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private UdpTickChannel channel;
+    private Connection connection;
+
+    @BeforeEach
+    void setUp() {
+        channel = new UdpTickChannel(meterRegistry);
+        ReflectionTestUtils.setField(channel, "enabled", true);
+        ReflectionTestUtils.setField(channel, "maxPacketBytes", 1400);
+        ReflectionTestUtils.setField(channel, "ackTimeoutMs", 2000L);
+        ReflectionTestUtils.setField(channel, "retryMs", 0L);
+        channel.useKryo(() -> {
+            Kryo kryo = new Kryo();
+            kryo.setRegistrationRequired(false);
+            return kryo;
+        });
+
+        connection = mock(Connection.class);
+        when(connection.getID()).thenReturn(7);
+        when(connection.getRemoteAddressUDP()).thenReturn(new InetSocketAddress("127.0.0.1", 55000));
+        when(connection.sendUDP(any())).thenReturn(64);
+    }
+
+    @Test
+    void send_onlyAfterOptIn() {
+        assertThat(channel.isActive(connection)).isFalse();
+        assertThat(channel.send(connection, "tick", 4)).isFalse();
+
+        channel.received(connection, new UdpAck());
+
+        assertThat(channel.isActive(connection)).isTrue();
+        assertThat(channel.send(connection, "tick", 4)).isTrue();
+    }
+
+    @Test
+    void send_oversizePacketsStayOnTcp() {
+        channel.received(connection, new UdpAck());
+
+        assertThat(channel.send(connection, "tick", 1400)).isFalse();
+        assertThat(channel.isActive(connection)).isTrue();
+    }
+
+    @Test
+    void acks_trackLossAndSequence() {
+        channel.received(connection, new UdpAck());
+        for (int i = 0; i < 10; i++) {
+            channel.send(connection, "tick", 4);
+        }
+
+        channel.received(connection, ack(10, 8));
+
+        UdpLinkStats stats = channel.stats().get(0);
+        assertThat(stats.sent()).isEqualTo(10);
+        assertThat(stats.acked()).isEqualTo(10);
+        assertThat(stats.lost()).isEqualTo(2);
+        assertThat(stats.lossRate()).isEqualTo(0.2);
+    }
+
+    @Test
+    void failedSend_fallsBackUntilNextAck() {
+        channel.received(connection, new UdpAck());
+        when(connection.sendUDP(any())).thenReturn(0);
+
+        assertThat(channel.send(connection, "tick", 4)).isFalse();
+        assertThat(channel.isActive(connection)).isFalse();
+        assertThat(channel.stats().get(0).fallback()).isEqualTo("send");
+
+        when(connection.sendUDP(any())).thenReturn(64);
+        channel.received(connection, ack(0, 0));
+        assertThat(channel.isActive(connection)).isTrue();
+    }
+
+    @Test
+    void unacknowledgedFrames_fallBackAfterTimeout() throws InterruptedException {
+        ReflectionTestUtils.setField(channel, "ackTimeoutMs", 0L);
+        channel.received(connection, new UdpAck());
+
+        assertThat(channel.send(connection, "tick", 4)).isTrue();
+        Thread.sleep(2);
+        assertThat(channel.send(connection, "tick", 4)).isFalse();
+        assertThat(channel.stats().get(0).fallback()).isEqualTo("timeout");
+    }
+
+    @Test
+    void disconnect_forgetsLink() {
+        channel.received(connection, new UdpAck());
+        channel.disconnected(connection);
+
+        assertThat(channel.stats()).isEmpty();
+    }
+
+    private static UdpAck ack(long sequence, long received) {
+        UdpAck ack = new UdpAck();
+        ack.sequence = sequence;
+        ack.received = received;
+        return ack;
+    }
+}
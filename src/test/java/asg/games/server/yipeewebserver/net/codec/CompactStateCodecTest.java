@@ -0,0 +1,231 @@
+package asg.games.server.yipeewebserver.net.codec;
+
+import asg.games.server.yipeewebserver.net.api.SpectatorSnapshot;
+import asg.games.yipee.common.game.GameBoardState;
+import asg.games.yipee.common.game.GamePhase;
+import asg.games.yipee.core.objects.YipeeGameBoardState;
+import com.esotericsoftware.kryo.Kryo;
+import com.esotericsoftware.kryo.io.Input;
+import com.esotericsoftware.kryo.io.Output;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Golden-file and round-trip tests for {@link CompactStateCodec} and {@link GameBoardStateSerializer}.
+ * <p>
+ * The expected encodings are hex dumps under {@code src/test/resources/codec}. A change to the
+ * wire layout must bump {@link CompactStateCodec#VERSION} and regenerate them: run with
+ * {@code -Dyipee.codec.record=true} and copy {@code target/codec/*.hex} over the checked-in files.
+ * </p>
+ */
+public class CompactStateCodecTest {
+    private static final String GOLDEN_STATE = "codec/board-state-v1.hex";
+    private static final String GOLDEN_SNAPSHOT = "codec/spectator-snapshot-v1.hex";
+    private static final Path RECORD_DIR = Path.of("target", "codec");
+
+    private final CompactStateCodec codec = new CompactStateCodec();
+
+    @Test
+    void encodeState_matchesGoldenFile() throws IOException {
+        byte[] encoded = codec.encodeState(goldenState());
+        record(GOLDEN_STATE, encoded);
+
+        assertThat(HexFormat.of().formatHex(encoded)).isEqualTo(readGolden(GOLDEN_STATE));
+    }
+
+    @Test
+    void decodeState_fromGoldenFile() throws IOException {
+        byte[] golden = HexFormat.of().parseHex(readGolden(GOLDEN_STATE));
+
+        assertSameState(codec.decodeState(golden), goldenState());
+    }
+
+    @Test
+    void encodeSnapshot_matchesGoldenFileAndSharesPieces() throws IOException {
+        SpectatorSnapshot snapshot = goldenSnapshot();
+        byte[] encoded = codec.encodeSnapshot(snapshot);
+        record(GOLDEN_SNAPSHOT, encoded);
+
+        assertThat(HexFormat.of().formatHex(encoded)).isEqualTo(readGolden(GOLDEN_SNAPSHOT));
+        // the second seat references the pieces sent with the first
+        int single = codec.encodeState(goldenState()).length;
+        assertThat(encoded.length).isLessThan(2 * single);
+
+        SpectatorSnapshot decoded = codec.decodeSnapshot(HexFormat.of().parseHex(readGolden(GOLDEN_SNAPSHOT)));
+        assertThat(decoded.gameId()).isEqualTo(snapshot.gameId());
+        assertThat(decoded.serverTick()).isEqualTo(snapshot.serverTick());
+        assertThat(decoded.delayTicks()).isEqualTo(snapshot.delayTicks());
+        assertThat(decoded.seats()).containsOnlyKeys(0, 1);
+        assertSameState(decoded.seats().get(0), snapshot.seats().get(0));
+        assertSameState(decoded.seats().get(1), snapshot.seats().get(1));
+    }
+
+    @Test
+    void kryoSerializer_roundTripsStatesOfOnePacket() {
+        Kryo kryo = new Kryo();
+        kryo.setRegistrationRequired(false);
+        GameBoardStateSerializer.register(kryo);
+        YipeeGameBoardState partner = goldenState();
+        partner.setBoardNumber(3);
+        List<GameBoardState> packet = new ArrayList<>(List.of(goldenState(), partner));
+
+        Output output = new Output(1024, -1);
+        kryo.writeClassAndObject(output, packet);
+        @SuppressWarnings("unchecked")
+        List<GameBoardState> decoded = (List<GameBoardState>) kryo.readClassAndObject(new Input(output.toBytes()));
+
+        assertThat(decoded).hasSize(2);
+        assertSameState(decoded.get(0), packet.get(0));
+        assertSameState(decoded.get(1), packet.get(1));
+    }
+
+    @Test
+    void cells_roundTripEdgeCases() {
+        int[][][] cases = {
+                null,
+                new int[0][],
+                new int[16][6],
+                {{-1, 0, 5}, {Integer.MIN_VALUE, Integer.MAX_VALUE, 0}},
+                {{1, 2}, null, {3}},
+                {{7}}
+        };
+        for (int[][] cells : cases) {
+            Output output = new Output(256, -1);
+            CompactStateCodec.writeCells(output, cells);
+            assertThat(CompactStateCodec.readCells(new Input(output.toBytes()))).isDeepEqualTo(cells);
+        }
+    }
+
+    @Test
+    void cells_emptyBoardTakesNoCellBits() {
+        Output output = new Output(256, -1);
+        CompactStateCodec.writeCells(output, new int[16][6]);
+
+        // mode, rows, cols, min, bits
+        assertThat(output.toBytes()).hasSize(5);
+    }
+
+    @Test
+    void encodeState_isSmallerThanJson() throws IOException {
+        YipeeGameBoardState state = goldenState();
+
+        assertThat(codec.encodeState(state).length)
+                .isLessThan(new ObjectMapper().writeValueAsBytes(state).length / 2);
+    }
+
+    static YipeeGameBoardState goldenState() {
+        YipeeGameBoardState state = new YipeeGameBoardState();
+        state.setCurrentStateTimeStamp(1_700_000_000_000L);
+        state.setPreviousStateTimeStamp(1_700_000_000_000L - 33);
+        state.setServerGameStartTime(1_700_000_000_000L - 60_000);
+        state.setCurrentPhase(GamePhase.values()[0]);
+        state.setBrokenBlockCount(12);
+        state.setFastDown(true);
+        state.setCurrentBlockPointer(7);
+        state.setNextBlocks(null);
+        state.setCountOfBreaks(new int[]{1, 0, 2, 0, 0, 1});
+        state.setPowersKeep(new int[0]);
+        state.setGameClock("01:23");
+        state.setIds(new boolean[]{true, false, true, true, false, false, false, true, true, false});
+        state.setIdIndex(3);
+        state.setDebug(false);
+        state.setName("player1");
+        state.setPiece("P:1,2,3");
+        state.setNextPiece("P:4,5,6");
+        state.setPlayerCells(goldenCells());
+        state.setPartnerCells(new int[16][6]);
+        state.setPieceFallTimer(0.5f);
+        state.setPieceLockTimer(0.25f);
+        state.setBlockAnimationTimer(0f);
+        state.setYahooDuration(0);
+        state.setPartnerRight(true);
+        state.setPowers(List.of(1, 2, 3));
+        state.setBrokenCells(null);
+        state.setSpecialPieces(List.of());
+        state.setHasGameStarted(true);
+        state.setBoardNumber(2);
+        return state;
+    }
+
+    private static int[][] goldenCells() {
+        int[][] cells = new int[16][6];
+        for (int row = 0; row < 5; row++) {
+            for (int col = 0; col < 6; col++) {
+                cells[row][col] = (row * 6 + col) % 9;
+            }
+        }
+        cells[5][2] = 0x47;
+        return cells;
+    }
+
+    static SpectatorSnapshot goldenSnapshot() {
+        YipeeGameBoardState partner = goldenState();
+        partner.setBoardNumber(3);
+        partner.setPartnerRight(false);
+        Map<Integer, GameBoardState> seats = new LinkedHashMap<>();
+        seats.put(0, goldenState());
+        seats.put(1, partner);
+        return new SpectatorSnapshot("game-1", 900L, 90L, seats);
+    }
+
+    private static void assertSameState(GameBoardState actual, GameBoardState expected) {
+        assertThat(actual.getCurrentStateTimeStamp()).isEqualTo(expected.getCurrentStateTimeStamp());
+        assertThat(actual.getPreviousStateTimeStamp()).isEqualTo(expected.getPreviousStateTimeStamp());
+        assertThat(actual.getServerGameStartTime()).isEqualTo(expected.getServerGameStartTime());
+        assertThat(actual.getCurrentPhase()).isEqualTo(expected.getCurrentPhase());
+        assertThat(actual.getBrokenBlockCount()).isEqualTo(expected.getBrokenBlockCount());
+        assertThat(actual.isFastDown()).isEqualTo(expected.isFastDown());
+        assertThat(actual.getCurrentBlockPointer()).isEqualTo(expected.getCurrentBlockPointer());
+        assertThat(actual.getNextBlocks()).isEqualTo(expected.getNextBlocks());
+        assertThat(actual.getCountOfBreaks()).isEqualTo(expected.getCountOfBreaks());
+        assertThat(actual.getPowersKeep()).isEqualTo(expected.getPowersKeep());
+        assertThat(actual.getGameClock()).isEqualTo(expected.getGameClock());
+        assertThat(actual.getIds()).isEqualTo(expected.getIds());
+        assertThat(actual.getIdIndex()).isEqualTo(expected.getIdIndex());
+        assertThat(actual.isDebug()).isEqualTo(expected.isDebug());
+        assertThat(actual.getName()).isEqualTo(expected.getName());
+        assertThat(actual.getPiece()).isEqualTo(expected.getPiece());
+        assertThat(actual.getNextPiece()).isEqualTo(expected.getNextPiece());
+        assertThat(actual.getPlayerCells()).isDeepEqualTo(expected.getPlayerCells());
+        assertThat(actual.getPartnerCells()).isDeepEqualTo(expected.getPartnerCells());
+        assertThat(actual.getPieceFallTimer()).isEqualTo(expected.getPieceFallTimer());
+        assertThat(actual.getPieceLockTimer()).isEqualTo(expected.getPieceLockTimer());
+        assertThat(actual.getBlockAnimationTimer()).isEqualTo(expected.getBlockAnimationTimer());
+        assertThat(actual.getYahooDuration()).isEqualTo(expected.getYahooDuration());
+        assertThat(actual.isPartnerRight()).isEqualTo(expected.isPartnerRight());
+        assertThat(actual.getPowers()).containsExactlyElementsOf(expected.getPowers());
+        assertThat(actual.getBrokenCells()).isEqualTo(expected.getBrokenCells());
+        assertThat(actual.getSpecialPieces()).containsExactlyElementsOf(expected.getSpecialPieces());
+        assertThat(actual.isHasGameStarted()).isEqualTo(expected.isHasGameStarted());
+        assertThat(actual.getBoardNumber()).isEqualTo(expected.getBoardNumber());
+    }
+
+    private static String readGolden(String resource) throws IOException {
+        try (InputStream in = new ClassPathResource(resource).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.US_ASCII).strip();
+        }
+    }
+
+    private static void record(String resource, byte[] encoded) throws IOException {
+        if (!Boolean.getBoolean("yipee.codec.record")) {
+            return;
+        }
+        Path target = RECORD_DIR.resolve(Path.of(resource).getFileName());
+        Files.createDirectories(RECORD_DIR);
+        Files.writeString(target, HexFormat.of().formatHex(encoded) + System.lineSeparator());
+    }
+}
@@ -0,0 +1,85 @@
+package asg.games.server.yipeewebserver.net.codec;
+
+import asg.games.server.yipeewebserver.net.ConnectionContextFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class FrameCompressorTest {
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private FrameCompressor compressor;
+    private byte[] stateJson;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        compressor = new FrameCompressor(new ConnectionContextFactory(), meterRegistry, 1, 100);
+        ReflectionTestUtils.setField(compressor, "enabled", true);
+        ReflectionTestUtils.setField(compressor, "minBytes", 256);
+        ReflectionTestUtils.setField(compressor, "negotiationTtlSeconds", 60L);
+        stateJson = new ObjectMapper().writeValueAsBytes(CompactStateCodecTest.goldenState());
+    }
+
+    @Test
+    void negotiate_prefersDictionaryAndRemembersClient() {
+        assertThat(compressor.negotiate("client-1", "deflate, deflate-dict-1")).isEqualTo("deflate-dict-1");
+        assertThat(compressor.codecFor("client-1")).isEqualTo(FrameCompressor.Codec.DEFLATE_DICT);
+
+        assertThat(compressor.negotiate("client-1", "lz4")).isEqualTo(FrameCompressor.CODEC_NONE);
+        assertThat(compressor.codecFor("client-1")).isNull();
+        assertThat(compressor.negotiate("client-2", null)).isEqualTo(FrameCompressor.CODEC_NONE);
+    }
+
+    @Test
+    void compress_roundTripsWithEachCodec() {
+        for (FrameCompressor.Codec codec : FrameCompressor.Codec.values()) {
+            byte[] frame = compressor.compress(codec, stateJson, FrameCompressor.TRANSPORT_WS);
+
+            assertThat(frame).isNotNull();
+            assertThat(frame.length).isLessThan(stateJson.length);
+            assertThat(FrameCompressor.decompress(frame)).isEqualTo(stateJson);
+        }
+    }
+
+    @Test
+    void compress_dictionaryBeatsPlainDeflateOnOneState() {
+        byte[] plain = compressor.compress(FrameCompressor.Codec.DEFLATE, stateJson, FrameCompressor.TRANSPORT_WS);
+        byte[] dict = compressor.compress(FrameCompressor.Codec.DEFLATE_DICT, stateJson, FrameCompressor.TRANSPORT_WS);
+
+        assertThat(dict.length).isLessThan(plain.length);
+    }
+
+    @Test
+    void compress_skipsSmallAndIncompressiblePackets() {
+        byte[] small = "{\"ok\":true}".getBytes(StandardCharsets.UTF_8);
+        byte[] noise = new byte[1024];
+        new Random(7).nextBytes(noise);
+
+        assertThat(compressor.compress(FrameCompressor.Codec.DEFLATE, small, FrameCompressor.TRANSPORT_WS)).isNull();
+        assertThat(compressor.compress(FrameCompressor.Codec.DEFLATE, noise, FrameCompressor.TRANSPORT_WS)).isNull();
+        assertThat(wsFrames("skipped")).isEqualTo(1.0);
+        assertThat(wsFrames("expanded")).isEqualTo(1.0);
+    }
+
+    @Test
+    void decompress_rejectsForeignFrames() {
+        assertThatThrownBy(() -> FrameCompressor.decompress(new byte[]{1, 2, 3}))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> FrameCompressor.decompress(new byte[]{FrameCompressor.FRAME_MAGIC, 9, 0}))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private double wsFrames(String result) {
+        return meterRegistry.get(FrameCompressor.METER_FRAMES)
+                .tag("transport", FrameCompressor.TRANSPORT_WS)
+                .tag("result", result)
+                .counter().count();
+    }
+}
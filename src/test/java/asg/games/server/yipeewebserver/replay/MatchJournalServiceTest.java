@@ -0,0 +1,108 @@
+package asg.games.server.yipeewebserver.replay;
+
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.yipee.common.game.PlayerAction;
+import asg.games.yipee.core.objects.YipeePlayer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class MatchJournalServiceTest {
+    private static final String GAME_ID = "journal-game";
+    private static final float DELTA = 1.0f / 30;
+
+    @TempDir
+    Path directory;
+
+    private final List<MatchJournalService> services = new ArrayList<>();
+
+    @AfterEach
+    void tearDown() {
+        services.forEach(MatchJournalService::closeAll);
+    }
+
+    @Test
+    void recover_rebuildsGameWhoseCheckpointsMatch() throws Exception {
+        MatchJournalService before = service();
+        ServerGameManager game = new ServerGameManager(ServerGameManager.MAX_TICK_HISTORY);
+        game.setGameId(GAME_ID);
+        game.setEventSink(before.open(game));
+        game.reset(42L);
+        game.setGameBoardObjectPlayer(0, player("p0"));
+        game.setGameBoardObjectPlayer(1, player("p1"));
+        game.startGameLoop();
+        for (int tick = 1; tick <= 45; tick++) {
+            if (tick % 7 == 0) {
+                game.addPlayerAction(new PlayerAction());
+            }
+            game.update(DELTA);
+        }
+        // Stopping journals the last tick, so the rebuild runs all the way to it
+        game.endGameLoop();
+        byte[] expected = ReplayCodec.stateHash(game);
+        // A crash leaves the journal behind, as a normal shutdown does
+        before.closeAll();
+
+        Path journal = directory.resolve(GAME_ID + MatchJournal.FILE_SUFFIX);
+        RecordedMatch match = RecordedMatch.read(journal);
+        assertThat(match.events()).filteredOn(e -> e.type() == ReplayCodec.CHECKPOINT).hasSize(4);
+        assertThat(ReplaySimulator.simulate(match).divergedAt()).isEqualTo(-1);
+
+        List<ServerGameManager> recovered = service().recover();
+
+        assertThat(recovered).hasSize(1);
+        ServerGameManager rebuilt = recovered.get(0);
+        assertThat(rebuilt.getGameId()).isEqualTo(GAME_ID);
+        assertThat(rebuilt.getServerTick()).isEqualTo(45);
+        assertThat(ReplayCodec.stateHash(rebuilt)).isEqualTo(expected);
+        // Journaled again into a fresh file; the old one is gone
+        assertThat(journal).exists();
+        assertThat(directory.resolve(GAME_ID + MatchJournal.FILE_SUFFIX + ".failed")).doesNotExist();
+    }
+
+    @Test
+    void recover_keepsUnreadableJournalAsFailed() throws Exception {
+        Path journal = directory.resolve("broken" + MatchJournal.FILE_SUFFIX);
+        Files.write(journal, new byte[]{1, 2, 3, 4, 5, 6, 7, 8});
+
+        List<ServerGameManager> recovered = service().recover();
+
+        assertThat(recovered).isEmpty();
+        assertThat(journal).doesNotExist();
+        assertThat(directory.resolve("broken" + MatchJournal.FILE_SUFFIX + ".failed")).exists();
+    }
+
+    @Test
+    void recover_isANoOpWhenDisabled() throws Exception {
+        Path journal = directory.resolve("left" + MatchJournal.FILE_SUFFIX);
+        Files.write(journal, new byte[]{1, 2, 3, 4});
+        MatchJournalService service = service();
+        ReflectionTestUtils.setField(service, "enabled", false);
+
+        assertThat(service.recover()).isEmpty();
+        assertThat(journal).exists();
+    }
+
+    private MatchJournalService service() {
+        MatchJournalService service = new MatchJournalService();
+        ReflectionTestUtils.setField(service, "enabled", true);
+        ReflectionTestUtils.setField(service, "directory", directory.toString());
+        ReflectionTestUtils.setField(service, "checkpointTicks", 10);
+        services.add(service);
+        return service;
+    }
+
+    private static YipeePlayer player(String name) {
+        YipeePlayer player = new YipeePlayer();
+        player.setName(name);
+        return player;
+    }
+}
@@ -0,0 +1,113 @@
+package asg.games.server.yipeewebserver.replay;
+
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.yipee.core.objects.YipeePlayer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class MatchJournalTest {
+    private static final String GAME_ID = "journal-test";
+    private static final int REGION_SIZE = 1 << 20;
+    /** int magic, byte version, UTF gameId, long startedAt */
+    private static final int HEADER_LENGTH = 4 + 1 + 2 + GAME_ID.length() + 8;
+    /** byte type, one-byte tick delta, long seed */
+    private static final int SEED_RECORD_LENGTH = 1 + 1 + 8;
+
+    @TempDir
+    Path directory;
+
+    private ServerGameManager game;
+    private Path file;
+
+    @BeforeEach
+    void setUp() {
+        game = mock(ServerGameManager.class);
+        when(game.getGameId()).thenReturn(GAME_ID);
+        when(game.exportLatestPerSeat()).thenReturn(Map.of());
+        file = directory.resolve(GAME_ID + MatchJournal.FILE_SUFFIX);
+    }
+
+    @Test
+    void append_rollsOverIntoANewMappedRegion() throws Exception {
+        MatchJournal journal = new MatchJournal(file, game, 300);
+        String name = "x".repeat(60_000);
+        int seats = 20; // ~1.2 MB of SEAT records
+        for (int i = 0; i < seats; i++) {
+            journal.onSeat(i, i % 8, player(name + i));
+        }
+        journal.close();
+
+        assertThat(Files.size(file)).isGreaterThan(REGION_SIZE);
+        RecordedMatch match = RecordedMatch.read(file);
+        assertThat(match.gameId()).isEqualTo(GAME_ID);
+        assertThat(match.events()).hasSize(seats);
+        for (int i = 0; i < seats; i++) {
+            RecordedMatch.Event event = match.events().get(i);
+            assertThat(event.tick()).isEqualTo(i);
+            assertThat(event.player().getName()).isEqualTo(name + i);
+        }
+    }
+
+    @Test
+    void tornRecord_readsAsTheEndMarker() throws Exception {
+        MatchJournal journal = new MatchJournal(file, game, 300);
+        journal.onSeed(0, 1L);
+        journal.onSeed(0, 2L);
+        journal.onSeed(0, 3L);
+        journal.close();
+
+        // The type byte is written last, so a record cut short by a crash still has a zero there
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{0}), HEADER_LENGTH + 2L * SEED_RECORD_LENGTH);
+        }
+
+        RecordedMatch match = RecordedMatch.read(file);
+
+        assertThat(match.isComplete()).isFalse();
+        assertThat(match.finalTick()).isEqualTo(-1);
+        assertThat(match.events()).extracting(RecordedMatch.Event::seed).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void onDelta_writesCheckpointsAndOnlyChangedDeltas() throws Exception {
+        MatchJournal journal = new MatchJournal(file, game, 10);
+        for (long tick = 0; tick < 25; tick++) {
+            journal.onDelta(tick, 1.0f / 30);
+        }
+        journal.close();
+
+        RecordedMatch match = RecordedMatch.read(file);
+
+        assertThat(match.events()).filteredOn(e -> e.type() == ReplayCodec.DELTA).hasSize(1);
+        assertThat(match.events()).filteredOn(e -> e.type() == ReplayCodec.CHECKPOINT)
+                .extracting(RecordedMatch.Event::tick).containsExactly(10L, 20L);
+    }
+
+    @Test
+    void onClose_deletesTheJournal() throws Exception {
+        MatchJournal journal = new MatchJournal(file, game, 300);
+        journal.onSeed(0, 1L);
+
+        journal.onClose(game);
+
+        assertThat(file).doesNotExist();
+    }
+
+    private static YipeePlayer player(String name) {
+        YipeePlayer player = new YipeePlayer();
+        player.setName(name);
+        return player;
+    }
+}
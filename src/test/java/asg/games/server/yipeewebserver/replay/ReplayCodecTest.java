@@ -0,0 +1,56 @@
+package asg.games.server.yipeewebserver.replay;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class ReplayCodecTest {
+
+    @Test
+    void varLong_roundTripsAcrossByteBoundaries() throws IOException {
+        long[] values = {0L, 1L, 127L, 128L, 16_383L, 16_384L, Integer.MAX_VALUE, Long.MAX_VALUE, -1L, Long.MIN_VALUE};
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (long value : values) {
+            ReplayCodec.writeVarLong(out, value);
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+        for (long value : values) {
+            assertThat(ReplayCodec.readVarLong(in)).isEqualTo(value);
+        }
+        assertThat(in.available()).isZero();
+    }
+
+    @Test
+    void varLong_usesSevenBitsPerByte() throws IOException {
+        assertThat(encode(0L)).hasSize(1);
+        assertThat(encode(127L)).hasSize(1);
+        assertThat(encode(128L)).hasSize(2);
+        assertThat(encode(16_384L)).hasSize(3);
+        assertThat(encode(-1L)).hasSize(10);
+    }
+
+    @Test
+    void varLong_truncatedValueFailsWithEof() throws IOException {
+        byte[] bytes = encode(16_384L);
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 1));
+
+        assertThatThrownBy(() -> ReplayCodec.readVarLong(in)).isInstanceOf(EOFException.class);
+    }
+
+    private static byte[] encode(long value) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ReplayCodec.writeVarLong(new DataOutputStream(bytes), value);
+        return bytes.toByteArray();
+    }
+}
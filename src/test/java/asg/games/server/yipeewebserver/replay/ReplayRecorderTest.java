@@ -0,0 +1,101 @@
+package asg.games.server.yipeewebserver.replay;
+
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.yipee.common.game.PlayerAction;
+import asg.games.yipee.core.objects.YipeePlayer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Records a scripted match through {@link ReplayRecorder}, reads it back with
+ * {@link RecordedMatch#read(Path)} and re-simulates it with {@link ReplaySimulator}.
+ */
+public class ReplayRecorderTest {
+    private static final String GAME_ID = "replay-test";
+    private static final float DELTA = 1.0f / 30;
+    private static final int TICKS = 90;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void recordedMatch_replaysDeterministically() throws Exception {
+        Path file = recordMatch();
+
+        RecordedMatch match = RecordedMatch.read(file);
+
+        assertThat(match.gameId()).isEqualTo(GAME_ID);
+        assertThat(match.isComplete()).isTrue();
+        assertThat(match.finalTick()).isEqualTo(TICKS);
+        assertThat(match.events()).extracting(RecordedMatch.Event::type)
+                .contains(ReplayCodec.SEED, ReplayCodec.SEAT, ReplayCodec.START, ReplayCodec.DELTA,
+                        ReplayCodec.ACTION, ReplayCodec.STOP);
+        // The delta never changes, so it is written once
+        assertThat(match.events()).filteredOn(e -> e.type() == ReplayCodec.DELTA).hasSize(1);
+
+        ReplaySimulator.Result result = ReplaySimulator.simulate(match);
+
+        assertThat(result.ticks()).isEqualTo(TICKS);
+        assertThat(result.divergedAt()).isEqualTo(-1);
+        assertThat(result.deterministic()).isTrue();
+    }
+
+    @Test
+    void tornLastRecord_keepsEverythingBeforeIt() throws Exception {
+        Path file = recordMatch();
+        RecordedMatch complete = RecordedMatch.read(file);
+
+        // Cut into the END record, as a crash mid-write would
+        byte[] bytes = Files.readAllBytes(file);
+        Path torn = directory.resolve("torn" + ReplayCodec.FILE_SUFFIX);
+        Files.write(torn, Arrays.copyOf(bytes, bytes.length - 5));
+
+        RecordedMatch match = RecordedMatch.read(torn);
+
+        assertThat(match.isComplete()).isFalse();
+        assertThat(match.finalTick()).isEqualTo(-1);
+        assertThat(match.events()).hasSameSizeAs(complete.events());
+
+        ReplaySimulator.Result result = ReplaySimulator.simulate(match);
+
+        assertThat(result.recorded()).isNull();
+        assertThat(result.deterministic()).isTrue();
+    }
+
+    /**
+     * Two players start, one of them acts every ten ticks, and the match is closed
+     * after {@link #TICKS} ticks.
+     */
+    private Path recordMatch() throws Exception {
+        ReplayRecorder recorder = new ReplayRecorder(directory, GAME_ID);
+        ServerGameManager game = new ServerGameManager(ServerGameManager.MAX_TICK_HISTORY);
+        game.setGameId(GAME_ID);
+        game.setEventSink(recorder);
+
+        game.reset(42L);
+        game.setGameBoardObjectPlayer(0, player("p0"));
+        game.setGameBoardObjectPlayer(1, player("p1"));
+        game.startGameLoop();
+        for (int tick = 1; tick <= TICKS; tick++) {
+            if (tick % 10 == 0) {
+                game.addPlayerAction(new PlayerAction());
+            }
+            game.update(DELTA);
+        }
+        game.endGameLoop();
+        game.shutDownServer();
+        return recorder.getFile();
+    }
+
+    private static YipeePlayer player(String name) {
+        YipeePlayer player = new YipeePlayer();
+        player.setName(name);
+        return player;
+    }
+}
@@ -0,0 +1,200 @@
+package asg.games.server.yipeewebserver.services;
+
+import asg.games.server.yipeewebserver.core.GameContextFactory;
+import asg.games.server.yipeewebserver.core.ServerGameManager;
+import asg.games.server.yipeewebserver.services.impl.YipeeGameJPAServiceImpl;
+import asg.games.yipee.core.objects.YipeePlayer;
+import asg.games.yipee.core.objects.YipeeTable;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class MatchmakingServiceTest {
+    private static final String ROOM = "room-1";
+
+    private YipeeGameJPAServiceImpl yipeeGameService;
+    private GameContextFactory gameContextFactory;
+    private DrainService drainService;
+    private ServerGameManager game;
+    private MatchmakingService matchmaking;
+
+    @BeforeEach
+    void setUp() {
+        yipeeGameService = mock(YipeeGameJPAServiceImpl.class);
+        gameContextFactory = mock(GameContextFactory.class);
+        drainService = mock(DrainService.class);
+        game = mock(ServerGameManager.class);
+        when(gameContextFactory.newGame()).thenReturn("game-1");
+        when(gameContextFactory.getGame("game-1")).thenReturn(game);
+        YipeeTable table = mock(YipeeTable.class);
+        when(table.getId()).thenReturn("table-1");
+        when(table.getTableNumber()).thenReturn(1);
+        when(yipeeGameService.createMatchTable(anyString(), anyString(), anyList())).thenReturn(table);
+
+        matchmaking = new MatchmakingService(yipeeGameService, gameContextFactory, drainService,
+                new SimpleMeterRegistry());
+        ReflectionTestUtils.setField(matchmaking, "baseSpread", 100);
+        ReflectionTestUtils.setField(matchmaking, "widenPerSecond", 25);
+        ReflectionTestUtils.setField(matchmaking, "maxSpread", 1000);
+        ReflectionTestUtils.setField(matchmaking, "assignmentTtlMs", 60_000L);
+    }
+
+    @Test
+    void formMatches_seatsPartnersStrongestWithWeakest() {
+        queue("a", 1000);
+        queue("b", 1010);
+        queue("c", 1020);
+        queue("d", 1030);
+
+        assertThat(matchmaking.formMatches()).isEqualTo(1);
+
+        verify(yipeeGameService).createMatchTable(ROOM, "game-1", List.of("d", "a", "c", "b"));
+        assertThat(matchmaking.queuedCount()).isZero();
+        MatchmakingService.Assignment assignment = matchmaking.status("a").assignment();
+        assertThat(assignment.tableId()).isEqualTo("table-1");
+        assertThat(assignment.seatNumber()).isEqualTo(1);
+    }
+
+    @Test
+    void formMatches_slidesWindowPastOutlier() {
+        queue("low", 1000);
+        queue("a", 1500);
+        queue("b", 1510);
+        queue("c", 1520);
+        queue("d", 1530);
+
+        assertThat(matchmaking.formMatches()).isEqualTo(1);
+
+        verify(yipeeGameService).createMatchTable(ROOM, "game-1", List.of("d", "a", "c", "b"));
+        assertThat(matchmaking.status("low").ticket()).isNotNull();
+        assertThat(matchmaking.queuedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void formMatches_widensToleranceWhileWaiting() {
+        queue("a", 1000);
+        queue("b", 1100);
+        queue("c", 1200);
+        queue("d", 1300);
+        long now = System.currentTimeMillis();
+
+        assertThat(matchmaking.formMatches(now)).isZero();
+        assertThat(matchmaking.formMatches(now + 7_000)).isZero(); // 100 + 7 * 25 < 300
+        assertThat(matchmaking.formMatches(now + 8_000)).isEqualTo(1);
+    }
+
+    @Test
+    void formMatches_toleranceStopsAtMaxSpread() {
+        ReflectionTestUtils.setField(matchmaking, "maxSpread", 250);
+        queue("a", 1000);
+        queue("b", 1100);
+        queue("c", 1200);
+        queue("d", 1300);
+
+        assertThat(matchmaking.formMatches(System.currentTimeMillis() + 600_000)).isZero();
+        assertThat(matchmaking.queuedCount()).isEqualTo(4);
+    }
+
+    @Test
+    void formMatches_cancelledPlayerIsNotMatched() {
+        queue("a", 1000);
+        queue("b", 1010);
+        queue("c", 1020);
+        queue("d", 1030);
+        assertThat(matchmaking.cancel("b")).isTrue();
+        assertThat(matchmaking.cancel("b")).isFalse();
+
+        assertThat(matchmaking.formMatches()).isZero();
+        assertThat(matchmaking.queuedCount()).isEqualTo(3);
+    }
+
+    @Test
+    void formMatches_cancelAfterGroupWasTakenRequeuesTheRest() {
+        for (int i = 0; i < 4; i++) {
+            queue("low" + i, 1000 + i);
+            queue("high" + i, 2000 + i);
+        }
+        // The first match is being set up while a player of the second group cancels
+        when(yipeeGameService.createMatchTable(anyString(), anyString(), anyList())).thenAnswer(invocation -> {
+            matchmaking.cancel("high0");
+            YipeeTable table = mock(YipeeTable.class);
+            when(table.getId()).thenReturn("table-1");
+            return table;
+        });
+
+        assertThat(matchmaking.formMatches()).isEqualTo(1);
+
+        assertThat(matchmaking.queuedCount()).isEqualTo(3);
+        assertThat(matchmaking.status("high1").ticket()).isNotNull();
+        assertThat(matchmaking.status("high1").assignment()).isNull();
+        assertThat(matchmaking.status("high0").ticket()).isNull();
+    }
+
+    @Test
+    void formMatches_failedTableReleasesGameAndRequeuesGroup() {
+        when(yipeeGameService.createMatchTable(anyString(), anyString(), anyList()))
+                .thenThrow(new IllegalStateException("db down"));
+        queue("a", 1000);
+        queue("b", 1010);
+        queue("c", 1020);
+        queue("d", 1030);
+
+        assertThat(matchmaking.formMatches()).isZero();
+
+        InOrder order = inOrder(game, yipeeGameService, gameContextFactory);
+        order.verify(game).startGameLoop();
+        order.verify(yipeeGameService).createMatchTable(anyString(), anyString(), anyList());
+        order.verify(gameContextFactory).releaseGame("game-1");
+        assertThat(matchmaking.queuedCount()).isEqualTo(4);
+        assertThat(matchmaking.status("a").assignment()).isNull();
+    }
+
+    @Test
+    void formMatches_skipsWhileDraining() {
+        when(drainService.isDraining()).thenReturn(true);
+        queue("a", 1000);
+        queue("b", 1010);
+        queue("c", 1020);
+        queue("d", 1030);
+
+        assertThat(matchmaking.formMatches()).isZero();
+        verify(gameContextFactory, never()).newGame();
+        verify(game, never()).setGameBoardObjectPlayer(eq(0), any());
+    }
+
+    @Test
+    void pairPartners_alternatesStrongestAndWeakest() {
+        List<MatchmakingService.Ticket> group = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            group.add(new MatchmakingService.Ticket("p" + i, null, 1000 + i, ROOM,
+                    MatchmakingService.Mode.FOUR_TEAMS, 0L, i));
+        }
+
+        assertThat(MatchmakingService.pairPartners(group))
+                .extracting(MatchmakingService.Ticket::playerId)
+                .containsExactly("p7", "p0", "p6", "p1", "p5", "p2", "p4", "p3");
+    }
+
+    private void queue(String playerId, int rating) {
+        YipeePlayer player = mock(YipeePlayer.class);
+        when(player.getId()).thenReturn(playerId);
+        when(player.getRating()).thenReturn(rating);
+        matchmaking.enqueue(player, ROOM, MatchmakingService.Mode.TWO_TEAMS);
+    }
+}
@@ -0,0 +1,237 @@
+package asg.games.server.yipeewebserver.services;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class SeatAllocatorTest {
+    private static final String ROOM = "room-1";
+
+    private SimpleMeterRegistry meterRegistry;
+    private SeatAllocator allocator;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        allocator = new SeatAllocator(meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void reserve_fillsLowestTableFirst() {
+        List<SeatAllocator.TableSnapshot> room = List.of(table("t2", 2, 2), table("t1", 1, 2));
+
+        assertThat(reserve("p1", room).tableId()).isEqualTo("t1");
+        assertThat(reserve("p2", room).tableId()).isEqualTo("t1");
+        assertThat(reserve("p3", room).tableId()).isEqualTo("t2");
+        assertThat(reserve("p1", room).seatNumber()).isZero(); // already holds a seat
+        assertThat(allocator.pendingCount()).isEqualTo(3);
+    }
+
+    @Test
+    void reserve_concurrentPlayersNeverShareASeat() throws Exception {
+        int tables = 8;
+        int seatsPerTable = 4;
+        int players = 64;
+        List<SeatAllocator.TableSnapshot> room = new ArrayList<>();
+        for (int i = 1; i <= tables; i++) {
+            room.add(table("t" + i, i, seatsPerTable));
+        }
+        allocator.reserve(ROOM, "warmup", () -> room);
+        allocator.drop(allocator.drainPending(1).get(0));
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Optional<SeatAllocator.Reservation>>> results = new ArrayList<>();
+        for (int i = 0; i < players; i++) {
+            String playerId = "p" + i;
+            results.add(executor.submit(() -> {
+                start.await();
+                return allocator.reserve(ROOM, playerId, List::of);
+            }));
+        }
+        start.countDown();
+
+        Set<String> seats = new HashSet<>();
+        int seated = 0;
+        for (Future<Optional<SeatAllocator.Reservation>> result : results) {
+            Optional<SeatAllocator.Reservation> reservation = result.get(10, TimeUnit.SECONDS);
+            if (reservation.isPresent()) {
+                seated++;
+                assertThat(seats.add(reservation.get().tableId() + "#" + reservation.get().seatNumber())).isTrue();
+            }
+        }
+        executor.shutdown();
+
+        assertThat(seated).isEqualTo(tables * seatsPerTable);
+        assertThat(allocator.reserve(ROOM, "late", List::of)).isEmpty();
+    }
+
+    @Test
+    void claim_takesSeatAndFreesOtherSeatAtTable() {
+        reserve("p1", List.of(table("t1", 1, 2)));
+
+        assertThat(allocator.claim("t1", 1, "p1")).isTrue();
+        assertThat(allocator.seatOf("t1", "p1")).isEqualTo(1);
+        assertThat(allocator.claim("t1", 1, "p2")).isFalse();
+        assertThat(reserve("p2", List.of()).seatNumber()).isZero();
+    }
+
+    @Test
+    void claim_isUndoneOnRollback() {
+        reserve("p0", List.of(table("t1", 1, 2)));
+        allocator.drop(allocator.drainPending(1).get(0));
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertThat(allocator.claim("t1", 0, "p1")).isTrue();
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(allocator.seatOf("t1", "p1")).isEqualTo(-1);
+        assertThat(allocator.claim("t1", 0, "p2")).isTrue();
+    }
+
+    @Test
+    void reserve_rolledBackIsNeverQueued() {
+        List<SeatAllocator.TableSnapshot> room = List.of(table("t1", 1, 1));
+        allocator.reserve(ROOM, "warmup", () -> room);
+        allocator.drop(allocator.drainPending(1).get(0));
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertThat(allocator.reserve(ROOM, "p1", List::of)).isPresent();
+        assertThat(allocator.pendingCount()).isZero();
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(allocator.pendingCount()).isZero();
+        assertThat(allocator.seatOf("t1", "p1")).isEqualTo(-1);
+        assertThat(reserve("p2", List.of()).tableId()).isEqualTo("t1");
+    }
+
+    @Test
+    void reserve_committedIsQueued() {
+        TransactionSynchronizationManager.initSynchronization();
+        SeatAllocator.Reservation reservation = reserve("p1", List.of(table("t1", 1, 1)));
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(allocator.drainPending(10)).containsExactly(reservation);
+    }
+
+    @Test
+    void claim_rollbackKeepsPlayersOtherSeat() {
+        reserve("p1", List.of(table("t1", 1, 2)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        assertThat(allocator.claim("t1", 1, "p1")).isTrue();
+        complete(TransactionSynchronization.STATUS_ROLLED_BACK);
+
+        assertThat(allocator.seatOf("t1", "p1")).isZero();
+        assertThat(allocator.reserve(ROOM, "p1", List::of).orElseThrow().seatNumber()).isZero();
+        assertThat(allocator.claim("t1", 0, "p2")).isFalse();
+    }
+
+    @Test
+    void release_waitsForCommitAndReopensFullTable() {
+        List<SeatAllocator.TableSnapshot> room = List.of(table("t1", 1, 1));
+        reserve("p1", room);
+        assertThat(allocator.reserve(ROOM, "p2", List::of)).isEmpty();
+
+        TransactionSynchronizationManager.initSynchronization();
+        allocator.release("t1", "p1");
+        assertThat(allocator.seatOf("t1", "p1")).isZero();
+        complete(TransactionSynchronization.STATUS_COMMITTED);
+
+        assertThat(allocator.seatOf("t1", "p1")).isEqualTo(-1);
+        assertThat(reserve("p2", List.of()).tableId()).isEqualTo("t1");
+    }
+
+    @Test
+    void conflict_movesPlayerToAnotherSeatAtSameTable() {
+        reserve("p0", List.of(table("t0", 0, 1), table("t1", 1, 3)));
+        SeatAllocator.Reservation reservation = reserve("p1", List.of());
+        assertThat(reservation.tableId()).isEqualTo("t1");
+        allocator.drainPending(10);
+
+        Optional<SeatAllocator.Reservation> moved = allocator.conflict(reservation, "other");
+
+        assertThat(moved).isPresent();
+        assertThat(moved.get().tableId()).isEqualTo("t1");
+        assertThat(moved.get().seatNumber()).isEqualTo(1);
+        assertThat(allocator.holds(reservation)).isFalse();
+        assertThat(allocator.seatOf("t1", "other")).isZero();
+        assertThat(allocator.drainPending(10)).containsExactly(moved.get());
+        assertThat(meterRegistry.get(SeatAllocator.METER_RESERVATIONS).tag("result", "conflict")
+                .counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void conflict_withNoFreeSeatLeavesPlayerUnseated() {
+        SeatAllocator.Reservation reservation = reserve("p1", List.of(table("t1", 1, 1)));
+
+        assertThat(allocator.conflict(reservation, "other")).isEmpty();
+        assertThat(allocator.seatOf("t1", "p1")).isEqualTo(-1);
+    }
+
+    @Test
+    void drop_freesSeatForTheNextPlayer() {
+        SeatAllocator.Reservation reservation = reserve("p1", List.of(table("t1", 1, 1)));
+
+        allocator.drop(reservation);
+
+        assertThat(allocator.holds(reservation)).isFalse();
+        assertThat(reserve("p2", List.of()).tableId()).isEqualTo("t1");
+    }
+
+    @Test
+    void registerTable_addsTableToIndexedRoom() {
+        reserve("p1", List.of(table("t1", 1, 1)));
+
+        allocator.registerTable(ROOM, new SeatAllocator.TableSnapshot("t2", 2,
+                new int[]{0, 1}, new String[]{"p2", null}));
+
+        assertThat(allocator.seatOf("t2", "p2")).isZero();
+        assertThat(reserve("p3", List.of()).tableId()).isEqualTo("t2");
+        assertThat(allocator.reserve(ROOM, "p4", List::of)).isEmpty();
+    }
+
+    private SeatAllocator.Reservation reserve(String playerId, List<SeatAllocator.TableSnapshot> room) {
+        return allocator.reserve(ROOM, playerId, () -> room).orElseThrow();
+    }
+
+    private static SeatAllocator.TableSnapshot table(String tableId, int tableNumber, int seats) {
+        int[] seatNumbers = new int[seats];
+        for (int i = 0; i < seats; i++) {
+            seatNumbers[i] = i;
+        }
+        return new SeatAllocator.TableSnapshot(tableId, tableNumber, seatNumbers, new String[seats]);
+    }
+
+    private static void complete(int status) {
+        List<TransactionSynchronization> synchronizations = TransactionSynchronizationManager.getSynchronizations();
+        TransactionSynchronizationManager.clearSynchronization();
+        for (TransactionSynchronization synchronization : synchronizations) {
+            if (status == TransactionSynchronization.STATUS_COMMITTED) synchronization.afterCommit();
+            synchronization.afterCompletion(status);
+        }
+    }
+}
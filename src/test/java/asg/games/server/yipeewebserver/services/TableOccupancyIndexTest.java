@@ -0,0 +1,148 @@
+package asg.games.server.yipeewebserver.services;
+
+import asg.games.server.yipeewebserver.data.YipeeTableOccupancyEntity;
+import asg.games.server.yipeewebserver.persistence.YipeeSeatRepository;
+import asg.games.server.yipeewebserver.persistence.YipeeTableOccupancyRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Collection;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TableOccupancyIndexTest {
+    private YipeeSeatRepository seatRepository;
+    private YipeeTableOccupancyRepository occupancyRepository;
+    private TableOccupancyIndex index;
+
+    @BeforeEach
+    void setUp() {
+        seatRepository = mock(YipeeSeatRepository.class);
+        occupancyRepository = mock(YipeeTableOccupancyRepository.class);
+        index = new TableOccupancyIndex(seatRepository, occupancyRepository);
+        ReflectionTestUtils.setField(index, "idleMs", 300_000L);
+        when(occupancyRepository.adjustSeatedCount(anyCollection(), anyInt(), any()))
+                .thenAnswer(invocation -> ((Collection<?>) invocation.getArgument(0)).size());
+    }
+
+    @Test
+    void flush_groupsTablesByDelta() {
+        index.registerTable("t1");
+        index.registerTable("t2");
+        index.registerTable("t3");
+        index.playerSeated("t1", "p1");
+        index.playerSeated("t2", "p2");
+        index.playerSeated("t3", "p3");
+        index.playerSeated("t3", "p4");
+        index.playerSeated("t3", "p4"); // same player twice counts once
+
+        assertThat(index.flush()).isEqualTo(3);
+
+        verify(occupancyRepository).adjustSeatedCount(argThat(ids -> ids.size() == 2
+                && ids.containsAll(List.of("t1", "t2"))), eq(1), any());
+        verify(occupancyRepository).adjustSeatedCount(eq(List.of("t3")), eq(2), any());
+        assertThat(index.flush()).isZero();
+    }
+
+    @Test
+    void flush_cancelledChangesWriteNothing() {
+        index.registerTable("t1");
+        index.playerSeated("t1", "p1");
+        index.playerStood("t1", "p1");
+
+        assertThat(index.flush()).isZero();
+        verify(occupancyRepository, never()).adjustSeatedCount(anyCollection(), anyInt(), any());
+    }
+
+    @Test
+    void flush_missingActivityRowFallsBackToAbsoluteWrite() {
+        index.registerTable("t1");
+        index.registerTable("t2");
+        index.playerSeated("t1", "p1");
+        index.playerSeated("t2", "p2");
+        when(occupancyRepository.adjustSeatedCount(anyCollection(), eq(1), any())).thenReturn(1);
+
+        index.flush();
+
+        when(occupancyRepository.setSeatedCount(eq("t1"), eq(1), any())).thenReturn(1);
+        when(occupancyRepository.setSeatedCount(eq("t2"), eq(1), any())).thenReturn(0);
+        assertThat(index.flush()).isEqualTo(2);
+        verify(occupancyRepository).save(argThat((YipeeTableOccupancyEntity occ) ->
+                occ.getTableId().equals("t2") && occ.getSeatedCount() == 1));
+    }
+
+    @Test
+    void flush_failedDeltaIsRetried() {
+        index.registerTable("t1");
+        index.playerSeated("t1", "p1");
+        when(occupancyRepository.adjustSeatedCount(anyCollection(), eq(1), any()))
+                .thenThrow(new IllegalStateException("db down"))
+                .thenReturn(1);
+
+        assertThat(index.flush()).isZero();
+        assertThat(index.flush()).isEqualTo(1);
+    }
+
+    @Test
+    void flush_dropsIdleEmptyTables() {
+        ReflectionTestUtils.setField(index, "idleMs", 0L);
+        index.registerTable("t1");
+        index.playerSeated("t1", "p1");
+        index.playerStood("t1", "p1");
+        index.registerTable("t2");
+        index.playerSeated("t2", "p2");
+
+        index.flush();
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.isKnownOccupied("t2")).isTrue();
+    }
+
+    @Test
+    void load_readsSeatsOnceAndWritesAbsoluteCount() {
+        // The commit has already written p3's seat when the index hears of it
+        when(seatRepository.findSeatedPlayerIdsByTableId("t1")).thenReturn(List.of("p1", "p2", "p3"));
+        when(occupancyRepository.setSeatedCount(eq("t1"), eq(3), any())).thenReturn(1);
+
+        index.playerSeated("t1", "p3");
+        verify(seatRepository, never()).findSeatedPlayerIdsByTableId("t1");
+        assertThat(index.seatedCount("t1")).isEqualTo(3);
+
+        assertThat(index.flush()).isEqualTo(1);
+        verify(seatRepository).findSeatedPlayerIdsByTableId("t1");
+        verify(occupancyRepository, never()).adjustSeatedCount(anyCollection(), anyInt(), any());
+    }
+
+    @Test
+    void flush_loadsTablesChangedWhileNotIndexed() {
+        when(seatRepository.findSeatedPlayerIdsByTableId("t1")).thenReturn(List.of("p1"));
+        when(occupancyRepository.setSeatedCount(eq("t1"), eq(1), any())).thenReturn(1);
+
+        index.playerSeated("t1", "p1");
+        verify(seatRepository, never()).findSeatedPlayerIdsByTableId("t1");
+
+        assertThat(index.flush()).isEqualTo(1);
+        assertThat(index.isKnownOccupied("t1")).isTrue();
+        verify(seatRepository).findSeatedPlayerIdsByTableId("t1");
+    }
+
+    @Test
+    void evict_dropsPendingLoad() {
+        index.playerSeated("t1", "p1");
+        index.evict("t1");
+
+        assertThat(index.flush()).isZero();
+        verify(seatRepository, never()).findSeatedPlayerIdsByTableId("t1");
+    }
+}